@@ -45,18 +45,35 @@ import com.foundationdb.sql.StandardException;
 import com.foundationdb.sql.types.DataTypeDescriptor;
 import com.foundationdb.sql.types.TypeId;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /** Perform normalization such as CNF on boolean expressions. */
-public class BooleanNormalizer implements Visitor
+public class BooleanNormalizer implements CompactInListVisitor
 {
     public static final int NOT_IN_AND_LIMIT = 100;
 
     SQLParserContext parserContext;
     NodeFactory nodeFactory;
+    boolean flattenLogicalOperators;
+
     public BooleanNormalizer(SQLParserContext parserContext) {
         this.parserContext = parserContext;
         this.nodeFactory = parserContext.getNodeFactory();
     }
 
+    /** Whether normalized conditions use a {@link NaryLogicalOperatorNode}
+     * for each <code>AND</code> or <code>OR</code> instead of a chain of
+     * binary nodes.
+     */
+    public boolean isFlattenLogicalOperators() {
+        return flattenLogicalOperators;
+    }
+
+    public void setFlattenLogicalOperators(boolean flattenLogicalOperators) {
+        this.flattenLogicalOperators = flattenLogicalOperators;
+    }
+
     /** Normalize conditions anywhere in this statement. */
     public StatementNode normalize(StatementNode stmt) throws StandardException {
         return (StatementNode)stmt.accept(this);
@@ -87,6 +104,20 @@ public class BooleanNormalizer implements Visitor
          *  o Finish the job (changeToCNF())
          */
         if (boolClause != null) {
+            boolClause = thaw(boolClause);
+            if (flattenLogicalOperators) {
+                /* With each AND or OR a single node, CNF just means
+                 * flattening again after NOTs have been inverted, and
+                 * there is no chain to terminate.
+                 */
+                boolClause = flattenThawedLogicalOperators(boolClause);
+                boolClause = eliminateNots(boolClause, false);
+                assert verifyEliminateNots(boolClause);
+                boolClause = flattenThawedLogicalOperators(boolClause);
+                boolClause = putNaryAndOnTop(boolClause);
+                assert verifyFlattened(boolClause, true);
+                return boolClause;
+            }
             boolClause = eliminateNots(boolClause, false);
             assert verifyEliminateNots(boolClause);
             boolClause = putAndsOnTop(boolClause);
@@ -97,6 +128,211 @@ public class BooleanNormalizer implements Visitor
         return boolClause;
     }
 
+    /**
+     * Get an expression that can be changed in place. Any parts of it that
+     * are {@link QueryTreeNode#freeze frozen}, because they are shared with
+     * other copies of a view, are copied first. Subqueries are left alone,
+     * since their own conditions are normalized separately.
+     */
+    protected ValueNode thaw(ValueNode node) throws StandardException {
+        return (ValueNode)node.accept(new Thawer());
+    }
+
+    static class Thawer implements CompactInListVisitor, DeferredSubqueryVisitor {
+        public Visitable visit(Visitable node) throws StandardException {
+            // A frozen node with children has already been copied to
+            // take their copies.
+            QueryTreeNode qtn = (QueryTreeNode)node;
+            if (qtn.isFrozen())
+                return qtn.copyForWrite();
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return true;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return (node instanceof ResultSetNode);
+        }
+    }
+
+    /**
+     * Replace each chain of {@link AndNode} or {@link OrNode}, and each
+     * nested {@link NaryLogicalOperatorNode} of the same kind, with a
+     * single {@link NaryLogicalOperatorNode}. Chains are followed with a
+     * loop, so their length does not matter. Any frozen parts are
+     * {@link #thaw copied} first.
+     *
+     * @param node An expression node.
+     *
+     * @return The modified expression
+     *
+     * @exception StandardException Thrown on error
+     */
+    public ValueNode flattenLogicalOperators(ValueNode node) 
+            throws StandardException {
+        return flattenThawedLogicalOperators(thaw(node));
+    }
+
+    /** {@link #flattenLogicalOperators} on an expression with nothing frozen. */
+    protected ValueNode flattenThawedLogicalOperators(ValueNode node) 
+            throws StandardException {
+        int naryNodeType;
+        switch (node.getNodeType()) {
+        case NodeTypes.AND_NODE:
+        case NodeTypes.NARY_AND_NODE:
+            naryNodeType = NodeTypes.NARY_AND_NODE;
+            break;
+        case NodeTypes.OR_NODE:
+        case NodeTypes.NARY_OR_NODE:
+            naryNodeType = NodeTypes.NARY_OR_NODE;
+            break;
+        case NodeTypes.NOT_NODE:
+            {
+                NotNode notNode = (NotNode)node;
+                notNode.setOperand(flattenThawedLogicalOperators(notNode.getOperand()));
+            }
+            return node;
+        default:
+            return node;
+        }
+        ValueNodeList operands = (ValueNodeList)
+            nodeFactory.getNode(NodeTypes.VALUE_NODE_LIST, parserContext);
+        Deque<ValueNode> pending = new ArrayDeque<ValueNode>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            ValueNode next = pending.pop();
+            if (naryNodeType(next) != naryNodeType) {
+                operands.addValueNode(flattenThawedLogicalOperators(next));
+            }
+            else if (next instanceof BinaryLogicalOperatorNode) {
+                BinaryLogicalOperatorNode bnode = (BinaryLogicalOperatorNode)next;
+                pending.push(bnode.getRightOperand());
+                pending.push(bnode.getLeftOperand());
+            }
+            else {
+                ValueNodeList nested = ((NaryLogicalOperatorNode)next).getOperands();
+                for (int i = nested.size() - 1; i >= 0; i--)
+                    pending.push(nested.get(i));
+            }
+        }
+        if (node.getNodeType() == naryNodeType) {
+            ((NaryLogicalOperatorNode)node).setOperands(operands);
+            return node;
+        }
+        NaryLogicalOperatorNode nnode = (NaryLogicalOperatorNode)
+            nodeFactory.getNode(naryNodeType, operands, parserContext);
+        nnode.setType(node.getType());
+        return nnode;
+    }
+
+    /** The flattened node type equivalent to this node, if any. */
+    protected static int naryNodeType(ValueNode node) {
+        switch (node.getNodeType()) {
+        case NodeTypes.AND_NODE:
+        case NodeTypes.NARY_AND_NODE:
+            return NodeTypes.NARY_AND_NODE;
+        case NodeTypes.OR_NODE:
+        case NodeTypes.NARY_OR_NODE:
+            return NodeTypes.NARY_OR_NODE;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * Replace each {@link NaryLogicalOperatorNode} with the equivalent
+     * left-deep chain of {@link AndNode} or {@link OrNode}, as the parser
+     * would have produced, for consumers that only understand those.
+     * Any frozen parts are {@link #thaw copied} first.
+     *
+     * @param node An expression node.
+     *
+     * @return The modified expression
+     *
+     * @exception StandardException Thrown on error
+     */
+    public ValueNode unflattenLogicalOperators(ValueNode node) 
+            throws StandardException {
+        return unflattenThawedLogicalOperators(thaw(node));
+    }
+
+    /** {@link #unflattenLogicalOperators} on an expression with nothing frozen. */
+    protected ValueNode unflattenThawedLogicalOperators(ValueNode node) 
+            throws StandardException {
+        switch (node.getNodeType()) {
+        case NodeTypes.NARY_AND_NODE:
+        case NodeTypes.NARY_OR_NODE:
+            {
+                NaryLogicalOperatorNode nnode = (NaryLogicalOperatorNode)node;
+                ValueNodeList operands = nnode.getOperands();
+                for (int i = 0; i < operands.size(); i++)
+                    operands.set(i, unflattenThawedLogicalOperators(operands.get(i)));
+                return binaryLogicalOperators(node.getNodeType(), operands, 
+                                              nnode.getType());
+            }
+        case NodeTypes.AND_NODE:
+        case NodeTypes.OR_NODE:
+            {
+                // Follow a left-deep chain with a loop.
+                BinaryLogicalOperatorNode bnode = (BinaryLogicalOperatorNode)node;
+                while (true) {
+                    bnode.setRightOperand(unflattenThawedLogicalOperators(bnode.getRightOperand()));
+                    ValueNode leftOperand = bnode.getLeftOperand();
+                    if (leftOperand.getNodeType() != node.getNodeType()) {
+                        bnode.setLeftOperand(unflattenThawedLogicalOperators(leftOperand));
+                        break;
+                    }
+                    bnode = (BinaryLogicalOperatorNode)leftOperand;
+                }
+            }
+            return node;
+        case NodeTypes.NOT_NODE:
+            {
+                NotNode notNode = (NotNode)node;
+                notNode.setOperand(unflattenThawedLogicalOperators(notNode.getOperand()));
+            }
+            return node;
+        default:
+            return node;
+        }
+    }
+
+    /** Make a left-deep chain of binary operators from these operands. */
+    protected ValueNode binaryLogicalOperators(int naryNodeType, 
+                                               ValueNodeList operands,
+                                               DataTypeDescriptor type)
+            throws StandardException {
+        boolean and = (naryNodeType == NodeTypes.NARY_AND_NODE);
+        if (operands.isEmpty()) {
+            return (ValueNode)nodeFactory.getNode(NodeTypes.BOOLEAN_CONSTANT_NODE,
+                                                  and ? Boolean.TRUE : Boolean.FALSE,
+                                                  parserContext);
+        }
+        ValueNode result = operands.get(0);
+        for (int i = 1; i < operands.size(); i++) {
+            ValueNode leftOperand = result;
+            ValueNode rightOperand = operands.get(i);
+            result = (ValueNode)nodeFactory.getNode(and ? 
+                                                    NodeTypes.AND_NODE : 
+                                                    NodeTypes.OR_NODE,
+                                                    leftOperand, rightOperand,
+                                                    parserContext);
+            if ((leftOperand.getType() != null) && (rightOperand.getType() != null)) {
+                boolean nullableResult = leftOperand.getType().isNullable() ||
+                                         rightOperand.getType().isNullable();
+                result.setType(DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID,
+                                                                        nullableResult));
+            }
+        }
+        if ((type != null) && (operands.size() > 1))
+            result.setType(type);
+        return result;
+    }
+
     /**
      * Eliminate NotNodes in the current query block.    We traverse the tree, 
      * inverting ANDs and ORs and eliminating NOTs as we go.    We stop at 
@@ -145,6 +381,28 @@ public class BooleanNormalizer implements Visitor
                 }
             }
             break;
+        case NodeTypes.NARY_AND_NODE:
+        case NodeTypes.NARY_OR_NODE:
+            {
+                NaryLogicalOperatorNode nnode = (NaryLogicalOperatorNode)node;
+                ValueNodeList operands = nnode.getOperands();
+                for (int i = 0; i < operands.size(); i++)
+                    operands.set(i, eliminateNots(operands.get(i), underNotNode));
+                int nodeType = node.getNodeType();
+                if (underNotNode)
+                    /* Convert AND to OR and vice versa. */
+                    nodeType = (nodeType == NodeTypes.NARY_AND_NODE) ?
+                        NodeTypes.NARY_OR_NODE : NodeTypes.NARY_AND_NODE;
+                if (!flattenLogicalOperators)
+                    return binaryLogicalOperators(nodeType, operands, nnode.getType());
+                if (underNotNode) {
+                    NaryLogicalOperatorNode cnode = (NaryLogicalOperatorNode)
+                        nodeFactory.getNode(nodeType, operands, parserContext);
+                    cnode.setType(nnode.getType());
+                    return cnode;
+                }
+            }
+            break;
         case NodeTypes.CONDITIONAL_NODE:
             {
                 ConditionalNode conditionalNode = (ConditionalNode)node;
@@ -276,20 +534,20 @@ public class BooleanNormalizer implements Visitor
                 boolean orNullable = false;
                 if ((leftType != null) && (right0Type != null)) {
                     boolean nullable = leftType.isNullable() || right0Type.isNullable();
-                    DataTypeDescriptor leftBCType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, 
-                                                                           nullable);
+                    DataTypeDescriptor leftBCType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, 
+                                                                                             nullable);
                     leftBCO.setType(leftBCType);
                     orNullable = nullable;
                 }
                 if ((leftType != null) && (right1Type != null)) {
                     boolean nullable = leftType.isNullable() || right1Type.isNullable();
-                    DataTypeDescriptor rightBCType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, 
-                                                                            nullable);
+                    DataTypeDescriptor rightBCType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, 
+                                                                                              nullable);
                     rightBCO.setType(rightBCType);
                     orNullable |= nullable;
                 }
                 if ((leftType != null) && (right0Type != null) && (right1Type != null))
-                    newOr.setType(new DataTypeDescriptor(TypeId.BOOLEAN_ID, orNullable));
+                    newOr.setType(DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, orNullable));
                 return newOr;
             }
             break;
@@ -445,11 +703,11 @@ public class BooleanNormalizer implements Visitor
 
     protected ValueNode inWithNestedTuples(InListOperatorNode node) throws StandardException
     {
-        RowConstructorNode rightList = node.getRightOperandList();
-        if (rightList.getNodeList().size() > NOT_IN_AND_LIMIT) {
+        if (node.getRightOperandCount() > NOT_IN_AND_LIMIT) {
             node.setNegated(true);
             return node;
         }
+        RowConstructorNode rightList = node.getRightOperandList();
         RowConstructorNode leftList = node.getLeftOperand();
         ValueNode result = null;
         
@@ -483,8 +741,8 @@ public class BooleanNormalizer implements Visitor
         return (ValueNode)
             nodeFactory.getNode(NodeTypes.CAST_NODE,
                                 node,
-                                new DataTypeDescriptor(TypeId.BOOLEAN_ID, 
-                                                       node.getType().isNullable()),
+                                DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, 
+                                                                         node.getType().isNullable()),
                                 parserContext);
     }
 
@@ -500,8 +758,8 @@ public class BooleanNormalizer implements Visitor
                                 parserContext);
         if (node.getType() != null) {
             boolean nullableResult = node.getType().isNullable();
-            equalsNode.setType(new DataTypeDescriptor(TypeId.BOOLEAN_ID,
-                                                      nullableResult));
+            equalsNode.setType(DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID,
+                                                                        nullableResult));
         }
         return equalsNode;
     }
@@ -524,6 +782,13 @@ public class BooleanNormalizer implements Visitor
                 return verifyEliminateNots(bnode.getLeftOperand()) &&
                        verifyEliminateNots(bnode.getRightOperand());
             }
+        case NodeTypes.NARY_AND_NODE:
+        case NodeTypes.NARY_OR_NODE:
+            for (ValueNode operand : ((NaryLogicalOperatorNode)node).getOperands()) {
+                if (!verifyEliminateNots(operand))
+                    return false;
+            }
+            break;
         }
         return true;
     }
@@ -559,14 +824,64 @@ public class BooleanNormalizer implements Visitor
                                                                parserContext);
                 if (node.getType() != null) {
                     boolean nullableResult = node.getType().isNullable();
-                    andNode.setType(new DataTypeDescriptor(TypeId.BOOLEAN_ID,
-                                                           nullableResult));
+                    andNode.setType(DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID,
+                                                                             nullableResult));
                 }
                 return andNode;
             }
         }
     }
 
+    /**
+     * Ensure that a flattened expression has a {@link NaryLogicalOperatorNode}
+     * <code>AND</code> on top, the equivalent of {@link #putAndsOnTop}.
+     *
+     * @param node An expression node.
+     *
+     * @return The modified expression
+     *
+     * @exception StandardException Thrown on error
+     */
+    protected NaryLogicalOperatorNode putNaryAndOnTop(ValueNode node) 
+            throws StandardException {
+        if (node.getNodeType() == NodeTypes.NARY_AND_NODE)
+            return (NaryLogicalOperatorNode)node;
+        ValueNodeList operands = (ValueNodeList)
+            nodeFactory.getNode(NodeTypes.VALUE_NODE_LIST, parserContext);
+        operands.addValueNode(node);
+        NaryLogicalOperatorNode andNode = (NaryLogicalOperatorNode)
+            nodeFactory.getNode(NodeTypes.NARY_AND_NODE, operands, parserContext);
+        andNode.setType(node.getType());
+        return andNode;
+    }
+
+    /**
+     * Verify that a flattened expression is in conjunctive normal form:
+     * an <code>AND</code> on top, no binary <code>AND</code> or
+     * <code>OR</code>, and no operand of the same kind as its parent.
+     *
+     * @param node An expression node.
+     *
+     * @return Boolean which reflects validity of the tree.
+     */
+    protected boolean verifyFlattened(ValueNode node, boolean top) {
+        switch (node.getNodeType()) {
+        case NodeTypes.AND_NODE:
+        case NodeTypes.OR_NODE:
+            return false;
+        case NodeTypes.NARY_AND_NODE:
+        case NodeTypes.NARY_OR_NODE:
+            for (ValueNode operand : ((NaryLogicalOperatorNode)node).getOperands()) {
+                if ((operand.getNodeType() == node.getNodeType()) ||
+                    !verifyFlattened(operand, false))
+                    return false;
+            }
+            return !top || (node.getNodeType() == NodeTypes.NARY_AND_NODE);
+        default:
+            return !top;
+        }
+    }
+
     /**
      * Verify that putAndsOnTop() did its job correctly.    Verify that the top level 
      * of the expression is a chain of AndNodes terminated by a true BooleanConstantNode.
@@ -837,13 +1152,20 @@ public class BooleanNormalizer implements Visitor
     public Visitable visit(Visitable node) throws StandardException {
         switch (((QueryTreeNode)node).getNodeType()) {
         case NodeTypes.SELECT_NODE:
+            // Its clauses are replaced, so change a copy of a frozen one.
+            if (((SelectNode)node).isFrozen())
+                node = ((SelectNode)node).copyForWrite();
             selectNode((SelectNode)node);
             break;
         case NodeTypes.JOIN_NODE:
         case NodeTypes.HALF_OUTER_JOIN_NODE:
+            if (((JoinNode)node).isFrozen())
+                node = ((JoinNode)node).copyForWrite();
             joinNode((JoinNode)node);
             break;
         case NodeTypes.CONDITIONAL_NODE:
+            if (((ConditionalNode)node).isFrozen())
+                node = thaw((ConditionalNode)node);
             conditionalNode((ConditionalNode)node);
             break;
         }
@@ -857,7 +1179,9 @@ public class BooleanNormalizer implements Visitor
         return false;
     }
     public boolean skipChildren(Visitable node) throws StandardException {
-        return false;
+        // Rows held by column are only literals and parameters.
+        return ((node instanceof RowsResultSetNode) &&
+                ((RowsResultSetNode)node).isColumnar());
     }
 
 }
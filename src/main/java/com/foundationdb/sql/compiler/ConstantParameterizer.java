@@ -0,0 +1,254 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.*;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Replace literals in a DML statement with parameters.
+ * <p>
+ * Statements that differ only in their literals give the same
+ * template, which can then be shared by a cache, with the literals
+ * themselves available in parameter order from {@link #getConstants}.
+ * New parameters are numbered after any the statement already had and
+ * in the order they appear in the template.
+ * <p>
+ * Some literals are left alone because they are part of the structure
+ * of the statement rather than values: <code>NULL</code>, the
+ * <code>TRUE</code> / <code>FALSE</code> / <code>UNKNOWN</code> of
+ * <code>IS</code>, <code>TIMESTAMPADD</code> intervals, <code>TRIM</code>
+ * characters, anything in <code>ORDER BY</code>, <code>GROUP BY</code> or
+ * <code>PARTITION BY</code> (which may be column positions) and the select
+ * list of a grouped query (which must match its grouping expressions).
+ */
+public class ConstantParameterizer implements Visitor
+{
+    SQLParserContext parserContext;
+    NodeFactory nodeFactory;
+    protected NodeToString unparser;
+
+    private boolean replacing;
+    private Set<QueryTreeNode> excluded;
+    private List<ConstantNode> candidates;
+    private Set<ConstantNode> candidateSet;
+    private Map<ConstantNode,Integer> numbers;
+    private List<ConstantNode> constants;
+    private List<ParameterNode> parameters;
+    private int firstParameterNumber;
+    private String template;
+
+    public ConstantParameterizer(SQLParserContext parserContext) {
+        this.parserContext = parserContext;
+        this.nodeFactory = parserContext.getNodeFactory();
+        this.unparser = new NodeToString();
+    }
+
+    /** Replace literals anywhere in this statement.
+     * @param stmt the statement to modify in place
+     * @param parameterList existing parameters, such as
+     * {@link SQLParser#getParameterList}, to which new ones are added;
+     * can be <code>null</code> if there are none
+     */
+    public StatementNode parameterize(StatementNode stmt,
+                                      List<ParameterNode> parameterList)
+            throws StandardException {
+        excluded = Collections.newSetFromMap(new IdentityHashMap<QueryTreeNode,Boolean>());
+        candidates = new ArrayList<ConstantNode>();
+        candidateSet = Collections.newSetFromMap(new IdentityHashMap<ConstantNode,Boolean>());
+        numbers = new IdentityHashMap<ConstantNode,Integer>();
+        constants = new ArrayList<ConstantNode>();
+        parameters = new ArrayList<ParameterNode>();
+        firstParameterNumber = 0;
+        if (parameterList != null) {
+            for (ParameterNode param : parameterList) {
+                if (firstParameterNumber <= param.getParameterNumber())
+                    firstParameterNumber = param.getParameterNumber() + 1;
+            }
+        }
+
+        if (stmt instanceof DMLStatementNode) {
+            replacing = false;
+            stmt.accept(this);
+        }
+        if (candidates.isEmpty()) {
+            template = unparser.toString(stmt);
+            return stmt;
+        }
+
+        // Number in the order that the unparser reaches them.
+        String numberedTemplate = new NumberingUnparser().toString(stmt);
+        boolean complete = (constants.size() == candidates.size());
+        for (ConstantNode constant : candidates) {
+            if (!numbers.containsKey(constant))
+                number(constant);
+        }
+
+        replacing = true;
+        stmt = (StatementNode)stmt.accept(this);
+        for (ParameterNode param : parameters) {
+            if (param == null)
+                throw new StandardException("Literal was not replaced");
+        }
+        if (parameterList != null)
+            parameterList.addAll(parameters);
+        template = complete ? numberedTemplate : unparser.toString(stmt);
+        return stmt;
+    }
+
+    /** Get the canonical SQL text of the statement last parameterized. */
+    public String getTemplate() {
+        return template;
+    }
+
+    /** Get the literals that were replaced, in parameter order. */
+    public List<ConstantNode> getConstants() {
+        return constants;
+    }
+
+    /** Get the values of the literals that were replaced, in parameter order. */
+    public List<Object> getValues() {
+        List<Object> values = new ArrayList<Object>(constants.size());
+        for (ConstantNode constant : constants) {
+            values.add(constant.getValue());
+        }
+        return values;
+    }
+
+    /** Get the parameters that were added, in order. */
+    public List<ParameterNode> getParameters() {
+        return parameters;
+    }
+
+    /** Get the parameter number of the first replaced literal. */
+    public int getFirstParameterNumber() {
+        return firstParameterNumber;
+    }
+
+    protected int number(ConstantNode constant) {
+        int number = firstParameterNumber + constants.size();
+        numbers.put(constant, number);
+        constants.add(constant);
+        parameters.add(null);
+        return number;
+    }
+
+    /** Should this literal become a parameter? */
+    protected boolean isParameterizable(ConstantNode constant) {
+        return (constant.getValue() != null);
+    }
+
+    /** Note children of this node that must stay as they are. */
+    protected void excludeChildren(QueryTreeNode node) {
+        switch (node.getNodeType()) {
+        case NodeTypes.IS_NODE:
+            excluded.add(((IsNode)node).getRightOperand());
+            break;
+        case NodeTypes.TIMESTAMP_ADD_FN_NODE:
+        case NodeTypes.TIMESTAMP_DIFF_FN_NODE:
+            excluded.add(((TernaryOperatorNode)node).getReceiver());
+            break;
+        case NodeTypes.TRIM_OPERATOR_NODE:
+            excluded.add(((TrimOperatorNode)node).getRightOperand());
+            break;
+        case NodeTypes.ROWS_RESULT_SET_NODE:
+            // Just a copy of the first row, redone after replacing.
+            excluded.add(((RowsResultSetNode)node).getResultColumns());
+            break;
+        case NodeTypes.SELECT_NODE:
+            {
+                SelectNode select = (SelectNode)node;
+                if (select.getGroupByList() != null)
+                    excluded.add(select.getResultColumns());
+            }
+            break;
+        }
+    }
+
+    /* Visitor interface */
+
+    public Visitable visit(Visitable node) throws StandardException {
+        QueryTreeNode qtn = (QueryTreeNode)node;
+        if (!replacing) {
+            excludeChildren(qtn);
+            if ((qtn instanceof ConstantNode) &&
+                !excluded.contains(qtn) &&
+                isParameterizable((ConstantNode)qtn) &&
+                candidateSet.add((ConstantNode)qtn))
+                candidates.add((ConstantNode)qtn);
+            return node;
+        }
+        if (qtn instanceof RowsResultSetNode) {
+            RowsResultSetNode rows = (RowsResultSetNode)qtn;
+            rows.setResultColumns((ResultColumnList)
+                                  nodeFactory.copyNode(rows.getRows().get(0).getResultColumns(),
+                                                       parserContext));
+            return node;
+        }
+        if (!(qtn instanceof ConstantNode))
+            return node;
+        Integer number = numbers.get(qtn);
+        if (number == null)
+            return node;
+        ParameterNode param = (ParameterNode)
+            nodeFactory.getNode(NodeTypes.PARAMETER_NODE,
+                                number,
+                                null,
+                                parserContext);
+        param.setBeginOffset(qtn.getBeginOffset());
+        param.setEndOffset(qtn.getEndOffset());
+        parameters.set(number - firstParameterNumber, param);
+        return param;
+    }
+
+    public boolean visitChildrenFirst(Visitable node) {
+        return replacing;
+    }
+    public boolean stopTraversal() {
+        return false;
+    }
+    public boolean skipChildren(Visitable node) throws StandardException {
+        return (!replacing &&
+                ((node instanceof OrderedColumn) ||
+                 excluded.contains(node)));
+    }
+
+    /** Assign parameter numbers to literals in the order that they
+     * are output, giving the same text as unparsing the result.
+     */
+    protected class NumberingUnparser extends NodeToString {
+        @Override
+        protected String constantNode(ConstantNode node) throws StandardException {
+            Integer number = numbers.get(node);
+            if (number == null) {
+                if (!candidateSet.contains(node))
+                    return super.constantNode(node);
+                number = number(node);
+            }
+            return "$" + (number + 1);
+        }
+    }
+
+}
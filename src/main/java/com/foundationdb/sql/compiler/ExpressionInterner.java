@@ -0,0 +1,142 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.*;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Make equivalent expressions in a statement into the same node.
+ * <p>
+ * Expressions are looked up by {@link ValueNode#structuralHash} and
+ * compared with {@link ValueNode#isStructurallyEquivalent}, so finding
+ * common subexpressions or duplicate predicates does not need to compare
+ * every pair. Subexpressions are interned before the expressions that
+ * contain them, so whole equivalent trees end up shared and the statement
+ * is no longer a tree: do this after anything that changes nodes in
+ * place, such as {@link BooleanNormalizer}.
+ * <p>
+ * Each query block has its own table, since the same column name can
+ * mean a different table in a subquery. Result columns are not
+ * themselves interned, since each belongs to its own list, nor are nodes
+ * that are never equivalent to anything, such as parameters.
+ */
+public class ExpressionInterner implements CompactInListVisitor
+{
+    private Deque<Map<Integer,List<ValueNode>>> tables;
+    private Map<ValueNode,Integer> occurrences;
+    private List<ValueNode> commonExpressions;
+
+    public ExpressionInterner() {
+        clear();
+    }
+
+    /** Forget all expressions interned so far. */
+    public void clear() {
+        tables = new ArrayDeque<Map<Integer,List<ValueNode>>>();
+        tables.push(new HashMap<Integer,List<ValueNode>>());
+        occurrences = new IdentityHashMap<ValueNode,Integer>();
+        commonExpressions = new ArrayList<ValueNode>();
+    }
+
+    /** Intern the expressions throughout this statement. */
+    public StatementNode intern(StatementNode stmt) throws StandardException {
+        return (StatementNode)stmt.accept(this);
+    }
+
+    /** Intern this expression and its subexpressions, returning the
+     * equivalent node interned before, if any. */
+    public ValueNode intern(ValueNode expression) throws StandardException {
+        return (ValueNode)expression.accept(this);
+    }
+
+    /** Get the interned expressions that occurred more than once, in the
+     * order in which they first recurred. */
+    public List<ValueNode> getCommonExpressions() {
+        return commonExpressions;
+    }
+
+    /** Get the number of times that a common expression occurred, or 0
+     * if it is not one. */
+    public int getOccurrences(ValueNode expression) {
+        Integer count = occurrences.get(expression);
+        if (count == null)
+            return 0;
+        return count;
+    }
+
+    protected ValueNode internNode(ValueNode node) throws StandardException {
+        if (!node.isStructurallyEquivalent(node))
+            return node;
+        Map<Integer,List<ValueNode>> table = tables.peek();
+        Integer hash = node.structuralHash();
+        List<ValueNode> bucket = table.get(hash);
+        if (bucket == null) {
+            bucket = new ArrayList<ValueNode>(1);
+            table.put(hash, bucket);
+        }
+        for (ValueNode interned : bucket) {
+            if (interned.isStructurallyEquivalent(node)) {
+                Integer count = occurrences.get(interned);
+                if (count == null) {
+                    commonExpressions.add(interned);
+                    count = 1;
+                }
+                occurrences.put(interned, count + 1);
+                return interned;
+            }
+        }
+        bucket.add(node);
+        return node;
+    }
+
+    /* Visitor interface */
+
+    public Visitable visit(Visitable node) throws StandardException {
+        if (node instanceof ResultSetNode) {
+            tables.pop();
+            return node;
+        }
+        if ((node instanceof ValueNode) && !(node instanceof ResultColumn))
+            return internNode((ValueNode)node);
+        return node;
+    }
+
+    public boolean skipChildren(Visitable node) throws StandardException {
+        // Asked as each node is reached, so start a table for a new
+        // query block here, which visit ends after its children.
+        if (node instanceof ResultSetNode)
+            tables.push(new HashMap<Integer,List<ValueNode>>());
+        return false;
+    }
+    public boolean visitChildrenFirst(Visitable node) {
+        return true;
+    }
+    public boolean stopTraversal() {
+        return false;
+    }
+
+}
@@ -158,16 +158,16 @@ public class IntervalTypeCompiler extends TypeCompiler
                     return leftType.getNullabilityType(nullable);
                 // two intervals are of the same *type*
                 else if ((typeFormatId = leftTypeId.getTypeFormatId()) == rightTypeId.getTypeFormatId())
-                    return new DataTypeDescriptor(typeFormatId == TypeId.FormatIds.INTERVAL_DAY_SECOND_ID ?
-                                                    TypeId.INTERVAL_SECOND_ID : TypeId.INTERVAL_MONTH_ID,
-                                                    nullable);
+                    return DataTypeDescriptor.getDataTypeDescriptor(typeFormatId == TypeId.FormatIds.INTERVAL_DAY_SECOND_ID ?
+                                                                      TypeId.INTERVAL_SECOND_ID : TypeId.INTERVAL_MONTH_ID,
+                                                                      nullable);
                         
             // varchar
              DataTypeDescriptor varcharType;
              if ((varcharType = leftType).getTypeId().isStringTypeId() && rightTypeId.isIntervalTypeId()||
                  (varcharType = rightType).getTypeId().isStringTypeId() && leftTypeId.isIntervalTypeId()
                     && operator.equals(PLUS_OP)) // when left is interval, only + is legal
-                return new DataTypeDescriptor(varcharType.getPrecision() > 10 ? TypeId.DATETIME_ID : TypeId.DATE_ID, nullable);
+                return DataTypeDescriptor.getDataTypeDescriptor(varcharType.getPrecision() > 10 ? TypeId.DATETIME_ID : TypeId.DATE_ID, nullable);
         }
         else if (operator.equals(TIMES_OP) || operator.equals(DIVIDE_OP) || operator.equals(DIV_OP))
         {   
@@ -178,7 +178,7 @@ public class IntervalTypeCompiler extends TypeCompiler
                 (intervalId = rightTypeId).isIntervalTypeId() && 
                     (leftTypeId.isNumericTypeId() || leftTypeId.isStringTypeId()) &&
                     operator.equals(TIMES_OP)) // when right is interval, only * is legal
-                return new DataTypeDescriptor(intervalId, nullable);            
+                return DataTypeDescriptor.getDataTypeDescriptor(intervalId, nullable);            
         }        
 
         // Unsupported
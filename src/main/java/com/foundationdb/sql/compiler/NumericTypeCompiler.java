@@ -264,11 +264,11 @@ public final class NumericTypeCompiler extends TypeCompiler
         ** It's OK to call the implementation of the DataTypeDescriptorFactory
         ** here, because we're in the same package.
         */
-        return new DataTypeDescriptor(higherType.getTypeId(),
-                                      precision,
-                                      scale,
-                                      nullable,
-                                      maximumWidth);
+        return DataTypeDescriptor.getDataTypeDescriptor(higherType.getTypeId(),
+                                                        precision,
+                                                        scale,
+                                                        nullable,
+                                                        maximumWidth);
     }
 
     /** @see TypeCompiler#convertible */
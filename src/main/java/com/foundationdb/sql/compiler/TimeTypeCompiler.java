@@ -120,10 +120,10 @@ public class TimeTypeCompiler extends TypeCompiler
                 switch (rightTypeId.getTypeFormatId()) {
                 case TypeId.FormatIds.TIME_TYPE_ID:
                     // TIME - TIME is INTERVAL HOUR TO SECOND
-                    return new DataTypeDescriptor(TypeId.INTERVAL_HOUR_SECOND_ID, nullable);
+                    return DataTypeDescriptor.getDataTypeDescriptor(TypeId.INTERVAL_HOUR_SECOND_ID, nullable);
                 }
                 // TIME - other datetime is INTERVAL DAY TO SECOND
-                return new DataTypeDescriptor(TypeId.INTERVAL_DAY_SECOND_ID, nullable);
+                return DataTypeDescriptor.getDataTypeDescriptor(TypeId.INTERVAL_DAY_SECOND_ID, nullable);
             }
         }
         else if (rightTypeId.isIntervalTypeId()) {
@@ -141,7 +141,7 @@ public class TimeTypeCompiler extends TypeCompiler
                         return leftType.getNullabilityType(nullable);
                 }
                 // TIME +/- other interval is TIMESTAMP
-                return new DataTypeDescriptor(TypeId.TIMESTAMP_ID, nullable);
+                return DataTypeDescriptor.getDataTypeDescriptor(TypeId.TIMESTAMP_ID, nullable);
             }
         }
 
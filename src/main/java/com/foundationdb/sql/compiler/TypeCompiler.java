@@ -46,6 +46,9 @@ import com.foundationdb.sql.types.DataTypeDescriptor;
 import com.foundationdb.sql.types.TypeId;
 
 import java.sql.Types;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * This interface defines methods associated with a TypeId that are used
@@ -224,151 +227,151 @@ public abstract class TypeCompiler
         return getTypeId().getTypeFormatId();
     }
 
-    // These are all the TypeCompilers that are stateless, so we can
-    // use a single instance of each. Initialize all to null, and fault
-    // them in.
-    private static TypeCompiler bitTypeCompiler;
-    private static TypeCompiler booleanTypeCompiler;
-    private static TypeCompiler charTypeCompiler;
-    private static TypeCompiler decimalTypeCompiler;
-    private static TypeCompiler doubleTypeCompiler;
-    private static TypeCompiler intTypeCompiler;
-    private static TypeCompiler longintTypeCompiler;
-    private static TypeCompiler longvarbitTypeCompiler;
-    private static TypeCompiler longvarcharTypeCompiler;
-    private static TypeCompiler realTypeCompiler;
-    private static TypeCompiler smallintTypeCompiler;
-    private static TypeCompiler tinyintTypeCompiler;
-    private static TypeCompiler dateTypeCompiler;
-    private static TypeCompiler timeTypeCompiler;
-    private static TypeCompiler timestampTypeCompiler;
-    private static TypeCompiler varbitTypeCompiler;
-    private static TypeCompiler varcharTypeCompiler;
-    private static TypeCompiler refTypeCompiler;
-    private static TypeCompiler blobTypeCompiler;
-    private static TypeCompiler clobTypeCompiler;
-    private static TypeCompiler xmlTypeCompiler;
-    private static TypeCompiler intervalMonthTypeCompiler, intervalSecondTypeCompiler;
+    // The TypeCompilers for the built-in types are stateless, so a single
+    // instance serves every TypeId with the same format. They are all
+    // made when this class is loaded and never changed, so that getting
+    // one is safe from any thread without locking.
+    private static final TypeCompiler[] builtInTypeCompilers = makeBuiltInTypeCompilers();
+
+    // Replaced as a whole by registerTypeCompiler, never changed in place.
+    private static volatile Map<TypeId,TypeCompiler> userTypeCompilers =
+        Collections.<TypeId,TypeCompiler>emptyMap();
+
+    private static TypeCompiler[] makeBuiltInTypeCompilers() {
+        TypeId[] typeIds = {
+            TypeId.BIT_ID, TypeId.BOOLEAN_ID, TypeId.CHAR_ID, TypeId.DATE_ID,
+            TypeId.DECIMAL_ID, TypeId.NUMERIC_ID, TypeId.DOUBLE_ID,
+            TypeId.INTEGER_ID, TypeId.BIGINT_ID, TypeId.LONGVARBIT_ID,
+            TypeId.LONGVARCHAR_ID, TypeId.REAL_ID, TypeId.REF_ID,
+            TypeId.SMALLINT_ID, TypeId.TIME_ID, TypeId.TIMESTAMP_ID,
+            TypeId.TINYINT_ID, TypeId.VARBIT_ID, TypeId.BLOB_ID,
+            TypeId.VARCHAR_ID, TypeId.CLOB_ID, TypeId.XML_ID,
+            TypeId.INTERVAL_YEAR_MONTH_ID, TypeId.INTERVAL_DAY_SECOND_ID,
+            // JDBC OTHER, but built in, with a fixed Java class.
+            TypeId.MEDIUMINT_ID, TypeId.GUID_ID
+        };
+        int size = 0;
+        for (TypeId typeId : typeIds) {
+            size = Math.max(size, typeId.getTypeFormatId() + 1);
+        }
+        TypeCompiler[] typeCompilers = new TypeCompiler[size];
+        for (TypeId typeId : typeIds) {
+            typeCompilers[typeId.getTypeFormatId()] = makeTypeCompiler(typeId);
+        }
+        return typeCompilers;
+    }
 
     /**
      * Get the TypeCompiler that corresponds to the given TypeId.
      */
     public static TypeCompiler getTypeCompiler(TypeId typeId) {
+        TypeCompiler typeCompiler = getBuiltInTypeCompiler(typeId);
+        if (typeCompiler == null) {
+            typeCompiler = userTypeCompilers.get(typeId);
+            if (typeCompiler == null)
+                typeCompiler = makeTypeCompiler(typeId);
+        }
+        return typeCompiler;
+    }
+
+    /**
+     * Use the given TypeCompiler for a user-defined type, instead of
+     * a new {@link UserDefinedTypeCompiler} each time.
+     */
+    public static void registerTypeCompiler(TypeId typeId, TypeCompiler typeCompiler) {
+        if (getBuiltInTypeCompiler(typeId) != null)
+            throw new IllegalArgumentException("Not a user-defined type: " + typeId);
+        synchronized (TypeCompiler.class) {
+            Map<TypeId,TypeCompiler> typeCompilers =
+                new HashMap<TypeId,TypeCompiler>(userTypeCompilers);
+            typeCompilers.put(typeId, typeCompiler);
+            userTypeCompilers = typeCompilers;
+        }
+    }
+
+    private static TypeCompiler getBuiltInTypeCompiler(TypeId typeId) {
+        int formatId = typeId.getTypeFormatId();
+        if ((formatId >= 0) && (formatId < builtInTypeCompilers.length))
+            return builtInTypeCompilers[formatId];
+        else
+            return null;
+    }
+
+    /**
+     * Make a new TypeCompiler for the given TypeId.
+     */
+    private static TypeCompiler makeTypeCompiler(TypeId typeId) {
         switch (typeId.getJDBCTypeId()) {
         case Types.BINARY:
-            if (bitTypeCompiler == null)
-                bitTypeCompiler = new BitTypeCompiler(typeId);
-            return bitTypeCompiler;
+            return new BitTypeCompiler(typeId);
 
         case Types.BIT:
         case Types.BOOLEAN:
-            if (booleanTypeCompiler == null)
-                booleanTypeCompiler = new BooleanTypeCompiler(typeId);
-            return booleanTypeCompiler;
+            return new BooleanTypeCompiler(typeId);
 
         case Types.CHAR:
-            if (charTypeCompiler == null)
-                charTypeCompiler = new CharTypeCompiler(typeId);
-            return charTypeCompiler;
+            return new CharTypeCompiler(typeId);
 
         case Types.NUMERIC:
         case Types.DECIMAL:
-            if (decimalTypeCompiler == null)
-                decimalTypeCompiler = new NumericTypeCompiler(typeId);
-            return decimalTypeCompiler;
+            return new NumericTypeCompiler(typeId);
 
         case Types.DOUBLE:
-            if (doubleTypeCompiler == null)
-                doubleTypeCompiler = new NumericTypeCompiler(typeId);
-            return doubleTypeCompiler;
+            return new NumericTypeCompiler(typeId);
 
         case Types.INTEGER:
-            if (intTypeCompiler == null)
-                intTypeCompiler = new NumericTypeCompiler(typeId);
-            return intTypeCompiler;
+            return new NumericTypeCompiler(typeId);
 
         case Types.BIGINT:
-            if (longintTypeCompiler == null)
-                longintTypeCompiler = new NumericTypeCompiler(typeId);
-            return longintTypeCompiler;
+            return new NumericTypeCompiler(typeId);
 
         case Types.BLOB:
-            if (blobTypeCompiler == null)
-                blobTypeCompiler = new LOBTypeCompiler(typeId);
-            return blobTypeCompiler;
+            return new LOBTypeCompiler(typeId);
 
         case Types.LONGVARBINARY:
-            if (longvarbitTypeCompiler == null)
-                longvarbitTypeCompiler = new BitTypeCompiler(typeId);
-            return longvarbitTypeCompiler;
+            return new BitTypeCompiler(typeId);
 
         case Types.CLOB:
-            if (clobTypeCompiler == null)
-                clobTypeCompiler = new CLOBTypeCompiler(typeId);
-            return clobTypeCompiler;
+            return new CLOBTypeCompiler(typeId);
 
         case Types.LONGVARCHAR:
-            if (longvarcharTypeCompiler == null)
-                longvarcharTypeCompiler = new CharTypeCompiler(typeId);
-            return longvarcharTypeCompiler;
+            return new CharTypeCompiler(typeId);
 
         case Types.REAL:
-            if (realTypeCompiler == null)
-                realTypeCompiler = new NumericTypeCompiler(typeId);
-            return realTypeCompiler;
+            return new NumericTypeCompiler(typeId);
 
         case Types.SMALLINT:
-            if (smallintTypeCompiler == null)
-                smallintTypeCompiler = new NumericTypeCompiler(typeId);
-            return smallintTypeCompiler;
+            return new NumericTypeCompiler(typeId);
 
         case Types.TINYINT:
-            if (tinyintTypeCompiler == null)
-                tinyintTypeCompiler = new NumericTypeCompiler(typeId);
-            return tinyintTypeCompiler;
+            return new NumericTypeCompiler(typeId);
 
         case Types.DATE:
-            if (dateTypeCompiler == null)
-                dateTypeCompiler = new DateTypeCompiler(typeId);
-            return dateTypeCompiler;
+            return new DateTypeCompiler(typeId);
 
         case Types.TIME:
-            if (timeTypeCompiler == null)
-                timeTypeCompiler = new TimeTypeCompiler(typeId);
-            return timeTypeCompiler;
+            return new TimeTypeCompiler(typeId);
 
         case Types.TIMESTAMP:
-            if (timestampTypeCompiler == null)
-                timestampTypeCompiler = new TimestampTypeCompiler(typeId);
-            return timestampTypeCompiler;
+            return new TimestampTypeCompiler(typeId);
 
         case Types.VARBINARY:
-            if (varbitTypeCompiler == null)
-                varbitTypeCompiler = new BitTypeCompiler(typeId);
-            return varbitTypeCompiler;
+            return new BitTypeCompiler(typeId);
 
         case Types.VARCHAR:
-            if (varcharTypeCompiler == null)
-                varcharTypeCompiler = new CharTypeCompiler(typeId);
-            return varcharTypeCompiler;
+            return new CharTypeCompiler(typeId);
 
         case Types.JAVA_OBJECT:
         case Types.OTHER:
             if (typeId.isRefTypeId()) {
-                if (refTypeCompiler == null)
-                    refTypeCompiler = new RefTypeCompiler(typeId);
-                return refTypeCompiler;
+                return new RefTypeCompiler(typeId);
             }
             else if (typeId.isIntervalTypeId()) {
                 switch (typeId.getTypeFormatId()) {
                 case TypeId.FormatIds.INTERVAL_YEAR_MONTH_ID:
-                    if (intervalMonthTypeCompiler == null)
-                        intervalMonthTypeCompiler = new IntervalTypeCompiler(typeId);
-                    return intervalMonthTypeCompiler;
-                case TypeId.FormatIds.INTERVAL_DAY_SECOND_ID:                        
-                    if (intervalSecondTypeCompiler == null)
-                        intervalSecondTypeCompiler = new IntervalTypeCompiler(typeId);
-                    return intervalSecondTypeCompiler;
+                    return new IntervalTypeCompiler(typeId);
+                case TypeId.FormatIds.INTERVAL_DAY_SECOND_ID:
+                    return new IntervalTypeCompiler(typeId);
                 default:
                     return null;
                 }
@@ -380,9 +383,7 @@ public abstract class TypeCompiler
             }
 
         case Types.SQLXML:
-            if (xmlTypeCompiler == null)
-                xmlTypeCompiler = new XMLTypeCompiler(typeId);
-            return xmlTypeCompiler;
+            return new XMLTypeCompiler(typeId);
 
         default:
             assert false : "Unexpected JDBC type id " + typeId.getJDBCTypeId();
@@ -26,7 +26,7 @@ import com.foundationdb.sql.types.TypeId;
 
 
 /** Calculate types from schema information. */
-public class TypeComputer implements Visitor
+public class TypeComputer implements CompactInListVisitor
 {
     public TypeComputer() {
     }
@@ -55,6 +55,9 @@ public class TypeComputer implements Visitor
         case NodeTypes.OR_NODE:
         case NodeTypes.IS_NODE:
             return binaryLogicalOperatorNode((BinaryLogicalOperatorNode)node);
+        case NodeTypes.NARY_AND_NODE:
+        case NodeTypes.NARY_OR_NODE:
+            return naryLogicalOperatorNode((NaryLogicalOperatorNode)node);
         case NodeTypes.NOT_NODE:
             return unaryLogicalOperatorNode((UnaryLogicalOperatorNode)node);
         case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
@@ -87,11 +90,11 @@ public class TypeComputer implements Visitor
             return concatenationOperatorNode((ConcatenationOperatorNode)node);
         case NodeTypes.IS_NULL_NODE:
         case NodeTypes.IS_NOT_NULL_NODE:
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, false);
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, false);
         case NodeTypes.NEXT_SEQUENCE_NODE:
-            return new DataTypeDescriptor(TypeId.BIGINT_ID, false);
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BIGINT_ID, false);
         case NodeTypes.CURRENT_SEQUENCE_NODE:
-            return new DataTypeDescriptor(TypeId.BIGINT_ID, false);
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BIGINT_ID, false);
         default:
             // assert false;
             return null;
@@ -128,7 +131,7 @@ public class TypeComputer implements Visitor
         DataTypeDescriptor type = operand.getType();
         if ((type != null) &&
             !type.getTypeId().isBooleanTypeId()) {
-            type = new DataTypeDescriptor(TypeId.BOOLEAN_ID, type.isNullable());
+            type = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, type.isNullable());
             operand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          operand, type, 
@@ -136,7 +139,7 @@ public class TypeComputer implements Visitor
             node.setOperand(operand);
         }
         if ((type == null) && isParameterOrUntypedNull(operand)) {
-            type = new DataTypeDescriptor(TypeId.BOOLEAN_ID, true);
+            type = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, true);
             operand.setType(type);
         }
         return type;
@@ -150,7 +153,7 @@ public class TypeComputer implements Visitor
         DataTypeDescriptor rightType = rightOperand.getType();
         if ((leftType != null) &&
             !leftType.getTypeId().isBooleanTypeId()) {
-            leftType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, leftType.isNullable());
+            leftType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, leftType.isNullable());
             leftOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          leftOperand, leftType, 
@@ -158,12 +161,12 @@ public class TypeComputer implements Visitor
             node.setLeftOperand(leftOperand);
         }
         if ((leftType == null) && isParameterOrUntypedNull(leftOperand)) {
-            leftType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, true);
+            leftType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, true);
             leftOperand.setType(leftType);
         }
         if ((rightType != null) &&
             !rightType.getTypeId().isBooleanTypeId()) {
-            rightType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, rightType.isNullable());
+            rightType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, rightType.isNullable());
             rightOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          rightOperand, rightType, 
@@ -171,11 +174,11 @@ public class TypeComputer implements Visitor
             node.setRightOperand(rightOperand);
         }
         if ((rightType == null) && isParameterOrUntypedNull(rightOperand)) {
-            rightType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, true);
+            rightType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, true);
             rightOperand.setType(rightType);
         }
         if (node.getNodeType() == NodeTypes.IS_NODE)
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, false);
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, false);
         if (leftType == null) 
             return rightType;
         else if (rightType == null)
@@ -185,6 +188,40 @@ public class TypeComputer implements Visitor
                                                rightType.isNullable());
     }
 
+    protected DataTypeDescriptor naryLogicalOperatorNode(NaryLogicalOperatorNode node)
+            throws StandardException {
+        ValueNodeList operands = node.getOperands();
+        DataTypeDescriptor result = null;
+        boolean nullable = false;
+        for (int i = 0; i < operands.size(); i++) {
+            ValueNode operand = operands.get(i);
+            DataTypeDescriptor type = operand.getType();
+            if ((type != null) &&
+                !type.getTypeId().isBooleanTypeId()) {
+                type = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, type.isNullable());
+                operand = (ValueNode)node.getNodeFactory()
+                    .getNode(NodeTypes.CAST_NODE, 
+                             operand, type, 
+                             node.getParserContext());
+                operands.set(i, operand);
+            }
+            if ((type == null) && isParameterOrUntypedNull(operand)) {
+                type = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, true);
+                operand.setType(type);
+            }
+            if (type != null) {
+                if (result == null)
+                    result = type;
+                nullable |= type.isNullable();
+            }
+        }
+        if (operands.isEmpty())
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, false);
+        if (result == null)
+            return null;
+        return result.getNullabilityType(nullable);
+    }
+
     protected DataTypeDescriptor binaryArithmeticOperatorNode(BinaryArithmeticOperatorNode node)
             throws StandardException {
         ValueNode leftOperand = node.getLeftOperand();
@@ -227,9 +264,9 @@ public class TypeComputer implements Visitor
             leftOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE,
                          leftOperand, 
-                         new DataTypeDescriptor(rightTypeId, precision,
-                                                scale, nullableResult, 
-                                                maxWidth),
+                         DataTypeDescriptor.getDataTypeDescriptor(rightTypeId, precision,
+                                                                  scale, nullableResult, 
+                                                                  maxWidth),
                          node.getParserContext());
             node.setLeftOperand(leftOperand);
         }
@@ -255,9 +292,9 @@ public class TypeComputer implements Visitor
             rightOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE,
                          rightOperand, 
-                         new DataTypeDescriptor(leftTypeId, precision,
-                                                scale, nullableResult, 
-                                                maxWidth),
+                         DataTypeDescriptor.getDataTypeDescriptor(leftTypeId, precision,
+                                                                  scale, nullableResult, 
+                                                                  maxWidth),
                          node.getParserContext());
             node.setRightOperand(rightOperand);
         }
@@ -350,7 +387,7 @@ public class TypeComputer implements Visitor
         */
         boolean nullableResult = leftOperand.getType().isNullable() ||
                                  rightOperand.getType().isNullable();
-        return new DataTypeDescriptor(TypeId.BOOLEAN_ID, nullableResult);
+        return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, nullableResult);
     }
 
     protected DataTypeDescriptor betweenOperatorNode(BetweenOperatorNode node) throws StandardException {
@@ -396,7 +433,7 @@ public class TypeComputer implements Visitor
         boolean nullableResult = leftType.isNullable() ||
                                  lowType.isNullable() ||
                                  highType.isNullable();
-        return new DataTypeDescriptor(TypeId.BOOLEAN_ID, nullableResult);
+        return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, nullableResult);
     }
 
     protected DataTypeDescriptor inListOperatorNode(InListOperatorNode node) throws StandardException {
@@ -410,26 +447,29 @@ public class TypeComputer implements Visitor
 
             boolean nullableResult = leftType.isNullable();
 
-            for (ValueNode rightOperand : node.getRightOperandList().getNodeList()) {
-                DataTypeDescriptor rightType;
-                if (isParameterOrUntypedNull(rightOperand)) {
-                    rightType = leftType.getNullabilityType(true);
-                    rightOperand.setType(rightType);
-                }
-                else {
-                    rightType = rightOperand.getType();
+            // The literals of a compact list are never null.
+            if (!node.isCompact()) {
+                for (ValueNode rightOperand : node.getRightOperandList().getNodeList()) {
+                    DataTypeDescriptor rightType;
+                    if (isParameterOrUntypedNull(rightOperand)) {
+                        rightType = leftType.getNullabilityType(true);
+                        rightOperand.setType(rightType);
+                    }
+                    else {
+                        rightType = rightOperand.getType();
+                    }
+                    if ((rightType == null) || rightType.isNullable())
+                        nullableResult = true;
                 }
-                if ((rightType == null) || rightType.isNullable())
-                    nullableResult = true;
             }
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, nullableResult);
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, nullableResult);
         }
         else
         {
             boolean nullable = isNestedTupleNullable(leftOperand)
                                 || isNestedTupleNullable(node.getRightOperandList());
             
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, nullable);
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, nullable);
         }
     }
     
@@ -463,7 +503,7 @@ public class TypeComputer implements Visitor
                 return col1Type.getNullabilityType(true);
         }
         else
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, true);
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, true);
     }
 
     protected DataTypeDescriptor conditionalNode(ConditionalNode node) 
@@ -481,7 +521,7 @@ public class TypeComputer implements Visitor
             throws StandardException {
         if (node.getAggregateName().equals("COUNT") ||
             node.getAggregateName().equals("COUNT(*)"))
-            return new DataTypeDescriptor(TypeId.BIGINT_ID, false);
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.BIGINT_ID, false);
 
         ValueNode operand = node.getOperand();
         if ((operand == null) ||
@@ -489,7 +529,7 @@ public class TypeComputer implements Visitor
             return null;
         if (node.getAggregateName().equals("AVG") &&
             operand.getType().getTypeId().isIntegerTypeId())
-            return new DataTypeDescriptor(TypeId.DOUBLE_ID, true);
+            return DataTypeDescriptor.getDataTypeDescriptor(TypeId.DOUBLE_ID, true);
         return operand.getType().getNullabilityType(true);
     }
 
@@ -501,9 +541,9 @@ public class TypeComputer implements Visitor
         DataTypeDescriptor rightType = rightOperand.getType();
         if ((leftType != null) &&
             !leftType.getTypeId().isStringTypeId()) {
-            leftType = new DataTypeDescriptor(TypeId.VARCHAR_ID,
-                                              leftType.isNullable(),
-                                              leftType.getMaximumWidth());
+            leftType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID,
+                                                                leftType.isNullable(),
+                                                                leftType.getMaximumWidth());
             leftOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          leftOperand, leftType, 
@@ -511,14 +551,14 @@ public class TypeComputer implements Visitor
             node.setLeftOperand(leftOperand);
         }
         else if (isParameterOrUntypedNull(leftOperand)) {
-            leftType = new DataTypeDescriptor(TypeId.VARCHAR_ID, true);
+            leftType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true);
             leftOperand.setType(leftType);
         }
         if ((rightType != null) &&
             !rightType.getTypeId().isStringTypeId()) {
-            rightType = new DataTypeDescriptor(TypeId.VARCHAR_ID,
-                                              rightType.isNullable(),
-                                              rightType.getMaximumWidth());
+            rightType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID,
+                                                                rightType.isNullable(),
+                                                                rightType.getMaximumWidth());
             rightOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          rightOperand, rightType, 
@@ -526,15 +566,15 @@ public class TypeComputer implements Visitor
             node.setRightOperand(rightOperand);
         }
         else if (isParameterOrUntypedNull(rightOperand)) {
-            rightType = new DataTypeDescriptor(TypeId.VARCHAR_ID, true);
+            rightType = DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true);
             rightOperand.setType(rightType);
         }
         if ((leftType == null) || (rightType == null))
             return null;
-        return new DataTypeDescriptor(TypeId.VARCHAR_ID,
-                                      leftType.isNullable() || rightType.isNullable(),
-                                      leftType.getMaximumWidth() + rightType.getMaximumWidth(),
-                                      CharacterTypeAttributes.mergeCollations(leftType.getCharacterAttributes(), rightType.getCharacterAttributes()));
+        return DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID,
+                                                        leftType.isNullable() || rightType.isNullable(),
+                                                        leftType.getMaximumWidth() + rightType.getMaximumWidth(),
+                                                        CharacterTypeAttributes.mergeCollations(leftType.getCharacterAttributes(), rightType.getCharacterAttributes()));
     }
 
     protected ValueNode collateNode(ExplicitCollateNode node)
@@ -547,7 +587,12 @@ public class TypeComputer implements Visitor
             CharacterTypeAttributes characterAttributes =
                 CharacterTypeAttributes.forCollation(origType.getCharacterAttributes(),
                                                      node.getCollation());
-            operand.setType(new DataTypeDescriptor(origType, characterAttributes));
+            operand.setType(DataTypeDescriptor.getDataTypeDescriptor(origType.getTypeId(),
+                                                                     origType.getPrecision(),
+                                                                     origType.getScale(),
+                                                                     origType.isNullable(),
+                                                                     origType.getMaximumWidth(),
+                                                                     characterAttributes));
         }
         return operand;
     }
@@ -108,6 +108,32 @@ public class AggregateNode extends UnaryOperatorNode
         return distinct;
     }
 
+    /**
+     * @inheritDoc
+     */
+    protected boolean isEquivalent(ValueNode o) throws StandardException {
+        if (!super.isEquivalent(o))
+            return false;
+        AggregateNode other = (AggregateNode)o;
+        return ((distinct == other.distinct) &&
+                ((aggregateName == null) ? 
+                 (other.aggregateName == null) :
+                 aggregateName.equals(other.aggregateName)) &&
+                ((aggregateDefinitionClassName == null) ? 
+                 (other.aggregateDefinitionClassName == null) :
+                 aggregateDefinitionClassName.equals(other.aggregateDefinitionClassName)));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + ((aggregateName == null) ? 0 : aggregateName.hashCode());
+        hash = 31 * hash + (distinct ? 1 : 0);
+        return hash;
+    }
+
     /**
      * Convert this object to a String.  See comments in QueryTreeNode.java
      * for how this should be done for tree printing.
@@ -155,4 +155,14 @@ public class BaseColumnNode extends ValueNode
         } 
         return false;
     }
+
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + tableName.hashCode();
+        hash = 31 * hash + columnName.hashCode();
+        return hash;
+    }
 }
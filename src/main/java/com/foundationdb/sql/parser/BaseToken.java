@@ -47,4 +47,12 @@ class BaseToken implements java.io.Serializable {
      * need to be recompiled at upgrade time.
      */
     public int beginOffset, endOffset;
+
+    /**
+     * For the first token inside parentheses, one more than the number of
+     * tokens before the closing parenthesis, or -1 if they include a
+     * parameter, once the grammar has looked for a query expression that
+     * can be deferred. Zero if it has not.
+     */
+    public int groupTokens;
 }
@@ -85,6 +85,7 @@ public abstract class BinaryComparisonOperatorNode extends BinaryOperatorNode
      * @param val    true if this was for a query rewrite
      */
     public void setForQueryRewrite(boolean val) {
+        checkNotFrozen();
         forQueryRewrite=val;
     }
 
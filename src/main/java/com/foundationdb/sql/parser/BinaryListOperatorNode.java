@@ -128,6 +128,7 @@ public abstract class BinaryListOperatorNode extends ValueNode
      * @param newLeftOperand The new leftOperand
      */
     public void setLeftOperand(ValueNode newLeftOperand) {
+        checkNotFrozen();
         leftOperand = newLeftOperand;
     }
 
@@ -147,6 +148,7 @@ public abstract class BinaryListOperatorNode extends ValueNode
      *
      */
     public void setRightOperandList(ValueNodeList newRightOperandList) {
+        checkNotFrozen();
         rightOperandList = newRightOperandList;
     }
 
@@ -207,4 +209,15 @@ public abstract class BinaryListOperatorNode extends ValueNode
 
         return true;
     }
+
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + operator.hashCode();
+        hash = 31 * hash + structuralHash(leftOperand);
+        hash = 31 * hash + rightOperandList.structuralHash();
+        return hash;
+    }
 }
@@ -136,6 +136,7 @@ public class BinaryOperatorNode extends ValueNode
      * @param operator The operator.
      */
     void setOperator(String operator) {
+        checkNotFrozen();
         this.operator = operator;
     }
 
@@ -149,6 +150,7 @@ public class BinaryOperatorNode extends ValueNode
      * @param methodName The methodName.
      */
     void setMethodName(String methodName) {
+        checkNotFrozen();
         this.methodName = methodName;
     }
 
@@ -162,6 +164,7 @@ public class BinaryOperatorNode extends ValueNode
      * later in binding.
      */
     public void setLeftRightInterfaceType(String iType) {
+        checkNotFrozen();
         leftInterfaceType = iType;
         rightInterfaceType = iType;
     }
@@ -193,6 +196,7 @@ public class BinaryOperatorNode extends ValueNode
      * @param newLeftOperand The new leftOperand
      */
     public void setLeftOperand(ValueNode newLeftOperand) {
+        checkNotFrozen();
         leftOperand = newLeftOperand;
     }
 
@@ -211,6 +215,7 @@ public class BinaryOperatorNode extends ValueNode
      * @param newRightOperand The new rightOperand
      */
     public void setRightOperand(ValueNode newRightOperand) {
+        checkNotFrozen();
         rightOperand = newRightOperand;
     }
 
@@ -265,4 +270,15 @@ public class BinaryOperatorNode extends ValueNode
             rightOperand.isEquivalent(other.rightOperand);
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + methodName.hashCode();
+        hash = 31 * hash + structuralHash(leftOperand);
+        hash = 31 * hash + structuralHash(rightOperand);
+        return hash;
+    }
+
 }
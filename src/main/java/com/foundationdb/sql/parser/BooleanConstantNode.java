@@ -99,6 +99,7 @@ public class BooleanConstantNode extends ConstantNode
     }
 
     public void setBooleanValue(boolean booleanValue) {
+        checkNotFrozen();
         this.booleanValue = booleanValue;
     }
 
@@ -180,6 +180,7 @@ public class CastNode extends ValueNode
      * set correctly by the class that generated this CAST node. 
      */
     void setForExternallyGeneratedCASTnode() {
+        checkNotFrozen();
         externallyGeneratedCastNode = true;
     }
 
@@ -188,6 +189,7 @@ public class CastNode extends ValueNode
      * @param b true to use function conversion rules
      */
     void setForDataTypeFunction(boolean b) {
+        checkNotFrozen();
         forDataTypeFunction = b;
     }
 
@@ -211,4 +213,14 @@ public class CastNode extends ValueNode
         }
         return false;
     }
+
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + getType().hashCode();
+        hash = 31 * hash + structuralHash(castOperand);
+        return hash;
+    }
 }
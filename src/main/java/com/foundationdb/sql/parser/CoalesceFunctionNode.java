@@ -124,6 +124,13 @@ public class CoalesceFunctionNode extends ValueNode
         return true;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        return 31 * super.structuralHash() + argumentsList.structuralHash();
+    }
+
     /**
      * Accept the visitor for all visitable children of this node.
      *
@@ -204,6 +204,7 @@ public class ColumnDefinitionNode extends TableElementNode
 
     /** Set the type of this column */
     public void setType(DataTypeDescriptor dts) { 
+        checkNotFrozen();
         type = dts; 
     }
         
@@ -211,6 +212,7 @@ public class ColumnDefinitionNode extends TableElementNode
      * Set the nullability of the column definition node.
      */
     void setNullability(boolean nullable) {
+        checkNotFrozen();
         type = getType().getNullabilityType(nullable);
     }
 
@@ -182,6 +182,7 @@ public class ColumnReference extends ValueNode
     }
 
     public void setTableNameNode(TableName tableName) {
+        checkNotFrozen();
         this.tableName = tableName;
     }
 
@@ -214,4 +215,15 @@ public class ColumnReference extends ValueNode
             return tableName.equals(other.tableName);
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        // Not the table name, which isEquivalent can match with or
+        // without a schema, or match anything when it has no name.
+        int hash = super.structuralHash();
+        hash = 31 * hash + columnName.hashCode();
+        return hash;
+    }
+
 }
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rows of a multi-row <code>VALUES</code> held by column, as for a
+ * bulk <code>INSERT</code> of literals.
+ * <p>
+ * Each column holds integer literals or string literals as just their
+ * values, in an array of <code>long</code> or of <code>String</code>,
+ * with a bitmap of which rows are <code>NULL</code>. A column with any
+ * other literals or parameters holds all its values as nodes instead.
+ *
+ * @see RowsResultSetNode#isColumnar
+ */
+public final class ColumnarRows
+{
+    /** How the values of a column are held. */
+    public static enum Kind {
+        /** Every value is <code>NULL</code>. */
+        NULL,
+        /** Integer literals, from {@link ColumnarRows#getLong}. */
+        LONG,
+        /** String literals, from {@link ColumnarRows#getString}. */
+        STRING,
+        /** Other literals and parameters, from {@link ColumnarRows#getNode}. */
+        NODE
+    }
+
+    private NodeFactory nodeFactory;
+    private SQLParserContext parserContext;
+    private int columnCount, rowCount, capacity;
+    private Kind[] kinds;
+    private long[][] longs;
+    private String[][] strings;
+    private ValueNode[][] nodes;
+    private long[][] nulls;
+
+    ColumnarRows(int columnCount,
+                 NodeFactory nodeFactory, SQLParserContext parserContext) {
+        this.nodeFactory = nodeFactory;
+        this.parserContext = parserContext;
+        this.columnCount = columnCount;
+        kinds = new Kind[columnCount];
+        Arrays.fill(kinds, Kind.NULL);
+        longs = new long[columnCount][];
+        strings = new String[columnCount][];
+        nodes = new ValueNode[columnCount][];
+        nulls = new long[columnCount][];
+        for (int i = 0; i < columnCount; i++) {
+            nulls[i] = new long[0];
+        }
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public Kind getKind(int column) {
+        return kinds[column];
+    }
+
+    /** Is the value in the given row and column <code>NULL</code>? */
+    public boolean isNull(int row, int column) {
+        checkRow(row);
+        return ((nulls[column][row >> 6] & (1L << row)) != 0);
+    }
+
+    /** Get a value from a {@link Kind#LONG} column, which is 0 if <code>NULL</code>. */
+    public long getLong(int row, int column) {
+        checkRow(row);
+        return longs[column][row];
+    }
+
+    /** Get a value from a {@link Kind#STRING} column, which is <code>null</code> if <code>NULL</code>. */
+    public String getString(int row, int column) {
+        checkRow(row);
+        return strings[column][row];
+    }
+
+    /**
+     * Get a value from a {@link Kind#NODE} column, a {@link ConstantNode}
+     * or a {@link ParameterNode}, which is <code>null</code> if <code>NULL</code>.
+     */
+    public ValueNode getNode(int row, int column) {
+        checkRow(row);
+        return nodes[column][row];
+    }
+
+    private void checkRow(int row) {
+        if ((row < 0) || (row >= rowCount))
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+    }
+
+    /**
+     * Add a row if its values are all literals or parameters, as the
+     * parser makes them.
+     *
+     * @return whether the row was added
+     */
+    boolean addRow(RowResultSetNode row) throws StandardException {
+        if ((row.getCorrelationName() != null) ||
+            (row.tableProperties != null) ||
+            (row.getUserData() != null))
+            return false;
+        ResultColumnList resultColumns = row.getResultColumns();
+        if (resultColumns.size() != columnCount)
+            return false;
+        for (int i = 0; i < columnCount; i++) {
+            if (columnValue(resultColumns.get(i)) == null)
+                return false;
+        }
+        ensureCapacity(rowCount + 1);
+        for (int i = 0; i < columnCount; i++) {
+            setValue(rowCount, i, columnValue(resultColumns.get(i)));
+        }
+        rowCount++;
+        return true;
+    }
+
+    private static ValueNode columnValue(ResultColumn resultColumn) {
+        if ((resultColumn.getName() != null) ||
+            (resultColumn.getType() != null) ||
+            (resultColumn.getReference() != null) ||
+            (resultColumn.getUserData() != null))
+            return null;
+        ValueNode value = resultColumn.getExpression();
+        if ((value instanceof ConstantNode) || (value instanceof ParameterNode))
+            return value;
+        return null;
+    }
+
+    private void setValue(int row, int column, ValueNode value) throws StandardException {
+        if (LiteralValues.isNull(value)) {
+            nulls[column][row >> 6] |= (1L << row);
+            return;
+        }
+        Kind kind;
+        if (LiteralValues.isInteger(value))
+            kind = Kind.LONG;
+        else if (LiteralValues.isString(value))
+            kind = Kind.STRING;
+        else
+            kind = Kind.NODE;
+        if (kinds[column] != kind) {
+            if (kinds[column] == Kind.NULL) {
+                switch (kind) {
+                case LONG:
+                    longs[column] = new long[capacity];
+                    break;
+                case STRING:
+                    strings[column] = new String[capacity];
+                    break;
+                case NODE:
+                    nodes[column] = new ValueNode[capacity];
+                    break;
+                }
+                kinds[column] = kind;
+            }
+            else if (kinds[column] != Kind.NODE) {
+                // Mixed kinds of literal: hold them all as nodes.
+                ValueNode[] columnNodes = new ValueNode[capacity];
+                for (int i = 0; i < rowCount; i++) {
+                    if (!isNull(i, column))
+                        columnNodes[i] = makeNode(i, column);
+                }
+                nodes[column] = columnNodes;
+                longs[column] = null;
+                strings[column] = null;
+                kinds[column] = Kind.NODE;
+            }
+        }
+        switch (kinds[column]) {
+        case LONG:
+            longs[column][row] = LiteralValues.integerValue(value);
+            break;
+        case STRING:
+            strings[column][row] = LiteralValues.stringValue(value);
+            break;
+        default:
+            nodes[column][row] = value;
+            break;
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= capacity)
+            return;
+        capacity = Math.max(16, capacity * 2);
+        for (int i = 0; i < columnCount; i++) {
+            nulls[i] = Arrays.copyOf(nulls[i], (capacity + 63) >> 6);
+            if (longs[i] != null)
+                longs[i] = Arrays.copyOf(longs[i], capacity);
+            if (strings[i] != null)
+                strings[i] = Arrays.copyOf(strings[i], capacity);
+            if (nodes[i] != null)
+                nodes[i] = Arrays.copyOf(nodes[i], capacity);
+        }
+    }
+
+    /** Make the node for a value, or return it for a {@link Kind#NODE} column. */
+    private ValueNode makeNode(int row, int column) throws StandardException {
+        if (isNull(row, column))
+            return LiteralValues.nullNode(nodeFactory, parserContext);
+        switch (kinds[column]) {
+        case LONG:
+            return LiteralValues.integerNode(longs[column][row], nodeFactory, parserContext);
+        case STRING:
+            return LiteralValues.stringNode(strings[column][row], nodeFactory, parserContext);
+        default:
+            return nodes[column][row];
+        }
+    }
+
+    /**
+     * Make the rows as the parser would have without holding them by
+     * column. These are new nodes, apart from those of {@link Kind#NODE}
+     * columns; the rows stay held by column here.
+     */
+    public List<RowResultSetNode> makeRows() throws StandardException {
+        List<RowResultSetNode> rows = new ArrayList<RowResultSetNode>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            ResultColumnList resultColumns = (ResultColumnList)
+                nodeFactory.getNode(NodeTypes.RESULT_COLUMN_LIST, parserContext);
+            for (int j = 0; j < columnCount; j++) {
+                resultColumns.addResultColumn((ResultColumn)
+                                              nodeFactory.getNode(NodeTypes.RESULT_COLUMN,
+                                                                  null,
+                                                                  makeNode(i, j),
+                                                                  parserContext));
+            }
+            rows.add((RowResultSetNode)
+                     nodeFactory.getNode(NodeTypes.ROW_RESULT_SET_NODE,
+                                         resultColumns,
+                                         null,
+                                         parserContext));
+        }
+        return rows;
+    }
+
+    /** Accept the visitor for the nodes held by {@link Kind#NODE} columns. */
+    void acceptNodes(Visitor v) throws StandardException {
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < columnCount; j++) {
+                if ((nodes[j] != null) && (nodes[j][i] != null))
+                    nodes[j][i] = (ValueNode)nodes[j][i].accept(v);
+            }
+        }
+    }
+
+    /** Make a deep copy, with copies of any nodes. */
+    ColumnarRows copy(NodeFactory nodeFactory, SQLParserContext parserContext)
+            throws StandardException {
+        ColumnarRows other = new ColumnarRows(columnCount, nodeFactory, parserContext);
+        other.rowCount = other.capacity = rowCount;
+        for (int i = 0; i < columnCount; i++) {
+            other.kinds[i] = kinds[i];
+            other.nulls[i] = Arrays.copyOf(nulls[i], (rowCount + 63) >> 6);
+            if (longs[i] != null)
+                other.longs[i] = Arrays.copyOf(longs[i], rowCount);
+            if (strings[i] != null)
+                other.strings[i] = Arrays.copyOf(strings[i], rowCount);
+            if (nodes[i] != null) {
+                ValueNode[] columnNodes = new ValueNode[rowCount];
+                for (int j = 0; j < rowCount; j++) {
+                    if (nodes[i][j] != null)
+                        columnNodes[j] = (ValueNode)nodeFactory.copyNode(nodes[i][j],
+                                                                         parserContext);
+                }
+                other.nodes[i] = columnNodes;
+            }
+        }
+        return other;
+    }
+
+}
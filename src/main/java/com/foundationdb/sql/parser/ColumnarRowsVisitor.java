@@ -0,0 +1,28 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+/**
+ * A {@link Visitor} that does not need to see the rows of a multi-row
+ * <code>VALUES</code> held by column ({@link RowsResultSetNode#isColumnar}),
+ * so that visiting does not make nodes for them. Only the literals and
+ * parameters that a column holds as nodes are visited, row by row.
+ */
+public interface ColumnarRowsVisitor extends Visitor
+{
+}
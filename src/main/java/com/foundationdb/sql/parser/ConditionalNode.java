@@ -89,6 +89,7 @@ public class ConditionalNode extends ValueNode
     }
 
     public void setTestCondition(ValueNode testCondition) {
+        checkNotFrozen();
         this.testCondition = testCondition;
     }
 
@@ -101,6 +102,7 @@ public class ConditionalNode extends ValueNode
     }
 
     public void setThenNode(ValueNode thenNode) {
+        checkNotFrozen();
         thenElseList.set(0, thenNode);
     }
 
@@ -109,6 +111,7 @@ public class ConditionalNode extends ValueNode
     }
 
     public void setElseNode(ValueNode elseNode) {
+        checkNotFrozen();
         thenElseList.set(1, elseNode);
     }
 
@@ -178,4 +181,14 @@ public class ConditionalNode extends ValueNode
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + structuralHash(testCondition);
+        hash = 31 * hash + thenElseList.structuralHash();
+        return hash;
+    }
+
 }
@@ -102,6 +102,7 @@ public abstract class ConstantNode extends ValueNode
      * Set the value in this ConstantNode.
      */
     public void setValue(Object value) {
+        checkNotFrozen();
         this.value = value;
     }
 
@@ -144,4 +145,12 @@ public abstract class ConstantNode extends ValueNode
         }
         return false;
     }
+
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        Object value = getValue();
+        return 31 * super.structuralHash() + ((value == null) ? 0 : value.hashCode());
+    }
 }
@@ -164,6 +164,7 @@ public class ConstraintDefinitionNode extends TableElementNode
      * Set the constraint name
      */
     public void setConstraintName(String name) throws StandardException {
+        checkNotFrozen();
         this.name = name;
         if (name == null)
             constraintName = null;
@@ -197,6 +198,7 @@ public class ConstraintDefinitionNode extends TableElementNode
      * @param properties The optional Properties for this constraint.
      */
     public void setProperties(Properties properties) {
+        checkNotFrozen();
         this.properties = properties;
     }
 
@@ -280,6 +280,7 @@ public class CreateAliasNode extends DDLStatementNode
         this.definition = other.definition;
         this.aliasType = other.aliasType; 
         this.aliasInfo = other.aliasInfo; // TODO: Clone?
+        this.createOrReplace = other.createOrReplace;
     }
 
     public String statementToString() {
@@ -60,6 +60,7 @@ public class CreateViewNode extends DDLStatementNode
     private ValueNode offset;
     private ValueNode fetchFirst;
     private ExistenceCheck existenceCheck;
+    private SubqueryNode deferred;
 
     /**
      * Initializer for a CreateViewNode
@@ -120,6 +121,44 @@ public class CreateViewNode extends DDLStatementNode
         this.fetchFirst = (ValueNode)
             getNodeFactory().copyNode(other.fetchFirst, getParserContext());
         this.existenceCheck = other.existenceCheck;
+        this.deferred = (SubqueryNode)
+            getNodeFactory().copyNode(other.deferred, getParserContext());
+    }
+
+    /**
+     * Has the query expression not been parsed yet?
+     * @see SubqueryNode#isDeferred
+     */
+    public boolean isDeferred() {
+        return (deferred != null);
+    }
+
+    /** Take the query expression from a deferred subquery once needed. */
+    void defer(SubqueryNode deferred) {
+        this.deferred = deferred;
+    }
+
+    /** Parse the deferred query expression. */
+    protected void materialize() throws StandardException {
+        SubqueryNode parsed = deferred;
+        if (parsed.isDeferred())
+            parsed.materialize();
+        this.queryExpression = parsed.getResultSet();
+        this.orderByList = parsed.getOrderByList();
+        this.offset = parsed.getOffset();
+        this.fetchFirst = parsed.getFetchFirst();
+        this.deferred = null;
+    }
+
+    private void materializeIfDeferred() {
+        if (deferred != null) {
+            try {
+                materialize();
+            }
+            catch (StandardException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
     }
 
     /**
@@ -149,6 +188,7 @@ public class CreateViewNode extends DDLStatementNode
 
     public void printSubNodes(int depth) {
         super.printSubNodes(depth);
+        materializeIfDeferred();
 
         if (resultColumns != null) {
             printLabel(depth, "resultColumns: ");
@@ -174,6 +214,11 @@ public class CreateViewNode extends DDLStatementNode
     void acceptChildren(Visitor v) throws StandardException {
         super.acceptChildren(v);
 
+        if ((deferred != null) &&
+            !(QueryTreeTraversal.getVisitor(v) instanceof DeferredSubqueryVisitor)) {
+            materialize();
+        }
+
         if (queryExpression != null) {
             queryExpression = (ResultSetNode)queryExpression.accept(v);
         }
@@ -192,18 +237,22 @@ public class CreateViewNode extends DDLStatementNode
     }
 
     public ResultSetNode getParsedQueryExpression() { 
+        materializeIfDeferred();
         return queryExpression; 
     }
 
     public OrderByList getOrderByList() {
+        materializeIfDeferred();
         return orderByList;
     }
 
     public ValueNode getOffset() {
+        materializeIfDeferred();
         return offset;
     }
 
     public ValueNode getFetchFirst() {
+        materializeIfDeferred();
         return fetchFirst;
     }
     
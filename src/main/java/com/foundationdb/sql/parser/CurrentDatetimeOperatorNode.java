@@ -99,4 +99,11 @@ public class CurrentDatetimeOperatorNode extends ValueNode
         }
         return false;
     }
+
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        return 31 * super.structuralHash() + field.hashCode();
+    }
 }
@@ -131,6 +131,7 @@ public class CursorNode extends DMLStatementNode
     }
 
     public void setScanIsolationLevel(IsolationLevel isolationLevel) {
+        checkNotFrozen();
         this.scanIsolationLevel = isolationLevel;
     }
 
@@ -96,6 +96,7 @@ public abstract class DMLModStatementNode extends DMLStatementNode
     }
 
     void setTarget(QueryTreeNode targetName) {
+        checkNotFrozen();
         if (targetName instanceof TableName) {
             this.targetTableName = (TableName)targetName;
         }
@@ -124,6 +125,7 @@ public abstract class DMLModStatementNode extends DMLStatementNode
     }
 
     public void setReturningList(ResultColumnList returningColumnList) {
+        checkNotFrozen();
         this.returningColumnList = returningColumnList;
     }
 
@@ -122,4 +122,14 @@ public class ExplicitCollateNode extends ValueNode
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + collation.hashCode();
+        hash = 31 * hash + structuralHash(operand);
+        return hash;
+    }
+
 }
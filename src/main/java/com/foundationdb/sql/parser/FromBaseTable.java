@@ -159,6 +159,7 @@ public class FromBaseTable extends FromTable
      * @param tableProperties The new table properties.
      */
     public void setTableProperties(Properties tableProperties) {
+        checkNotFrozen();
         this.tableProperties = tableProperties;
     }
 
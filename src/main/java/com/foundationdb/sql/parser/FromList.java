@@ -142,6 +142,7 @@ public class FromList extends QueryTreeNodeList<FromTable>
      * @exception StandardException Thrown on error
      */
     public void setProperties(Properties props) throws StandardException {
+        checkNotFrozen();
         properties = props;
     }
 
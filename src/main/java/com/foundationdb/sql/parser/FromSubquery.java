@@ -57,6 +57,7 @@ public class FromSubquery extends FromTable
     private OrderByList orderByList;
     private ValueNode offset;
     private ValueNode fetchFirst;
+    private SubqueryNode deferred;
 
     /**
      * Intializer for a table in a FROM list.
@@ -100,6 +101,44 @@ public class FromSubquery extends FromTable
                                                            getParserContext());
         this.fetchFirst = (ValueNode)getNodeFactory().copyNode(other.fetchFirst,
                                                                getParserContext());
+        this.deferred = (SubqueryNode)getNodeFactory().copyNode(other.deferred,
+                                                                getParserContext());
+    }
+
+    /**
+     * Has the query expression not been parsed yet?
+     * @see SubqueryNode#isDeferred
+     */
+    public boolean isDeferred() {
+        return (deferred != null);
+    }
+
+    /** Take the query expression from a deferred subquery once needed. */
+    void defer(SubqueryNode deferred) {
+        this.deferred = deferred;
+    }
+
+    /** Parse the deferred query expression. */
+    protected void materialize() throws StandardException {
+        SubqueryNode parsed = deferred;
+        if (parsed.isDeferred())
+            parsed.materialize();
+        this.subquery = parsed.getResultSet();
+        this.orderByList = parsed.getOrderByList();
+        this.offset = parsed.getOffset();
+        this.fetchFirst = parsed.getFetchFirst();
+        this.deferred = null;
+    }
+
+    private void materializeIfDeferred() {
+        if (deferred != null) {
+            try {
+                materialize();
+            }
+            catch (StandardException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
     }
 
     /**
@@ -111,6 +150,7 @@ public class FromSubquery extends FromTable
 
     public void printSubNodes(int depth) {
         super.printSubNodes(depth);
+        materializeIfDeferred();
 
         if (subquery != null) {
             printLabel(depth, "subquery: ");
@@ -139,6 +179,7 @@ public class FromSubquery extends FromTable
      * @return ResultSetNode The "subquery" from this node.
      */
     public ResultSetNode getSubquery() {
+        materializeIfDeferred();
         return subquery;
     }
 
@@ -155,14 +196,17 @@ public class FromSubquery extends FromTable
 
 
     public OrderByList getOrderByList() {
+        materializeIfDeferred();
         return orderByList;
     }
 
     public ValueNode getOffset() {
+        materializeIfDeferred();
         return offset;
     }
 
     public ValueNode getFetchFirst() {
+        materializeIfDeferred();
         return fetchFirst;
     }
 
@@ -176,6 +220,11 @@ public class FromSubquery extends FromTable
     void acceptChildren(Visitor v) throws StandardException {
         super.acceptChildren(v);
 
+        if ((deferred != null) &&
+            !(QueryTreeTraversal.getVisitor(v) instanceof DeferredSubqueryVisitor)) {
+            materialize();
+        }
+
         if (subquery != null) {
             subquery = (ResultSetNode)subquery.accept(v);
         }
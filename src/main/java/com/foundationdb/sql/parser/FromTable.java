@@ -99,6 +99,7 @@ public abstract class FromTable extends ResultSetNode
      * Set this table's correlation name.
      */
     public void setCorrelationName(String correlationName) { 
+        checkNotFrozen();
         this.correlationName = correlationName; 
     }
 
@@ -144,6 +145,7 @@ public abstract class FromTable extends ResultSetNode
      *
      */
     public void setOrigTableName(TableName tableName) {
+        checkNotFrozen();
         this.origTableName = tableName;
     }
 
@@ -192,6 +192,7 @@ public class FromVTI extends FromTable
      * Mark this VTI as the target of a delete or update.
      */
     void setTarget() {
+        checkNotFrozen();
         isTarget = true;
     }
 
@@ -80,6 +80,13 @@ public class GenerationClauseNode extends ValueNode
         GenerationClauseNode that = (GenerationClauseNode)other;
         return this.generationExpression.isEquivalent(that.generationExpression);
     }
+
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        return 31 * super.structuralHash() + structuralHash(generationExpression);
+    }
         
     public String toString() {
         return
@@ -99,6 +99,7 @@ public class GroupByColumn extends OrderedColumn
     }
 
     public void setColumnExpression(ValueNode cexpr) {
+        checkNotFrozen();
         this.columnExpression = cexpr;
 
     }
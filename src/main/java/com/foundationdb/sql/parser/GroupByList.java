@@ -68,6 +68,7 @@ public class GroupByList extends OrderedColumnList<GroupByColumn>
     }
 
     public void setRollup() {
+        checkNotFrozen();
         rollup = true;
     }
     public boolean isRollup() {
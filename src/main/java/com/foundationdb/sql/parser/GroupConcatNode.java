@@ -61,19 +61,51 @@ public class GroupConcatNode extends AggregateNode
             orderCols.acceptChildren(v);
     }
 
-     /**
+    /**
      * @inheritDoc
      */
     @Override
     protected boolean isEquivalent(ValueNode o) throws StandardException
     {
-        if (!isSameNodeType(o))
+        if (!super.isEquivalent(o))
             return false;
         
         GroupConcatNode other = (GroupConcatNode) o;
         
-        return  this.sep.equals(other.sep)
-             && this.orderCols.equals(other.orderCols);
+        return ((sep == null) ? (other.sep == null) : sep.equals(other.sep))
+            && isEquivalent(orderCols, other.orderCols);
+    }
+
+    protected static boolean isEquivalent(OrderByList l1, OrderByList l2)
+            throws StandardException
+    {
+        if ((l1 == null) || (l2 == null))
+            return (l1 == l2);
+        if (l1.size() != l2.size())
+            return false;
+        for (int i = 0; i < l1.size(); i++) {
+            OrderByColumn c1 = l1.get(i), c2 = l2.get(i);
+            if ((c1.isAscending() != c2.isAscending()) ||
+                (c1.isNullsOrderedLow() != c2.isNullsOrderedLow()) ||
+                !c1.getExpression().isEquivalent(c2.getExpression()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int structuralHash()
+    {
+        int hash = super.structuralHash();
+        hash = 31 * hash + ((sep == null) ? 0 : sep.hashCode());
+        if (orderCols != null) {
+            for (OrderByColumn column : orderCols)
+                hash = 31 * hash + structuralHash(column.getExpression());
+        }
+        return hash;
     }
 
     @Override
@@ -40,6 +40,8 @@ package com.foundationdb.sql.parser;
 
 import com.foundationdb.sql.StandardException;
 
+import java.util.Arrays;
+
 /**
  * An InListOperatorNode represents an IN list.
  *
@@ -49,6 +51,13 @@ public final class InListOperatorNode extends ValueNode
     protected RowConstructorNode leftOperand;
     protected RowConstructorNode rightOperandList;
     protected boolean negated;
+
+    // A compact list holds just the values of its literals, all
+    // integers or all strings, instead of rightOperandList, which is
+    // only made from them by materialize.
+    protected long[] longValues;
+    protected String[] stringValues;
+    protected boolean sortedValues;
     
     /**
      * Initializer for a InListOperatorNode
@@ -89,7 +98,12 @@ public final class InListOperatorNode extends ValueNode
 
         InListOperatorNode other = (InListOperatorNode) node;
         this.leftOperand = (RowConstructorNode) getNodeFactory().copyNode(other.leftOperand, getParserContext());
-        this.rightOperandList = (RowConstructorNode) getNodeFactory().copyNode(other.rightOperandList, getParserContext());
+        if (other.rightOperandList != null)
+            this.rightOperandList = (RowConstructorNode) getNodeFactory().copyNode(other.rightOperandList, getParserContext());
+        // Never modified in place, so can be shared.
+        this.longValues = other.longValues;
+        this.stringValues = other.stringValues;
+        this.sortedValues = other.sortedValues;
     }
 
     /**
@@ -122,6 +136,7 @@ public final class InListOperatorNode extends ValueNode
             leftOperand.treePrint(depth + 1);
         }
 
+        RowConstructorNode rightOperandList = getRightOperandList();
         if (rightOperandList != null)
         {
             printLabel(depth, "rightOperandList: ");
@@ -136,6 +151,7 @@ public final class InListOperatorNode extends ValueNode
      */
     public void setLeftOperand(RowConstructorNode newLeftOperand)
     {
+        checkNotFrozen();
         leftOperand = newLeftOperand;
     }
 
@@ -157,19 +173,250 @@ public final class InListOperatorNode extends ValueNode
      */
     public void setRightOperandList(RowConstructorNode newRightOperandList)
     {
+        checkNotFrozen();
         rightOperandList = newRightOperandList;
     }
 
     /**
      * Get the rightOperandList
      *
+     * For a compact list, this is a new list of nodes for its values,
+     * and this node is not changed; call {@link #materialize} first to
+     * change the list in place.
+     *
      * @return The current rightOperandList.
      */
     public RowConstructorNode getRightOperandList()
     {
+        if ((rightOperandList == null) && isCompact())
+        {
+            try
+            {
+                return makeRightOperandList();
+            }
+            catch (StandardException ex)
+            {
+                // Not possible for the simple constants that are compacted.
+                throw new IllegalStateException(ex);
+            }
+        }
         return rightOperandList;
     }
 
+    /**
+     * Get the number of values in the right operand list, without making
+     * nodes for a compact list.
+     */
+    public int getRightOperandCount()
+    {
+        if (longValues != null)
+            return longValues.length;
+        if (stringValues != null)
+            return stringValues.length;
+        return rightOperandList.getNodeList().size();
+    }
+
+    /**
+     * Is the right operand list held as just the values of its literals?
+     * Then {@link #getLongValues} or {@link #getStringValues} gives them,
+     * {@link #getRightOperandList} makes nodes for them and
+     * {@link #materialize} makes those nodes the list, after which it is
+     * no longer compact.
+     */
+    public boolean isCompact()
+    {
+        return ((longValues != null) || (stringValues != null));
+    }
+
+    /** The values of a compact list of integer literals, or <code>null</code>. */
+    public long[] getLongValues()
+    {
+        return longValues;
+    }
+
+    /** The values of a compact list of string literals, or <code>null</code>. */
+    public String[] getStringValues()
+    {
+        return stringValues;
+    }
+
+    /**
+     * Hold the right operand list compactly, if it is a simple list of
+     * integer literals or one of string literals, as the parser makes them.
+     *
+     * @return whether the list is now compact
+     */
+    public boolean compact()
+    {
+        if (isCompact())
+            return true;
+        Object values = literalValues();
+        if (values instanceof long[])
+            longValues = (long[])values;
+        else if (values instanceof String[])
+            stringValues = (String[])values;
+        else
+            return false;
+        sortedValues = false;
+        rightOperandList = null;
+        return true;
+    }
+
+    /**
+     * The values of a right operand list of nodes that is a simple list
+     * of integer literals or one of string literals, as a
+     * <code>long[]</code> or <code>String[]</code>, or <code>null</code>.
+     */
+    private Object literalValues()
+    {
+        if ((rightOperandList == null) || (rightOperandList.getDepth() != 1))
+            return null;
+        ValueNodeList list = rightOperandList.getNodeList();
+        int size = list.size();
+        if (size == 0)
+            return null;
+        if (list.get(0).getNodeType() == NodeTypes.CHAR_CONSTANT_NODE)
+        {
+            String[] values = new String[size];
+            for (int i = 0; i < size; i++)
+            {
+                ValueNode node = list.get(i);
+                if (!LiteralValues.isString(node))
+                    return null;
+                values[i] = LiteralValues.stringValue(node);
+            }
+            return values;
+        }
+        else
+        {
+            long[] values = new long[size];
+            for (int i = 0; i < size; i++)
+            {
+                ValueNode node = list.get(i);
+                if (!LiteralValues.isInteger(node))
+                    return null;
+                values[i] = LiteralValues.integerValue(node);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Sort the values of a compact list into Java order and remove
+     * duplicates, which does not change the result of the
+     * <code>IN</code>, so that they can be searched.
+     *
+     * @return whether the list is compact and so now sorted
+     */
+    public boolean sortCompactValues()
+    {
+        if (sortedValues)
+            return true;
+        if (longValues != null)
+            longValues = sortedDistinct(longValues);
+        else if (stringValues != null)
+            stringValues = sortedDistinct(stringValues);
+        else
+            return false;
+        sortedValues = true;
+        return true;
+    }
+
+    /** A sorted copy of the given values without duplicates. */
+    private static long[] sortedDistinct(long[] values)
+    {
+        values = values.clone();
+        Arrays.sort(values);
+        int n = 0;
+        for (int i = 0; i < values.length; i++)
+        {
+            if ((n == 0) || (values[i] != values[n - 1]))
+                values[n++] = values[i];
+        }
+        return (n < values.length) ? Arrays.copyOf(values, n) : values;
+    }
+
+    /** A sorted copy of the given values without duplicates. */
+    private static String[] sortedDistinct(String[] values)
+    {
+        values = values.clone();
+        Arrays.sort(values);
+        int n = 0;
+        for (int i = 0; i < values.length; i++)
+        {
+            if ((n == 0) || !values[i].equals(values[n - 1]))
+                values[n++] = values[i];
+        }
+        return (n < values.length) ? Arrays.copyOf(values, n) : values;
+    }
+
+    /**
+     * The values of the right operand list, sorted and without
+     * duplicates, if it is compact or could be made compact, as a
+     * <code>long[]</code> or <code>String[]</code>; otherwise
+     * <code>null</code>. Such lists have the same result for the
+     * same values, whatever their order. Nothing is changed.
+     */
+    private Object canonicalValues()
+    {
+        if (longValues != null)
+            return sortedValues ? longValues : sortedDistinct(longValues);
+        if (stringValues != null)
+            return sortedValues ? stringValues : sortedDistinct(stringValues);
+        Object values = literalValues();
+        if (values instanceof long[])
+            return sortedDistinct((long[])values);
+        if (values instanceof String[])
+            return sortedDistinct((String[])values);
+        return null;
+    }
+
+    /** Have the values of this compact list been sorted? */
+    public boolean isCompactSorted()
+    {
+        return sortedValues;
+    }
+
+    /**
+     * Make the nodes of a compact list, which then replace it, so that
+     * they can be changed in place. Visitors other than a
+     * {@link CompactInListVisitor} do this when they reach the list.
+     */
+    public void materialize() throws StandardException
+    {
+        if (rightOperandList != null)
+            return;
+        checkNotFrozen();
+        rightOperandList = makeRightOperandList();
+        longValues = null;
+        stringValues = null;
+        sortedValues = false;
+    }
+
+    /** Make nodes for the values of a compact list. */
+    private RowConstructorNode makeRightOperandList() throws StandardException
+    {
+        NodeFactory nodeFactory = getNodeFactory();
+        SQLParserContext parserContext = getParserContext();
+        ValueNodeList list = (ValueNodeList)
+            nodeFactory.getNode(NodeTypes.VALUE_NODE_LIST, parserContext);
+        if (longValues != null)
+        {
+            for (long value : longValues)
+                list.addValueNode(LiteralValues.integerNode(value, nodeFactory, parserContext));
+        }
+        else
+        {
+            for (String value : stringValues)
+                list.addValueNode(LiteralValues.stringNode(value, nodeFactory, parserContext));
+        }
+        return (RowConstructorNode)
+            nodeFactory.getNode(NodeTypes.ROW_CTOR_NODE,
+                                list,
+                                new int[]{1},
+                                parserContext);
+    }
+
     /**
      * Return whether or not this expression tree represents a constant expression.
      *
@@ -179,7 +426,7 @@ public final class InListOperatorNode extends ValueNode
     public boolean isConstantExpression()
     {
         return (leftOperand.isConstantExpression()
-                && rightOperandList.isConstantExpression());
+                && (isCompact() || rightOperandList.isConstantExpression()));
     }
 
     /**
@@ -198,6 +445,12 @@ public final class InListOperatorNode extends ValueNode
             leftOperand = (RowConstructorNode) leftOperand.accept(v);
         }
 
+        if ((rightOperandList == null) && isCompact() &&
+            !(QueryTreeTraversal.getVisitor(v) instanceof CompactInListVisitor))
+        {
+            materialize();
+        }
+
         if (rightOperandList != null)
         {
             rightOperandList = (RowConstructorNode) rightOperandList.accept(v);
@@ -215,18 +468,54 @@ public final class InListOperatorNode extends ValueNode
         }
 
         InListOperatorNode other = (InListOperatorNode) o;
-        if (!leftOperand.isEquivalent(other.getLeftOperand())
-                || !rightOperandList.isEquivalent(other.rightOperandList))
+        if (negated != other.negated)
+            return false;
+        if (!leftOperand.isEquivalent(other.getLeftOperand()))
+            return false;
+        if (isCompact() && other.isCompact() && (sortedValues == other.sortedValues) &&
+            Arrays.equals(longValues, other.longValues) &&
+            Arrays.equals(stringValues, other.stringValues))
+            return true;
+        // Lists of just literals, compact or not, are compared by
+        // their values, without making nodes for a compact one.
+        Object values = canonicalValues();
+        Object otherValues = other.canonicalValues();
+        if ((values != null) || (otherValues != null))
+        {
+            if ((values instanceof long[]) && (otherValues instanceof long[]))
+                return Arrays.equals((long[])values, (long[])otherValues);
+            if ((values instanceof String[]) && (otherValues instanceof String[]))
+                return Arrays.equals((String[])values, (String[])otherValues);
+            return false;
+        }
+        if (!rightOperandList.isEquivalent(other.rightOperandList))
             return false;
 
         return true;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash()
+    {
+        int hash = 31 * super.structuralHash() + structuralHash(leftOperand);
+        hash = 31 * hash + (negated ? 1 : 0);
+        // The same for lists of the same literals, as for isEquivalent.
+        Object values = canonicalValues();
+        if (values instanceof long[])
+            return 31 * hash + Arrays.hashCode((long[])values);
+        if (values instanceof String[])
+            return 31 * hash + Arrays.hashCode((String[])values);
+        return 31 * hash + rightOperandList.structuralHash();
+    }
+
     public boolean isNegated() {
         return negated;
     }
 
     public void setNegated(boolean negated) {
+        checkNotFrozen();
         this.negated = negated;
     }
 
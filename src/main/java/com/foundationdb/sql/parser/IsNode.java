@@ -73,6 +73,7 @@ public class IsNode extends BinaryLogicalOperatorNode
     }
 
     public void toggleNegated() {
+        checkNotFrozen();
         notMe = !notMe;
     }
 
@@ -0,0 +1,330 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Print a query tree as JSON, for tools rather than people.
+ * <p>
+ * Each node is an object with its <code>class</code>,
+ * <code>nodeType</code>, <code>beginOffset</code> and
+ * <code>endOffset</code>, the <code>fields</code> that its
+ * <code>toString</code> reports as <code>name: value</code> lines, and
+ * its <code>children</code> in the order that a {@link Visitor} sees them.
+ * A node reached a second time just has <code>"truncated": true</code>
+ * instead of its fields and children.
+ * <p>
+ * Parts held compactly are written as they are, rather than expanded
+ * into nodes: a compact <code>IN</code> list has its <code>values</code>,
+ * a deferred subquery its <code>deferredText</code>, and rows held by
+ * column their <code>columnarRows</code>, in which a value that is still
+ * a node is <code>{"child": <i>n</i>}</code>, its index in
+ * <code>children</code>.
+ * <p>
+ * The tree is walked with an explicit stack and the output written as
+ * it goes, so that large and deep trees do not need a large thread stack
+ * or an intermediate copy.
+ */
+public class JSONTreePrinter
+{
+    private Appendable out;
+    private Set<QueryTreeNode> printed;
+    private List<Frame> frames = new ArrayList<Frame>();
+    private int depth;
+    private List<QueryTreeNode> children = new ArrayList<QueryTreeNode>();
+
+    static final class Frame {
+        int childStart, childEnd, nextChild;
+    }
+
+    // Sees children as they are, without expanding compact parts.
+    final class Collector extends QueryTreeTraversal.ChildVisitor
+            implements CompactInListVisitor, DeferredSubqueryVisitor, ColumnarRowsVisitor {
+        Visitor getVisitor() {
+            return this;
+        }
+        public Visitable visit(Visitable node) {
+            children.add((QueryTreeNode)node);
+            return node;
+        }
+    }
+
+    private final Collector collector = new Collector();
+
+    public JSONTreePrinter() {
+    }
+
+    public String toString(QueryTreeNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        try {
+            print(node, str);
+        }
+        catch (IOException ex) {
+            throw new StandardException(ex);
+        }
+        return str.toString();
+    }
+
+    /** Write the given tree to <code>out</code>, such as a <code>Writer</code>. */
+    public void print(QueryTreeNode node, Appendable out)
+            throws StandardException, IOException {
+        this.out = out;
+        printed = Collections.newSetFromMap(new IdentityHashMap<QueryTreeNode,Boolean>());
+        try {
+            if (open(node)) {
+                while (depth > 0) {
+                    Frame frame = frames.get(depth - 1);
+                    if (frame.nextChild < frame.childEnd) {
+                        if (frame.nextChild > frame.childStart)
+                            out.append(',');
+                        open(children.get(frame.nextChild++));
+                    }
+                    else {
+                        out.append("]}");
+                        children.subList(frame.childStart, frame.childEnd).clear();
+                        depth--;
+                    }
+                }
+            }
+        }
+        finally {
+            this.out = null;
+            printed = null;
+            children.clear();
+            depth = 0;
+        }
+    }
+
+    /** Write the start of a node and push it if it has children to follow. */
+    protected boolean open(QueryTreeNode node) throws StandardException, IOException {
+        out.append("{\"class\":");
+        string(node.getClass().getSimpleName());
+        out.append(",\"nodeType\":");
+        out.append(Integer.toString(node.getNodeType()));
+        out.append(",\"beginOffset\":");
+        out.append(Integer.toString(node.getBeginOffset()));
+        out.append(",\"endOffset\":");
+        out.append(Integer.toString(node.getEndOffset()));
+        if (!printed.add(node)) {
+            out.append(",\"truncated\":true}");
+            return false;
+        }
+        out.append(",\"fields\":{");
+        fields(node.toString());
+        out.append('}');
+        int childStart = children.size();
+        node.acceptChildren(collector);
+        compactFields(node, children.size() - childStart);
+        out.append(",\"children\":[");
+        if (children.size() == childStart) {
+            out.append("]}");
+            return false;
+        }
+        if (depth == frames.size())
+            frames.add(new Frame());
+        Frame frame = frames.get(depth++);
+        frame.childStart = frame.nextChild = childStart;
+        frame.childEnd = children.size();
+        return true;
+    }
+
+    /** Write any parts of a node that are held compactly as members.
+     * @param nchildren the number of children it has
+     */
+    protected void compactFields(QueryTreeNode node, int nchildren) 
+            throws IOException {
+        if (node instanceof InListOperatorNode) {
+            InListOperatorNode inList = (InListOperatorNode)node;
+            if (inList.getLongValues() != null) {
+                out.append(",\"values\":[");
+                long[] values = inList.getLongValues();
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) out.append(',');
+                    out.append(Long.toString(values[i]));
+                }
+                out.append(']');
+            }
+            else if (inList.getStringValues() != null) {
+                out.append(",\"values\":[");
+                String[] values = inList.getStringValues();
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) out.append(',');
+                    string(values[i]);
+                }
+                out.append(']');
+            }
+        }
+        else if (node instanceof SubqueryNode) {
+            SubqueryNode subquery = (SubqueryNode)node;
+            if (subquery.isDeferred()) {
+                out.append(",\"deferredText\":");
+                string(subquery.getDeferredText());
+            }
+        }
+        else if (node instanceof RowsResultSetNode) {
+            ColumnarRows rows = ((RowsResultSetNode)node).getColumnarRows();
+            if (rows != null)
+                columnarRows(rows, nchildren);
+        }
+    }
+
+    /** Write rows held by column. Their nodes are the last children,
+     * visited by row.
+     */
+    protected void columnarRows(ColumnarRows rows, int nchildren) 
+            throws IOException {
+        int ncols = rows.getColumnCount();
+        int nrows = rows.getRowCount();
+        int child = nchildren;
+        for (int i = 0; i < nrows; i++) {
+            for (int j = 0; j < ncols; j++) {
+                if ((rows.getKind(j) == ColumnarRows.Kind.NODE) &&
+                    (rows.getNode(i, j) != null))
+                    child--;
+            }
+        }
+        out.append(",\"columnarRows\":{\"kinds\":[");
+        for (int j = 0; j < ncols; j++) {
+            if (j > 0) out.append(',');
+            string(rows.getKind(j).name());
+        }
+        out.append("],\"rows\":[");
+        for (int i = 0; i < nrows; i++) {
+            if (i > 0) out.append(',');
+            out.append('[');
+            for (int j = 0; j < ncols; j++) {
+                if (j > 0) out.append(',');
+                switch (rows.getKind(j)) {
+                case LONG:
+                    if (rows.isNull(i, j))
+                        out.append("null");
+                    else
+                        out.append(Long.toString(rows.getLong(i, j)));
+                    break;
+                case STRING:
+                    if (rows.getString(i, j) == null)
+                        out.append("null");
+                    else
+                        string(rows.getString(i, j));
+                    break;
+                case NODE:
+                    if (rows.getNode(i, j) == null)
+                        out.append("null");
+                    else {
+                        out.append("{\"child\":");
+                        out.append(Integer.toString(child++));
+                        out.append('}');
+                    }
+                    break;
+                default:
+                    out.append("null");
+                    break;
+                }
+            }
+            out.append(']');
+        }
+        out.append("]}");
+    }
+
+    /** Write the <code>name: value</code> lines of a node's string form as
+     * members. A line that is not of that form continues the previous value.
+     */
+    protected void fields(String str) throws IOException {
+        int len = str.length();
+        int start = 0;
+        boolean first = true, open = false;
+        while (start < len) {
+            int end = str.indexOf('\n', start);
+            if (end < 0) end = len;
+            int colon = start + 1;
+            while ((colon < end - 1) && 
+                   !((str.charAt(colon) == ':') && (str.charAt(colon + 1) == ' ')))
+                colon++;
+            if (colon < end - 1) {
+                if (open)
+                    out.append('"');
+                if (first)
+                    first = false;
+                else
+                    out.append(',');
+                string(str, start, colon);
+                out.append(":\"");
+                escape(str, colon + 2, end);
+                open = true;
+            }
+            else if (open) {
+                out.append("\\n");
+                escape(str, start, end);
+            }
+            start = end + 1;
+        }
+        if (open)
+            out.append('"');
+    }
+
+    protected void string(String str) throws IOException {
+        string(str, 0, str.length());
+    }
+
+    protected void string(String str, int start, int end) throws IOException {
+        out.append('"');
+        escape(str, start, end);
+        out.append('"');
+    }
+
+    protected void escape(String str, int start, int end) throws IOException {
+        int run = start;
+        for (int i = start; i < end; i++) {
+            char ch = str.charAt(i);
+            if ((ch >= ' ') && (ch != '"') && (ch != '\\'))
+                continue;
+            out.append(str, run, i);
+            switch (ch) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                out.append(String.format("\\u%04x", (int)ch));
+                break;
+            }
+            run = i + 1;
+        }
+        out.append(str, run, end);
+    }
+
+}
@@ -113,6 +113,7 @@ public abstract class JavaValueNode extends QueryTreeNode
     }
 
     public void setJavaTypeName(String javaTypeName) {
+        checkNotFrozen();
         jsqlType = new JSQLType(javaTypeName);
     }
 
@@ -148,6 +148,7 @@ public class JoinNode extends TableOperatorNode
         return joinClause;
     }
     public void setJoinClause(ValueNode joinClause) {
+        checkNotFrozen();
         this.joinClause = joinClause;
     }
 
@@ -155,6 +156,7 @@ public class JoinNode extends TableOperatorNode
         return usingClause;
     }
     public void setUsingClause(ResultColumnList usingClause) {
+        checkNotFrozen();
         this.usingClause = usingClause;
     }
 
@@ -200,6 +202,7 @@ public class JoinNode extends TableOperatorNode
      * be generated in the bind phase.
      */
     void setNaturalJoin() {
+        checkNotFrozen();
         naturalJoin = true;
     }
 
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+import com.foundationdb.sql.types.TypeId;
+
+/**
+ * Recognize the literals that the parser makes for integers, strings and
+ * <code>NULL</code>, so that they can be held as just their values, and
+ * make equal nodes again from those values.
+ */
+final class LiteralValues
+{
+    private static final DataTypeDescriptor INTEGER_TYPE =
+        new DataTypeDescriptor(TypeId.INTEGER_ID, false);
+    private static final DataTypeDescriptor BIGINT_TYPE =
+        new DataTypeDescriptor(TypeId.BIGINT_ID, false);
+
+    private LiteralValues() {
+    }
+
+    /** Is this an integer literal just as the parser makes it? */
+    static boolean isInteger(ValueNode node) {
+        if (isSimpleConstant(node, NodeTypes.INT_CONSTANT_NODE)) {
+            Object value = ((ConstantNode)node).getValue();
+            return ((value instanceof Integer) && node.getType().equals(INTEGER_TYPE));
+        }
+        if (isSimpleConstant(node, NodeTypes.LONGINT_CONSTANT_NODE)) {
+            Object value = ((ConstantNode)node).getValue();
+            // One that fits in an int would not come back as a long.
+            return ((value instanceof Long) && node.getType().equals(BIGINT_TYPE) &&
+                    (((Long)value).longValue() != ((Long)value).intValue()));
+        }
+        return false;
+    }
+
+    /** The value of an integer literal for which {@link #isInteger} is true. */
+    static long integerValue(ValueNode node) {
+        return ((Number)((ConstantNode)node).getValue()).longValue();
+    }
+
+    /** Is this a string literal just as the parser makes it? */
+    static boolean isString(ValueNode node) {
+        if (!isSimpleConstant(node, NodeTypes.CHAR_CONSTANT_NODE))
+            return false;
+        Object value = ((ConstantNode)node).getValue();
+        if (!(value instanceof String))
+            return false;
+        String str = (String)value;
+        return node.getType().equals(new DataTypeDescriptor(TypeId.CHAR_ID, false,
+                                                            CharConstantNode.charLength(str)));
+    }
+
+    /** The value of a string literal for which {@link #isString} is true. */
+    static String stringValue(ValueNode node) {
+        return (String)((ConstantNode)node).getValue();
+    }
+
+    /** Is this a <code>NULL</code> literal just as the parser makes it? */
+    static boolean isNull(ValueNode node) {
+        return ((node.getNodeType() == NodeTypes.UNTYPED_NULL_CONSTANT_NODE) &&
+                (node.getType() == null) &&
+                (node.getBeginOffset() < 0) &&
+                (node.getUserData() == null));
+    }
+
+    private static boolean isSimpleConstant(ValueNode node, int nodeType) {
+        return ((node.getNodeType() == nodeType) &&
+                (node.getType() != null) &&
+                (node.getBeginOffset() < 0) &&
+                (node.getUserData() == null));
+    }
+
+    static ValueNode integerNode(long value,
+                                 NodeFactory nodeFactory, SQLParserContext parserContext)
+            throws StandardException {
+        if (value == (int)value)
+            return (ValueNode)nodeFactory.getNode(NodeTypes.INT_CONSTANT_NODE,
+                                                  Integer.valueOf((int)value),
+                                                  parserContext);
+        else
+            return (ValueNode)nodeFactory.getNode(NodeTypes.LONGINT_CONSTANT_NODE,
+                                                  Long.valueOf(value),
+                                                  parserContext);
+    }
+
+    static ValueNode stringNode(String value,
+                                NodeFactory nodeFactory, SQLParserContext parserContext)
+            throws StandardException {
+        return (ValueNode)nodeFactory.getNode(NodeTypes.CHAR_CONSTANT_NODE,
+                                              value,
+                                              parserContext);
+    }
+
+    static ValueNode nullNode(NodeFactory nodeFactory, SQLParserContext parserContext)
+            throws StandardException {
+        return (ValueNode)nodeFactory.getNode(NodeTypes.UNTYPED_NULL_CONSTANT_NODE,
+                                              parserContext);
+    }
+
+}
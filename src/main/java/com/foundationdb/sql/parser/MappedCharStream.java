@@ -0,0 +1,432 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link CharStream} that decodes UTF-8 directly from a (typically
+ * memory-mapped) byte buffer, so that a large file can be parsed
+ * without first reading it into a <code>String</code>.
+ * <p>
+ * Nothing is buffered as characters: backing up re-decodes from the
+ * start of the token and token images are decoded as they are
+ * asked for. A file larger than one mapping is mapped a window at a
+ * time. Offsets are in UTF-16 <code>char</code>s, as with
+ * {@link StringCharStream}; since they are <code>int</code>s they wrap
+ * past 2G characters, but differences between nearby offsets stay
+ * correct. Malformed input decodes to U+FFFD. A leading byte order
+ * mark is skipped.
+ * <p>
+ * Use with {@link SQLStatementReader} to parse the statements in it.
+ */
+public class MappedCharStream implements CharStream
+{
+    private static final IOException EOF = new EOFException();
+
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private FileChannel channel;
+    private boolean ownChannel;
+    private long size, windowSize;
+    private ByteBuffer window;
+    private long windowStart;
+
+    // A position is a byte position plus whether it is at the second
+    // half of a surrogate pair from a four byte sequence.
+    private long beginPos, currentPos, markPos;
+    private boolean beginHalf, currentHalf, markHalf;
+    private long beginOffset, currentOffset, markOffset;
+    private int currentLine, currentColumn; // 1-based.
+    private int beginLine, beginColumn, endLine, endColumn;
+
+    private int sequenceLength;
+
+    /** Decode the remaining bytes of the given buffer.
+     * The buffer's position is not changed.
+     */
+    public MappedCharStream(ByteBuffer buffer) {
+        window = buffer.slice();
+        windowStart = 0;
+        size = windowSize = window.limit();
+        init();
+    }
+
+    /** Decode the given file channel, mapping it in windows of the given size. */
+    public MappedCharStream(FileChannel channel, int windowSize) throws IOException {
+        this.channel = channel;
+        this.windowSize = windowSize;
+        size = channel.size();
+        init();
+    }
+
+    /** Decode the given file channel. */
+    public MappedCharStream(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+
+    /** Decode the given file, which is closed by {@link #Done}. */
+    public MappedCharStream(File file) throws IOException {
+        this(new RandomAccessFile(file, "r"));
+    }
+
+    /** Decode the given newly opened file, closing it if that fails. */
+    private MappedCharStream(RandomAccessFile file) throws IOException {
+        boolean opened = false;
+        try {
+            channel = file.getChannel();
+            windowSize = DEFAULT_WINDOW_SIZE;
+            size = channel.size();
+            init();
+            opened = true;
+        }
+        finally {
+            if (!opened) {
+                try {
+                    file.close();
+                }
+                catch (IOException ex) {
+                }
+            }
+        }
+        ownChannel = true;
+    }
+
+    private void init() {
+        currentPos = 0;
+        if ((size >= 3) && 
+            (byteAt(0) == (byte)0xEF) &&
+            (byteAt(1) == (byte)0xBB) &&
+            (byteAt(2) == (byte)0xBF))
+            currentPos = 3;
+        beginPos = markPos = currentPos;
+        beginHalf = currentHalf = markHalf = false;
+        beginOffset = currentOffset = markOffset = 0;
+        currentLine = currentColumn = beginLine = beginColumn = endLine = endColumn = 1;
+    }
+
+    /** Get the total number of bytes. */
+    public long size() {
+        return size;
+    }
+
+    /** Get the byte position of the next character. */
+    public long getBytePosition() {
+        return currentPos;
+    }
+
+    private byte byteAt(long pos) {
+        if ((window == null) ||
+            (pos < windowStart) || (pos >= windowStart + windowSize)) {
+            // Start the new window a little back to allow for backing up.
+            long start = Math.max(0, pos - Math.min(4096, windowSize / 4));
+            long length = Math.min(windowSize, size - start);
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            catch (IOException ex) {
+                throw new MappedIOException(ex);
+            }
+            windowStart = start;
+        }
+        return window.get((int)(pos - windowStart));
+    }
+
+    private int continuation(long pos) {
+        if (pos >= size) return -1;
+        int b = byteAt(pos);
+        if ((b & 0xC0) != 0x80) return -1;
+        return b & 0x3F;
+    }
+
+    /** Decode the code point at the given position, leaving its 
+     * length in <code>sequenceLength</code>.
+     */
+    private int decode(long pos) {
+        int b0 = byteAt(pos) & 0xFF;
+        if (b0 < 0x80) {
+            sequenceLength = 1;
+            return b0;
+        }
+        int cp, n, min;
+        if ((b0 & 0xE0) == 0xC0) {
+            cp = b0 & 0x1F;
+            n = 1;
+            min = 0x80;
+        }
+        else if ((b0 & 0xF0) == 0xE0) {
+            cp = b0 & 0x0F;
+            n = 2;
+            min = 0x800;
+        }
+        else if ((b0 & 0xF8) == 0xF0) {
+            cp = b0 & 0x07;
+            n = 3;
+            min = 0x10000;
+        }
+        else {
+            sequenceLength = 1;
+            return 0xFFFD;
+        }
+        for (int i = 1; i <= n; i++) {
+            int c = continuation(pos + i);
+            if (c < 0) {
+                sequenceLength = i;
+                return 0xFFFD;
+            }
+            cp = (cp << 6) | c;
+        }
+        sequenceLength = n + 1;
+        if ((cp < min) || (cp > 0x10FFFF) ||
+            ((cp >= 0xD800) && (cp <= 0xDFFF)))
+            return 0xFFFD;
+        return cp;
+    }
+
+    private char advance() {
+        endLine = currentLine;
+        endColumn = currentColumn;
+        int cp = decode(currentPos);
+        char ch;
+        if (cp < 0x10000) {
+            ch = (char)cp;
+            currentPos += sequenceLength;
+        }
+        else if (!currentHalf) {
+            ch = (char)(0xD800 + ((cp - 0x10000) >>> 10));
+            currentHalf = true;
+        }
+        else {
+            ch = (char)(0xDC00 + (cp & 0x3FF));
+            currentHalf = false;
+            currentPos += sequenceLength;
+        }
+        currentOffset++;
+        switch (ch) {
+        case '\r':
+            if ((currentPos < size) && (byteAt(currentPos) == '\n')) {
+                currentColumn++;
+                break;
+            }
+            /* else falls through (bare CR) */
+        case '\n':
+            currentLine++;
+            currentColumn = 1;
+            break;
+        case '\t':
+            endColumn += (8 - (endColumn & 7));
+            currentColumn = endColumn + 1;
+            break;
+        default:
+            currentColumn++;
+            break;
+        }
+        return ch;
+    }
+
+    @Override
+    public char BeginToken() throws java.io.IOException {
+        beginPos = currentPos;
+        beginHalf = currentHalf;
+        beginOffset = currentOffset;
+        beginLine = currentLine;
+        beginColumn = currentColumn;
+        return readChar();
+    }
+
+    @Override
+    public char readChar() throws java.io.IOException {
+        if ((currentPos >= size) && !currentHalf)
+            throw EOF;
+
+        return advance();
+    }
+
+    @Override
+    public void backup(int amount) {
+        long target = currentOffset - amount;
+        assert (target >= beginOffset);
+        currentPos = beginPos;
+        currentHalf = beginHalf;
+        currentOffset = beginOffset;
+        currentLine = beginLine;
+        currentColumn = beginColumn;
+        while (currentOffset < target)
+            advance();          // Adjusting line / column.
+    }
+
+    @Override
+    public int getBeginOffset() {
+        return (int)beginOffset;
+    }
+    @Override
+    public int getEndOffset() {
+        return (int)(currentOffset - 1);   // Want inclusive.
+    }
+
+    @Override
+    public int getBeginLine() {
+        return beginLine;
+    }
+    @Override
+    public int getBeginColumn() {
+        return beginColumn;
+    }
+
+    @Override
+    public int getEndLine() {
+        return endLine;
+    }
+    @Override
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    @Override
+    public int getLine() {
+        return getEndLine();
+    }
+    @Override
+    public int getColumn() {
+        return getEndColumn();
+    }
+
+    @Override
+    public String GetImage() {
+        StringBuilder str = new StringBuilder((int)(currentOffset - beginOffset));
+        decodeInto(str, beginPos, beginHalf, 0, (int)(currentOffset - beginOffset));
+        return str.toString();
+    }
+
+    @Override
+    public char[] GetSuffix(int len) {
+        String image = GetImage();
+        char[] result = new char[len];
+        image.getChars(image.length() - len, image.length(), result, 0);
+        return result;
+    }
+
+    @Override
+    public void Done() {
+        window = null;
+        if (ownChannel) {
+            try {
+                channel.close();
+            }
+            catch (IOException ex) {
+            }
+        }
+    }
+
+    /** Decode <code>count</code> characters after skipping
+     * <code>skip</code> from the given position.
+     */
+    private void decodeInto(StringBuilder str, long pos, boolean half, 
+                            int skip, int count) {
+        int end = skip + count;
+        for (int i = 0; i < end; i++) {
+            int cp = decode(pos);
+            char ch;
+            if (cp < 0x10000) {
+                ch = (char)cp;
+                pos += sequenceLength;
+            }
+            else if (!half) {
+                ch = (char)(0xD800 + ((cp - 0x10000) >>> 10));
+                half = true;
+            }
+            else {
+                ch = (char)(0xDC00 + (cp & 0x3FF));
+                half = false;
+                pos += sequenceLength;
+            }
+            if (i >= skip)
+                str.append(ch);
+        }
+    }
+
+    /* Support for SQLStatementReader, which needs the text of the
+     * current statement. 
+     */
+
+    /** Forget text before the given offset. */
+    void discard(int offset) {
+        int skip = offset - (int)markOffset;
+        for (int i = 0; i < skip; i++) {
+            int cp = decode(markPos);
+            if (cp < 0x10000)
+                markPos += sequenceLength;
+            else if (!markHalf)
+                markHalf = true;
+            else {
+                markHalf = false;
+                markPos += sequenceLength;
+            }
+            markOffset++;
+        }
+    }
+
+    /** Get the offset of the start of {@link #getText}. */
+    int getTextOffset() {
+        return (int)markOffset;
+    }
+
+    /** Get the text since the last {@link #discard}. */
+    CharSequence getText() {
+        return new CharSequence() {
+                public int length() {
+                    return (int)(currentOffset - markOffset);
+                }
+
+                public char charAt(int index) {
+                    return subSequence(index, index + 1).charAt(0);
+                }
+
+                public CharSequence subSequence(int start, int end) {
+                    StringBuilder str = new StringBuilder(end - start);
+                    decodeInto(str, markPos, markHalf, start, end - start);
+                    return str.toString();
+                }
+
+                @Override
+                public String toString() {
+                    return subSequence(0, length()).toString();
+                }
+            };
+    }
+
+    /** An error mapping part of the file, which can only be reported
+     * unchecked from inside the lexer.
+     */
+    static class MappedIOException extends RuntimeException {
+        public MappedIOException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException)super.getCause();
+        }
+    }
+
+}
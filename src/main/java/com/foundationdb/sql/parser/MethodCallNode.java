@@ -107,6 +107,7 @@ public abstract class MethodCallNode extends JavaValueNode
     }
 
     public void setJavaClassName(String javaClassName) {
+        checkNotFrozen();
         this.javaClassName = javaClassName;
     }
 
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+/**
+ * A flattened <code>AND</code> or <code>OR</code> of any number of
+ * operands, equivalent to a chain of {@link AndNode} or {@link OrNode}.
+ * <p>
+ * The parser never produces these; they come from
+ * {@link com.foundationdb.sql.compiler.BooleanNormalizer} when asked to
+ * flatten, so that a long generated condition is one node with a list
+ * rather than a chain as deep as it is long. An empty <code>AND</code> is
+ * true and an empty <code>OR</code> false.
+ */
+public final class NaryLogicalOperatorNode extends ValueNode
+{
+    private String operator;
+    private ValueNodeList operands;
+
+    /**
+     * Initializer for a NaryLogicalOperatorNode
+     *
+     * @param operands The operands of the AND or OR
+     */
+    public void init(Object operands) {
+        this.operands = (ValueNodeList)operands;
+    }
+
+    public void setNodeType(int nodeType) {
+        if (nodeType == NodeTypes.NARY_AND_NODE) {
+            operator = "and";
+        }
+        else {
+            assert (nodeType == NodeTypes.NARY_OR_NODE);
+            operator = "or";
+        }
+        super.setNodeType(nodeType);
+    }
+
+    /**
+     * Fill this node with a deep copy of the given node.
+     */
+    public void copyFrom(QueryTreeNode node) throws StandardException {
+        super.copyFrom(node);
+
+        NaryLogicalOperatorNode other = (NaryLogicalOperatorNode)node;
+        this.operator = other.operator;
+        this.operands = (ValueNodeList)
+            getNodeFactory().copyNode(other.operands, getParserContext());
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    /** Is this an <code>AND</code> rather than an <code>OR</code>? */
+    public boolean isAnd() {
+        return (getNodeType() == NodeTypes.NARY_AND_NODE);
+    }
+
+    /** The value that decides the result regardless of the other operands:
+     * <code>false</code> for <code>AND</code> and <code>true</code> for
+     * <code>OR</code>.
+     */
+    public boolean getShortCircuitValue() {
+        return !isAnd();
+    }
+
+    public ValueNodeList getOperands() {
+        return operands;
+    }
+
+    public void setOperands(ValueNodeList operands) {
+        checkNotFrozen();
+        this.operands = operands;
+    }
+
+    /*
+     * print the non-node subfields
+     */
+    public String toString() {
+        return "operator: " + operator + "\n" +
+            super.toString();
+    }
+
+    /**
+     * Prints the sub-nodes of this object.  See QueryTreeNode.java for
+     * how tree printing is supposed to work.
+     *
+     * @param depth The depth of this node in the tree
+     */
+
+    public void printSubNodes(int depth) {
+        super.printSubNodes(depth);
+
+        printLabel(depth, "operands: ");
+        operands.treePrint(depth + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean isEquivalent(ValueNode o) throws StandardException {
+        if (!isSameNodeType(o)) {
+            return false;
+        }
+
+        NaryLogicalOperatorNode other = (NaryLogicalOperatorNode)o;
+        return operands.isEquivalent(other.operands);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        return 31 * super.structuralHash() + operands.structuralHash();
+    }
+
+    /**
+     * Accept the visitor for all visitable children of this node.
+     *
+     * @param v the visitor
+     * @throws StandardException on error in the visitor
+     */
+    void acceptChildren(Visitor v) throws StandardException {
+        super.acceptChildren(v);
+
+        operands = (ValueNodeList)operands.accept(v);
+    }
+
+}
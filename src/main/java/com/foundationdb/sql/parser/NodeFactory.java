@@ -559,11 +559,13 @@ public abstract class NodeFactory
 
     /** 
      * Make a deep copy of the given node for the given context, which
-     * may not be the same as the node's context.
+     * may not be the same as the node's context. A
+     * {@link QueryTreeNode#freeze frozen} node is not copied.
      */
     public QueryTreeNode copyNode(QueryTreeNode node, SQLParserContext pc)
             throws StandardException {
         if (node == null) return null; // TODO: Convenience or bug-hider?
+        if (node.isFrozen()) return node;
 
         QueryTreeNode retval =  getNode(node.getNodeType(), pc);
 
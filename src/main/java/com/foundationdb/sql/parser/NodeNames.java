@@ -45,7 +45,7 @@ package com.foundationdb.sql.parser;
  *
  * This class is not shipped. The names are used in
  * NodeFactoryImpl, mapped from int NodeTypes and used in
- * Class.forName calls.
+ * Class.forName calls for any types it does not construct directly.
  *
  * WARNING: WHEN ADDING NODE TYPES HERE, YOU MUST ALSO ADD
  * THEM TO tools/jar/DBMSnodes.properties
@@ -251,6 +251,8 @@ public interface NodeNames
 
     static final String MODIFY_COLUMN_NODE_NAME = "com.foundationdb.sql.parser.ModifyColumnNode";
 
+    static final String NARY_LOGICAL_OPERATOR_NODE_NAME = "com.foundationdb.sql.parser.NaryLogicalOperatorNode";
+
     static final String NEW_INVOCATION_NODE_NAME = "com.foundationdb.sql.parser.NewInvocationNode";
 
     static final String NEXT_SEQUENCE_NODE_NAME = "com.foundationdb.sql.parser.NextSequenceNode";
@@ -0,0 +1,905 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.CharacterTypeAttributes;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+import com.foundationdb.sql.types.RoutineAliasInfo;
+import com.foundationdb.sql.types.TypeId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Write a query tree in a compact binary form and read it back, so that
+ * parsed statements can be kept or shipped without parsing them again.
+ * <p>
+ * Each node is written as its {@link NodeTypes} id and the values of its
+ * fields, and read back by getting a node of that type from the
+ * {@link NodeFactory} of the given parser context and then setting the
+ * fields, so that a custom factory still applies. The names of the fields
+ * of each class are written the first time it appears and matched by
+ * name when read, so that fields can be added or reordered in later
+ * versions. A field that is written but not found when read, because it
+ * was renamed or removed, is an error rather than being dropped. Other
+ * than nodes, only a few known classes are written as their fields.
+ * Strings are written once and after that by their index, so
+ * that repeated identifiers and literals are shared. A node reached more
+ * than once is written once and read back as the same node.
+ * <p>
+ * Nodes' user data is not written. The parser's list of parameters is
+ * not rebuilt; use a {@link Visitor} to find the {@link ParameterNode}s.
+ */
+public class NodeSerializer
+{
+    public static final int VERSION = 2;
+
+    private static final int MAGIC = 0x51544E53;  // "QTNS"
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int SHORT = 5;
+    private static final int BYTE = 6;
+    private static final int CHAR = 7;
+    private static final int FLOAT = 8;
+    private static final int DOUBLE = 9;
+    private static final int STRING = 10;
+    private static final int ENUM = 11;
+    private static final int NODE = 12;
+    private static final int REF = 13;
+    private static final int ARRAY = 14;
+    private static final int BYTES = 15;
+    private static final int COLLECTION = 16;
+    private static final int MAP = 17;
+    private static final int BIG_DECIMAL = 18;
+    private static final int BIG_INTEGER = 19;
+    private static final int TYPE_ID = 20;
+    private static final int TYPE = 21;
+    private static final int CHARACTER_ATTRIBUTES = 22;
+    private static final int OBJECT = 23;
+    private static final int ROUTINE_ALIAS_INFO = 24;
+    private static final int FUNCTION_APPLICATION = 25;
+
+    // Built-in types by format id and name, since several share a format id.
+    private static final Map<String,TypeId> BUILT_IN_TYPE_IDS;
+    static {
+        BUILT_IN_TYPE_IDS = new HashMap<String,TypeId>();
+        for (TypeId typeId : TypeId.getAllBuiltinTypeIds()) {
+            BUILT_IN_TYPE_IDS.put(builtInTypeKey(typeId.getTypeFormatId(),
+                                                 typeId.getSQLTypeName()),
+                                  typeId);
+        }
+    }
+
+    private SQLParserContext parserContext;
+    private NodeFactory nodeFactory;
+
+    // State of a single write or read.
+    private OutputStream out;
+    private InputStream in;
+    private Map<String,Integer> stringIndexes;
+    private List<String> strings;
+    private Map<Class<?>,Integer> classIndexes;
+    private List<ClassFields> classes;
+    private Map<Object,Integer> objectIndexes;
+    private List<Object> objects;
+
+    /** The fields of a class as written, matched to the fields here when read. */
+    static final class ClassFields {
+        Class<?> clazz;
+        String[] names;
+        Class<?> matchedClass;
+        Field[] matchedFields;
+    }
+
+    public NodeSerializer(SQLParserContext parserContext) {
+        this.parserContext = parserContext;
+        this.nodeFactory = parserContext.getNodeFactory();
+    }
+
+    public byte[] serialize(QueryTreeNode node) throws StandardException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            serialize(node, bytes);
+        }
+        catch (IOException ex) {
+            throw new StandardException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    public void serialize(QueryTreeNode node, OutputStream out)
+            throws StandardException, IOException {
+        this.out = out;
+        stringIndexes = new HashMap<String,Integer>();
+        classIndexes = new HashMap<Class<?>,Integer>();
+        objectIndexes = new IdentityHashMap<Object,Integer>();
+        try {
+            writeFixed(MAGIC);
+            writeUnsigned(VERSION);
+            writeValue(node);
+        }
+        finally {
+            this.out = null;
+            stringIndexes = null;
+            classIndexes = null;
+            objectIndexes = null;
+        }
+    }
+
+    public QueryTreeNode deserialize(byte[] bytes) throws StandardException {
+        try {
+            return deserialize(new ByteArrayInputStream(bytes));
+        }
+        catch (IOException ex) {
+            throw new StandardException(ex);
+        }
+    }
+
+    public QueryTreeNode deserialize(InputStream in)
+            throws StandardException, IOException {
+        this.in = in;
+        strings = new ArrayList<String>();
+        classes = new ArrayList<ClassFields>();
+        objects = new ArrayList<Object>();
+        try {
+            if (readFixed() != MAGIC)
+                throw new StandardException("Not a serialized query tree");
+            int version = readUnsigned();
+            if (version != VERSION)
+                throw new StandardException("Unsupported serialized query tree version: " + version);
+            Object value = readValue();
+            if (!(value instanceof QueryTreeNode))
+                throw new StandardException("Serialized value is not a query tree");
+            return (QueryTreeNode)value;
+        }
+        finally {
+            this.in = null;
+            strings = null;
+            classes = null;
+            objects = null;
+        }
+    }
+
+    /* Writing */
+
+    protected void writeValue(Object value) throws StandardException, IOException {
+        if (value == null) {
+            out.write(NULL);
+        }
+        else if (value instanceof Boolean) {
+            out.write(((Boolean)value).booleanValue() ? TRUE : FALSE);
+        }
+        else if (value instanceof Integer) {
+            out.write(INT);
+            writeSigned(((Integer)value).intValue());
+        }
+        else if (value instanceof Long) {
+            out.write(LONG);
+            writeSigned(((Long)value).longValue());
+        }
+        else if (value instanceof Short) {
+            out.write(SHORT);
+            writeSigned(((Short)value).shortValue());
+        }
+        else if (value instanceof Byte) {
+            out.write(BYTE);
+            out.write(((Byte)value).byteValue());
+        }
+        else if (value instanceof Character) {
+            out.write(CHAR);
+            writeUnsigned(((Character)value).charValue());
+        }
+        else if (value instanceof Float) {
+            out.write(FLOAT);
+            writeFixed(Float.floatToIntBits(((Float)value).floatValue()));
+        }
+        else if (value instanceof Double) {
+            out.write(DOUBLE);
+            long bits = Double.doubleToLongBits(((Double)value).doubleValue());
+            writeFixed((int)(bits >>> 32));
+            writeFixed((int)bits);
+        }
+        else if (value instanceof String) {
+            out.write(STRING);
+            writeString((String)value);
+        }
+        else if (value instanceof Enum) {
+            out.write(ENUM);
+            writeString(((Enum<?>)value).getDeclaringClass().getName());
+            writeString(((Enum<?>)value).name());
+        }
+        else if (value instanceof byte[]) {
+            byte[] bytes = (byte[])value;
+            out.write(BYTES);
+            writeUnsigned(bytes.length);
+            out.write(bytes);
+        }
+        else if (value instanceof BigDecimal) {
+            out.write(BIG_DECIMAL);
+            writeSigned(((BigDecimal)value).scale());
+            writeBytes(((BigDecimal)value).unscaledValue().toByteArray());
+        }
+        else if (value instanceof BigInteger) {
+            out.write(BIG_INTEGER);
+            writeBytes(((BigInteger)value).toByteArray());
+        }
+        else if (value instanceof TypeId) {
+            out.write(TYPE_ID);
+            writeTypeId((TypeId)value);
+        }
+        else if (value instanceof DataTypeDescriptor) {
+            DataTypeDescriptor type = (DataTypeDescriptor)value;
+            out.write(TYPE);
+            writeTypeId(type.getTypeId());
+            writeSigned(type.getPrecision());
+            writeSigned(type.getScale());
+            out.write(type.isNullable() ? TRUE : FALSE);
+            writeSigned(type.getMaximumWidth());
+            writeValue(type.getCharacterAttributes());
+        }
+        else if (value instanceof CharacterTypeAttributes) {
+            CharacterTypeAttributes attrs = (CharacterTypeAttributes)value;
+            out.write(CHARACTER_ATTRIBUTES);
+            writeValue(attrs.getCharacterSet());
+            writeValue(attrs.getCollation());
+            writeValue(attrs.getCollationDerivation());
+        }
+        else if (value instanceof RoutineAliasInfo) {
+            RoutineAliasInfo info = (RoutineAliasInfo)value;
+            out.write(ROUTINE_ALIAS_INFO);
+            writeValue(info.getMethodName());
+            writeSigned(info.getParameterCount());
+            writeValue(info.getParameterNames());
+            writeValue(info.getParameterTypes());
+            writeValue(info.getParameterModes());
+            writeSigned(info.getMaxDynamicResultSets());
+            writeValue(info.getLanguage());
+            writeValue(info.getParameterStyle());
+            writeValue(info.getSQLAllowed());
+            out.write(info.isDeterministic() ? TRUE : FALSE);
+            out.write(info.hasDefinersRights() ? TRUE : FALSE);
+            out.write(info.calledOnNullInput() ? TRUE : FALSE);
+            writeValue(info.getReturnType());
+        }
+        else if (value instanceof IndexColumnList.FunctionApplication) {
+            IndexColumnList.FunctionApplication function = 
+                (IndexColumnList.FunctionApplication)value;
+            out.write(FUNCTION_APPLICATION);
+            writeValue(function.functionType);
+            writeSigned(function.firstArgumentPosition);
+            writeSigned(function.nArguments);
+        }
+        else if (writeReference(value)) {
+        }
+        else if ((value instanceof QueryTreeNode) &&
+                 (((QueryTreeNode)value).getNodeType() != 0)) {
+            QueryTreeNode node = (QueryTreeNode)value;
+            out.write(NODE);
+            writeUnsigned(node.getNodeType());
+            writeFields(node);
+        }
+        else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            out.write(ARRAY);
+            writeString(value.getClass().getName());
+            writeUnsigned(length);
+            for (int i = 0; i < length; i++) {
+                writeValue(Array.get(value, i));
+            }
+        }
+        else if (value instanceof Collection) {
+            checkConstructible(value.getClass());
+            out.write(COLLECTION);
+            writeString(value.getClass().getName());
+            writeUnsigned(((Collection<?>)value).size());
+            for (Object elem : (Collection<?>)value) {
+                writeValue(elem);
+            }
+        }
+        else if (value instanceof Map) {
+            checkConstructible(value.getClass());
+            out.write(MAP);
+            writeString(value.getClass().getName());
+            writeUnsigned(((Map<?,?>)value).size());
+            for (Map.Entry<?,?> entry : ((Map<?,?>)value).entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+        else if (isObjectClass(value.getClass())) {
+            // Including nodes made without the factory, like WindowList.
+            if (!(value instanceof ColumnarRows))
+                checkConstructible(value.getClass());
+            out.write(OBJECT);
+            writeFields(value);
+        }
+        else {
+            throw new StandardException("Cannot serialize " + value.getClass().getName());
+        }
+    }
+
+    /** Write a reference to an object already written, or note it for next time. */
+    protected boolean writeReference(Object value) throws IOException {
+        Integer index = objectIndexes.get(value);
+        if (index != null) {
+            out.write(REF);
+            writeUnsigned(index);
+            return true;
+        }
+        if (value.getClass().isArray() ||
+            (value instanceof Collection) || (value instanceof Map))
+            return false;
+        objectIndexes.put(value, objectIndexes.size());
+        return false;
+    }
+
+    protected void writeFields(Object value) throws StandardException, IOException {
+        Class<?> clazz = value.getClass();
+        Integer index = classIndexes.get(clazz);
+        Field[] fields = getFields(clazz);
+        if (index != null) {
+            writeUnsigned(index);
+        }
+        else {
+            index = classIndexes.size();
+            classIndexes.put(clazz, index);
+            writeUnsigned(index);
+            writeString(clazz.getName());
+            writeUnsigned(fields.length);
+            for (Field field : fields) {
+                writeString(fieldName(field));
+            }
+        }
+        try {
+            for (Field field : fields) {
+                writeValue(field.get(value));
+            }
+        }
+        catch (IllegalAccessException ex) {
+            throw new StandardException(ex);
+        }
+    }
+
+    /** Write a type as its format id and then what distinguishes it
+     * among the types with that format id. */
+    protected void writeTypeId(TypeId typeId) throws StandardException, IOException {
+        writeUnsigned(typeId.getTypeFormatId());
+        if (typeId.isUserDefinedTypeId()) {
+            writeValue(typeId.getSchemaName());
+            writeValue(typeId.getUnqualifiedName());
+            writeValue(typeId.getCorrespondingJavaTypeName());
+            out.write(typeId.getClassNameWasDelimitedIdentifier() ? TRUE : FALSE);
+        }
+        else if (typeId.isRowMultiSet()) {
+            TypeId.RowMultiSetTypeId rowType = (TypeId.RowMultiSetTypeId)typeId;
+            writeValue(rowType.getColumnNames());
+            writeValue(rowType.getColumnTypes());
+        }
+        else {
+            writeString(typeId.getSQLTypeName());
+        }
+    }
+
+    protected void writeString(String str) throws IOException {
+        Integer index = stringIndexes.get(str);
+        if (index != null) {
+            writeUnsigned(index);
+            return;
+        }
+        index = stringIndexes.size();
+        stringIndexes.put(str, index);
+        writeUnsigned(index);
+        writeBytes(str.getBytes("UTF-8"));
+    }
+
+    protected void writeBytes(byte[] bytes) throws IOException {
+        writeUnsigned(bytes.length);
+        out.write(bytes);
+    }
+
+    protected void writeSigned(long value) throws IOException {
+        writeUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    protected void writeUnsigned(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int)value);
+    }
+
+    protected void writeFixed(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /* Reading */
+
+    @SuppressWarnings("unchecked")
+    protected Object readValue() throws StandardException, IOException {
+        int tag = readByte();
+        switch (tag) {
+        case NULL:
+            return null;
+        case FALSE:
+            return Boolean.FALSE;
+        case TRUE:
+            return Boolean.TRUE;
+        case INT:
+            return Integer.valueOf((int)readSigned());
+        case LONG:
+            return Long.valueOf(readSigned());
+        case SHORT:
+            return Short.valueOf((short)readSigned());
+        case BYTE:
+            return Byte.valueOf((byte)readByte());
+        case CHAR:
+            return Character.valueOf((char)readUnsigned());
+        case FLOAT:
+            return Float.valueOf(Float.intBitsToFloat(readFixed()));
+        case DOUBLE:
+            {
+                long high = readFixed();
+                long low = readFixed() & 0xFFFFFFFFL;
+                return Double.valueOf(Double.longBitsToDouble((high << 32) | low));
+            }
+        case STRING:
+            return readString();
+        case ENUM:
+            {
+                Class<?> clazz = readClass();
+                String name = readString();
+                if (!clazz.isEnum())
+                    throw new StandardException("Not an enum: " + clazz.getName());
+                for (Object constant : clazz.getEnumConstants()) {
+                    if (((Enum<?>)constant).name().equals(name))
+                        return constant;
+                }
+                throw new StandardException("Unknown " + clazz.getName() + ": " + name);
+            }
+        case BYTES:
+            {
+                byte[] bytes = new byte[readUnsigned()];
+                readFully(bytes);
+                return bytes;
+            }
+        case BIG_DECIMAL:
+            {
+                int scale = (int)readSigned();
+                return new BigDecimal(new BigInteger(readBytes()), scale);
+            }
+        case BIG_INTEGER:
+            return new BigInteger(readBytes());
+        case TYPE_ID:
+            return readTypeId();
+        case TYPE:
+            {
+                TypeId typeId = readTypeId();
+                int precision = (int)readSigned();
+                int scale = (int)readSigned();
+                boolean nullable = (readByte() == TRUE);
+                int maximumWidth = (int)readSigned();
+                CharacterTypeAttributes attrs = (CharacterTypeAttributes)readValue();
+                return DataTypeDescriptor.getDataTypeDescriptor(typeId, precision, scale,
+                                                                nullable, maximumWidth,
+                                                                attrs);
+            }
+        case CHARACTER_ATTRIBUTES:
+            {
+                String characterSet = (String)readValue();
+                String collation = (String)readValue();
+                CharacterTypeAttributes.CollationDerivation derivation =
+                    (CharacterTypeAttributes.CollationDerivation)readValue();
+                return new CharacterTypeAttributes(characterSet, collation, derivation);
+            }
+        case REF:
+            {
+                int index = readUnsigned();
+                if (index >= objects.size())
+                    throw new StandardException("Bad reference: " + index);
+                return objects.get(index);
+            }
+        case NODE:
+            {
+                int nodeType = readUnsigned();
+                QueryTreeNode node = nodeFactory.getNode(nodeType, parserContext);
+                objects.add(node);
+                readFields(node);
+                return node;
+            }
+        case ARRAY:
+            {
+                Class<?> clazz = readClass();
+                if (!clazz.isArray())
+                    throw new StandardException("Not an array: " + clazz.getName());
+                int length = readUnsigned();
+                Object array = Array.newInstance(clazz.getComponentType(), length);
+                for (int i = 0; i < length; i++) {
+                    Array.set(array, i, readValue());
+                }
+                return array;
+            }
+        case COLLECTION:
+            {
+                Collection<Object> collection =
+                    (Collection<Object>)newInstance(readClass(), Collection.class);
+                int size = readUnsigned();
+                for (int i = 0; i < size; i++) {
+                    collection.add(readValue());
+                }
+                return collection;
+            }
+        case MAP:
+            {
+                Map<Object,Object> map = (Map<Object,Object>)newInstance(readClass(), Map.class);
+                int size = readUnsigned();
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue();
+                    map.put(key, readValue());
+                }
+                return map;
+            }
+        case ROUTINE_ALIAS_INFO:
+            {
+                String methodName = (String)readValue();
+                int parameterCount = (int)readSigned();
+                String[] parameterNames = (String[])readValue();
+                DataTypeDescriptor[] parameterTypes = (DataTypeDescriptor[])readValue();
+                int[] parameterModes = (int[])readValue();
+                int dynamicResultSets = (int)readSigned();
+                String language = (String)readValue();
+                String parameterStyle = (String)readValue();
+                RoutineAliasInfo.SQLAllowed sqlAllowed = 
+                    (RoutineAliasInfo.SQLAllowed)readValue();
+                boolean deterministic = (readByte() == TRUE);
+                boolean definersRights = (readByte() == TRUE);
+                boolean calledOnNullInput = (readByte() == TRUE);
+                DataTypeDescriptor returnType = (DataTypeDescriptor)readValue();
+                return new RoutineAliasInfo(methodName, parameterCount, 
+                                            parameterNames, parameterTypes, parameterModes,
+                                            dynamicResultSets, language, parameterStyle,
+                                            sqlAllowed, deterministic, definersRights,
+                                            calledOnNullInput, returnType);
+            }
+        case FUNCTION_APPLICATION:
+            {
+                IndexColumnList.FunctionType functionType = 
+                    (IndexColumnList.FunctionType)readValue();
+                int firstArgumentPosition = (int)readSigned();
+                int nArguments = (int)readSigned();
+                return new IndexColumnList.FunctionApplication(functionType,
+                                                               firstArgumentPosition,
+                                                               nArguments);
+            }
+        case OBJECT:
+            {
+                int index = readUnsigned();
+                Object value;
+                if (index < classes.size())
+                    value = newObject(classes.get(index).clazz);
+                else {
+                    ClassFields classFields = readClassFields(index);
+                    value = newObject(classFields.clazz);
+                }
+                objects.add(value);
+                if (value instanceof QueryTreeNode)
+                    ((QueryTreeNode)value).setParserContext(parserContext);
+                setFields(value, classes.get(index));
+                return value;
+            }
+        default:
+            throw new StandardException("Bad serialized value tag: " + tag);
+        }
+    }
+
+    protected void readFields(Object value) throws StandardException, IOException {
+        int index = readUnsigned();
+        if (index >= classes.size())
+            readClassFields(index);
+        setFields(value, classes.get(index));
+    }
+
+    protected ClassFields readClassFields(int index)
+            throws StandardException, IOException {
+        if (index != classes.size())
+            throw new StandardException("Bad class reference: " + index);
+        ClassFields classFields = new ClassFields();
+        classes.add(classFields);
+        String className = readString();
+        int nfields = readUnsigned();
+        String[] names = new String[nfields];
+        for (int i = 0; i < nfields; i++) {
+            names[i] = readString();
+        }
+        try {
+            classFields.clazz = Class.forName(className, false,
+                                              NodeSerializer.class.getClassLoader());
+        }
+        catch (ClassNotFoundException ex) {
+            classFields.clazz = null;
+        }
+        classFields.names = names;
+        return classFields;
+    }
+
+    /** Read the fields written for the class into those with the same name
+     * in the object, which may be of a different class if from a different
+     * factory. A field that is not there any more is an error. */
+    protected void setFields(Object value, ClassFields classFields)
+            throws StandardException, IOException {
+        if (classFields.matchedClass != value.getClass()) {
+            // First time, or a node factory that makes some other class.
+            Map<String,Field> byName = new HashMap<String,Field>();
+            for (Field field : getFields(value.getClass())) {
+                byName.put(fieldName(field), field);
+            }
+            Field[] fields = new Field[classFields.names.length];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = byName.get(classFields.names[i]);
+                if (fields[i] == null)
+                    throw new StandardException("Serialized field " + classFields.names[i] +
+                                                " not found in " + value.getClass().getName());
+            }
+            classFields.matchedClass = value.getClass();
+            classFields.matchedFields = fields;
+        }
+        try {
+            for (Field field : classFields.matchedFields) {
+                field.set(value, readValue());
+            }
+        }
+        catch (IllegalAccessException ex) {
+            throw new StandardException(ex);
+        }
+        catch (IllegalArgumentException ex) {
+            throw new StandardException("Serialized field does not match", ex);
+        }
+    }
+
+    protected TypeId readTypeId() throws StandardException, IOException {
+        int formatId = readUnsigned();
+        switch (formatId) {
+        case TypeId.FormatIds.USERDEFINED_TYPE_ID:
+            {
+                String schemaName = (String)readValue();
+                String unqualifiedName = (String)readValue();
+                String className = (String)readValue();
+                if (readByte() == TRUE)
+                    return TypeId.getUserDefinedTypeId(className, true);
+                else
+                    return TypeId.getUserDefinedTypeId(schemaName, unqualifiedName, className);
+            }
+        case TypeId.FormatIds.ROW_MULTISET_TYPE_ID_IMPL:
+            {
+                String[] columnNames = (String[])readValue();
+                DataTypeDescriptor[] columnTypes = (DataTypeDescriptor[])readValue();
+                return TypeId.getRowMultiSet(columnNames, columnTypes);
+            }
+        default:
+            {
+                String name = readString();
+                TypeId typeId = BUILT_IN_TYPE_IDS.get(builtInTypeKey(formatId, name));
+                if (typeId == null)
+                    throw new StandardException("Unknown type: " + name);
+                return typeId;
+            }
+        }
+    }
+
+    protected static String builtInTypeKey(int formatId, String name) {
+        return formatId + ":" + name;
+    }
+
+    protected Class<?> readClass() throws StandardException, IOException {
+        String name = readString();
+        try {
+            return Class.forName(name, false, NodeSerializer.class.getClassLoader());
+        }
+        catch (ClassNotFoundException ex) {
+            throw new StandardException("Unknown class: " + name, ex);
+        }
+    }
+
+    protected String readString() throws StandardException, IOException {
+        int index = readUnsigned();
+        if (index < strings.size())
+            return strings.get(index);
+        if (index != strings.size())
+            throw new StandardException("Bad string reference: " + index);
+        String str = new String(readBytes(), "UTF-8");
+        strings.add(str);
+        return str;
+    }
+
+    protected byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[readUnsigned()];
+        readFully(bytes);
+        return bytes;
+    }
+
+    protected void readFully(byte[] bytes) throws IOException {
+        int off = 0;
+        while (off < bytes.length) {
+            int n = in.read(bytes, off, bytes.length - off);
+            if (n < 0)
+                throw new EOFException();
+            off += n;
+        }
+    }
+
+    protected long readSigned() throws IOException {
+        long value = readUnsignedLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    protected int readUnsigned() throws IOException {
+        return (int)readUnsignedLong();
+    }
+
+    protected long readUnsignedLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = readByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+            shift += 7;
+        }
+    }
+
+    protected int readFixed() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    protected int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException();
+        return b;
+    }
+
+    /* Fields */
+
+    private static final ConcurrentMap<Class<?>,Field[]> classFields =
+        new ConcurrentHashMap<Class<?>,Field[]>();
+
+    /** Get the fields of a class that are serialized: those that are not
+     * static or transient and are not the node type, parser context,
+     * node factory or user data, from the base class down and by name. */
+    protected static Field[] getFields(Class<?> clazz) {
+        Field[] fields = classFields.get(clazz);
+        if (fields != null)
+            return fields;
+        List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+        for (Class<?> c = clazz; (c != null) && (c != Object.class); c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        List<Field> result = new ArrayList<Field>();
+        for (Class<?> c : hierarchy) {
+            Field[] declared = c.getDeclaredFields();
+            Arrays.sort(declared, new Comparator<Field>() {
+                            public int compare(Field f1, Field f2) {
+                                return f1.getName().compareTo(f2.getName());
+                            }
+                        });
+            for (Field field : declared) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) ||
+                    field.isSynthetic() ||
+                    (field.getType() == SQLParserContext.class) ||
+                    (field.getType() == NodeFactory.class))
+                    continue;
+                if ((c == QueryTreeNode.class) &&
+                    (field.getName().equals("nodeType") ||
+                     field.getName().equals("userData")))
+                    continue;
+                field.setAccessible(true);
+                result.add(field);
+            }
+        }
+        fields = result.toArray(new Field[result.size()]);
+        classFields.putIfAbsent(clazz, fields);
+        return fields;
+    }
+
+    protected static String fieldName(Field field) {
+        return field.getDeclaringClass().getSimpleName() + "." + field.getName();
+    }
+
+    /** Classes other than nodes whose objects are written as their fields. */
+    private static final Set<Class<?>> OBJECT_CLASSES = new HashSet<Class<?>>(
+        Arrays.<Class<?>>asList(ColumnarRows.class, ParserSettings.class));
+
+    /** Can objects of this class be written as their fields and read back? */
+    protected static boolean isObjectClass(Class<?> clazz) {
+        return (QueryTreeNode.class.isAssignableFrom(clazz) ||
+                OBJECT_CLASSES.contains(clazz));
+    }
+
+    protected static void checkConstructible(Class<?> clazz) throws StandardException {
+        try {
+            clazz.getDeclaredConstructor();
+        }
+        catch (NoSuchMethodException ex) {
+            throw new StandardException("Cannot serialize " + clazz.getName());
+        }
+    }
+
+    protected static Object newInstance(Class<?> clazz, Class<?> required)
+            throws StandardException {
+        if (!required.isAssignableFrom(clazz) || !clazz.getName().startsWith("java.util."))
+            throw new StandardException("Cannot deserialize " + clazz.getName());
+        try {
+            return clazz.newInstance();
+        }
+        catch (Exception ex) {
+            throw new StandardException("Cannot deserialize " + clazz.getName(), ex);
+        }
+    }
+
+    protected Object newObject(Class<?> clazz) throws StandardException {
+        if (clazz == ColumnarRows.class)
+            return new ColumnarRows(0, nodeFactory, parserContext);
+        if ((clazz == null) || !isObjectClass(clazz))
+            throw new StandardException("Cannot deserialize " + clazz);
+        try {
+            Constructor<?> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        }
+        catch (Exception ex) {
+            throw new StandardException("Cannot deserialize " + clazz.getName(), ex);
+        }
+    }
+
+}
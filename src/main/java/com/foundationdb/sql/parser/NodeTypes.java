@@ -293,8 +293,12 @@ public interface NodeTypes
     public static final int EXECUTE_STATEMENT_NODE = 237;
     public static final int DEALLOCATE_STATEMENT_NODE = 238;
 
+    // Flattened boolean operators
+    public static final int NARY_AND_NODE = 239;
+    public static final int NARY_OR_NODE = 240;
+
     // Final value in set, keep up to date!
-    public static final int FINAL_VALUE = DEALLOCATE_STATEMENT_NODE;
+    public static final int FINAL_VALUE = NARY_OR_NODE;
 
     /**
      * Extensions to this interface can use nodetypes > MAX_NODE_TYPE with out fear of collision
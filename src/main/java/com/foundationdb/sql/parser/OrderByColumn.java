@@ -112,6 +112,7 @@ public class OrderByColumn extends OrderedColumn
      * Mark the column as descending order
      */
     public void setDescending() {
+        checkNotFrozen();
         ascending = false;
     }
 
@@ -129,6 +130,7 @@ public class OrderByColumn extends OrderedColumn
      * Mark the column as ordered NULL values lower than non-NULL values.
      */
     public void setNullsOrderedLow() {
+        checkNotFrozen();
         nullsOrderedLow = true;
     }
 
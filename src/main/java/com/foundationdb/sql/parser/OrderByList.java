@@ -39,6 +39,8 @@
 
 package com.foundationdb.sql.parser;
 
+import com.foundationdb.sql.StandardException;
+
 import java.util.Properties;
 
 /**
@@ -64,6 +66,16 @@ public class OrderByList extends OrderedColumnList<OrderByColumn>
             allAscending = false;
     }
 
+    /**
+     * Fill this node with a deep copy of the given node.
+     */
+    public void copyFrom(QueryTreeNode node) throws StandardException {
+        super.copyFrom(node);
+
+        OrderByList other = (OrderByList)node;
+        this.allAscending = other.allAscending;
+    }
+
     /**
      * Are all columns in the list ascending.
      *
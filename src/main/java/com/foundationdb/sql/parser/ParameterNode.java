@@ -100,6 +100,7 @@ public class ParameterNode extends ValueNode
      * ? = CALL myMethod())
      */
     public void setReturnOutputParam(ValueNode valueNode) {
+        checkNotFrozen();
         returnOutputParameter = valueNode;
     }
 
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+/**
+ * The settings of a {@link SQLParser} that decide how text is parsed, as
+ * they were when it deferred a subquery. The subquery's text is parsed
+ * with these later, whatever has become of that parser by then.
+ * @see SubqueryNode#isDeferred
+ */
+final class ParserSettings
+{
+    // By ordinal, so that there are no collections to serialize.
+    private long features;
+    private SQLParserContext.IdentifierCase identifierCase;
+    private int maxIdentifierLength, maxStringLiteralLength;
+
+    /** For deserializing. */
+    private ParserSettings() {
+    }
+
+    ParserSettings(SQLParser parser) {
+        for (SQLParserFeature feature : SQLParserFeature.values()) {
+            if (parser.hasFeature(feature))
+                features |= 1L << feature.ordinal();
+        }
+        identifierCase = parser.getIdentifierCase();
+        maxIdentifierLength = parser.getMaxIdentifierLength();
+        maxStringLiteralLength = parser.getMaxStringLiteralLength();
+    }
+
+    /** Are these still the given parser's settings? */
+    boolean matches(SQLParser parser) {
+        for (SQLParserFeature feature : SQLParserFeature.values()) {
+            if (parser.hasFeature(feature) != hasFeature(feature))
+                return false;
+        }
+        return ((identifierCase == parser.getIdentifierCase()) &&
+                (maxIdentifierLength == parser.getMaxIdentifierLength()) &&
+                (maxStringLiteralLength == parser.getMaxStringLiteralLength()));
+    }
+
+    public boolean hasFeature(SQLParserFeature feature) {
+        return ((features & (1L << feature.ordinal())) != 0);
+    }
+
+    public SQLParserContext.IdentifierCase getIdentifierCase() {
+        return identifierCase;
+    }
+
+    /** Check that string literal is not too long. */
+    public void checkStringLiteralLengthLimit(String image) throws StandardException {
+        if (image.length() > maxStringLiteralLength) {
+            throw new StandardException("String literal too long");
+        }
+    }
+
+    /** Check that identifier is not too long. */
+    public void checkIdentifierLengthLimit(String identifier)
+            throws StandardException {
+        if (identifier.length() > maxIdentifierLength)
+            throw new StandardException("Identifier too long: '" + identifier + "'");
+    }
+
+}
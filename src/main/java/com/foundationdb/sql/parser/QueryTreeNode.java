@@ -69,6 +69,7 @@ public abstract class QueryTreeNode implements Visitable
     private int nodeType;
     private SQLParserContext pc;
     private Object userData;
+    private transient boolean frozen;
 
     /**
      * Set the parser context for this node.
@@ -76,6 +77,7 @@ public abstract class QueryTreeNode implements Visitable
      * @param pc The SQLParserContext
      */
     public void setParserContext(SQLParserContext pc) {
+        checkNotFrozen();
         this.pc = pc;
     }
 
@@ -92,16 +94,84 @@ public abstract class QueryTreeNode implements Visitable
      * Set the user data associated with this node.
      */
     public void setUserData(Object userData) {
-        this.userData = userData;
+        if (frozen) {
+            if (getUserData() == userData)
+                return;
+            copyToChange().userData = userData;
+        }
+        else
+            this.userData = userData;
     }
 
     /**
      * Get the user data associated with this node.
      */
     public Object getUserData() {
+        if (frozen) {
+            QueryTreeNode copy = QueryTreeTraversal.getVisitedCopy(this);
+            if (copy != null)
+                return copy.userData;
+        }
         return userData;
     }
 
+    /**
+     * Is this node shared rather than copied?
+     * @see #freeze
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Mark this node as no longer changing, so that
+     * {@link NodeFactory#copyNode} shares it instead of copying it.
+     * All of its children must already be frozen.
+     * <p>
+     * A visitor that replaces one of its children gets a copy of it
+     * instead, with the replacement, and so on up to the first node
+     * that is not frozen. Likewise, a visitor that sets the user data
+     * or type of the frozen node it is visiting sets them on a copy,
+     * which takes the node's place. Anything else that changes a frozen
+     * node throws <code>IllegalStateException</code>; it must change a
+     * {@link #copyForWrite copy} instead.
+     */
+    public void freeze() {
+        this.frozen = true;
+    }
+
+    /** Throw if this node is frozen and so must not be changed. */
+    protected void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("Frozen node cannot be changed: " +
+                                            getClass().getName());
+    }
+
+    /** Get the copy of this frozen node that will take its place because
+     * it is being changed while it is visited.
+     */
+    protected QueryTreeNode copyToChange() {
+        QueryTreeNode copy;
+        try {
+            copy = QueryTreeTraversal.copyBeingVisited(this);
+        }
+        catch (StandardException ex) {
+            throw new IllegalStateException(ex);
+        }
+        if (copy == null)
+            checkNotFrozen();
+        return copy;
+    }
+
+    /** Get a copy of this node that can be changed. Any frozen children
+     * are still shared with it.
+     */
+    public QueryTreeNode copyForWrite() throws StandardException {
+        QueryTreeNode copy = getNodeFactory().getNode(nodeType, pc);
+        copy.copyFrom(this);
+        return copy;
+    }
+
     /**
      * Gets the NodeFactory for this database.
      *
@@ -139,6 +209,7 @@ public abstract class QueryTreeNode implements Visitable
      *
      */
     public void setBeginOffset(int beginOffset) {
+        checkNotFrozen();
         this.beginOffset = beginOffset;
     }
 
@@ -161,6 +232,7 @@ public abstract class QueryTreeNode implements Visitable
      *
      */
     public void setEndOffset(int endOffset) {
+        checkNotFrozen();
         this.endOffset = endOffset;
     }
 
@@ -190,35 +262,46 @@ public abstract class QueryTreeNode implements Visitable
      */
 
     public static String formatNodeString(String nodeString, int depth) {
-        StringBuffer nodeStringBuffer = new StringBuffer(nodeString);
-        int pos;
-        char c;
-        char[] indent = new char[depth];
-
-        /*
-        ** Form an array of tab characters for indentation.
-        */
-        while (depth > 0) {
-            indent[depth - 1] = '\t';
-            depth--;
+        if (depth == 0)
+            return nodeString;
+        StringBuilder str = new StringBuilder(nodeString.length() + depth * 8);
+        try {
+            appendIndented(str, nodeString, depth);
         }
+        catch (IOException ex) {
+            throw new RuntimeException(ex); // Not from a StringBuilder.
+        }
+        return str.toString();
+    }
 
-        /* Indent the beginning of the string */
-        nodeStringBuffer.insert(0, indent);
+    private static final String TABS = "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t";
 
-        /*
-        ** Look for newline characters, except for the last character.
-        ** We don't want to indent after the last newline.
-        */
-        for (pos = 0; pos < nodeStringBuffer.length() - 1; pos++) {
-            c = nodeStringBuffer.charAt(pos);
-            if (c == '\n') {
-                /* Indent again after each newline */
-                nodeStringBuffer.insert(pos + 1, indent);
+    /**
+     * Append the given string to <code>out</code> indented to the given
+     * depth, as {@link #formatNodeString} would return it, in a single
+     * pass without building the result.
+     */
+    protected static void appendIndented(Appendable out, String nodeString, int depth)
+            throws IOException {
+        int len = nodeString.length();
+        int start = 0;
+        while (true) {
+            /* Indent the beginning of the string and after each newline */
+            for (int i = depth; i > 0; i -= TABS.length()) {
+                out.append(TABS, 0, Math.min(i, TABS.length()));
             }
+            /*
+            ** Look for newline characters, except for the last character.
+            ** We don't want to indent after the last newline.
+            */
+            int nl = nodeString.indexOf('\n', start);
+            if ((nl < 0) || (nl >= len - 1)) {
+                out.append(nodeString, start, len);
+                break;
+            }
+            out.append(nodeString, start, nl + 1);
+            start = nl + 1;
         }
-
-        return nodeStringBuffer.toString();
     }
 
     /**
@@ -229,7 +312,7 @@ public abstract class QueryTreeNode implements Visitable
 
     public void treePrint() {
         debugPrint(nodeHeader());
-        String thisStr = formatNodeString(this.toString(), 0);
+        String thisStr = this.toString();
 
         if (containsInfo(thisStr)) {
             debugPrint(thisStr);
@@ -281,19 +364,20 @@ public abstract class QueryTreeNode implements Visitable
         Map printed = getParserContext().getPrintedObjectsMap();
 
         if (printed.containsKey(this)) {
-            debugPrint(formatNodeString(nodeHeader(), depth));
-            debugPrint(formatNodeString("***truncated***\n", depth));
+            debugPrint(nodeHeader(), depth);
+            debugPrint("***truncated***\n", depth);
         } 
         else {
             printed.put(this, null);
-            debugPrint(formatNodeString(nodeHeader(), depth));
-            String thisStr = formatNodeString(this.toString(), depth);
+            debugPrint(nodeHeader(), depth);
+            String thisStr = this.toString();
 
             if (containsInfo(thisStr)) {
-                debugPrint(thisStr);
+                debugPrint(thisStr, depth);
             }
 
-            if (thisStr.charAt(thisStr.length()-1) != '\n') {
+            if ((thisStr.length() == 0) ||
+                (thisStr.charAt(thisStr.length()-1) != '\n')) {
                 debugPrint("\n");
             }
 
@@ -338,6 +422,26 @@ public abstract class QueryTreeNode implements Visitable
         }
     }
 
+    /**
+     * Print a String for debugging, indented to the given depth as by
+     * {@link #formatNodeString}.
+     *
+     * @param outputString The String to print
+     * @param depth The depth to indent it
+     */
+
+    public static void debugPrint(String outputString, int depth) {
+        try {
+            if (debugOutput == null)
+                appendIndented(System.out, outputString, depth);
+            else
+                appendIndented(debugOutput, outputString, depth);
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     /**
      * Flush the debug stream out
      */
@@ -414,7 +518,7 @@ public abstract class QueryTreeNode implements Visitable
      */
 
     public void printLabel(int depth, String label) {
-        debugPrint(formatNodeString(label, depth));
+        debugPrint(label, depth);
     }
 
     /**
@@ -423,6 +527,7 @@ public abstract class QueryTreeNode implements Visitable
      * @param nodeType The node type.
      */
     public void setNodeType(int nodeType) {
+        checkNotFrozen();
         this.nodeType = nodeType;
     }
 
@@ -447,26 +552,20 @@ public abstract class QueryTreeNode implements Visitable
      * Accept a visitor, and call {@code v.visit()} on child nodes as
      * necessary. Sub-classes should not override this method, but instead
      * override the {@link #acceptChildren(Visitor)} method.
+     * <p>
+     * Children are visited before or after their parent according to
+     * {@link Visitor#visitChildrenFirst}. The tree is walked with an
+     * explicit stack, so its depth is not limited by the thread's.
      * 
      * @param v the visitor
      *
      * @exception StandardException on error
      */
     public final Visitable accept(Visitor v) throws StandardException {
-        final boolean childrenFirst = v.visitChildrenFirst(this);
-        final boolean skipChildren = v.skipChildren(this);
-
-        if (childrenFirst && !skipChildren && !v.stopTraversal()) {
-            acceptChildren(v);
-        }
-
-        final Visitable ret = v.stopTraversal() ? this : v.visit(this);
-
-        if (!childrenFirst && !skipChildren && !v.stopTraversal()) {
-            acceptChildren(v);
-        }
-
-        return ret;
+        if (v instanceof QueryTreeTraversal.ChildVisitor)
+            // Already inside a traversal, which is just gathering children.
+            return v.visit(this);
+        return new QueryTreeTraversal(v).traverse(this);
     }
 
     /**
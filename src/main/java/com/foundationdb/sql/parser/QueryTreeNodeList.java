@@ -75,14 +75,17 @@ public abstract class QueryTreeNodeList<N extends QueryTreeNode>
     }
 
     public void add(N n) {
+        checkNotFrozen();
         list.add(n);
     }
 
     public final N remove(int index) {
+        checkNotFrozen();
         return list.remove(index);
     }
 
     public final void remove(N n) {
+        checkNotFrozen();
         list.remove(n);
     }
 
@@ -91,18 +94,22 @@ public abstract class QueryTreeNodeList<N extends QueryTreeNode>
     }
 
     public final void set(int index, N n) {
+        checkNotFrozen();
         list.set(index, n);
     }
 
     public final void add(int index, N n) {
+        checkNotFrozen();
         list.add(index, n);
     }
 
     public final void addAll(QueryTreeNodeList<N> other) {
+        checkNotFrozen();
         list.addAll(other.list);
     }
 
     public final void clear() {
+        checkNotFrozen();
         list.clear();
     }
 
@@ -133,7 +140,7 @@ public abstract class QueryTreeNodeList<N extends QueryTreeNode>
      */
     public void printSubNodes(int depth) {
         for (int index = 0; index < size(); index++) {
-            debugPrint(formatNodeString("[" + index + "]:", depth));
+            debugPrint("[" + index + "]:", depth);
             N elt = get(index);
             elt.treePrint(depth);
         }
@@ -151,7 +158,7 @@ public abstract class QueryTreeNodeList<N extends QueryTreeNode>
 
         int size = size();
         for (int index = 0; index < size; index++) {
-            set(index, (N)get(index).accept(v));
+            list.set(index, (N)list.get(index).accept(v));
         }
     }
 }
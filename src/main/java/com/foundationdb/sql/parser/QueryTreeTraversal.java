@@ -0,0 +1,300 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+/**
+ * Drive a {@link Visitor} over a tree with an explicit stack instead of
+ * recursion, so that very deep trees, such as long chains of
+ * <code>AND</code> or deeply nested <code>CASE</code>, do not need a
+ * large thread stack.
+ * <p>
+ * The order of calls to the visitor is exactly that of the recursive
+ * definition in {@link QueryTreeNode#accept}, including
+ * {@link Visitor#visitChildrenFirst}, {@link Visitor#skipChildren} and
+ * {@link Visitor#stopTraversal}. Each node's existing
+ * <code>acceptChildren</code> is used to find its children. A replacement
+ * the visitor returns for a child is stored as soon as it is returned,
+ * as the recursive definition does, so the rest of the visit sees it.
+ * A {@link QueryTreeNode#freeze frozen} node is copied before any of its
+ * children are replaced, or when the visitor changes it while visiting
+ * it, so that the copy takes its place in the result.
+ */
+final class QueryTreeTraversal
+{
+    /** A pseudo-visitor that {@link QueryTreeNode#accept} hands each
+     * child directly, rather than starting another traversal.
+     */
+    static abstract class ChildVisitor implements Visitor {
+        /** The visitor on whose behalf children are being gathered. */
+        abstract Visitor getVisitor();
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return true;
+        }
+    }
+
+    private static final int ENTER = 0;
+    private static final int CHILDREN_BEFORE = 1;
+    private static final int VISIT = 2;
+    private static final int CHILDREN_AFTER = 3;
+    private static final int DONE = 4;
+
+    static final class Frame {
+        QueryTreeNode node;
+        int state;
+        boolean childrenFirst, skipChildren;
+        int childStart, childEnd, nextChild;
+        Visitable result;
+    }
+
+    // The traversals under way on this thread, innermost first.
+    private static final ThreadLocal<QueryTreeTraversal> current =
+        new ThreadLocal<QueryTreeTraversal>();
+
+    private final Visitor visitor;
+    private QueryTreeTraversal outer;
+    // The node being passed to the visitor and any copy made of it.
+    private QueryTreeNode visiting, visitingCopy;
+    private Frame[] frames = new Frame[16];
+    private int depth;
+    // Children of all the nodes on the stack.
+    private Visitable[] children = new Visitable[16];
+    private int nchildren;
+
+    /** Get the visitor actually being applied when a node is passed
+     * <code>v</code> in <code>acceptChildren</code>.
+     */
+    static Visitor getVisitor(Visitor v) {
+        if (v instanceof ChildVisitor)
+            return ((ChildVisitor)v).getVisitor();
+        return v;
+    }
+
+    private final ChildVisitor collector = new ChildVisitor() {
+            Visitor getVisitor() {
+                return visitor;
+            }
+            public Visitable visit(Visitable node) {
+                if (nchildren == children.length) {
+                    Visitable[] nc = new Visitable[nchildren * 2];
+                    System.arraycopy(children, 0, nc, 0, nchildren);
+                    children = nc;
+                }
+                children[nchildren++] = node;
+                return node;
+            }
+        };
+
+    // Children are found in the same order each time, so the one to
+    // replace is known by its position.
+    private int replacePosition, replaceTarget;
+    private Visitable replacement;
+    private final ChildVisitor replacer = new ChildVisitor() {
+            Visitor getVisitor() {
+                return visitor;
+            }
+            public Visitable visit(Visitable node) {
+                if (replacePosition++ == replaceTarget)
+                    return replacement;
+                return node;
+            }
+        };
+
+    public QueryTreeTraversal(Visitor visitor) {
+        this.visitor = visitor;
+    }
+
+    /** Get a copy of the given frozen node to change in its place, if
+     * it is being visited by some traversal on this thread.
+     * @return the copy, made the first time, or <code>null</code> if
+     * the node is not being visited.
+     */
+    static QueryTreeNode copyBeingVisited(QueryTreeNode node) 
+            throws StandardException {
+        for (QueryTreeTraversal t = current.get(); t != null; t = t.outer) {
+            if (t.visiting == node) {
+                if (t.visitingCopy == null)
+                    t.visitingCopy = node.copyForWrite();
+                return t.visitingCopy;
+            }
+        }
+        return null;
+    }
+
+    /** Get the copy already made of the given frozen node while it is
+     * being visited, if any.
+     */
+    static QueryTreeNode getVisitedCopy(QueryTreeNode node) {
+        for (QueryTreeTraversal t = current.get(); t != null; t = t.outer) {
+            if (t.visiting == node)
+                return t.visitingCopy;
+        }
+        return null;
+    }
+
+    public Visitable traverse(QueryTreeNode root) throws StandardException {
+        outer = current.get();
+        current.set(this);
+        try {
+            return traverseNodes(root);
+        }
+        finally {
+            visiting = visitingCopy = null;
+            if (outer == null)
+                current.remove();
+            else
+                current.set(outer);
+            outer = null;
+        }
+    }
+
+    private Visitable traverseNodes(QueryTreeNode root) throws StandardException {
+        push(root);
+        while (true) {
+            Frame frame = frames[depth - 1];
+            switch (frame.state) {
+            case ENTER:
+                frame.childrenFirst = visitor.visitChildrenFirst(frame.node);
+                frame.skipChildren = visitor.skipChildren(frame.node);
+                if (frame.childrenFirst && !frame.skipChildren &&
+                    !visitor.stopTraversal()) {
+                    collectChildren(frame);
+                    frame.state = CHILDREN_BEFORE;
+                }
+                else
+                    frame.state = VISIT;
+                break;
+            case VISIT:
+                if (visitor.stopTraversal())
+                    frame.result = frame.node;
+                else if (!frame.node.isFrozen())
+                    frame.result = visitor.visit(frame.node);
+                else {
+                    visiting = frame.node;
+                    try {
+                        frame.result = visitor.visit(frame.node);
+                    }
+                    finally {
+                        visiting = null;
+                    }
+                    if (visitingCopy != null) {
+                        // Changed while being visited.
+                        if (frame.result == frame.node)
+                            frame.result = visitingCopy;
+                        frame.node = visitingCopy;
+                        visitingCopy = null;
+                    }
+                }
+                if (!frame.childrenFirst && !frame.skipChildren &&
+                    !visitor.stopTraversal()) {
+                    collectChildren(frame);
+                    frame.state = CHILDREN_AFTER;
+                }
+                else
+                    frame.state = DONE;
+                break;
+            case CHILDREN_BEFORE:
+            case CHILDREN_AFTER:
+                if (frame.nextChild < frame.childEnd) {
+                    push((QueryTreeNode)children[frame.nextChild]);
+                }
+                else {
+                    releaseChildren(frame);
+                    frame.state = (frame.state == CHILDREN_BEFORE) ? VISIT : DONE;
+                }
+                break;
+            case DONE:
+                {
+                    Visitable result = frame.result;
+                    frame.node = null;
+                    frame.result = null;
+                    depth--;
+                    if (depth == 0)
+                        return result;
+                    Frame parent = frames[depth - 1];
+                    int index = parent.nextChild++;
+                    if (result != children[index])
+                        replaceChild(parent, index, result);
+                }
+                break;
+            }
+        }
+    }
+
+    private void push(QueryTreeNode node) {
+        if (depth == frames.length) {
+            Frame[] nf = new Frame[depth * 2];
+            System.arraycopy(frames, 0, nf, 0, depth);
+            frames = nf;
+        }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = new Frame();
+            frames[depth] = frame;
+        }
+        depth++;
+        frame.node = node;
+        frame.state = ENTER;
+    }
+
+    private void collectChildren(Frame frame) throws StandardException {
+        frame.childStart = frame.nextChild = nchildren;
+        frame.node.acceptChildren(collector);
+        frame.childEnd = nchildren;
+    }
+
+    private void replaceChild(Frame frame, int index, Visitable result) 
+            throws StandardException {
+        if (frame.node.isFrozen()) {
+            // Copy on write, leaving the shared original alone.
+            QueryTreeNode copy = frame.node.copyForWrite();
+            if (frame.result == frame.node)
+                frame.result = copy;
+            frame.node = copy;
+        }
+        children[index] = result;
+        if (frame.node instanceof QueryTreeNodeList) {
+            // Its children are just its elements, which may be many.
+            ((QueryTreeNodeList)frame.node).getList().set(index - frame.childStart, 
+                                                          result);
+        }
+        else {
+            replacePosition = frame.childStart;
+            replaceTarget = index;
+            replacement = result;
+            frame.node.acceptChildren(replacer);
+            replacement = null;
+        }
+    }
+
+    private void releaseChildren(Frame frame) {
+        for (int i = frame.childStart; i < frame.childEnd; i++) {
+            children[i] = null;
+        }
+        nchildren = frame.childStart;
+    }
+
+}
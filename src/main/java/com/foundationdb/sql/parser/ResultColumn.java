@@ -188,6 +188,7 @@ public class ResultColumn extends ValueNode
     }
 
     public void setDefaultColumn(boolean value) {
+        checkNotFrozen();
         defaultColumn = value;
     }
 
@@ -259,6 +260,7 @@ public class ResultColumn extends ValueNode
      */
 
     public void setExpression(ValueNode expression) {
+        checkNotFrozen();
         this.expression = expression;
     }
 
@@ -279,6 +281,7 @@ public class ResultColumn extends ValueNode
      * @exception StandardException Thrown on error
      */
     void setExpressionToNullNode() throws StandardException {
+        checkNotFrozen();
         setExpression(getNullNode(getType()));
     }
 
@@ -293,6 +296,7 @@ public class ResultColumn extends ValueNode
      */
 
     public void setName(String name) {
+        checkNotFrozen();
         if (this.name == null) {
             this.name = name;
         }
@@ -315,6 +319,7 @@ public class ResultColumn extends ValueNode
      * Set that this result column name is generated.
      */
     public void setNameGenerated(boolean value) {
+        checkNotFrozen();
         isNameGenerated = value;
     }
 
@@ -335,6 +340,7 @@ public class ResultColumn extends ValueNode
      */
 
     public void setVirtualColumnId(int id) {
+        checkNotFrozen();
         virtualColumnId = id;
     }
 
@@ -417,5 +423,12 @@ public class ResultColumn extends ValueNode
         }
         return false;
     }
+
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        return 31 * super.structuralHash() + structuralHash(expression);
+    }
         
 }
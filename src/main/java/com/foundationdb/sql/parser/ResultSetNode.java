@@ -81,6 +81,7 @@ public abstract class ResultSetNode extends QueryTreeNode
      * Remember that this node is the source result set for an INSERT.
      */
     public void setInsertSource() {
+        checkNotFrozen();
         insertSource = true;
     }
 
@@ -90,6 +91,7 @@ public abstract class ResultSetNode extends QueryTreeNode
      * @param newRCL The new ResultColumnList for this ResultSetNode
      */
     public void setResultColumns(ResultColumnList newRCL) {
+        checkNotFrozen();
         resultColumns = newRCL;
     }
 
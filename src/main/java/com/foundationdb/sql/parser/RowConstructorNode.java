@@ -44,6 +44,14 @@ public class RowConstructorNode extends ValueNode
         return list.isEquivalent(other.list) && depth == other.depth;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash()
+    {
+        return 31 * (31 * super.structuralHash() + list.structuralHash()) + depth;
+    }
+
     @Override
     public void copyFrom(QueryTreeNode o) throws StandardException
     {
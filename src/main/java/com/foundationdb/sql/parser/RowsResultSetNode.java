@@ -29,6 +29,8 @@ import java.util.List;
 public class RowsResultSetNode extends FromTable
 {
     private List<RowResultSetNode> rows;
+    // Held instead of rows, which are only made from it when asked for.
+    private ColumnarRows columnarRows;
 
     /**
      * Initializer for a RowsResultSetNode.
@@ -45,13 +47,82 @@ public class RowsResultSetNode extends FromTable
     }
 
     public List<RowResultSetNode> getRows() {
+        if (columnarRows != null) {
+            try {
+                materialize();
+            }
+            catch (StandardException ex) {
+                // Not possible for the literals that are held by column.
+                throw new IllegalStateException(ex);
+            }
+        }
         return rows;
     }
 
     public void addRow(RowResultSetNode row) {
+        if (columnarRows != null) {
+            try {
+                if (columnarRows.addRow(row))
+                    return;
+                materialize();
+            }
+            catch (StandardException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
         rows.add(row);
     }
 
+    /** Get the number of rows, without making them if held by column. */
+    public int getRowCount() {
+        if (columnarRows != null)
+            return columnarRows.getRowCount();
+        return rows.size();
+    }
+
+    /**
+     * Are the rows held by column, as just the values of their literals?
+     * Then {@link #getColumnarRows} gives them and {@link #getRows} makes
+     * nodes for them, after which those are the rows and they are no longer
+     * held by column. So does any visitor that is not a
+     * {@link ColumnarRowsVisitor}, such as type computation. Rows added
+     * later that are not all literals or parameters also stop it.
+     */
+    public boolean isColumnar() {
+        return (columnarRows != null);
+    }
+
+    /** The rows held by column, or <code>null</code>. */
+    public ColumnarRows getColumnarRows() {
+        return columnarRows;
+    }
+
+    /**
+     * Hold the rows by column, if they are all literals or parameters,
+     * as the parser makes them.
+     *
+     * @return whether the rows are now held by column
+     */
+    public boolean makeColumnar() throws StandardException {
+        if (columnarRows != null)
+            return true;
+        ColumnarRows columnar = new ColumnarRows(resultColumns.size(),
+                                                 getNodeFactory(), getParserContext());
+        for (RowResultSetNode row : rows) {
+            if (!columnar.addRow(row))
+                return false;
+        }
+        columnarRows = columnar;
+        rows = null;
+        return true;
+    }
+
+    /** Make the nodes of rows held by column, which then replace them. */
+    protected void materialize() throws StandardException {
+        rows = columnarRows.makeRows();
+        columnarRows = null;
+    }
+
     public String statementToString() {
         return "VALUES";
     }
@@ -63,6 +134,11 @@ public class RowsResultSetNode extends FromTable
         super.copyFrom(node);
 
         RowsResultSetNode other = (RowsResultSetNode)node;
+        if (other.columnarRows != null) {
+            rows = null;
+            columnarRows = other.columnarRows.copy(getNodeFactory(), getParserContext());
+            return;
+        }
         rows = new ArrayList<RowResultSetNode>(other.rows.size());
         for (RowResultSetNode row : other.rows)
             rows.add((RowResultSetNode)getNodeFactory().copyNode(row, getParserContext()));
@@ -77,8 +153,19 @@ public class RowsResultSetNode extends FromTable
 
     public void printSubNodes(int depth) {
         super.printSubNodes(depth);
+        List<RowResultSetNode> rows = this.rows;
+        if (columnarRows != null) {
+            // Print rows as the parser would have made them, but
+            // leave them held by column.
+            try {
+                rows = columnarRows.makeRows();
+            }
+            catch (StandardException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
         for (int index = 0; index < rows.size(); index++) {
-            debugPrint(formatNodeString("[" + index + "]:", depth));
+            debugPrint("[" + index + "]:", depth);
             RowResultSetNode row = rows.get(index);
             row.treePrint(depth);
         }
@@ -94,6 +181,14 @@ public class RowsResultSetNode extends FromTable
     void acceptChildren(Visitor v) throws StandardException {
         super.acceptChildren(v);
 
+        if (columnarRows != null) {
+            if (QueryTreeTraversal.getVisitor(v) instanceof ColumnarRowsVisitor) {
+                columnarRows.acceptNodes(v);
+                return;
+            }
+            materialize();
+        }
+
         int size = rows.size();
         for (int index = 0; index < size; index++) {
             rows.set(index, (RowResultSetNode)rows.get(index).accept(v));
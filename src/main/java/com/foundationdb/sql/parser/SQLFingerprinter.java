@@ -0,0 +1,391 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+/**
+ * Compute a normalized fingerprint of SQL text using only the lexer.
+ * <p>
+ * Keywords are uppercased, unquoted identifiers standardized like the
+ * parser would, literals and parameters replaced with <code>?</code>, a
+ * sign before a numeric literal folded into it where it cannot be a
+ * binary operator, whitespace
+ * and comments collapsed, and <code>IN</code> lists of only literals
+ * folded into a single <code>(?)</code>. So statements differing only in
+ * those respects get the same hash and canonical text.
+ * <p>
+ * The hash is 128 bits, returned as two <code>long</code>s. Computing
+ * only the hash does not allocate anything beyond what the lexer itself
+ * does for each token.
+ * <p>
+ * Like {@link SQLParser}, a fingerprinter can be reused but is not
+ * thread-safe.
+ */
+public class SQLFingerprinter
+{
+    // Logical token categories, after sign folding.
+    private static final int OTHER = 0;
+    private static final int LITERAL = 1;
+    private static final int NUMERIC = 2;
+    private static final int VALUE = 3; // Identifier, right paren, etc.
+    private static final int KEYWORD = 4;
+    private static final int SIGN = 5;
+
+    private static final int[] CATEGORIES;
+    static {
+        CATEGORIES = new int[SQLGrammarConstants.tokenImage.length];
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            if (isKeyword(i))
+                CATEGORIES[i] = KEYWORD;
+        }
+        CATEGORIES[SQLGrammarConstants.UINT] = NUMERIC;
+        CATEGORIES[SQLGrammarConstants.EXACT_NUMERIC] = NUMERIC;
+        CATEGORIES[SQLGrammarConstants.APPROXIMATE_NUMERIC] = NUMERIC;
+        CATEGORIES[SQLGrammarConstants.SINGLEQUOTED_STRING] = LITERAL;
+        CATEGORIES[SQLGrammarConstants.DOUBLEQUOTED_STRING] = LITERAL;
+        CATEGORIES[SQLGrammarConstants.ESCAPEQUOTED_STRING] = LITERAL;
+        CATEGORIES[SQLGrammarConstants.DOUBLEDOLLAR_STRING] = LITERAL;
+        CATEGORIES[SQLGrammarConstants.HEX_STRING] = LITERAL;
+        CATEGORIES[SQLGrammarConstants.QUESTION_MARK] = LITERAL;
+        CATEGORIES[SQLGrammarConstants.DOLLAR_N] = LITERAL;
+        CATEGORIES[SQLGrammarConstants.NULL] = VALUE;
+        CATEGORIES[SQLGrammarConstants.TRUE] = VALUE;
+        CATEGORIES[SQLGrammarConstants.FALSE] = VALUE;
+        CATEGORIES[SQLGrammarConstants.END] = VALUE;
+        CATEGORIES[SQLGrammarConstants.IDENTIFIER] = VALUE;
+        CATEGORIES[SQLGrammarConstants.BACKQUOTED_IDENTIFIER] = VALUE;
+        CATEGORIES[SQLGrammarConstants.DOUBLEQUOTED_IDENTIFIER] = VALUE;
+        CATEGORIES[SQLGrammarConstants.CURRENT_DATE] = VALUE;
+        CATEGORIES[SQLGrammarConstants.CURRENT_TIME] = VALUE;
+        CATEGORIES[SQLGrammarConstants.CURRENT_TIMESTAMP] = VALUE;
+        CATEGORIES[SQLGrammarConstants.CURRENT_USER] = VALUE;
+        CATEGORIES[SQLGrammarConstants.CURRENT_ROLE] = VALUE;
+        CATEGORIES[SQLGrammarConstants.CURRENT_SCHEMA] = VALUE;
+        CATEGORIES[SQLGrammarConstants.SESSION_USER] = VALUE;
+        CATEGORIES[SQLGrammarConstants.SYSTEM_USER] = VALUE;
+        CATEGORIES[SQLGrammarConstants.USER] = VALUE;
+        CATEGORIES[SQLGrammarConstants.RIGHT_PAREN] = VALUE;
+        CATEGORIES[SQLGrammarConstants.RIGHT_BRACKET] = VALUE;
+        CATEGORIES[SQLGrammarConstants.PLUS_SIGN] = SIGN;
+        CATEGORIES[SQLGrammarConstants.MINUS_SIGN] = SIGN;
+    }
+
+    // Tokens after which a + or - can only be a sign, not a binary operator.
+    private static final boolean[] SIGN_CONTEXT;
+    static {
+        SIGN_CONTEXT = new boolean[SQLGrammarConstants.tokenImage.length];
+        int[] kinds = {
+            // Operators and punctuation.
+            SQLGrammarConstants.LEFT_PAREN, SQLGrammarConstants.LEFT_BRACKET,
+            SQLGrammarConstants.COMMA, SQLGrammarConstants.PLUS_SIGN,
+            SQLGrammarConstants.MINUS_SIGN, SQLGrammarConstants.ASTERISK,
+            SQLGrammarConstants.SOLIDUS, SQLGrammarConstants.PERCENT,
+            SQLGrammarConstants.ASTERISK_ASTERISK, SQLGrammarConstants.CARET,
+            SQLGrammarConstants.AMPERSAND, SQLGrammarConstants.VERTICAL_BAR,
+            SQLGrammarConstants.TILDE, SQLGrammarConstants.DOUBLE_LESS,
+            SQLGrammarConstants.DOUBLE_GREATER, SQLGrammarConstants.DOUBLE_AMPERSAND,
+            SQLGrammarConstants.CONCATENATION_OPERATOR,
+            SQLGrammarConstants.EQUALS_OPERATOR, SQLGrammarConstants.NOT_EQUALS_OPERATOR,
+            SQLGrammarConstants.NOT_EQUALS_OPERATOR2, SQLGrammarConstants.LESS_THAN_OPERATOR,
+            SQLGrammarConstants.LESS_THAN_OR_EQUALS_OPERATOR,
+            SQLGrammarConstants.GREATER_THAN_OPERATOR,
+            SQLGrammarConstants.GREATER_THAN_OR_EQUALS_OPERATOR,
+            // Keywords that start an expression.
+            SQLGrammarConstants.SELECT, SQLGrammarConstants.DISTINCT,
+            SQLGrammarConstants.ALL, SQLGrammarConstants.ANY, SQLGrammarConstants.SOME,
+            SQLGrammarConstants.WHERE, SQLGrammarConstants.HAVING, SQLGrammarConstants.ON,
+            SQLGrammarConstants.AND, SQLGrammarConstants.OR, SQLGrammarConstants.NOT,
+            SQLGrammarConstants.CASE, SQLGrammarConstants.WHEN, SQLGrammarConstants.THEN,
+            SQLGrammarConstants.ELSE, SQLGrammarConstants.BETWEEN, SQLGrammarConstants.LIKE,
+            SQLGrammarConstants.ESCAPE, SQLGrammarConstants.DIV, SQLGrammarConstants.MOD,
+            SQLGrammarConstants.INTERVAL, SQLGrammarConstants.LIMIT,
+            SQLGrammarConstants.OFFSET, SQLGrammarConstants.TO
+        };
+        for (int kind : kinds)
+            SIGN_CONTEXT[kind] = true;
+    }
+
+    // States for folding IN lists.
+    private static final int IN_NONE = 0;
+    private static final int IN_KEYWORD = 1; // IN
+    private static final int IN_OPEN = 2;    // IN (
+    private static final int IN_LITERAL = 3; // IN ( ? [, ?]*
+    private static final int IN_COMMA = 4;   // IN ( ? [, ?]* ,
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long MIX_OFFSET = 0x6a09e667f3bcc909L;
+    private static final long MIX_PRIME = 0x9e3779b97f4a7c15L;
+
+    private SQLParserContext parserContext;
+    private StringCharStream charStream;
+    private SQLGrammarTokenManager tokenManager;
+
+    private StringBuilder canonical;
+    private long hash1, hash2;
+    private boolean first, noSpace;
+    private int lastKind, inState, inCount;
+    private Token pendingSign;
+
+    /** Make a fingerprinter that lexes like the given parser. */
+    public SQLFingerprinter(SQLParserContext parserContext) {
+        this.parserContext = parserContext;
+        charStream = new StringCharStream("");
+        tokenManager = new SQLGrammarTokenManager(null, charStream);
+        // The lexer consults the grammar for parser features.
+        SQLGrammar grammar = new SQLGrammar(tokenManager);
+        grammar.setParserContext(parserContext);
+        tokenManager.parser = grammar;
+    }
+
+    /** Get the low 64 bits of the fingerprint of the given SQL. 
+     * The high 64 bits are then available from {@link #getHashHigh}.
+     */
+    public long fingerprint(String sqlText) throws StandardException {
+        run(sqlText, null);
+        return hash1;
+    }
+
+    /** Get the canonical form of the given SQL. 
+     * The hash is then available from {@link #getHashLow} and {@link #getHashHigh}.
+     */
+    public String canonicalize(String sqlText) throws StandardException {
+        StringBuilder str = new StringBuilder(sqlText.length());
+        run(sqlText, str);
+        return str.toString();
+    }
+
+    /** Get the low 64 bits of the last computed fingerprint. */
+    public long getHashLow() {
+        return hash1;
+    }
+
+    /** Get the high 64 bits of the last computed fingerprint. */
+    public long getHashHigh() {
+        return hash2;
+    }
+
+    protected void run(String sqlText, StringBuilder canonical) 
+            throws StandardException {
+        this.canonical = canonical;
+        hash1 = FNV_OFFSET;
+        hash2 = MIX_OFFSET;
+        first = true;
+        noSpace = false;
+        lastKind = SQLGrammarConstants.EOF;
+        inState = IN_NONE;
+        pendingSign = null;
+        charStream.ReInit(sqlText);
+        tokenManager.ReInit(charStream);
+        try {
+            while (true) {
+                Token token = tokenManager.getNextToken();
+                if (token.kind == SQLGrammarConstants.EOF)
+                    break;
+                int category = CATEGORIES[token.kind];
+                if (pendingSign != null) {
+                    Token sign = pendingSign;
+                    pendingSign = null;
+                    if (category == NUMERIC) {
+                        logical(LITERAL, token);
+                        continue;
+                    }
+                    logical(OTHER, sign);
+                }
+                if ((category == SIGN) && SIGN_CONTEXT[lastKind]) {
+                    pendingSign = token;
+                    continue;
+                }
+                logical((category == NUMERIC) ? LITERAL : category, token);
+            }
+            if (pendingSign != null)
+                logical(OTHER, pendingSign);
+            flushIn(null);
+        }
+        catch (TokenMgrError ex) {
+            if (ex.errorCode == TokenMgrError.LEXICAL_ERROR)
+                throw new SQLParserException(ex.getMessage(),
+                                             ex,
+                                             SQLParser.lineColumnErrorPosition(ex.errorLine,
+                                                                               ex.errorColumn,
+                                                                               sqlText));
+            else
+                throw new StandardException(ex);
+        }
+        finally {
+            this.canonical = null;
+        }
+        hash1 = mix(hash1);
+        hash2 = mix(hash2 ^ hash1);
+    }
+
+    /** Handle a token after sign folding, which might be part of an IN list. */
+    protected void logical(int category, Token token) {
+        lastKind = token.kind;
+        switch (inState) {
+        case IN_KEYWORD:
+            if (token.kind == SQLGrammarConstants.LEFT_PAREN) {
+                inState = IN_OPEN;
+                return;
+            }
+            break;
+        case IN_OPEN:
+            if (category == LITERAL) {
+                inState = IN_LITERAL;
+                inCount = 1;
+                return;
+            }
+            break;
+        case IN_LITERAL:
+            if (token.kind == SQLGrammarConstants.COMMA) {
+                inState = IN_COMMA;
+                return;
+            }
+            if (token.kind == SQLGrammarConstants.RIGHT_PAREN) {
+                inState = IN_NONE;
+                emitPunctuation("(", SQLGrammarConstants.LEFT_PAREN);
+                emitPunctuation("?", SQLGrammarConstants.QUESTION_MARK);
+                emitPunctuation(")", SQLGrammarConstants.RIGHT_PAREN);
+                return;
+            }
+            break;
+        case IN_COMMA:
+            if (category == LITERAL) {
+                inState = IN_LITERAL;
+                inCount++;
+                return;
+            }
+            break;
+        }
+        flushIn(token);
+        emit(category, token);
+        if (token.kind == SQLGrammarConstants.IN)
+            inState = IN_KEYWORD;
+    }
+
+    /** Output what was held back for a possible IN list that turned out
+     * not to be all literals.
+     */
+    protected void flushIn(Token token) {
+        switch (inState) {
+        case IN_NONE:
+        case IN_KEYWORD:
+            break;
+        case IN_OPEN:
+            emitPunctuation("(", SQLGrammarConstants.LEFT_PAREN);
+            break;
+        case IN_LITERAL:
+        case IN_COMMA:
+            emitPunctuation("(", SQLGrammarConstants.LEFT_PAREN);
+            for (int i = 0; i < inCount; i++) {
+                if (i > 0)
+                    emitPunctuation(",", SQLGrammarConstants.COMMA);
+                emitPunctuation("?", SQLGrammarConstants.QUESTION_MARK);
+            }
+            if (inState == IN_COMMA)
+                emitPunctuation(",", SQLGrammarConstants.COMMA);
+            break;
+        }
+        inState = IN_NONE;
+    }
+
+    protected void emit(int category, Token token) {
+        switch (category) {
+        case LITERAL:
+            emitPunctuation("?", SQLGrammarConstants.QUESTION_MARK);
+            break;
+        case KEYWORD:
+            separate(token.kind);
+            appendCase(token.image, SQLParserContext.IdentifierCase.UPPER);
+            break;
+        default:
+            separate(token.kind);
+            if (token.kind == SQLGrammarConstants.IDENTIFIER)
+                appendCase(token.image, parserContext.getIdentifierCase());
+            else if (isKeyword(token.kind))
+                appendCase(token.image, SQLParserContext.IdentifierCase.UPPER);
+            else
+                appendCase(token.image, SQLParserContext.IdentifierCase.PRESERVE);
+        }
+    }
+
+    protected static boolean isKeyword(int kind) {
+        String image = SQLGrammarConstants.tokenImage[kind];
+        return ((image.length() > 2) && 
+                (image.charAt(0) == '"') && 
+                Character.isLetter(image.charAt(1)));
+    }
+
+    protected void emitPunctuation(String image, int kind) {
+        separate(kind);
+        appendCase(image, SQLParserContext.IdentifierCase.PRESERVE);
+    }
+
+    /** Add a space before this token if needed. */
+    protected void separate(int kind) {
+        switch (kind) {
+        case SQLGrammarConstants.COMMA:
+        case SQLGrammarConstants.RIGHT_PAREN:
+        case SQLGrammarConstants.RIGHT_BRACKET:
+        case SQLGrammarConstants.PERIOD:
+        case SQLGrammarConstants.SEMICOLON:
+            break;
+        default:
+            if (!first && !noSpace)
+                append(' ');
+        }
+        first = false;
+        noSpace = ((kind == SQLGrammarConstants.LEFT_PAREN) ||
+                   (kind == SQLGrammarConstants.LEFT_BRACKET) ||
+                   (kind == SQLGrammarConstants.PERIOD));
+    }
+
+    protected void appendCase(String image, SQLParserContext.IdentifierCase identifierCase) {
+        int len = image.length();
+        for (int i = 0; i < len; i++) {
+            char ch = image.charAt(i);
+            switch (identifierCase) {
+            case UPPER:
+                ch = Character.toUpperCase(ch);
+                break;
+            case LOWER:
+                ch = Character.toLowerCase(ch);
+                break;
+            }
+            append(ch);
+        }
+    }
+
+    protected void append(char ch) {
+        hash1 = (hash1 ^ ch) * FNV_PRIME;
+        hash2 = Long.rotateLeft(hash2 ^ ch, 23) * MIX_PRIME;
+        if (canonical != null)
+            canonical.append(ch);
+    }
+
+    /** Final avalanche, from MurmurHash3. */
+    protected static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
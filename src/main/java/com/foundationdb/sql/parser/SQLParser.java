@@ -68,6 +68,10 @@ public class SQLParser implements SQLParserContext {
 
     NodeFactory nodeFactory;
 
+    // The settings that the last deferred subquery was deferred with,
+    // shared by any others deferred while they are unchanged.
+    private ParserSettings parserSettings;
+
     /** Make a new parser.
      * Parser can be reused.
      */
@@ -147,10 +151,55 @@ public class SQLParser implements SQLParserContext {
         }
     }
 
+    /** Parse the text of a subquery that was deferred, using a separate
+     * grammar so that the state of the parser that deferred it, which may
+     * since have gone on to other statements, is left alone. Features,
+     * identifier case and length limits are those it was deferred with,
+     * rather than those of any parser now.
+     */
+    static SubqueryNode parseDeferredSubquery(SubqueryNode subquery,
+                                              String text, int textOffset,
+                                              int beginOffset, int endOffset)
+            throws StandardException {
+        StringCharStream charStream =
+            new StringCharStream(text,
+                                 beginOffset - textOffset, endOffset + 1 - textOffset,
+                                 textOffset);
+        SQLGrammarTokenManager tokenManager = new SQLGrammarTokenManager(null, charStream);
+        SQLGrammar parser = new SQLGrammar(tokenManager);
+        parser.setParserContext(subquery.getParserContext());
+        parser.setDeferredSettings(subquery.getDeferredSettings());
+        tokenManager.parser = parser;
+        try {
+            return parser.parseDeferredSubquery(text, textOffset,
+                                                subquery.getSubqueryType());
+        }
+        // Error positions are 1-based in the whole input, like those of
+        // the statement that deferred it.
+        catch (ParseException ex) {
+            int position = beginOffset + 1;
+            if ((ex.currentToken != null) && (ex.currentToken.next != null))
+                position = ex.currentToken.next.beginOffset + 1;
+            throw new SQLParserException(standardizeEol(ex.getMessage()),
+                                         ex, position);
+        }
+        catch (TokenMgrError ex) {
+            if (ex.errorCode == TokenMgrError.LEXICAL_ERROR)
+                throw new SQLParserException(ex.getMessage(),
+                                             ex,
+                                             beginOffset + 
+                                             lineColumnErrorPosition(ex.errorLine,
+                                                                     ex.errorColumn,
+                                                                     subquery.getDeferredText()));
+            else
+                throw new StandardException(ex);
+        }
+    }
+
     /** Undo ParseException.initialise()'s eol handling. 
      * Want something platform independent.
      */
-    private static String standardizeEol(String msg) {
+    static String standardizeEol(String msg) {
         String eol = System.getProperty("line.separator", "\n");
         if (eol.equals("\n"))
             return msg;
@@ -165,7 +214,7 @@ public class SQLParser implements SQLParserContext {
     }
 
     /** Translate line position into linear position. */
-    private static int lineColumnErrorPosition(int line, int column, String sql) {
+    static int lineColumnErrorPosition(int line, int column, String sql) {
         if (line <= 0) return 0;
         int position = 0;
         while (line-- > 1) {
@@ -200,12 +249,31 @@ public class SQLParser implements SQLParserContext {
             parser.ReInit(tokenManager);
         }
         tokenManager.parser = parser;
+        resetStatement();
+    }
+
+    /** Clear any state left from the previous statement. */
+    void resetStatement() {
         parameterList = new ArrayList<ParameterNode>();
         returnParameterFlag = false;
         printedObjectsMap = null;
         generatedColumnNameIndex = 1;
     }
 
+    /** Note the text of a statement parsed by some other means. */
+    void setSQLText(String sqlText) {
+        this.sqlText = sqlText;
+    }
+
+    /** Drop any references to the last statement parsed, so that an
+     * idle parser does not keep its text, tokens or parameters reachable.
+     */
+    protected void reset() throws StandardException {
+        reinit("");
+        sqlText = null;
+        parameterList = null;
+    }
+
     /** Get maximum length of a string literal. */
     public int getMaxStringLiteralLength() {
         return maxStringLiteralLength;
@@ -289,4 +357,11 @@ public class SQLParser implements SQLParserContext {
         return IdentifierCase.LOWER;
     }
 
+    /** Get the settings to parse a subquery deferred now with. */
+    ParserSettings getParserSettings() {
+        if ((parserSettings == null) || !parserSettings.matches(this))
+            parserSettings = new ParserSettings(this);
+        return parserSettings;
+    }
+
 }
@@ -37,4 +37,14 @@ public enum SQLParserFeature
     DOUBLE_QUOTED_STRING,
     /** Allows {@code !} as {@code NOT}, but with a higher precedence. */
     INFIX_NOT_OPERATOR,
+    /** Holds <code>IN</code> lists of just integer or just string literals
+     * as their values; see {@link InListOperatorNode#compact}. */
+    COMPACT_IN_LISTS,
+    /** Holds the rows of a multi-row <code>VALUES</code> of literals and
+     * parameters by column; see {@link RowsResultSetNode#makeColumnar}. */
+    COLUMNAR_VALUES,
+    /** Leaves the query expressions of subqueries, derived tables and
+     * views without parameters as text until they are needed; see
+     * {@link SubqueryNode#isDeferred}. */
+    DEFERRED_SUBQUERIES,
 }
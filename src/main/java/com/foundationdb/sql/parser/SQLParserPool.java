@@ -0,0 +1,495 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of identically configured {@link SQLParser}s.
+ * <p>
+ * An individual parser is not thread-safe, but it is expensive to
+ * create, since the generated grammar allocates its lookahead state up
+ * front. The pool hands out parsers that all have the same feature set
+ * and limits, and keeps at most <code>maxIdle</code> of them around
+ * between uses, so memory is bounded no matter how many threads
+ * (including virtual threads) share it.
+ * <pre>
+ * SQLParser parser = pool.acquire();
+ * try {
+ *     StatementNode stmt = parser.parseStatement(sql);
+ *     List&lt;ParameterNode&gt; params = parser.getParameterList();
+ *     ...
+ * }
+ * finally {
+ *     pool.release(parser);
+ * }
+ * </pre>
+ * <p>
+ * {@link #parse} does the same for a single statement.
+ * {@link #parseAll} parses a batch of independent statements in parallel
+ * using the pool's parsers.
+ */
+public class SQLParserPool
+{
+    public static final int DEFAULT_MAX_IDLE =
+        2 * Runtime.getRuntime().availableProcessors();
+
+    private final Set<SQLParserFeature> features;
+    private final int maxStringLiteralLength, maxIdentifierLength;
+    private final int maxIdle;
+    private final ConcurrentLinkedQueue<SQLParser> idle =
+        new ConcurrentLinkedQueue<SQLParser>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /** Make a pool of parsers with the default configuration. */
+    public SQLParserPool() {
+        this(new SQLParser(), DEFAULT_MAX_IDLE);
+    }
+
+    /** Make a pool of parsers with the given features. */
+    public SQLParserPool(Set<SQLParserFeature> features, int maxIdle) {
+        this(parserWithFeatures(features), maxIdle);
+    }
+
+    /** Make a pool of parsers configured like <code>template</code>.
+     * The template itself is not handed out.
+     */
+    public SQLParserPool(SQLParser template, int maxIdle) {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("Negative maxIdle: " + maxIdle);
+        this.features = EnumSet.noneOf(SQLParserFeature.class);
+        this.features.addAll(template.getFeatures());
+        this.maxStringLiteralLength = template.getMaxStringLiteralLength();
+        this.maxIdentifierLength = template.getMaxIdentifierLength();
+        this.maxIdle = maxIdle;
+    }
+
+    private static SQLParser parserWithFeatures(Set<SQLParserFeature> features) {
+        SQLParser parser = new SQLParser();
+        parser.getFeatures().clear();
+        parser.getFeatures().addAll(features);
+        return parser;
+    }
+
+    /** Get the features that every parser from this pool has. */
+    public Set<SQLParserFeature> getFeatures() {
+        return EnumSet.copyOf(features);
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /** Get the number of parsers currently available for reuse. */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /** Get a parser for the exclusive use of the caller until it is
+     * given back with {@link #release}.
+     */
+    public SQLParser acquire() {
+        SQLParser parser = idle.poll();
+        if (parser != null) {
+            idleCount.decrementAndGet();
+            return parser;
+        }
+        return newParser();
+    }
+
+    /** Return a parser obtained from {@link #acquire}.
+     * The caller must not use it again afterwards.
+     */
+    public void release(SQLParser parser) {
+        try {
+            parser.reset();
+        }
+        catch (StandardException ex) {
+            return;             // Do not keep a parser that cannot be reused.
+        }
+        configure(parser);
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;             // Let it be garbage collected.
+        }
+        idle.offer(parser);
+    }
+
+    /** Parse a single statement with a pooled parser.
+     * The parser is released before this returns, so its parameter list
+     * is gone; use {@link #parse} when the parameters are needed.
+     */
+    public StatementNode parseStatement(String sqlText) throws StandardException {
+        SQLParser parser = acquire();
+        try {
+            return parser.parseStatement(sqlText);
+        }
+        finally {
+            release(parser);
+        }
+    }
+
+    /** Parse a single statement with a pooled parser, keeping its
+     * parameters along with it.
+     * @throws StandardException if the statement does not parse, rather
+     * than returning it in the result.
+     */
+    public ParseResult parse(String sqlText) throws StandardException {
+        ParseResult result = new ParseResult(sqlText, 0);
+        SQLParser parser = acquire();
+        try {
+            result.statement = parser.parseStatement(sqlText);
+            result.parameterList = parser.getParameterList();
+        }
+        finally {
+            release(parser);
+        }
+        return result;
+    }
+
+    /** Parse multiple statements delimited by semicolons with a pooled parser. */
+    public List<StatementNode> parseStatements(String sqlText) throws StandardException {
+        SQLParser parser = acquire();
+        try {
+            return parser.parseStatements(sqlText);
+        }
+        finally {
+            release(parser);
+        }
+    }
+
+    /** The outcome of parsing one statement of a batch. */
+    public static class ParseResult {
+        private String sqlText;
+        private int scriptOffset;
+        private StatementNode statement;
+        private List<ParameterNode> parameterList;
+        private StandardException exception;
+
+        public ParseResult(String sqlText, int scriptOffset) {
+            this.sqlText = sqlText;
+            this.scriptOffset = scriptOffset;
+        }
+
+        public String getSQLText() {
+            return sqlText;
+        }
+
+        /** Get the position of this statement in the script it was
+         * split from, or <code>0</code> if not split.
+         */
+        public int getScriptOffset() {
+            return scriptOffset;
+        }
+
+        /** Get the parsed statement, or <code>null</code> if there was an error. */
+        public StatementNode getStatement() {
+            return statement;
+        }
+
+        public List<ParameterNode> getParameterList() {
+            return parameterList;
+        }
+
+        /** Get the error parsing this statement, if any. */
+        public StandardException getException() {
+            return exception;
+        }
+
+        protected void parse(SQLParser parser) {
+            try {
+                statement = parser.parseStatement(sqlText);
+                parameterList = parser.getParameterList();
+            }
+            catch (StandardException ex) {
+                exception = ex;
+            }
+            catch (RuntimeException ex) {
+                exception = new StandardException(ex);
+            }
+            catch (StackOverflowError ex) {
+                // Nested too deeply: a problem with just this statement.
+                exception = new StandardException(ex);
+            }
+        }
+
+        /** Record something other than a parse error stopping this statement. */
+        protected void failed(Throwable ex) {
+            statement = null;
+            parameterList = null;
+            exception = new StandardException(ex);
+        }
+    }
+
+    /** Parse independent statements in parallel.
+     * Each worker takes statements in turn with its own pooled parser.
+     * Errors are reported in the individual results. If anything else
+     * goes wrong, such as running out of memory, it is also reported
+     * in the result for that statement, and then thrown once all the
+     * workers have finished.
+     * @return results in the same order as <code>sqlTexts</code>
+     */
+    public List<ParseResult> parseAll(Collection<String> sqlTexts, Executor executor)
+            throws InterruptedException {
+        return parseAll(sqlTexts, executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Parse independent statements using at most <code>parallelism</code> workers. */
+    public List<ParseResult> parseAll(Collection<String> sqlTexts, Executor executor,
+                                      int parallelism)
+            throws InterruptedException {
+        List<ParseResult> results = new ArrayList<ParseResult>(sqlTexts.size());
+        for (String sqlText : sqlTexts) {
+            results.add(new ParseResult(sqlText, 0));
+        }
+        parseResults(results, executor, parallelism);
+        return results;
+    }
+
+    /** Split a script into statements on top-level semicolons and
+     * parse them in parallel.
+     * @see #splitStatements
+     */
+    public List<ParseResult> parseScript(String script, Executor executor)
+            throws InterruptedException {
+        List<ParseResult> results = new ArrayList<ParseResult>();
+        split(script, null, results);
+        parseResults(results, executor, Runtime.getRuntime().availableProcessors());
+        return results;
+    }
+
+    protected void parseResults(final List<ParseResult> results, Executor executor,
+                                int parallelism)
+            throws InterruptedException {
+        int nworkers = Math.max(1, Math.min(parallelism, results.size()));
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(nworkers);
+        final Throwable[] failure = new Throwable[1];
+        Runnable worker = new Runnable() {
+                public void run() {
+                    try {
+                        SQLParser parser = acquire();
+                        try {
+                            int i;
+                            while ((i = next.getAndIncrement()) < results.size()) {
+                                ParseResult result = results.get(i);
+                                try {
+                                    result.parse(parser);
+                                }
+                                catch (Throwable ex) {
+                                    result.failed(ex);
+                                    failed(ex);
+                                }
+                            }
+                        }
+                        finally {
+                            release(parser);
+                        }
+                    }
+                    catch (Throwable ex) {
+                        failed(ex);
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+
+                private void failed(Throwable ex) {
+                    synchronized (failure) {
+                        if (failure[0] == null)
+                            failure[0] = ex;
+                    }
+                }
+            };
+        for (int i = 0; i < nworkers; i++) {
+            try {
+                executor.execute(worker);
+            }
+            catch (RejectedExecutionException ex) {
+                worker.run();
+            }
+        }
+        done.await();
+        Throwable ex;
+        synchronized (failure) {
+            ex = failure[0];
+        }
+        if (ex instanceof Error)
+            throw (Error)ex;
+        if (ex instanceof RuntimeException)
+            throw (RuntimeException)ex;
+        if (ex != null)
+            throw new IllegalStateException(ex);
+    }
+
+    /** Split a script into statements at semicolons that are not
+     * inside quotes or comments, skipping empty statements.
+     */
+    public List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<String>();
+        split(script, statements, null);
+        return statements;
+    }
+
+    // This needs to agree with the lexer about where quotes and comments end.
+    protected void split(String script, List<String> statements, List<ParseResult> results) {
+        boolean backslashInDoubleQuotes = features.contains(SQLParserFeature.DOUBLE_QUOTED_STRING);
+        int len = script.length();
+        int start = -1, end = -1;   // Significant text of current statement.
+        int i = 0;
+        while (i <= len) {
+            char ch = (i < len) ? script.charAt(i) : ';';
+            int next = i + 1;
+            switch (ch) {
+            case ';':
+                if (start >= 0) {
+                    String sqlText = script.substring(start, end);
+                    if (statements != null)
+                        statements.add(sqlText);
+                    if (results != null)
+                        results.add(new ParseResult(sqlText, start));
+                }
+                start = end = -1;
+                i = next;
+                continue;
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+                i = next;
+                continue;
+            case '-':
+                if ((next < len) && (script.charAt(next) == '-')) {
+                    while ((next < len) &&
+                           (script.charAt(next) != '\n') &&
+                           (script.charAt(next) != '\r'))
+                        next++;
+                    i = next;
+                    continue;
+                }
+                break;
+            case '/':
+                if ((next < len) && (script.charAt(next) == '*')) {
+                    int depth = 1;
+                    next++;
+                    while ((next < len) && (depth > 0)) {
+                        if (script.startsWith("/*", next)) {
+                            depth++;
+                            next += 2;
+                        }
+                        else if (script.startsWith("*/", next)) {
+                            depth--;
+                            next += 2;
+                        }
+                        else
+                            next++;
+                    }
+                    i = next;
+                    continue;
+                }
+                break;
+            case '\'':
+                next = skipQuoted(script, next, '\'', false);
+                break;
+            case '"':
+                next = skipQuoted(script, next, '"', backslashInDoubleQuotes);
+                break;
+            case '`':
+                next = skipQuoted(script, next, '`', false);
+                break;
+            case 'E':
+            case 'e':
+                if ((next < len) && (script.charAt(next) == '\'') &&
+                    ((i == 0) || !Character.isJavaIdentifierPart(script.charAt(i - 1))))
+                    next = skipQuoted(script, next + 1, '\'', true);
+                break;
+            case '$':
+                if ((next < len) && (script.charAt(next) == '$')) {
+                    next = script.indexOf("$$", next + 1);
+                    next = (next < 0) ? len : next + 2;
+                }
+                break;
+            }
+            if (start < 0)
+                start = i;
+            end = next;
+            i = next;
+        }
+    }
+
+    /** Skip to just past the closing quote, which can be doubled and
+     * possibly escaped with backslash.
+     */
+    private static int skipQuoted(String script, int index, char quote,
+                                  boolean backslash) {
+        int len = script.length();
+        while (index < len) {
+            char ch = script.charAt(index++);
+            if (ch == quote) {
+                if ((index < len) && (script.charAt(index) == quote))
+                    index++;
+                else
+                    break;
+            }
+            else if (backslash && (ch == '\\') && (index < len)) {
+                index++;
+            }
+        }
+        return index;
+    }
+
+    /** Discard all idle parsers. */
+    public void clear() {
+        while (idle.poll() != null) {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /** Make a new parser for the pool.
+     * Subclasses can override to install a custom {@link NodeFactory}, etc.
+     */
+    protected SQLParser newParser() {
+        SQLParser parser = new SQLParser();
+        configure(parser);
+        return parser;
+    }
+
+    /** Restore pool settings that a user may have changed while they
+     * had the parser.
+     */
+    protected void configure(SQLParser parser) {
+        Set<SQLParserFeature> parserFeatures = parser.getFeatures();
+        if (!parserFeatures.equals(features)) {
+            parserFeatures.clear();
+            parserFeatures.addAll(features);
+        }
+        parser.setMaxStringLiteralLength(maxStringLiteralLength);
+        parser.setMaxIdentifierLength(maxIdentifierLength);
+    }
+
+}
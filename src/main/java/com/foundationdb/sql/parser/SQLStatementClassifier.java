@@ -0,0 +1,329 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+/**
+ * Classify SQL statements by what they do, for instance to route reads
+ * and writes to different servers, looking only at as many leading
+ * tokens as needed.
+ * <p>
+ * Most statements are decided by their first keyword or two. A
+ * <code>SELECT</code> or <code>VALUES</code>, possibly parenthesized, is
+ * additionally checked for a <code>FOR UPDATE</code> clause, which is
+ * only lexed when the text contains that word at all. Anything that
+ * cannot be decided that way is given to the full parser and classified
+ * from the resulting node, exactly as {@link #classify(StatementNode)}
+ * does. So the answer for any statement that parses is always the one
+ * the parser would give. The token rules do not check syntax, though:
+ * text that does not parse may still be given a category.
+ * <p>
+ * Like {@link SQLParser}, a classifier can be reused but is not
+ * thread-safe.
+ */
+public class SQLStatementClassifier
+{
+    /** What a statement does, by {@link StatementNode} class. */
+    public static enum Category {
+        /** A {@link CursorNode} that only reads. */
+        SELECT(true),
+        /** A {@link CursorNode} with <code>FOR UPDATE</code>. */
+        SELECT_FOR_UPDATE(false),
+        /** A {@link DMLModStatementNode}: <code>INSERT</code>, <code>UPDATE</code>
+         * or <code>DELETE</code>. */
+        DML(false),
+        /** A {@link CallStatementNode}, which may do anything. */
+        CALL(false),
+        /** A {@link DDLStatementNode} other than a savepoint. */
+        DDL(false),
+        /** A {@link TransactionStatementNode} or {@link SavepointNode}. */
+        TRANSACTION(false),
+        /** Session settings: {@link SetConfigurationNode}, {@link ShowConfigurationNode},
+         * {@link SetSchemaNode}, {@link SetRoleNode} and {@link SetConstraintsNode}. */
+        SESSION(false),
+        /** Cursors and prepared statements: <code>DECLARE</code>, <code>FETCH</code>,
+         * <code>CLOSE</code>, <code>PREPARE</code>, <code>EXECUTE</code> and
+         * <code>DEALLOCATE</code>. */
+        CURSOR(false),
+        /** An {@link ExplainStatementNode}. */
+        EXPLAIN(true),
+        /** A {@link CopyStatementNode} out of a table or subquery. */
+        COPY_OUT(true),
+        /** A {@link CopyStatementNode} into a table. */
+        COPY_IN(false),
+        /** A {@link LockTableNode}. */
+        LOCK(false),
+        /** Anything else. */
+        OTHER(false);
+
+        private final boolean readOnly;
+
+        Category(boolean readOnly) {
+            this.readOnly = readOnly;
+        }
+
+        /** Does this kind of statement only read data? */
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+    }
+
+    private static final String UPDATE_WORD = "update";
+
+    private SQLParser parser;
+    private StringCharStream charStream;
+    private SQLGrammarTokenManager tokenManager;
+    private String sqlText;
+    private Token[] tokens = new Token[3];
+    private int ntokens;
+
+    /** Make a classifier that lexes like the given parser and falls back
+     * to it when the leading tokens are not enough.
+     */
+    public SQLStatementClassifier(SQLParser parser) {
+        this.parser = parser;
+        charStream = new StringCharStream("");
+        tokenManager = new SQLGrammarTokenManager(null, charStream);
+        // The lexer consults the grammar for parser features.
+        SQLGrammar grammar = new SQLGrammar(tokenManager);
+        grammar.setParserContext(parser);
+        tokenManager.parser = grammar;
+    }
+
+    /** Classify the given SQL statement. */
+    public Category classify(String sqlText) throws StandardException {
+        Category category = classifyLeadingTokens(sqlText);
+        if (category == null)
+            category = classify(parser.parseStatement(sqlText));
+        return category;
+    }
+
+    /** Classify an already parsed statement. */
+    public static Category classify(StatementNode stmt) {
+        if (stmt instanceof CursorNode) {
+            if (((CursorNode)stmt).getUpdateMode() == CursorNode.UpdateMode.UPDATE)
+                return Category.SELECT_FOR_UPDATE;
+            else
+                return Category.SELECT;
+        }
+        else if (stmt instanceof DMLModStatementNode)
+            return Category.DML;
+        else if (stmt instanceof CallStatementNode)
+            return Category.CALL;
+        else if ((stmt instanceof TransactionStatementNode) ||
+                 (stmt instanceof SavepointNode))
+            return Category.TRANSACTION;
+        else if (stmt instanceof DDLStatementNode)
+            return Category.DDL;
+        else if ((stmt instanceof SetConfigurationNode) ||
+                 (stmt instanceof ShowConfigurationNode) ||
+                 (stmt instanceof SetSchemaNode) ||
+                 (stmt instanceof SetRoleNode) ||
+                 (stmt instanceof SetConstraintsNode))
+            return Category.SESSION;
+        else if ((stmt instanceof DeclareStatementNode) ||
+                 (stmt instanceof FetchStatementNode) ||
+                 (stmt instanceof CloseStatementNode) ||
+                 (stmt instanceof PrepareStatementNode) ||
+                 (stmt instanceof ExecuteStatementNode) ||
+                 (stmt instanceof DeallocateStatementNode))
+            return Category.CURSOR;
+        else if (stmt instanceof ExplainStatementNode)
+            return Category.EXPLAIN;
+        else if (stmt instanceof CopyStatementNode) {
+            if (((CopyStatementNode)stmt).getMode() == CopyStatementNode.Mode.TO_TABLE)
+                return Category.COPY_IN;
+            else
+                return Category.COPY_OUT;
+        }
+        else if (stmt instanceof LockTableNode)
+            return Category.LOCK;
+        else
+            return Category.OTHER;
+    }
+
+    /** Classify from leading tokens only, or return <code>null</code> if
+     * that is not enough and the statement needs to be parsed.
+     */
+    Category classifyLeadingTokens(String sqlText) {
+        this.sqlText = sqlText;
+        charStream.ReInit(sqlText);
+        tokenManager.ReInit(charStream);
+        ntokens = 0;
+        try {
+            return classifyTokens();
+        }
+        catch (TokenMgrError ex) {
+            // Let the parser report it.
+            return null;
+        }
+        finally {
+            this.sqlText = null;
+            for (int i = 0; i < ntokens; i++)
+                tokens[i] = null;
+        }
+    }
+
+    protected Category classifyTokens() {
+        switch (kind(1)) {
+        case SQLGrammarConstants.SELECT:
+        case SQLGrammarConstants.VALUES:
+            return classifyQuery(0);
+        case SQLGrammarConstants.LEFT_PAREN:
+            {
+                int depth = 1;
+                int kind;
+                while ((kind = tokenManager.getNextToken().kind) ==
+                       SQLGrammarConstants.LEFT_PAREN)
+                    depth++;
+                if ((kind != SQLGrammarConstants.SELECT) &&
+                    (kind != SQLGrammarConstants.VALUES))
+                    return null;
+                return classifyQuery(depth);
+            }
+        case SQLGrammarConstants.INSERT:
+        case SQLGrammarConstants.UPDATE:
+        case SQLGrammarConstants.DELETE:
+            return Category.DML;
+        case SQLGrammarConstants.CALL:
+            return Category.CALL;
+        case SQLGrammarConstants.CREATE:
+        case SQLGrammarConstants.DROP:
+        case SQLGrammarConstants.RENAME:
+        case SQLGrammarConstants.GRANT:
+        case SQLGrammarConstants.REVOKE:
+        case SQLGrammarConstants.TRUNCATE:
+            return Category.DDL;
+        case SQLGrammarConstants.ALTER:
+            if (kind(2) == SQLGrammarConstants.SERVER)
+                return Category.OTHER;
+            else
+                return Category.DDL;
+        case SQLGrammarConstants.BEGIN:
+        case SQLGrammarConstants.COMMIT:
+        case SQLGrammarConstants.ROLLBACK:
+            return Category.TRANSACTION;
+        case SQLGrammarConstants.SET:
+            switch (kind(2)) {
+            case SQLGrammarConstants.ISOLATION:
+            case SQLGrammarConstants.TRANSACTION:
+            case SQLGrammarConstants.SESSION:
+                return Category.TRANSACTION;
+            case SQLGrammarConstants.SCHEMA:
+            case SQLGrammarConstants.ROLE:
+            case SQLGrammarConstants.CONSTRAINTS:
+            case SQLGrammarConstants.IDENTIFIER:
+                return Category.SESSION;
+            case SQLGrammarConstants.CURRENT:
+                switch (kind(3)) {
+                case SQLGrammarConstants.ISOLATION:
+                    return Category.TRANSACTION;
+                case SQLGrammarConstants.SCHEMA:
+                case SQLGrammarConstants.SQLID:
+                    return Category.SESSION;
+                default:
+                    return null;
+                }
+            default:
+                return null;
+            }
+        case SQLGrammarConstants.SHOW:
+            return Category.SESSION;
+        case SQLGrammarConstants.DECLARE:
+        case SQLGrammarConstants.FETCH:
+        case SQLGrammarConstants.CLOSE:
+        case SQLGrammarConstants.PREPARE:
+        case SQLGrammarConstants.EXECUTE:
+        case SQLGrammarConstants.DEALLOCATE:
+            return Category.CURSOR;
+        case SQLGrammarConstants.EXPLAIN:
+            return Category.EXPLAIN;
+        case SQLGrammarConstants.LOCK:
+            return Category.LOCK;
+        case SQLGrammarConstants.COPY:
+            return classifyCopy();
+        default:
+            return null;
+        }
+    }
+
+    /** Get the kind of the <code>n</code>th token, counting from 1. */
+    protected int kind(int n) {
+        while (ntokens < n)
+            tokens[ntokens++] = tokenManager.getNextToken();
+        return tokens[n-1].kind;
+    }
+
+    /** A query is only for update if it says so at the top level, which
+     * cannot happen unless the word is there somewhere. <code>depth</code>
+     * is the number of parentheses already open.
+     */
+    protected Category classifyQuery(int depth) {
+        if (!containsIgnoreCase(sqlText, UPDATE_WORD))
+            return Category.SELECT;
+        boolean afterFor = false;
+        while (true) {
+            Token token = tokenManager.getNextToken();
+            switch (token.kind) {
+            case SQLGrammarConstants.EOF:
+                return Category.SELECT;
+            case SQLGrammarConstants.LEFT_PAREN:
+                depth++;
+                break;
+            case SQLGrammarConstants.RIGHT_PAREN:
+                depth--;
+                break;
+            case SQLGrammarConstants.UPDATE:
+                if (afterFor)
+                    return Category.SELECT_FOR_UPDATE;
+                break;
+            }
+            afterFor = ((depth == 0) && (token.kind == SQLGrammarConstants.FOR));
+        }
+    }
+
+    /** <code>COPY (subquery) TO</code> and <code>COPY table TO</code> read;
+     * <code>COPY table FROM</code> writes.
+     */
+    protected Category classifyCopy() {
+        if (kind(2) == SQLGrammarConstants.LEFT_PAREN)
+            return Category.COPY_OUT;
+        while (true) {
+            switch (tokenManager.getNextToken().kind) {
+            case SQLGrammarConstants.EOF:
+                return null;
+            case SQLGrammarConstants.TO:
+                return Category.COPY_OUT;
+            case SQLGrammarConstants.FROM:
+                return Category.COPY_IN;
+            }
+        }
+    }
+
+    private static boolean containsIgnoreCase(String str, String word) {
+        int len = word.length();
+        char first = word.charAt(0);
+        for (int i = 0; i <= str.length() - len; i++) {
+            if ((Character.toLowerCase(str.charAt(i)) == first) &&
+                str.regionMatches(true, i, word, 0, len))
+                return true;
+        }
+        return false;
+    }
+
+}
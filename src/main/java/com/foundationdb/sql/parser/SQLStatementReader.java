@@ -0,0 +1,239 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Parse statements delimited by semicolons one at a time from a
+ * character stream, such as a large SQL script or dump file.
+ * <p>
+ * Input is read as it is needed, and text is only held for the
+ * statement currently being parsed, so memory use is bounded by the
+ * largest statement rather than the whole script. For a file, a
+ * {@link MappedCharStream} avoids even that.
+ * <p>
+ * <pre>
+ * SQLStatementReader reader = new SQLStatementReader(parser, input);
+ * StatementNode stmt;
+ * while ((stmt = reader.nextStatement()) != null) {
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * As with {@link SQLParser#parseStatements}, parameters are not
+ * allowed. The parser's SQL text is that of the last statement returned
+ * and statement offsets are relative to the start of the input. After
+ * a parse error, the rest of the input is abandoned.
+ */
+public class SQLStatementReader implements Closeable
+{
+    private SQLParser parser;
+    private Input input;
+    private CharStream charStream;
+    private SQLGrammar grammar;
+    private int consumedOffset;
+    private boolean done;
+
+    /** Read statements from the given characters. */
+    public SQLStatementReader(SQLParser parser, Reader reader) {
+        RecordingReader recorder = new RecordingReader(reader);
+        init(parser, new UCode_CharStream(recorder, 1, 1), recorder);
+    }
+
+    /** Read statements from the given bytes. */
+    public SQLStatementReader(SQLParser parser, ReadableByteChannel channel,
+                              Charset charset) {
+        this(parser, Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+
+    /** Read statements from the given UTF-8 bytes. */
+    public SQLStatementReader(SQLParser parser, final MappedCharStream charStream) {
+        init(parser, charStream, new Input() {
+                public CharSequence getText() {
+                    return charStream.getText();
+                }
+                public int getTextOffset() {
+                    return charStream.getTextOffset();
+                }
+                public void discard(int offset) {
+                    charStream.discard(offset);
+                }
+                public void checkError() {
+                }
+                public void close() {
+                    charStream.Done();
+                }
+            });
+    }
+
+    private void init(SQLParser parser, CharStream charStream, Input input) {
+        this.parser = parser;
+        this.charStream = charStream;
+        this.input = input;
+        SQLGrammarTokenManager tokenManager = new SQLGrammarTokenManager(null, charStream);
+        grammar = new SQLGrammar(tokenManager);
+        grammar.setParserContext(parser);
+        tokenManager.parser = grammar;
+    }
+
+    /** Parse the next statement.
+     * @return the statement or <code>null</code> at the end of the input
+     */
+    public StatementNode nextStatement() throws StandardException, IOException {
+        if (done)
+            return null;
+        input.discard(consumedOffset);
+        parser.resetStatement();
+        StatementNode statement;
+        try {
+            statement = grammar.parseNextStatement(input.getText(),
+                                                   input.getTextOffset(),
+                                                   parser.getParameterList());
+        }
+        catch (MappedCharStream.MappedIOException ex) {
+            done = true;
+            throw ex.getCause();
+        }
+        catch (ParseException ex) {
+            done = true;
+            input.checkError();
+            Token token = ex.currentToken;
+            int position = ((token == null) || (token.next == null)) ? 0 :
+                token.next.beginOffset + 1;
+            throw new SQLParserException(SQLParser.standardizeEol(ex.getMessage()),
+                                         ex, position);
+        }
+        catch (TokenMgrError ex) {
+            done = true;
+            input.checkError();
+            if (ex.errorCode == TokenMgrError.LEXICAL_ERROR)
+                throw new SQLParserException(ex.getMessage(),
+                                             ex,
+                                             charStream.getEndOffset() + 1);
+            else
+                throw new StandardException(ex);
+        }
+        input.checkError();
+        Token last = grammar.token;
+        if (last.kind == SQLGrammarConstants.EOF)
+            done = true;
+        else
+            consumedOffset = last.endOffset + 1;
+        if (statement == null) {
+            parser.setSQLText(null);
+        }
+        else {
+            int textOffset = input.getTextOffset();
+            parser.setSQLText(input.getText()
+                              .subSequence(statement.getBeginOffset() - textOffset,
+                                           statement.getEndOffset() + 1 - textOffset)
+                              .toString());
+        }
+        return statement;
+    }
+
+    /** Close the underlying input. */
+    public void close() throws IOException {
+        done = true;
+        input.close();
+    }
+
+    /** The text of the current statement. */
+    interface Input extends Closeable {
+        /** Get the text from {@link #getTextOffset} to at least the
+         * last character tokenized. */
+        public CharSequence getText();
+        public int getTextOffset();
+        /** Forget text before the given offset in the whole input. */
+        public void discard(int offset);
+        /** Report any error reading that looked like the end of input. */
+        public void checkError() throws IOException;
+    }
+
+    /** A reader that keeps the characters read since the end of the
+     * last statement, for the grammar to slice (view definitions,
+     * for instance) and for the statement text. It also remembers any
+     * I/O error, which the char stream would otherwise treat as the
+     * end of input.
+     */
+    static class RecordingReader extends Reader implements Input {
+        private Reader in;
+        private StringBuilder text = new StringBuilder();
+        private int textOffset;
+        private IOException error;
+        private boolean eof;
+
+        public RecordingReader(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            // The char stream closes its input at the end but may
+            // still try to read again.
+            if (eof)
+                return -1;
+            int n;
+            try {
+                n = in.read(cbuf, off, len);
+            }
+            catch (IOException ex) {
+                error = ex;
+                throw ex;
+            }
+            if (n > 0)
+                text.append(cbuf, off, n);
+            else if (n < 0)
+                eof = true;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        public CharSequence getText() {
+            return text;
+        }
+
+        public int getTextOffset() {
+            return textOffset;
+        }
+
+        public void discard(int offset) {
+            if (offset - textOffset > 0) {
+                text.delete(0, offset - textOffset);
+                textOffset = offset;
+            }
+        }
+
+        public void checkError() throws IOException {
+            if (error != null)
+                throw error;
+        }
+    }
+
+}
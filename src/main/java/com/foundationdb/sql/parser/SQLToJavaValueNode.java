@@ -105,6 +105,7 @@ public class SQLToJavaValueNode extends JavaValueNode
     }
 
     public void setSQLValueNode(ValueNode value) {
+        checkNotFrozen();
         this.value = value;
     }
 
@@ -177,6 +177,7 @@ public class SelectNode extends ResultSetNode
     }
 
     public void setCacheHint(Boolean cacheHint) {
+        checkNotFrozen();
         this.cacheHint = cacheHint;
     }
 
@@ -240,6 +241,7 @@ public class SelectNode extends ResultSetNode
     }
 
     public void setWhereClause(ValueNode whereClause) {
+        checkNotFrozen();
         this.whereClause = whereClause;
     }
 
@@ -252,6 +254,7 @@ public class SelectNode extends ResultSetNode
     }
 
     public void setHavingClause(ValueNode havingClause) {
+        checkNotFrozen();
         this.havingClause = havingClause;
     }
 
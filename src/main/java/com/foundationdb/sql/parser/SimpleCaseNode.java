@@ -79,6 +79,7 @@ public class SimpleCaseNode extends ValueNode
     }
 
     public void setElseValue(ValueNode elseValue) {
+        checkNotFrozen();
         this.elseValue = elseValue;
     }
 
@@ -160,4 +161,16 @@ public class SimpleCaseNode extends ValueNode
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + structuralHash(operand);
+        hash = 31 * hash + caseOperands.structuralHash();
+        hash = 31 * hash + resultValues.structuralHash();
+        hash = 31 * hash + structuralHash(elseValue);
+        return hash;
+    }
+
 }
@@ -92,6 +92,7 @@ abstract class SingleChildResultSetNode extends FromTable
      * @param childResult The new childResult for this node.
      */
     void setChildResult(ResultSetNode childResult) {
+        checkNotFrozen();
         this.childResult = childResult;
     }
 
@@ -96,4 +96,11 @@ public class SpecialFunctionNode extends ValueNode
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        return 31 * super.structuralHash() + sqlName.hashCode();
+    }
+
 }
@@ -0,0 +1,314 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, least-recently-used cache of parsed statements.
+ * <p>
+ * Entries are keyed by the SQL text together with the parser's
+ * features, identifier case and maximum lengths. The cached tree is
+ * never handed out; each hit returns a fresh deep copy made with the
+ * requesting parser's {@link NodeFactory}, so callers are free to
+ * modify what they get.
+ * After a call, the parser's {@link SQLParser#getParameterList} and
+ * {@link SQLParser#getSQLText} are the same as for an actual parse.
+ * <p>
+ * The cache itself is thread-safe and can be shared by many parsers,
+ * such as those from a {@link SQLParserPool}.
+ */
+public class StatementCache
+{
+    static final class Key {
+        private final String sqlText;
+        private final long features;
+        private final SQLParserContext.IdentifierCase identifierCase;
+        private final int maxStringLiteralLength, maxIdentifierLength;
+
+        Key(String sqlText, SQLParser parser) {
+            this.sqlText = sqlText;
+            long features = 0;
+            for (SQLParserFeature feature : parser.getFeatures()) {
+                features |= 1L << feature.ordinal();
+            }
+            this.features = features;
+            this.identifierCase = parser.getIdentifierCase();
+            this.maxStringLiteralLength = parser.getMaxStringLiteralLength();
+            this.maxIdentifierLength = parser.getMaxIdentifierLength();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key)obj;
+            return ((features == other.features) &&
+                    (identifierCase == other.identifierCase) &&
+                    (maxStringLiteralLength == other.maxStringLiteralLength) &&
+                    (maxIdentifierLength == other.maxIdentifierLength) &&
+                    sqlText.equals(other.sqlText));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = sqlText.hashCode() * 31 + (int)(features ^ (features >>> 32));
+            hash = hash * 31 + identifierCase.hashCode();
+            hash = hash * 31 + maxStringLiteralLength;
+            return hash * 31 + maxIdentifierLength;
+        }
+    }
+
+    static final class Entry {
+        final StatementNode statement;
+        final int[] offsets;    // Begin/end pairs in traversal order.
+        final int[] paramSlots; // Parameter list index in traversal order.
+        final int nparams;
+
+        Entry(StatementNode statement, int[] offsets, int[] paramSlots, int nparams) {
+            this.statement = statement;
+            this.offsets = offsets;
+            this.paramSlots = paramSlots;
+            this.nparams = nparams;
+        }
+    }
+
+    private final int capacity;
+    private final Map<Key,Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public StatementCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key,Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key,Entry> eldest) {
+                    if (size() > StatementCache.this.capacity) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    }
+
+    /** Parse a single statement using the given parser, or copy the 
+     * result of an earlier parse of the same text with the same settings.
+     */
+    public StatementNode parseStatement(SQLParser parser, String sqlText) 
+            throws StandardException {
+        Key key = new Key(sqlText, parser);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            StatementNode copy = copyEntry(entry, parser, sqlText);
+            if (copy != null) {
+                hits.incrementAndGet();
+                return copy;
+            }
+        }
+        misses.incrementAndGet();
+        StatementNode stmt = parser.parseStatement(sqlText);
+        entry = makeEntry(stmt, parser);
+        if (entry != null) {
+            synchronized (entries) {
+                entries.put(key, entry);
+            }
+        }
+        return stmt;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Get the number of statements currently cached. */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /** Remove all cached statements. Counters are not reset. */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /** Make a private copy of a newly parsed statement for the cache,
+     * or <code>null</code> if it cannot be reproduced exactly.
+     */
+    private Entry makeEntry(StatementNode stmt, SQLParser parser)
+            throws StandardException {
+        List<ParameterNode> parameterList = parser.getParameterList();
+        Map<ParameterNode,Integer> paramIndexes = 
+            new IdentityHashMap<ParameterNode,Integer>(parameterList.size());
+        for (int i = 0; i < parameterList.size(); i++) {
+            paramIndexes.put(parameterList.get(i), i);
+        }
+        OffsetsVisitor offsets = new OffsetsVisitor(paramIndexes);
+        stmt.accept(offsets);
+        if (!offsets.isComplete())
+            return null;
+        StatementNode copy = (StatementNode)
+            parser.getNodeFactory().copyNode(stmt, parser);
+        return offsets.makeEntry(copy);
+    }
+
+    /** Make a copy of the cached statement, restoring what the parser
+     * would have set and the copy does not carry over. Returns
+     * <code>null</code> if that cannot be done exactly.
+     */
+    private StatementNode copyEntry(Entry entry, SQLParser parser, String sqlText)
+            throws StandardException {
+        StatementNode copy = (StatementNode)
+            parser.getNodeFactory().copyNode(entry.statement, parser);
+        OffsetsVisitor offsets = new OffsetsVisitor(entry);
+        copy.accept(offsets);
+        if (!offsets.isComplete())
+            return null;
+        parser.reinit(sqlText);
+        List<ParameterNode> parameterList = parser.getParameterList();
+        for (ParameterNode param : offsets.params) {
+            parameterList.add(param);
+        }
+        return copy;
+    }
+
+    /** Record offsets and parameter positions from the original tree
+     * or apply them to a copy, gathering its parameters. Parts of the
+     * tree that are not expanded yet are left that way: they expand the
+     * same in a copy as in the original, and have no parameters, apart
+     * from those held by column, which are visited.
+     */
+    static final class OffsetsVisitor 
+            implements CompactInListVisitor, DeferredSubqueryVisitor, ColumnarRowsVisitor {
+        private int[] offsets, paramSlots;
+        private int index, paramIndex;
+        private Map<ParameterNode,Integer> paramIndexes;
+        private ParameterNode[] params;
+        private boolean applying, mismatch;
+
+        OffsetsVisitor(Map<ParameterNode,Integer> paramIndexes) {
+            this.offsets = new int[32];
+            this.paramSlots = new int[paramIndexes.size()];
+            this.paramIndexes = paramIndexes;
+        }
+
+        OffsetsVisitor(Entry entry) {
+            this.offsets = entry.offsets;
+            this.paramSlots = entry.paramSlots;
+            this.params = new ParameterNode[entry.nparams];
+            this.applying = true;
+        }
+
+        public Visitable visit(Visitable node) {
+            QueryTreeNode qtn = (QueryTreeNode)node;
+            if (applying) {
+                if (index + 2 > offsets.length) {
+                    mismatch = true;
+                    return node;
+                }
+                qtn.setBeginOffset(offsets[index++]);
+                qtn.setEndOffset(offsets[index++]);
+                if (qtn instanceof ParameterNode) {
+                    if (paramIndex >= paramSlots.length) {
+                        mismatch = true;
+                        return node;
+                    }
+                    int slot = paramSlots[paramIndex++];
+                    if (params[slot] != null)
+                        mismatch = true;
+                    else
+                        params[slot] = (ParameterNode)qtn;
+                }
+            }
+            else {
+                if (index + 2 > offsets.length) {
+                    int[] newOffsets = new int[offsets.length * 2];
+                    System.arraycopy(offsets, 0, newOffsets, 0, index);
+                    offsets = newOffsets;
+                }
+                offsets[index++] = qtn.getBeginOffset();
+                offsets[index++] = qtn.getEndOffset();
+                if (qtn instanceof ParameterNode) {
+                    Integer slot = paramIndexes.get(qtn);
+                    if ((slot == null) || (paramIndex >= paramSlots.length))
+                        mismatch = true;
+                    else
+                        paramSlots[paramIndex++] = slot;
+                }
+            }
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return mismatch;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+
+        public Entry makeEntry(StatementNode copy) {
+            int[] result = new int[index];
+            System.arraycopy(offsets, 0, result, 0, index);
+            return new Entry(copy, result, paramSlots, paramSlots.length);
+        }
+
+        /** Were all the parameters reached exactly once? */
+        public boolean isComplete() {
+            if (mismatch || (paramIndex != paramSlots.length))
+                return false;
+            if (!applying)
+                return true;
+            if (index != offsets.length)
+                return false;
+            for (ParameterNode param : params) {
+                if (param == null)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+}
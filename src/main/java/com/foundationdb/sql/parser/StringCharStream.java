@@ -20,7 +20,7 @@ import java.io.EOFException;
 import java.io.IOException;
 
 /**
- * {@link CharStream} that simply reads from a string.
+ * {@link CharStream} that simply reads from a string, or part of one.
  */
 public class StringCharStream implements CharStream
 {
@@ -28,6 +28,8 @@ public class StringCharStream implements CharStream
 
     private String string;
     private int beginIndex, currentIndex; // 0-based, exclusive end.
+    private int endIndex;               // Where the input stops.
+    private int offset;                 // Of the string in the whole input.
     private int currentLine, currentColumn; // 1-based.
     // End represents the position of the last character returned, and
     // in particular if a newline was returned, it at the end of the
@@ -38,6 +40,18 @@ public class StringCharStream implements CharStream
         init(string);
     }
 
+    /**
+     * Read just the characters of <code>string</code> from
+     * <code>beginIndex</code> up to <code>endIndex</code>, giving
+     * offsets as though <code>string</code> began at <code>offset</code>.
+     */
+    public StringCharStream(String string, int beginIndex, int endIndex, int offset) {
+        init(string);
+        this.beginIndex = this.currentIndex = beginIndex;
+        this.endIndex = endIndex;
+        this.offset = offset;
+    }
+
     public void ReInit(String string) {
         init(string);
     }
@@ -45,6 +59,8 @@ public class StringCharStream implements CharStream
     private void init(String string) {
         this.string = string;
         beginIndex = currentIndex = 0;
+        endIndex = string.length();
+        offset = 0;
         currentLine = currentColumn = beginLine = beginColumn = endLine = endColumn = 1;
     }
     
@@ -58,7 +74,7 @@ public class StringCharStream implements CharStream
 
     @Override
     public char readChar() throws java.io.IOException {
-        if (currentIndex >= string.length())
+        if (currentIndex >= endIndex)
             throw EOF;
 
         return advance();
@@ -81,7 +97,7 @@ public class StringCharStream implements CharStream
         char ch = string.charAt(currentIndex++);
         switch (ch) {
         case '\r':
-            if ((currentIndex < string.length()) &&
+            if ((currentIndex < endIndex) &&
                 (string.charAt(currentIndex) == '\n')) {
                 currentColumn++;
                 break;
@@ -104,11 +120,11 @@ public class StringCharStream implements CharStream
 
     @Override
     public int getBeginOffset() {
-        return beginIndex;
+        return offset + beginIndex;
     }
     @Override
     public int getEndOffset() {
-        return currentIndex - 1;   // Want inclusive.
+        return offset + currentIndex - 1;   // Want inclusive.
     }
 
     @Override
@@ -100,6 +100,14 @@ public class SubqueryNode extends ValueNode
     private ValueNode offset;
     private ValueNode fetchFirst;
 
+    /* A deferred subquery's text is deferredText from deferredBegin to
+     * deferredEnd, where deferredText starts at deferredTextOffset in the
+     * whole input. It is parsed with deferredSettings.
+     */
+    private String deferredText;
+    private int deferredTextOffset, deferredBegin, deferredEnd;
+    private ParserSettings deferredSettings;
+
     /* Subquery types.
      * NOTE: FROM only exists for a brief second in the parser.  It
      * should never appear in a query tree.
@@ -156,6 +164,80 @@ public class SubqueryNode extends ValueNode
                                                            getParserContext());
         this.fetchFirst = (ValueNode)getNodeFactory().copyNode(other.fetchFirst,
                                                                getParserContext());
+        this.deferredText = other.deferredText;
+        this.deferredTextOffset = other.deferredTextOffset;
+        this.deferredBegin = other.deferredBegin;
+        this.deferredEnd = other.deferredEnd;
+        this.deferredSettings = other.deferredSettings;
+    }
+
+    /**
+     * Has the query expression of this subquery not been parsed yet?
+     * With {@link SQLParserFeature#DEFERRED_SUBQUERIES}, only its text is
+     * kept, and it is parsed the first time that it is asked for, or visited
+     * by other than a {@link DeferredSubqueryVisitor}. Syntax errors in it
+     * are only found then, and are thrown by the getters as an
+     * <code>IllegalStateException</code>.
+     */
+    public boolean isDeferred() {
+        return (deferredText != null);
+    }
+
+    /**
+     * Leave the query expression to be parsed later.
+     * @param text the input, or part of it, that contains the subquery
+     * @param textOffset the offset of <code>text</code> in the whole input
+     * @param beginOffset the offset in the whole input of the first character
+     * @param endOffset the offset in the whole input of the last character
+     * @param settings the settings of the parser now, to parse it with
+     */
+    void defer(String text, int textOffset, int beginOffset, int endOffset,
+               ParserSettings settings) {
+        this.deferredText = text;
+        this.deferredTextOffset = textOffset;
+        this.deferredBegin = beginOffset;
+        this.deferredEnd = endOffset;
+        this.deferredSettings = settings;
+    }
+
+    /** Get the settings that a deferred subquery is parsed with. */
+    ParserSettings getDeferredSettings() {
+        return deferredSettings;
+    }
+
+    /** Get the text of a deferred subquery. */
+    public String getDeferredText() {
+        if (deferredText == null)
+            return null;
+        return deferredText.substring(deferredBegin - deferredTextOffset,
+                                      deferredEnd + 1 - deferredTextOffset);
+    }
+
+    /** Parse the query expression of a deferred subquery. */
+    protected void materialize() throws StandardException {
+        SubqueryNode parsed = SQLParser.parseDeferredSubquery(this,
+                                                              deferredText,
+                                                              deferredTextOffset,
+                                                              deferredBegin,
+                                                              deferredEnd);
+        this.resultSet = parsed.resultSet;
+        this.orderByList = parsed.orderByList;
+        this.offset = parsed.offset;
+        this.fetchFirst = parsed.fetchFirst;
+        this.deferredText = null;
+        this.deferredSettings = null;
+    }
+
+    /** Parse now if deferred, when asked for the parts of the subquery. */
+    void materializeIfDeferred() {
+        if (deferredText != null) {
+            try {
+                materialize();
+            }
+            catch (StandardException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
     }
 
     /**
@@ -179,6 +261,7 @@ public class SubqueryNode extends ValueNode
 
     public void printSubNodes(int depth) {
         super.printSubNodes(depth);
+        materializeIfDeferred();
 
         if (resultSet != null) {
             printLabel(depth, "resultSet: ");
@@ -216,6 +299,11 @@ public class SubqueryNode extends ValueNode
     void acceptChildren(Visitor v) throws StandardException {
         super.acceptChildren(v);
 
+        if ((deferredText != null) &&
+            !(QueryTreeTraversal.getVisitor(v) instanceof DeferredSubqueryVisitor)) {
+            materialize();
+        }
+
         if (resultSet != null) {
             resultSet = (ResultSetNode)resultSet.accept(v);
         }
@@ -243,10 +331,13 @@ public class SubqueryNode extends ValueNode
      * @return ResultSetNode underlying this SubqueryNode.
      */
     public ResultSetNode getResultSet() {
+        materializeIfDeferred();
         return resultSet;
     }
 
     public void setResultSet(ResultSetNode resultSet) {
+        checkNotFrozen();
+        materializeIfDeferred();
         this.resultSet = resultSet;
     }
 
@@ -265,6 +356,7 @@ public class SubqueryNode extends ValueNode
      * @param subqueryType of this subquery.
      */
     public void setSubqueryType(SubqueryType subqueryType) {
+        checkNotFrozen();
         this.subqueryType = subqueryType;
     }
                 
@@ -282,6 +374,7 @@ public class SubqueryNode extends ValueNode
      * @return order by list if specified, else null.
      */
     public OrderByList getOrderByList() {
+        materializeIfDeferred();
         return orderByList;
     }
 
@@ -292,6 +385,7 @@ public class SubqueryNode extends ValueNode
      * @return offset if specified, else null.
      */
     public ValueNode getOffset() {
+        materializeIfDeferred();
         return offset;
     }
 
@@ -302,6 +396,7 @@ public class SubqueryNode extends ValueNode
      * @return fetch first if specified, else null.
      */
     public ValueNode getFetchFirst() {
+        materializeIfDeferred();
         return fetchFirst;
     }
 
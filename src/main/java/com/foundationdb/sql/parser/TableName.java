@@ -138,6 +138,7 @@ public class TableName extends QueryTreeNode
      */
 
     public void setSchemaName(String schemaName) {
+        checkNotFrozen();
         this.schemaName = schemaName;
         this.hasSchema = schemaName != null;
     }
@@ -141,10 +141,12 @@ abstract class TableOperatorNode extends FromTable
     }
 
     public void setLeftResultSet(ResultSetNode leftResultSet) {
+        checkNotFrozen();
         this.leftResultSet =    leftResultSet;
     }
 
     public void setRightResultSet(ResultSetNode rightResultSet) {
+        checkNotFrozen();
         this.rightResultSet =    rightResultSet;
     }
 
@@ -158,6 +160,7 @@ abstract class TableOperatorNode extends FromTable
     }
 
     public void setLeftmostResultSet(ResultSetNode newLeftResultSet) {
+        checkNotFrozen();
         if (leftResultSet instanceof TableOperatorNode) {
             ((TableOperatorNode)leftResultSet).setLeftmostResultSet(newLeftResultSet);
         }
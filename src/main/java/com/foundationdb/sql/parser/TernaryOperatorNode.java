@@ -221,6 +221,7 @@ public class TernaryOperatorNode extends ValueNode
     }
 
     public void setReceiver(ValueNode receiver) {
+        checkNotFrozen();
         this.receiver = receiver;
     }
 
@@ -230,6 +231,7 @@ public class TernaryOperatorNode extends ValueNode
      * @param newLeftOperand The new leftOperand
      */
     public void setLeftOperand(ValueNode newLeftOperand) {
+        checkNotFrozen();
         leftOperand = newLeftOperand;
     }
 
@@ -248,6 +250,7 @@ public class TernaryOperatorNode extends ValueNode
      * @param newRightOperand The new rightOperand
      */
     public void setRightOperand(ValueNode newRightOperand) {
+        checkNotFrozen();
         rightOperand = newRightOperand;
     }
 
@@ -302,4 +305,16 @@ public class TernaryOperatorNode extends ValueNode
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + methodName.hashCode();
+        hash = 31 * hash + structuralHash(receiver);
+        hash = 31 * hash + structuralHash(leftOperand);
+        hash = 31 * hash + structuralHash(rightOperand);
+        return hash;
+    }
+
 }
@@ -111,6 +111,7 @@ public class UnaryOperatorNode extends ValueNode
      * @param operator The operator.
      */
     void setOperator(String operator) {
+        checkNotFrozen();
         this.operator = operator;
     }
 
@@ -129,6 +130,7 @@ public class UnaryOperatorNode extends ValueNode
      * @param methodName The methodName.
      */
     void setMethodName(String methodName) {
+        checkNotFrozen();
         this.methodName = methodName;
     }
 
@@ -175,6 +177,7 @@ public class UnaryOperatorNode extends ValueNode
     }
 
     public void setOperand(ValueNode operand) {
+        checkNotFrozen();
         this.operand = operand;
     }
 
@@ -202,11 +205,23 @@ public class UnaryOperatorNode extends ValueNode
             // the first condition in the || covers the case when 
             // both operands are null.
             UnaryOperatorNode other = (UnaryOperatorNode)o;
-            return (operator.equals(other.operator) && 
+            return (((operator == null) ? 
+                     (other.operator == null) : 
+                     operator.equals(other.operator)) && 
                     ((operand == other.operand)|| 
                      ((operand != null) && operand.isEquivalent(other.operand))));
         }
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        int hash = super.structuralHash();
+        hash = 31 * hash + ((operator == null) ? 0 : operator.hashCode());
+        hash = 31 * hash + structuralHash(operand);
+        return hash;
+    }
+
 }
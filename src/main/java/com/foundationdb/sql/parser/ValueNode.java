@@ -142,6 +142,11 @@ public abstract class ValueNode extends QueryTreeNode
      *               may be null if the node isn't bound yet.
      */
     public DataTypeDescriptor getType() {
+        if (isFrozen()) {
+            ValueNode copy = (ValueNode)QueryTreeTraversal.getVisitedCopy(this);
+            if (copy != null)
+                return copy.type;
+        }
         return type;
     }
         
@@ -174,7 +179,14 @@ public abstract class ValueNode extends QueryTreeNode
      */
 
     public void setType(DataTypeDescriptor type) throws StandardException {
-        this.type = type;
+        if (isFrozen()) {
+            DataTypeDescriptor current = getType();
+            if ((current == null) ? (type == null) : current.equals(type))
+                return;
+            ((ValueNode)copyToChange()).type = type;
+        }
+        else
+            this.type = type;
     }
 
     /**
@@ -374,6 +386,39 @@ public abstract class ValueNode extends QueryTreeNode
     protected abstract boolean isEquivalent(ValueNode other)
             throws StandardException;
 
+    /**
+     * Tests if this node is equivalent to the specified ValueNode, as
+     * {@link #isEquivalent} does, from outside the parser.
+     */
+    public boolean isStructurallyEquivalent(ValueNode other)
+            throws StandardException {
+        return isEquivalent(other);
+    }
+
+    /**
+     * Get a hash code for the structure of this expression, which is the
+     * same for any two nodes that are equivalent, so that equivalent
+     * expressions can be found by hashing instead of comparing each pair.
+     * <p>
+     * A derived class that overrides {@link #isEquivalent} to compare more
+     * than the node type should also override this to hash some or all of
+     * what it compares, and nothing else.
+     *
+     * @return a hash code consistent with {@link #isStructurallyEquivalent}
+     */
+    public int structuralHash() {
+        return getNodeType();
+    }
+
+    /**
+     * Get the {@link #structuralHash} of a node that may be <code>null</code>.
+     */
+    protected static int structuralHash(ValueNode node) {
+        if (node == null)
+            return 0;
+        return node.structuralHash();
+    }
+
     /**
      * Tests if this node is of the same type as the specified node as
      * reported by {@link QueryTreeNode#getNodeType()}.
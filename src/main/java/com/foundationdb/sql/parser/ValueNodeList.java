@@ -90,6 +90,20 @@ public class ValueNodeList extends QueryTreeNodeList<ValueNode>
         return true;
     }
 
+    /**
+     * Get a hash code for the structure of the elements of this list,
+     * which is the same for any two lists that are equivalent.
+     *
+     * @see ValueNode#structuralHash
+     */
+    int structuralHash() {
+        int hash = 1;
+        for (ValueNode node : this) {
+            hash = 31 * hash + ValueNode.structuralHash(node);
+        }
+        return hash;
+    }
+
     /**
      * Return whether or not this expression tree represents a constant expression.
      *
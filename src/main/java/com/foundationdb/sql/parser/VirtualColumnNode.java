@@ -183,4 +183,11 @@ public class VirtualColumnNode extends ValueNode
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public int structuralHash() {
+        return 31 * super.structuralHash() + structuralHash(sourceColumn);
+    }
+
 }
@@ -90,6 +90,7 @@ public abstract class WindowFunctionNode extends UnaryOperatorNode
      * @param wdn window definition
      */
     public void setWindow(WindowDefinitionNode wdn) {
+        checkNotFrozen();
         this.window = wdn;
     }
 
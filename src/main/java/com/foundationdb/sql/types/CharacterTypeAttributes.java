@@ -105,6 +105,13 @@ public final class CharacterTypeAttributes
                  collation.equals(other.collation)));
     }
 
+    @Override
+    public int hashCode() {
+        int hash = (characterSet == null) ? 0 : characterSet.hashCode();
+        hash = 31 * hash + ((collation == null) ? 0 : collation.hashCode());
+        return hash;
+    }
+
     @Override
     public String toString() {
         if ((characterSet == null) && (collation == null)) return "none";
@@ -42,6 +42,10 @@ package com.foundationdb.sql.types;
 import com.foundationdb.sql.StandardException;
 
 import java.sql.Types;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /** 
  * DataTypeDescriptor describes a runtime SQL type.
@@ -64,8 +68,33 @@ public final class DataTypeDescriptor
 {
     public static final int MAXIMUM_WIDTH_UNKNOWN = -1;
 
+    // Shared instances of built-in types, so that the many columns of
+    // the same VARCHAR(n) or DECIMAL(p,s) in a large schema do not each
+    // have their own. Bounded, since the possible lengths are not.
+    private static final int INTERNED_LIMIT = 4096;
+    // equals does not compare how a collation was derived, but a shared
+    // instance must not change that, so each derivation has its own map.
+    private static final ConcurrentMap<DataTypeDescriptor,DataTypeDescriptor> interned =
+        new ConcurrentHashMap<DataTypeDescriptor,DataTypeDescriptor>();
+    private static final Map<CharacterTypeAttributes.CollationDerivation,ConcurrentMap<DataTypeDescriptor,DataTypeDescriptor>> internedByDerivation =
+        new EnumMap<CharacterTypeAttributes.CollationDerivation,ConcurrentMap<DataTypeDescriptor,DataTypeDescriptor>>(CharacterTypeAttributes.CollationDerivation.class);
+    static {
+        for (CharacterTypeAttributes.CollationDerivation derivation : 
+                 CharacterTypeAttributes.CollationDerivation.values()) {
+            internedByDerivation.put(derivation, 
+                                     new ConcurrentHashMap<DataTypeDescriptor,DataTypeDescriptor>());
+        }
+    }
+
+    // Shared instances of built-in types with their default sizes, which
+    // can be found from just the TypeId.
+    private static final ConcurrentMap<TypeId,DataTypeDescriptor> nullableDefaults =
+        new ConcurrentHashMap<TypeId,DataTypeDescriptor>();
+    private static final ConcurrentMap<TypeId,DataTypeDescriptor> notNullDefaults =
+        new ConcurrentHashMap<TypeId,DataTypeDescriptor>();
+
     public static final DataTypeDescriptor MEDIUMINT =
-        new DataTypeDescriptor(TypeId.MEDIUMINT_ID, true);
+        getDataTypeDescriptor(TypeId.MEDIUMINT_ID, true);
     
     public static final DataTypeDescriptor MEDIUMINT_NOT_NULL =
         MEDIUMINT.getNullabilityType(true);
@@ -74,7 +103,7 @@ public final class DataTypeDescriptor
      * Runtime INTEGER type that is nullable.
      */
     public static final DataTypeDescriptor INTEGER =
-        new DataTypeDescriptor(TypeId.INTEGER_ID, true);
+        getDataTypeDescriptor(TypeId.INTEGER_ID, true);
         
     /**
      * Runtime INTEGER type that is not nullable.
@@ -86,7 +115,7 @@ public final class DataTypeDescriptor
      * Runtime SMALLINT type that is nullable.
      */
     public static final DataTypeDescriptor SMALLINT =
-        new DataTypeDescriptor(TypeId.SMALLINT_ID, true);
+        getDataTypeDescriptor(TypeId.SMALLINT_ID, true);
         
     /**
      * Runtime INTEGER type that is not nullable.
@@ -169,7 +198,7 @@ public final class DataTypeDescriptor
             return null;
         }
 
-        return new DataTypeDescriptor(typeId, isNullable);
+        return getDataTypeDescriptor(typeId, isNullable);
     }
 
     /**
@@ -193,7 +222,7 @@ public final class DataTypeDescriptor
             return null;
         }
 
-        return new DataTypeDescriptor(typeId, isNullable, maxLength);
+        return getDataTypeDescriptor(typeId, isNullable, maxLength);
     }
 
     /**
@@ -208,7 +237,7 @@ public final class DataTypeDescriptor
      *               A null return value means there is no corresponding SQL type (only for 'char')
      */
     public static DataTypeDescriptor getBuiltInDataTypeDescriptor(String sqlTypeName) {
-        return new DataTypeDescriptor(TypeId.getBuiltInTypeId(sqlTypeName), true);
+        return getDataTypeDescriptor(TypeId.getBuiltInTypeId(sqlTypeName), true);
     }
 
     /**
@@ -224,7 +253,7 @@ public final class DataTypeDescriptor
      */
     public static DataTypeDescriptor getBuiltInDataTypeDescriptor(String sqlTypeName, 
                                                                   int length) {
-        return new DataTypeDescriptor(TypeId.getBuiltInTypeId(sqlTypeName), true, length);
+        return getDataTypeDescriptor(TypeId.getBuiltInTypeId(sqlTypeName), true, length);
     }
 
     /**
@@ -260,7 +289,7 @@ public final class DataTypeDescriptor
             return null;
         }
 
-        return new DataTypeDescriptor(typeId, isNullable);
+        return getDataTypeDescriptor(typeId, isNullable);
     }
 
     /**
@@ -288,11 +317,11 @@ public final class DataTypeDescriptor
             return null;
         }
 
-        return new DataTypeDescriptor(typeId,
-                                      precision,
-                                      scale,
-                                      isNullable,
-                                      maximumWidth);
+        return getDataTypeDescriptor(typeId,
+                                     precision,
+                                     scale,
+                                     isNullable,
+                                     maximumWidth);
     }
         
     /**
@@ -309,6 +338,101 @@ public final class DataTypeDescriptor
                                       true);
     }
 
+    /**
+     * Get a shared descriptor for a type with its default precision,
+     * scale and maximum width, as the constructor with the same arguments
+     * would make. Built-in types are found without allocating.
+     *
+     * @param typeId The typeId of the type being described
+     * @param isNullable TRUE means it could contain NULL, FALSE means
+     *                                   it definitely cannot contain NULL.
+     */
+    public static DataTypeDescriptor getDataTypeDescriptor(TypeId typeId,
+                                                           boolean isNullable) {
+        ConcurrentMap<TypeId,DataTypeDescriptor> defaults = 
+            (isNullable) ? nullableDefaults : notNullDefaults;
+        DataTypeDescriptor type = defaults.get(typeId);
+        if ((type != null) && (type.typeId == typeId))
+            return type;
+        type = new DataTypeDescriptor(typeId, isNullable).intern();
+        if (!typeId.isUserDefinedTypeId() && !typeId.isRowMultiSet())
+            defaults.putIfAbsent(typeId, type);
+        return type;
+    }
+
+    /**
+     * Get a shared descriptor for a non-numeric type.
+     *
+     * @param typeId The typeId of the type being described
+     * @param isNullable TRUE means it could contain NULL, FALSE means
+     *                                   it definitely cannot contain NULL.
+     * @param maximumWidth The maximum number of bytes for this datatype
+     */
+    public static DataTypeDescriptor getDataTypeDescriptor(TypeId typeId,
+                                                           boolean isNullable,
+                                                           int maximumWidth) {
+        return new DataTypeDescriptor(typeId, isNullable, maximumWidth).intern();
+    }
+
+    /**
+     * Get a shared descriptor for a character type.
+     *
+     * @param typeId The typeId of the type being described
+     * @param isNullable TRUE means it could contain NULL, FALSE means
+     *                                   it definitely cannot contain NULL.
+     * @param maximumWidth The maximum number of bytes for this datatype
+     * @param characterAttributes The character set and collation
+     */
+    public static DataTypeDescriptor getDataTypeDescriptor(TypeId typeId,
+                                                           boolean isNullable,
+                                                           int maximumWidth,
+                                                           CharacterTypeAttributes characterAttributes) {
+        return new DataTypeDescriptor(typeId, isNullable, maximumWidth,
+                                      characterAttributes).intern();
+    }
+
+    /**
+     * Get a shared descriptor for a numeric type.
+     *
+     * @param typeId The typeId of the type being described
+     * @param precision The number of decimal digits.
+     * @param scale The number of digits after the decimal point.
+     * @param isNullable TRUE means it could contain NULL, FALSE means
+     *                                   it definitely cannot contain NULL.
+     * @param maximumWidth The maximum number of bytes for this datatype
+     */
+    public static DataTypeDescriptor getDataTypeDescriptor(TypeId typeId,
+                                                           int precision, int scale,
+                                                           boolean isNullable,
+                                                           int maximumWidth) {
+        return new DataTypeDescriptor(typeId, precision, scale, 
+                                      isNullable, maximumWidth).intern();
+    }
+
+    /**
+     * Get a shared descriptor with every attribute given, as when
+     * reading one back or changing the collation of another.
+     *
+     * @param typeId The typeId of the type being described
+     * @param precision The number of decimal digits.
+     * @param scale The number of digits after the decimal point.
+     * @param isNullable TRUE means it could contain NULL, FALSE means
+     *                                   it definitely cannot contain NULL.
+     * @param maximumWidth The maximum number of bytes for this datatype
+     * @param characterAttributes The character set and collation, or
+     *                            <code>null</code>
+     */
+    public static DataTypeDescriptor getDataTypeDescriptor(TypeId typeId,
+                                                           int precision, int scale,
+                                                           boolean isNullable,
+                                                           int maximumWidth,
+                                                           CharacterTypeAttributes characterAttributes) {
+        DataTypeDescriptor type = new DataTypeDescriptor(typeId, precision, scale, 
+                                                         isNullable, maximumWidth);
+        type.characterAttributes = characterAttributes;
+        return type.intern();
+    }
+
     /*
     ** Instance fields & methods
     */
@@ -588,7 +712,7 @@ public final class DataTypeDescriptor
             CharacterTypeAttributes.mergeCollations(characterAttributes, 
                                                     otherDTS.characterAttributes);
 
-        return higherType;
+        return higherType.intern();
     }
 
     /**
@@ -678,7 +802,34 @@ public final class DataTypeDescriptor
         if (isNullable() == isNullable)
             return this;
                 
-        return new DataTypeDescriptor(this, isNullable);
+        return new DataTypeDescriptor(this, isNullable).intern();
+    }
+
+    /**
+     * Return a shared type descriptor equal to this one, which may be this
+     * one. Since a DataTypeDescriptor is immutable, it can be used instead,
+     * so that equal types need not each be kept. User-defined types and
+     * row multisets are not shared.
+     */
+    public DataTypeDescriptor intern() {
+        if (typeId.isUserDefinedTypeId() || typeId.isRowMultiSet())
+            return this;
+        ConcurrentMap<DataTypeDescriptor,DataTypeDescriptor> map = internedMap();
+        DataTypeDescriptor shared = map.get(this);
+        if (shared != null)
+            return (shared.typeId == typeId) ? shared : this;
+        if (map.size() >= INTERNED_LIMIT)
+            return this;
+        shared = map.putIfAbsent(this, this);
+        return ((shared != null) && (shared.typeId == typeId)) ? shared : this;
+    }
+
+    private ConcurrentMap<DataTypeDescriptor,DataTypeDescriptor> internedMap() {
+        if ((characterAttributes == null) ||
+            (characterAttributes.getCollationDerivation() == null))
+            return interned;
+        else
+            return internedByDerivation.get(characterAttributes.getCollationDerivation());
     }
 
     public CharacterTypeAttributes getCharacterAttributes() {
@@ -705,6 +856,17 @@ public final class DataTypeDescriptor
             return true;
     }
 
+    public int hashCode() {
+        int hash = getTypeName().hashCode();
+        hash = 31 * hash + precision;
+        hash = 31 * hash + scale;
+        hash = 31 * hash + (isNullable ? 1 : 0);
+        hash = 31 * hash + maximumWidth;
+        if (characterAttributes != null)
+            hash = 31 * hash + characterAttributes.hashCode();
+        return hash;
+    }
+
     /**
      * Check if this type is comparable with the passed type.
      * 
@@ -1115,8 +1277,8 @@ public final class DataTypeDescriptor
             unsignedTypeId = TypeId.NUMERIC_UNSIGNED_ID;
         else
             throw new StandardException("Not a numeric type: " + this);            
-        return new DataTypeDescriptor(unsignedTypeId, precision, scale,
-                                      isNullable, maximumWidth);
+        return getDataTypeDescriptor(unsignedTypeId, precision, scale,
+                                     isNullable, maximumWidth);
     }
 
     public static int intervalMaxWidth(TypeId typeId, 
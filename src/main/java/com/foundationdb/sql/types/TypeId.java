@@ -42,6 +42,10 @@ package com.foundationdb.sql.types;
 import com.foundationdb.sql.StandardException;
 
 import java.sql.Types;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * TypeId describes the static information about a SQL type
@@ -407,6 +411,7 @@ public class TypeId
         INTERVAL_MINUTE_SECOND_ID,
 
         SMALLINT_UNSIGNED_ID,
+        MEDIUMINT_UNSIGNED_ID,
         INTEGER_UNSIGNED_ID,
         TINYINT_UNSIGNED_ID,
         BIGINT_UNSIGNED_ID,
@@ -425,9 +430,109 @@ public class TypeId
         LONGBLOB_ID,
         LONGTEXT_ID,
             
+        NATIONAL_CHAR_ID,
+        NATIONAL_VARCHAR_ID,
+        NATIONAL_LONGVARCHAR_ID,
+
         GUID_ID,
     };
 
+    /** The built-in types by SQL name, including alternative names. */
+    private static final Map<String,TypeId> SQL_TYPE_IDS;
+    /** The built-in types by the name of the corresponding Java type. */
+    private static final Map<String,TypeId> JAVA_TYPE_IDS;
+    static {
+        Map<String,TypeId> sqlTypeIds = new HashMap<String,TypeId>();
+        sqlTypeIds.put(BOOLEAN_NAME, BOOLEAN_ID);
+        sqlTypeIds.put(CHAR_NAME, CHAR_ID);
+        sqlTypeIds.put(DATE_NAME, DATE_ID);
+        sqlTypeIds.put(DOUBLE_NAME, DOUBLE_ID);
+        sqlTypeIds.put(FLOAT_NAME, REAL_ID);
+        sqlTypeIds.put(MEDIUMINT_NAME, MEDIUMINT_ID);
+        sqlTypeIds.put(INTEGER_NAME, INTEGER_ID);
+        sqlTypeIds.put(INT_NAME, INTEGER_ID);
+        sqlTypeIds.put(LONGINT_NAME, BIGINT_ID);
+        sqlTypeIds.put(REAL_NAME, REAL_ID);
+        sqlTypeIds.put(SMALLINT_NAME, SMALLINT_ID);
+        sqlTypeIds.put(TIME_NAME, TIME_ID);
+        sqlTypeIds.put(TIMESTAMP_NAME, TIMESTAMP_ID);
+        sqlTypeIds.put(VARCHAR_NAME, VARCHAR_ID);
+        sqlTypeIds.put(BIT_NAME, BIT_ID);
+        sqlTypeIds.put(VARBIT_NAME, VARBIT_ID);
+        sqlTypeIds.put(TINYINT_NAME, TINYINT_ID);
+        sqlTypeIds.put(DECIMAL_NAME, DECIMAL_ID);
+        sqlTypeIds.put(NUMERIC_NAME, NUMERIC_ID);
+        sqlTypeIds.put(LONGVARCHAR_NAME, LONGVARCHAR_ID);
+        sqlTypeIds.put(LONGVARBIT_NAME, LONGVARBIT_ID);
+        sqlTypeIds.put(BLOB_NAME, BLOB_ID);
+        sqlTypeIds.put(CLOB_NAME, CLOB_ID);
+        sqlTypeIds.put(TEXT_NAME, TEXT_ID);
+        sqlTypeIds.put(TINYBLOB_NAME, TINYBLOB_ID);
+        sqlTypeIds.put(TINYTEXT_NAME, TINYTEXT_ID);
+        sqlTypeIds.put(MEDIUMBLOB_NAME, MEDIUMBLOB_ID);
+        sqlTypeIds.put(MEDIUMTEXT_NAME, MEDIUMTEXT_ID);
+        sqlTypeIds.put(LONGBLOB_NAME, LONGBLOB_ID);
+        sqlTypeIds.put(LONGTEXT_NAME, LONGTEXT_ID);
+        sqlTypeIds.put(XML_NAME, XML_ID);
+        sqlTypeIds.put(INTERVAL_YEAR_NAME, INTERVAL_YEAR_ID);
+        sqlTypeIds.put(INTERVAL_MONTH_NAME, INTERVAL_MONTH_ID);
+        sqlTypeIds.put(INTERVAL_YEAR_MONTH_NAME, INTERVAL_YEAR_MONTH_ID);
+        sqlTypeIds.put(INTERVAL_DAY_NAME, INTERVAL_DAY_ID);
+        sqlTypeIds.put(INTERVAL_HOUR_NAME, INTERVAL_HOUR_ID);
+        sqlTypeIds.put(INTERVAL_MINUTE_NAME, INTERVAL_MINUTE_ID);
+        sqlTypeIds.put(INTERVAL_SECOND_NAME, INTERVAL_SECOND_ID);
+        sqlTypeIds.put(INTERVAL_DAY_HOUR_NAME, INTERVAL_DAY_HOUR_ID);
+        sqlTypeIds.put(INTERVAL_DAY_MINUTE_NAME, INTERVAL_DAY_MINUTE_ID);
+        sqlTypeIds.put(INTERVAL_DAY_SECOND_NAME, INTERVAL_DAY_SECOND_ID);
+        sqlTypeIds.put(INTERVAL_HOUR_MINUTE_NAME, INTERVAL_HOUR_MINUTE_ID);
+        sqlTypeIds.put(INTERVAL_HOUR_SECOND_NAME, INTERVAL_HOUR_SECOND_ID);
+        sqlTypeIds.put(INTERVAL_MINUTE_SECOND_NAME, INTERVAL_MINUTE_SECOND_ID);
+        sqlTypeIds.put(TINYINT_UNSIGNED_NAME, TINYINT_UNSIGNED_ID);
+        sqlTypeIds.put(SMALLINT_UNSIGNED_NAME, SMALLINT_UNSIGNED_ID);
+        sqlTypeIds.put(MEDIUMINT_UNSIGNED_NAME, MEDIUMINT_UNSIGNED_ID);
+        sqlTypeIds.put(INTEGER_UNSIGNED_NAME, INTEGER_UNSIGNED_ID);
+        sqlTypeIds.put(INT_UNSIGNED_NAME, INTEGER_UNSIGNED_ID);
+        sqlTypeIds.put(LONGINT_UNSIGNED_NAME, BIGINT_UNSIGNED_ID);
+        sqlTypeIds.put(FLOAT_UNSIGNED_NAME, REAL_UNSIGNED_ID);
+        sqlTypeIds.put(REAL_UNSIGNED_NAME, REAL_UNSIGNED_ID);
+        sqlTypeIds.put(DOUBLE_UNSIGNED_NAME, DOUBLE_UNSIGNED_ID);
+        sqlTypeIds.put(NUMERIC_UNSIGNED_NAME, NUMERIC_UNSIGNED_ID);
+        sqlTypeIds.put(DECIMAL_UNSIGNED_NAME, DECIMAL_UNSIGNED_ID);
+        sqlTypeIds.put(DATETIME_NAME, DATETIME_ID);
+        sqlTypeIds.put(YEAR_NAME, YEAR_ID);
+        sqlTypeIds.put(NATIONAL_CHAR_NAME, NATIONAL_CHAR_ID);
+        sqlTypeIds.put(NATIONAL_VARCHAR_NAME, NATIONAL_VARCHAR_ID);
+        sqlTypeIds.put(NATIONAL_LONGVARCHAR_NAME, NATIONAL_LONGVARCHAR_ID);
+        sqlTypeIds.put(GUID_NAME, GUID_ID);
+        sqlTypeIds.put(REF_NAME, REF_ID);
+        SQL_TYPE_IDS = Collections.unmodifiableMap(sqlTypeIds);
+
+        Map<String,TypeId> javaTypeIds = new HashMap<String,TypeId>();
+        javaTypeIds.put("java.lang.Boolean", BOOLEAN_ID);
+        javaTypeIds.put("boolean", BOOLEAN_ID);
+        javaTypeIds.put("byte[]", VARBIT_ID);
+        javaTypeIds.put("java.lang.String", VARCHAR_ID);
+        javaTypeIds.put("java.lang.Integer", INTEGER_ID);
+        javaTypeIds.put("int", INTEGER_ID);
+        javaTypeIds.put("byte", TINYINT_ID);
+        javaTypeIds.put("short", SMALLINT_ID);
+        javaTypeIds.put("java.lang.Long", BIGINT_ID);
+        javaTypeIds.put("long", BIGINT_ID);
+        javaTypeIds.put("java.lang.Float", REAL_ID);
+        javaTypeIds.put("float", REAL_ID);
+        javaTypeIds.put("java.lang.Double", DOUBLE_ID);
+        javaTypeIds.put("double", DOUBLE_ID);
+        javaTypeIds.put("java.math.BigDecimal", DECIMAL_ID);
+        javaTypeIds.put("java.sql.Date", DATE_ID);
+        javaTypeIds.put("java.sql.Time", TIME_ID);
+        javaTypeIds.put("java.sql.Timestamp", TIMESTAMP_ID);
+        javaTypeIds.put("java.sql.Blob", BLOB_ID);
+        javaTypeIds.put("java.sql.Clob", CLOB_ID);
+        javaTypeIds.put("com.foundationdb.sql.types.XML", XML_ID);
+        javaTypeIds.put("java.util.UUID", GUID_ID);
+        JAVA_TYPE_IDS = Collections.unmodifiableMap(javaTypeIds);
+    }
+
     /*
     ** Static methods to obtain TypeIds
     */
@@ -568,6 +673,16 @@ public class TypeId
         return (schemaName != null); 
     }
 
+    /** Get the schema of an ANSI UDT, or <code>null</code>. */
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    /** Get the name of this type without any schema. */
+    public String getUnqualifiedName() {
+        return unqualifiedName;
+    }
+
     /**
      * Get a TypeId for the class that corresponds to the given Java type
      * name.
@@ -579,79 +694,26 @@ public class TypeId
      */
     public static TypeId getSQLTypeForJavaType(String javaTypeName)
             throws StandardException {
-        if (javaTypeName.equals("java.lang.Boolean") ||
-            javaTypeName.equals("boolean")) {
-            return BOOLEAN_ID;
+        TypeId typeId = JAVA_TYPE_IDS.get(javaTypeName);
+        if (typeId != null) {
+            return typeId;
         }
-        else if (javaTypeName.equals("byte[]")) {
-            return VARBIT_ID;
-        }
-        else if (javaTypeName.equals("java.lang.String")) {
-            return VARCHAR_ID;
-        }
-        else if (javaTypeName.equals("java.lang.Integer") ||
-                 javaTypeName.equals("int")) {
-            return INTEGER_ID;
-        }
-        else if (javaTypeName.equals("byte")) {
-            return TINYINT_ID;
-        }
-        else if (javaTypeName.equals("short")) {
-            return SMALLINT_ID;
-        }
-        else if (javaTypeName.equals("java.lang.Long") ||
-                 javaTypeName.equals("long")) {
-            return BIGINT_ID;
-        }
-        else if (javaTypeName.equals("java.lang.Float") ||
-                 javaTypeName.equals("float")) {
-            return REAL_ID;
-        }
-        else if (javaTypeName.equals("java.lang.Double") ||
-                 javaTypeName.equals("double")) {
-            return DOUBLE_ID;
-        }
-        else if (javaTypeName.equals("java.math.BigDecimal")) {
-            return DECIMAL_ID;
-        }
-        else if (javaTypeName.equals("java.sql.Date")) {
-            return DATE_ID;
-        }
-        else if (javaTypeName.equals("java.sql.Time")) {
-            return TIME_ID;
-        }
-        else if (javaTypeName.equals("java.sql.Timestamp")) {
-            return TIMESTAMP_ID;
-        }
-        else if (javaTypeName.equals("java.sql.Blob")) {
-            return BLOB_ID;
-        }
-        else if (javaTypeName.equals("java.sql.Clob")) {
-            return CLOB_ID;
-        }
-        else if (javaTypeName.equals("com.foundationdb.sql.types.XML")) {
-            return XML_ID;
+        /*
+        ** If it's a Java primitive type, return null to indicate that
+        ** there is no corresponding SQL type (all the Java primitive
+        ** types that have corresponding SQL types are handled above).
+        **
+        ** There is only one primitive type not mentioned above, char.
+        */
+        if (javaTypeName.equals("char")) {
+            return null;
         }
-        else if (javaTypeName.equals("java.util.UUID"))
-            return GUID_ID;
-        else {
-            /*
-            ** If it's a Java primitive type, return null to indicate that
-            ** there is no corresponding SQL type (all the Java primitive
-            ** types that have corresponding SQL types are handled above).
-            **
-            ** There is only one primitive type not mentioned above, char.
-            */
-            if (javaTypeName.equals("char")) {
-                return null;
-            }
 
-            /*
-            ** It's a non-primitive type (a class) that does not correspond
-            ** to a SQL built-in type, so treat it as a user-defined type.
-            */
-            return TypeId.getUserDefinedTypeId(javaTypeName, false);
-        }
+        /*
+        ** It's a non-primitive type (a class) that does not correspond
+        ** to a SQL built-in type, so treat it as a user-defined type.
+        */
+        return TypeId.getUserDefinedTypeId(javaTypeName, false);
     }
 
     /**
@@ -660,189 +722,11 @@ public class TypeId
      * @return TypeId or null if there is no corresponding SQL type.
      */
     public static TypeId getBuiltInTypeId(String SQLTypeName) {
-
-        if (SQLTypeName.equals(BOOLEAN_NAME)) {
-            return BOOLEAN_ID;
-        }
-        if (SQLTypeName.equals(CHAR_NAME)) {
-            return CHAR_ID;
-        }
-        if (SQLTypeName.equals(DATE_NAME)) {
-            return DATE_ID;
-        }
-        if (SQLTypeName.equals(DOUBLE_NAME)) {
-            return DOUBLE_ID;
-        }
-        if (SQLTypeName.equals(FLOAT_NAME)) {
-            return REAL_ID;
-        }
-        if (SQLTypeName.equals(MEDIUMINT_NAME))
-            return MEDIUMINT_ID;
-        if (SQLTypeName.equals(INTEGER_NAME) ||
-            SQLTypeName.equals(INT_NAME)) {
-            return INTEGER_ID;
-        }
-        if (SQLTypeName.equals(LONGINT_NAME)) {
-            return BIGINT_ID;
-        }
-        if (SQLTypeName.equals(REAL_NAME)) {
-            return REAL_ID;
-        }
-        if (SQLTypeName.equals(SMALLINT_NAME)) {
-            return SMALLINT_ID;
-        }
-        if (SQLTypeName.equals(TIME_NAME)) {
-            return TIME_ID;
-        }
-        if (SQLTypeName.equals(TIMESTAMP_NAME)) {
-            return TIMESTAMP_ID;
-        }
-        if (SQLTypeName.equals(VARCHAR_NAME)) {
-            return VARCHAR_ID;
-        }
-        if (SQLTypeName.equals(BIT_NAME)) {
-            return BIT_ID;
-        }
-        if (SQLTypeName.equals(VARBIT_NAME)) {
-            return VARBIT_ID;
-        }
-        if (SQLTypeName.equals(TINYINT_NAME)) {
-            return TINYINT_ID;
-        }
-        if (SQLTypeName.equals(DECIMAL_NAME)) {
-            return DECIMAL_ID;
-        }
-        if (SQLTypeName.equals(NUMERIC_NAME)) {
-            return NUMERIC_ID;
-        }
-        if (SQLTypeName.equals(LONGVARCHAR_NAME)) {
-            return LONGVARCHAR_ID;
-        }
-        if (SQLTypeName.equals(LONGVARBIT_NAME)) {
-            return LONGVARBIT_ID;
-        }
-        if (SQLTypeName.equals(BLOB_NAME)) {
-            return BLOB_ID;
-        }
-        if (SQLTypeName.equals(CLOB_NAME)) {
-            return CLOB_ID;
-        }
-        if (SQLTypeName.equals(TEXT_NAME)) {
-            return TEXT_ID;
-        }
-        if (SQLTypeName.equals(TINYBLOB_NAME)) {
-            return TINYBLOB_ID;
-        }
-        if (SQLTypeName.equals(TINYTEXT_NAME)) {
-            return TINYTEXT_ID;
-        }
-        if (SQLTypeName.equals(MEDIUMBLOB_NAME)) {
-            return MEDIUMBLOB_ID;
-        }
-        if (SQLTypeName.equals(MEDIUMTEXT_NAME)) {
-            return MEDIUMTEXT_ID;
-        }
-        if (SQLTypeName.equals(LONGBLOB_NAME)) {
-            return LONGBLOB_ID;
-        }
-        if (SQLTypeName.equals(LONGTEXT_NAME)) {
-            return LONGTEXT_ID;
-        }
-        if (SQLTypeName.equals(XML_NAME)) {
-            return XML_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_YEAR_NAME)) {
-            return INTERVAL_YEAR_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_MONTH_NAME)) {
-            return INTERVAL_MONTH_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_YEAR_MONTH_NAME)) {
-            return INTERVAL_YEAR_MONTH_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_DAY_NAME)) {
-            return INTERVAL_DAY_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_HOUR_NAME)) {
-            return INTERVAL_HOUR_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_MINUTE_NAME)) {
-            return INTERVAL_MINUTE_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_SECOND_NAME)) {
-            return INTERVAL_SECOND_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_DAY_HOUR_NAME)) {
-            return INTERVAL_DAY_HOUR_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_DAY_MINUTE_NAME)) {
-            return INTERVAL_DAY_MINUTE_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_DAY_SECOND_NAME)) {
-            return INTERVAL_DAY_SECOND_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_HOUR_MINUTE_NAME)) {
-            return INTERVAL_HOUR_MINUTE_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_HOUR_SECOND_NAME)) {
-            return INTERVAL_HOUR_SECOND_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_MINUTE_SECOND_NAME)) {
-            return INTERVAL_MINUTE_SECOND_ID;
-        }
-        if (SQLTypeName.equals(TINYINT_UNSIGNED_NAME)) {
-            return TINYINT_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(SMALLINT_UNSIGNED_NAME)) {
-            return SMALLINT_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(INTEGER_UNSIGNED_NAME) ||
-            SQLTypeName.equals(INT_UNSIGNED_NAME)) {
-            return INTEGER_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(LONGINT_UNSIGNED_NAME)) {
-            return BIGINT_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(FLOAT_UNSIGNED_NAME)) {
-            return REAL_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(REAL_UNSIGNED_NAME)) {
-            return REAL_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(DOUBLE_UNSIGNED_NAME)) {
-            return DOUBLE_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(NUMERIC_UNSIGNED_NAME)) {
-            return NUMERIC_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(DECIMAL_UNSIGNED_NAME)) {
-            return DECIMAL_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(DATETIME_NAME)) {
-            return DATETIME_ID;
-        }
-        if (SQLTypeName.equals(YEAR_NAME)) {
-            return YEAR_ID;
-        }
-        if (SQLTypeName.equals(NATIONAL_CHAR_NAME)) {
-            return NATIONAL_CHAR_ID;
-        }
-        if (SQLTypeName.equals(NATIONAL_VARCHAR_NAME)) {
-            return NATIONAL_VARCHAR_ID;
-        }
-        if (SQLTypeName.equals(NATIONAL_LONGVARCHAR_NAME)) {
-            return NATIONAL_LONGVARCHAR_ID;
-        }
-        if (SQLTypeName.equals(GUID_NAME) ) {
-            return GUID_ID;
-        }
-
-        // Types defined below here are SQL types and non-JDBC types that are
-        // supported by Derby
-        if (SQLTypeName.equals(REF_NAME)) {
-            return REF_ID;
+        TypeId typeId = SQL_TYPE_IDS.get(SQLTypeName);
+        if (typeId == null) {
+            typeId = SQL_TYPE_IDS.get(SQLTypeName.toUpperCase(Locale.ENGLISH));
         }
-        return null;
+        return typeId;
     }
 
     /*
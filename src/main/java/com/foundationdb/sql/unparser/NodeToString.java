@@ -19,10 +19,17 @@ package com.foundationdb.sql.unparser;
 import com.foundationdb.sql.StandardException;
 import com.foundationdb.sql.parser.*;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class NodeToString
 {
@@ -30,7 +37,563 @@ public class NodeToString
     }
 
     public String toString(QueryTreeNode node) throws StandardException {
+        if (overridden(Hook.TO_STRING))
+            return nodeToString(node);
+        Buffer str = new Buffer();
+        toString(node, str);
+        return str.toString();
+    }
+
+    /** Append the SQL for the given node to <code>str</code>. */
+    public void toString(QueryTreeNode node, StringBuilder str) 
+            throws StandardException {
+        toString(node, new Buffer(str));
+    }
+
+    /** Append the SQL for the given node to <code>out</code>, such as a
+     * <code>Writer</code>, as it is unparsed.
+     */
+    public void appendTo(QueryTreeNode node, Appendable out) 
+            throws StandardException, IOException {
+        if (out instanceof StringBuilder) {
+            toString(node, (StringBuilder)out);
+            return;
+        }
+        Buffer str = new Buffer(out);
+        toString(node, str);
+        str.finish();
+    }
+
+    /** Append the SQL for the given node to <code>str</code>.
+     * Every child node is unparsed through here. Statements, query
+     * expressions, lists and the common operators write straight into
+     * the buffer, so that even a very large statement is unparsed in a
+     * single pass. Where a subclass overrides the <code>String</code>
+     * method for a kind of node, or one of the <code>String</code>
+     * helpers, such as {@link #maybeParens(QueryTreeNode)}, that one is
+     * called and its result appended instead, as it always was. One that
+     * overrides {@link #toString(QueryTreeNode)} itself has it called for
+     * every node.
+     */
+    public void toString(QueryTreeNode node, Buffer str) 
+            throws StandardException {
+        if (overridden(Hook.TO_STRING)) {
+            str.append(toString(node));
+            return;
+        }
+        if (overridden(Hook.NODE_TO_STRING)) {
+            str.append(nodeToString(node));
+            return;
+        }
+        switch (node.getNodeType()) {
+        case NodeTypes.CURSOR_NODE:
+            if (overridden(Hook.CURSOR_NODE)) break;
+            cursorNode((CursorNode)node, str);
+            return;
+        case NodeTypes.SELECT_NODE:
+            if (overridden(Hook.SELECT_NODE)) break;
+            selectNode((SelectNode)node, str);
+            return;
+        case NodeTypes.INSERT_NODE:
+            if (overridden(Hook.INSERT_NODE)) break;
+            insertNode((InsertNode)node, str);
+            return;
+        case NodeTypes.UPDATE_NODE:
+            if (overridden(Hook.UPDATE_NODE)) break;
+            updateNode((UpdateNode)node, str);
+            return;
+        case NodeTypes.DELETE_NODE:
+            if (overridden(Hook.DELETE_NODE)) break;
+            deleteNode((DeleteNode)node, str);
+            return;
+        case NodeTypes.SUBQUERY_NODE:
+            if (overridden(Hook.SUBQUERY_NODE)) break;
+            subqueryNode((SubqueryNode)node, str);
+            return;
+        case NodeTypes.RESULT_COLUMN_LIST:
+            if (overridden(Hook.RESULT_COLUMN_LIST)) break;
+            resultColumnList((ResultColumnList)node, str);
+            return;
+        case NodeTypes.RESULT_COLUMN:
+            if (overridden(Hook.RESULT_COLUMN)) break;
+            resultColumn((ResultColumn)node, str);
+            return;
+        case NodeTypes.FROM_LIST:
+            if (overridden(Hook.FROM_LIST)) break;
+            fromList((FromList)node, str);
+            return;
+        case NodeTypes.JOIN_NODE:
+        case NodeTypes.HALF_OUTER_JOIN_NODE:
+        case NodeTypes.FULL_OUTER_JOIN_NODE:
+            if (overridden(Hook.JOIN_NODE)) break;
+            joinNode((JoinNode)node, str);
+            return;
+        case NodeTypes.UNION_NODE:
+            if (overridden(Hook.UNION_NODE)) break;
+            unionNode((UnionNode)node, str);
+            return;
+        case NodeTypes.GROUP_BY_LIST:
+            if (overridden(Hook.GROUP_BY_LIST)) break;
+            groupByList((GroupByList)node, str);
+            return;
+        case NodeTypes.ORDER_BY_LIST:
+            if (overridden(Hook.ORDER_BY_LIST)) break;
+            orderByList((OrderByList)node, str);
+            return;
+        case NodeTypes.VALUE_NODE_LIST:
+            if (overridden(Hook.VALUE_NODE_LIST)) break;
+            valueNodeList((ValueNodeList)node, str);
+            return;
+        case NodeTypes.FROM_BASE_TABLE:
+            if (overridden(Hook.FROM_BASE_TABLE)) break;
+            fromBaseTable((FromBaseTable)node, str);
+            return;
+        case NodeTypes.FROM_SUBQUERY:
+            if (overridden(Hook.FROM_SUBQUERY)) break;
+            fromSubquery((FromSubquery)node, str);
+            return;
+        case NodeTypes.TABLE_NAME:
+            if (overridden(Hook.TABLE_NAME)) break;
+            tableName((TableName)node, str);
+            return;
+        case NodeTypes.COLUMN_REFERENCE:
+            if (overridden(Hook.COLUMN_REFERENCE)) break;
+            columnReference((ColumnReference)node, str);
+            return;
+        case NodeTypes.ROW_RESULT_SET_NODE:
+            if (overridden(Hook.ROW_RESULT_SET_NODE)) break;
+            rowResultSetNode((RowResultSetNode)node, str);
+            return;
+        case NodeTypes.ROWS_RESULT_SET_NODE:
+            if (overridden(Hook.ROWS_RESULT_SET_NODE)) break;
+            rowsResultSetNode((RowsResultSetNode)node, str);
+            return;
+        case NodeTypes.GROUP_BY_COLUMN:
+            if (overridden(Hook.GROUP_BY_COLUMN)) break;
+            groupByColumn((GroupByColumn)node, str);
+            return;
+        case NodeTypes.ORDER_BY_COLUMN:
+            if (overridden(Hook.ORDER_BY_COLUMN)) break;
+            orderByColumn((OrderByColumn)node, str);
+            return;
+        case NodeTypes.AND_NODE:
+        case NodeTypes.OR_NODE:
+            if (overridden(Hook.BINARY_LOGICAL_OPERATOR_NODE)) break;
+            binaryLogicalOperatorNode((BinaryLogicalOperatorNode)node, str);
+            return;
+        case NodeTypes.NARY_AND_NODE:
+        case NodeTypes.NARY_OR_NODE:
+            if (overridden(Hook.NARY_LOGICAL_OPERATOR_NODE)) break;
+            naryLogicalOperatorNode((NaryLogicalOperatorNode)node, str);
+            return;
+        case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+            if (overridden(Hook.BINARY_COMPARISON_OPERATOR_NODE)) break;
+            binaryComparisonOperatorNode((BinaryComparisonOperatorNode)node, str);
+            return;
+        case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
+        case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIV_OPERATOR_NODE:
+        case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
+        case NodeTypes.MOD_OPERATOR_NODE:
+            if (overridden(Hook.BINARY_ARITHMETIC_OPERATOR_NODE)) break;
+            binaryArithmeticOperatorNode((BinaryArithmeticOperatorNode)node, str);
+            return;
+        case NodeTypes.IN_LIST_OPERATOR_NODE:
+            if (overridden(Hook.IN_LIST_OPERATOR_NODE)) break;
+            inListOperatorNode((InListOperatorNode)node, str);
+            return;
+        case NodeTypes.BETWEEN_OPERATOR_NODE:
+            if (overridden(Hook.BETWEEN_OPERATOR_NODE)) break;
+            betweenOperatorNode((BetweenOperatorNode)node, str);
+            return;
+        default:
+            break;
+        }
+        str.append(nodeToString(node));
+    }
+
+    /** Where the SQL for a node is written: a <code>StringBuilder</code>
+     * or a buffer in front of some other <code>Appendable</code>.
+     * Between {@link #mark} and {@link #release} everything written is
+     * kept, so that it can be looked at or put in front of. Otherwise a
+     * full buffer is passed along as soon as it is written.
+     */
+    public static final class Buffer implements Appendable {
+        private static final int FLUSH_SIZE = 8192;
+
+        private final StringBuilder buffer;
+        private final Appendable out;
+        private int flushed, marks;
+        private IOException error;
+
+        public Buffer() {
+            this(new StringBuilder());
+        }
+
+        /** Write into <code>buffer</code>, after any text it already has. */
+        public Buffer(StringBuilder buffer) {
+            this.buffer = buffer;
+            this.out = null;
+        }
+
+        /** Write through to <code>out</code>, which gets everything once
+         * {@link #finish} is called.
+         */
+        public Buffer(Appendable out) {
+            this.buffer = new StringBuilder();
+            this.out = out;
+        }
+
+        public Buffer append(CharSequence s) {
+            buffer.append(s);
+            written();
+            return this;
+        }
+
+        public Buffer append(CharSequence s, int start, int end) {
+            buffer.append(s, start, end);
+            written();
+            return this;
+        }
+
+        public Buffer append(char c) {
+            buffer.append(c);
+            written();
+            return this;
+        }
+
+        public Buffer append(long l) {
+            buffer.append(l);
+            written();
+            return this;
+        }
+
+        /** The position after everything written so far. */
+        public int length() {
+            return flushed + buffer.length();
+        }
+
+        /** Keep everything written from here on until {@link #release}.
+         * @return the current position.
+         */
+        public int mark() {
+            marks++;
+            return length();
+        }
+
+        public void release() {
+            marks--;
+            written();
+        }
+
+        /** Find <code>s</code> at or after the marked position
+         * <code>from</code>.
+         */
+        public int indexOf(String s, int from) {
+            int index = buffer.indexOf(s, position(from));
+            return (index < 0) ? index : flushed + index;
+        }
+
+        /** Insert <code>c</code> at the marked position <code>at</code>. */
+        public void insert(int at, char c) {
+            buffer.insert(position(at), c);
+        }
+
+        /** Pass along whatever is left.
+         * @throws IOException if the <code>Appendable</code> failed,
+         * now or while being written.
+         */
+        public void finish() throws IOException {
+            if (out != null)
+                flush();
+            if (error != null)
+                throw error;
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+
+        private int position(int at) {
+            if (at < flushed)
+                throw new IllegalStateException("Position " + at + 
+                                                " already written");
+            return at - flushed;
+        }
+
+        private void written() {
+            if ((out != null) && (marks == 0) && (buffer.length() >= FLUSH_SIZE))
+                flush();
+        }
+
+        private void flush() {
+            if (error == null) {
+                try {
+                    out.append(buffer);
+                }
+                catch (IOException ex) {
+                    // Reported by finish, which every writer calls.
+                    error = ex;
+                }
+            }
+            flushed += buffer.length();
+            buffer.setLength(0);
+        }
+    }
+
+    /** The methods that a subclass may override to change how part of
+     * a statement is written.
+     */
+    private enum Hook {
+        TO_STRING("toString", QueryTreeNode.class),
+        NODE_TO_STRING("nodeToString", QueryTreeNode.class),
+        CURSOR_NODE("cursorNode", CursorNode.class),
+        SELECT_NODE("selectNode", SelectNode.class),
+        INSERT_NODE("insertNode", InsertNode.class),
+        UPDATE_NODE("updateNode", UpdateNode.class),
+        DELETE_NODE("deleteNode", DeleteNode.class),
+        SUBQUERY_NODE("subqueryNode", SubqueryNode.class),
+        RESULT_COLUMN_LIST("resultColumnList", ResultColumnList.class),
+        RESULT_COLUMN("resultColumn", ResultColumn.class),
+        FROM_LIST("fromList", FromList.class),
+        JOIN_NODE("joinNode", JoinNode.class),
+        UNION_NODE("unionNode", UnionNode.class),
+        GROUP_BY_LIST("groupByList", GroupByList.class),
+        ORDER_BY_LIST("orderByList", OrderByList.class),
+        VALUE_NODE_LIST("valueNodeList", ValueNodeList.class),
+        FROM_BASE_TABLE("fromBaseTable", FromBaseTable.class),
+        FROM_SUBQUERY("fromSubquery", FromSubquery.class),
+        TABLE_NAME("tableName", TableName.class),
+        COLUMN_REFERENCE("columnReference", ColumnReference.class),
+        ROW_RESULT_SET_NODE("rowResultSetNode", RowResultSetNode.class),
+        ROWS_RESULT_SET_NODE("rowsResultSetNode", RowsResultSetNode.class),
+        GROUP_BY_COLUMN("groupByColumn", GroupByColumn.class),
+        ORDER_BY_COLUMN("orderByColumn", OrderByColumn.class),
+        BINARY_LOGICAL_OPERATOR_NODE("binaryLogicalOperatorNode", BinaryLogicalOperatorNode.class),
+        NARY_LOGICAL_OPERATOR_NODE("naryLogicalOperatorNode", NaryLogicalOperatorNode.class),
+        BINARY_COMPARISON_OPERATOR_NODE("binaryComparisonOperatorNode", BinaryComparisonOperatorNode.class),
+        BINARY_ARITHMETIC_OPERATOR_NODE("binaryArithmeticOperatorNode", BinaryArithmeticOperatorNode.class),
+        IN_LIST_OPERATOR_NODE("inListOperatorNode", InListOperatorNode.class),
+        BETWEEN_OPERATOR_NODE("betweenOperatorNode", BetweenOperatorNode.class),
+        COLUMNAR_ROWS("columnarRows", ColumnarRows.class),
+        COMPACT_IN_LIST("compactInList", InListOperatorNode.class),
+        ROW_CTOR_NODE("rowCtorNode", RowConstructorNode.class),
+        CONSTANT_NODE("constantNode", ConstantNode.class),
+        INFIX_BINARY("infixBinary", BinaryOperatorNode.class),
+        NODE_LIST("nodeList", QueryTreeNodeList.class),
+        NODE_LIST_EXPR("nodeList", QueryTreeNodeList.class, boolean.class),
+        MAYBE_PARENS("maybeParens", QueryTreeNode.class),
+        ORDER_BY_LIST_FETCH_FIRST_OFFSET("orderByListFetchFirstOffset",
+                                         OrderByList.class, ValueNode.class, ValueNode.class);
+
+        final String methodName;
+        final Class<?>[] parameterTypes;
+
+        Hook(String methodName, Class<?>... parameterTypes) {
+            this.methodName = methodName;
+            this.parameterTypes = parameterTypes;
+        }
+
+        /** The parameters of the form that writes into a {@link Buffer}. */
+        Class<?>[] bufferParameterTypes() {
+            Class<?>[] result = Arrays.copyOf(parameterTypes, parameterTypes.length + 1);
+            result[parameterTypes.length] = Buffer.class;
+            return result;
+        }
+    }
+
+    // What the rows of a columnar VALUES go through when made into nodes.
+    private static final Set<Hook> ROW_HOOKS = 
+        EnumSet.of(Hook.TO_STRING, Hook.NODE_TO_STRING, Hook.CONSTANT_NODE,
+                   Hook.RESULT_COLUMN_LIST, Hook.RESULT_COLUMN, 
+                   Hook.NODE_LIST, Hook.NODE_LIST_EXPR, Hook.MAYBE_PARENS);
+    // Likewise the values of a compact IN list.
+    private static final Set<Hook> IN_LIST_HOOKS = 
+        EnumSet.of(Hook.TO_STRING, Hook.NODE_TO_STRING, Hook.CONSTANT_NODE,
+                   Hook.ROW_CTOR_NODE);
+
+    private static final ConcurrentMap<Class<?>,Set<Hook>> STRING_OVERRIDES =
+        new ConcurrentHashMap<Class<?>,Set<Hook>>();
+    private static final ConcurrentMap<Class<?>,Set<Hook>> ANY_OVERRIDES =
+        new ConcurrentHashMap<Class<?>,Set<Hook>>();
+
+    /** The hooks whose <code>String</code> form this class overrides,
+     * which must be called instead of writing into the buffer.
+     */
+    private final Set<Hook> stringOverrides = overrides(getClass(), false);
+    // Whether either form of what the columnar or compact values stand
+    // for is overridden, so that they must be written as nodes.
+    private final boolean rowsOverridden = 
+        !Collections.disjoint(overrides(getClass(), true), ROW_HOOKS);
+    private final boolean inListOverridden = 
+        !Collections.disjoint(overrides(getClass(), true), IN_LIST_HOOKS);
+
+    private boolean overridden(Hook hook) {
+        return stringOverrides.contains(hook);
+    }
+
+    private static Set<Hook> overrides(Class<?> clazz, boolean anyForm) {
+        ConcurrentMap<Class<?>,Set<Hook>> cache = anyForm ? ANY_OVERRIDES : STRING_OVERRIDES;
+        Set<Hook> result = cache.get(clazz);
+        if (result == null) {
+            result = EnumSet.noneOf(Hook.class);
+            for (Hook hook : Hook.values()) {
+                if (declares(clazz, hook.methodName, hook.parameterTypes) ||
+                    (anyForm && 
+                     declares(clazz, hook.methodName, hook.bufferParameterTypes())))
+                    result.add(hook);
+            }
+            cache.putIfAbsent(clazz, result);
+        }
+        return result;
+    }
+
+    // Whether a subclass between clazz and here declares the method.
+    private static boolean declares(Class<?> clazz, String name, Class<?>[] parameterTypes) {
+        for (Class<?> c = clazz; c != NodeToString.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return true;
+            }
+            catch (NoSuchMethodException ex) {
+            }
+        }
+        return false;
+    }
+
+    private void appendMaybeParens(QueryTreeNode node, Buffer str) 
+            throws StandardException {
+        if (overridden(Hook.MAYBE_PARENS))
+            str.append(maybeParens(node));
+        else
+            maybeParens(node, str);
+    }
+
+    private void appendNodeList(QueryTreeNodeList<? extends QueryTreeNode> nl, boolean expr,
+                                Buffer str)
+            throws StandardException {
+        if (overridden(Hook.NODE_LIST_EXPR))
+            str.append(expr ? nodeList(nl, true) : nodeList(nl));
+        else if (!expr && overridden(Hook.NODE_LIST))
+            str.append(nodeList(nl));
+        else
+            nodeList(nl, expr, str);
+    }
+
+    private void appendInfixBinary(BinaryOperatorNode node, Buffer str) 
+            throws StandardException {
+        if (overridden(Hook.INFIX_BINARY))
+            str.append(infixBinary(node));
+        else
+            infixBinary(node, str);
+    }
+
+    private void appendColumnarRows(ColumnarRows rows, Buffer str) 
+            throws StandardException {
+        if (overridden(Hook.COLUMNAR_ROWS))
+            str.append(columnarRows(rows));
+        else
+            columnarRows(rows, str);
+    }
+
+    private void appendCompactInList(InListOperatorNode node, Buffer str) 
+            throws StandardException {
+        if (overridden(Hook.COMPACT_IN_LIST))
+            str.append(compactInList(node));
+        else
+            compactInList(node, str);
+    }
+
+    private void appendOrderByListFetchFirstOffset(OrderByList orderByList,
+                                                   ValueNode fetchFirst,
+                                                   ValueNode offset,
+                                                   Buffer str) 
+            throws StandardException {
+        if (overridden(Hook.ORDER_BY_LIST_FETCH_FIRST_OFFSET))
+            str.append(orderByListFetchFirstOffset(orderByList, fetchFirst, offset));
+        else
+            orderByListFetchFirstOffset(orderByList, fetchFirst, offset, str);
+    }
+
+    protected String nodeToString(QueryTreeNode node) throws StandardException {
         switch (node.getNodeType()) {
+        case NodeTypes.CURSOR_NODE:
+            return cursorNode((CursorNode)node);
+        case NodeTypes.SELECT_NODE:
+            return selectNode((SelectNode)node);
+        case NodeTypes.INSERT_NODE:
+            return insertNode((InsertNode)node);
+        case NodeTypes.UPDATE_NODE:
+            return updateNode((UpdateNode)node);
+        case NodeTypes.DELETE_NODE:
+            return deleteNode((DeleteNode)node);
+        case NodeTypes.SUBQUERY_NODE:
+            return subqueryNode((SubqueryNode)node);
+        case NodeTypes.RESULT_COLUMN_LIST:
+            return resultColumnList((ResultColumnList)node);
+        case NodeTypes.RESULT_COLUMN:
+            return resultColumn((ResultColumn)node);
+        case NodeTypes.FROM_LIST:
+            return fromList((FromList)node);
+        case NodeTypes.JOIN_NODE:
+        case NodeTypes.HALF_OUTER_JOIN_NODE:
+        case NodeTypes.FULL_OUTER_JOIN_NODE:
+            return joinNode((JoinNode)node);
+        case NodeTypes.UNION_NODE:
+            return unionNode((UnionNode)node);
+        case NodeTypes.GROUP_BY_LIST:
+            return groupByList((GroupByList)node);
+        case NodeTypes.ORDER_BY_LIST:
+            return orderByList((OrderByList)node);
+        case NodeTypes.VALUE_NODE_LIST:
+            return valueNodeList((ValueNodeList)node);
+        case NodeTypes.FROM_BASE_TABLE:
+            return fromBaseTable((FromBaseTable)node);
+        case NodeTypes.FROM_SUBQUERY:
+            return fromSubquery((FromSubquery)node);
+        case NodeTypes.TABLE_NAME:
+            return tableName((TableName)node);
+        case NodeTypes.COLUMN_REFERENCE:
+            return columnReference((ColumnReference)node);
+        case NodeTypes.ROW_RESULT_SET_NODE:
+            return rowResultSetNode((RowResultSetNode)node);
+        case NodeTypes.ROWS_RESULT_SET_NODE:
+            return rowsResultSetNode((RowsResultSetNode)node);
+        case NodeTypes.GROUP_BY_COLUMN:
+            return groupByColumn((GroupByColumn)node);
+        case NodeTypes.ORDER_BY_COLUMN:
+            return orderByColumn((OrderByColumn)node);
+        case NodeTypes.AND_NODE:
+        case NodeTypes.OR_NODE:
+            return binaryLogicalOperatorNode((BinaryLogicalOperatorNode)node);
+        case NodeTypes.NARY_AND_NODE:
+        case NodeTypes.NARY_OR_NODE:
+            return naryLogicalOperatorNode((NaryLogicalOperatorNode)node);
+        case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+            return binaryComparisonOperatorNode((BinaryComparisonOperatorNode)node);
+        case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
+        case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIV_OPERATOR_NODE:
+        case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
+        case NodeTypes.MOD_OPERATOR_NODE:
+            return binaryArithmeticOperatorNode((BinaryArithmeticOperatorNode)node);
+        case NodeTypes.IN_LIST_OPERATOR_NODE:
+            return inListOperatorNode((InListOperatorNode)node);
+        case NodeTypes.BETWEEN_OPERATOR_NODE:
+            return betweenOperatorNode((BetweenOperatorNode)node);
         case NodeTypes.CREATE_TABLE_NODE:
             return createTableNode((CreateTableNode)node);
         case NodeTypes.CREATE_VIEW_NODE:
@@ -77,58 +640,12 @@ public class NodeToString
             return createAliasNode((CreateAliasNode)node);
         case NodeTypes.RENAME_NODE:
             return renameNode((RenameNode)node);
-        case NodeTypes.CURSOR_NODE:
-            return cursorNode((CursorNode)node);
-        case NodeTypes.SELECT_NODE:
-            return selectNode((SelectNode)node);
-        case NodeTypes.INSERT_NODE:
-            return insertNode((InsertNode)node);
-        case NodeTypes.UPDATE_NODE:
-            return updateNode((UpdateNode)node);
-        case NodeTypes.DELETE_NODE:
-            return deleteNode((DeleteNode)node);
-        case NodeTypes.SUBQUERY_NODE:
-            return subqueryNode((SubqueryNode)node);
-        case NodeTypes.RESULT_COLUMN_LIST:
-            return resultColumnList((ResultColumnList)node);
-        case NodeTypes.RESULT_COLUMN:
-            return resultColumn((ResultColumn)node);
         case NodeTypes.ALL_RESULT_COLUMN:
             return allResultColumn((AllResultColumn)node);
-        case NodeTypes.FROM_LIST:
-            return fromList((FromList)node);
-        case NodeTypes.JOIN_NODE:
-        case NodeTypes.HALF_OUTER_JOIN_NODE:
-        case NodeTypes.FULL_OUTER_JOIN_NODE:
-            return joinNode((JoinNode)node);
-        case NodeTypes.UNION_NODE:
-            return unionNode((UnionNode)node);
-        case NodeTypes.GROUP_BY_LIST:
-            return groupByList((GroupByList)node);
         case NodeTypes.GROUP_CONCAT_NODE:
             return groupConcat((GroupConcatNode)node);
-        case NodeTypes.ORDER_BY_LIST:
-            return orderByList((OrderByList)node);
-        case NodeTypes.VALUE_NODE_LIST:
-            return valueNodeList((ValueNodeList)node);
-        case NodeTypes.FROM_BASE_TABLE:
-            return fromBaseTable((FromBaseTable)node);
-        case NodeTypes.FROM_SUBQUERY:
-            return fromSubquery((FromSubquery)node);
-        case NodeTypes.TABLE_NAME:
-            return tableName((TableName)node);
-        case NodeTypes.COLUMN_REFERENCE:
-            return columnReference((ColumnReference)node);
         case NodeTypes.VIRTUAL_COLUMN_NODE:
             return virtualColumnNode((VirtualColumnNode)node);
-        case NodeTypes.ROW_RESULT_SET_NODE:
-            return rowResultSetNode((RowResultSetNode)node);
-        case NodeTypes.ROWS_RESULT_SET_NODE:
-            return rowsResultSetNode((RowsResultSetNode)node);
-        case NodeTypes.GROUP_BY_COLUMN:
-            return groupByColumn((GroupByColumn)node);
-        case NodeTypes.ORDER_BY_COLUMN:
-            return orderByColumn((OrderByColumn)node);
         case NodeTypes.PARTITION_BY_LIST:
             return partitionByList((PartitionByList)node);
         case NodeTypes.PARTITION_BY_COLUMN:
@@ -141,23 +658,6 @@ public class NodeToString
             return aggregateWindowFunctionNode((AggregateWindowFunctionNode)node);
         case NodeTypes.ROW_NUMBER_FUNCTION_NODE:
             return rowNumberFunctionNode((RowNumberFunctionNode)node);
-        case NodeTypes.AND_NODE:
-        case NodeTypes.OR_NODE:
-            return binaryLogicalOperatorNode((BinaryLogicalOperatorNode)node);
-        case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
-        case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
-        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
-        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
-        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
-        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
-            return binaryComparisonOperatorNode((BinaryComparisonOperatorNode)node);
-        case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
-        case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
-        case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
-        case NodeTypes.BINARY_DIV_OPERATOR_NODE:
-        case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
-        case NodeTypes.MOD_OPERATOR_NODE:
-            return binaryArithmeticOperatorNode((BinaryArithmeticOperatorNode)node);
         case NodeTypes.BINARY_BIT_OPERATOR_NODE:
             return binaryBitOperatorNode((BinaryBitOperatorNode)node);
         case NodeTypes.CONCATENATION_OPERATOR_NODE:
@@ -202,12 +702,8 @@ public class NodeToString
             return timestampFunctionNode((TernaryOperatorNode)node);
         case NodeTypes.TRIM_OPERATOR_NODE:
             return trimOperatorNode((TrimOperatorNode)node);
-        case NodeTypes.IN_LIST_OPERATOR_NODE:
-            return inListOperatorNode((InListOperatorNode)node);
         case NodeTypes.ROW_CTOR_NODE:
             return rowCtorNode((RowConstructorNode)node);
-        case NodeTypes.BETWEEN_OPERATOR_NODE:
-            return betweenOperatorNode((BetweenOperatorNode)node);
         case NodeTypes.CONDITIONAL_NODE:
             return conditionalNode((ConditionalNode)node);
         case NodeTypes.SIMPLE_CASE_NODE:
@@ -558,67 +1054,89 @@ public class NodeToString
     }
 
     protected String cursorNode(CursorNode node) throws StandardException {
-        String result = toString(node.getResultSetNode());
-        result = result + orderByListFetchFirstOffset(node.getOrderByList(),
-                                                      node.getFetchFirstClause(),
-                                                      node.getOffsetClause());
-        return result;
+        Buffer str = new Buffer();
+        cursorNode(node, str);
+        return str.toString();
+    }
+
+    protected void cursorNode(CursorNode node, Buffer str) throws StandardException {
+        toString(node.getResultSetNode(), str);
+        appendOrderByListFetchFirstOffset(node.getOrderByList(),
+                                          node.getFetchFirstClause(),
+                                          node.getOffsetClause(),
+                                          str);
     }
 
     protected String selectNode(SelectNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("SELECT ");
+        Buffer str = new Buffer();
+        selectNode(node, str);
+        return str.toString();
+    }
+
+    protected void selectNode(SelectNode node, Buffer str) throws StandardException {
+        str.append("SELECT ");
         if (node.isDistinct())
             str.append("DISTINCT ");
-        str.append(toString(node.getResultColumns()));
+        toString(node.getResultColumns(), str);
         if (!node.getFromList().isEmpty()) {
             str.append(" FROM ");
-            str.append(toString(node.getFromList()));
+            toString(node.getFromList(), str);
         }
         if (node.getWhereClause() != null) {
             str.append(" WHERE ");
-            str.append(toString(node.getWhereClause()));
+            toString(node.getWhereClause(), str);
         }
         if (node.getGroupByList() != null) {
             str.append(" ");
-            str.append(toString(node.getGroupByList()));
+            toString(node.getGroupByList(), str);
         }
         if (node.getHavingClause() != null) {
             str.append(" HAVING ");
-            str.append(toString(node.getHavingClause()));
+            toString(node.getHavingClause(), str);
         }
         if (node.getWindows() != null) {
             str.append(" ");
             str.append(windowList(node.getWindows())); // Does not have NodeType.
         }
-        return str.toString();
     }
 
     protected String insertNode(InsertNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("INSERT INTO ");
-        str.append(toString(node.getTargetTableName()));
+        Buffer str = new Buffer();
+        insertNode(node, str);
+        return str.toString();
+    }
+
+    protected void insertNode(InsertNode node, Buffer str) throws StandardException {
+        str.append("INSERT INTO ");
+        toString(node.getTargetTableName(), str);
         if (node.getTargetColumnList() != null) {
             str.append("(");
-            str.append(toString(node.getTargetColumnList()));
+            toString(node.getTargetColumnList(), str);
             str.append(")");
         }
         str.append(" ");
-        str.append(toString(node.getResultSetNode()));
+        toString(node.getResultSetNode(), str);
         if (node.getOrderByList() != null) {
             str.append(" ");
-            str.append(toString(node.getOrderByList()));
+            toString(node.getOrderByList(), str);
         }
         if (node.getReturningList() != null) {
             str.append(" RETURNING ");
-            str.append(toString(node.getReturningList()));
+            toString(node.getReturningList(), str);
         }
-        return str.toString();
     }
 
     protected String updateNode(UpdateNode unode) throws StandardException {
+        Buffer str = new Buffer();
+        updateNode(unode, str);
+        return str.toString();
+    }
+
+    protected void updateNode(UpdateNode unode, Buffer str) throws StandardException {
         // Cf. Parser's getUpdateNode().
         SelectNode snode = (SelectNode)unode.getResultSetNode();
-        StringBuilder str = new StringBuilder("UPDATE ");
-        str.append(toString(snode.getFromList().get(0)));
+        str.append("UPDATE ");
+        toString(snode.getFromList().get(0), str);
         str.append(" SET ");
         boolean first = true;
         for (ResultColumn col : snode.getResultColumns()) {
@@ -626,119 +1144,240 @@ public class NodeToString
                 first = false;
             else
                 str.append(", ");
-            str.append(toString(col.getReference()));
+            toString(col.getReference(), str);
             str.append(" = ");
-            str.append(maybeParens(col.getExpression()));
+            appendMaybeParens(col.getExpression(), str);
         }
         if (snode.getWhereClause() != null) {
             str.append(" WHERE ");
-            str.append(toString(snode.getWhereClause()));
+            toString(snode.getWhereClause(), str);
         }
         if (unode.getReturningList() != null) {
             str.append(" RETURNING ");
-            str.append(toString(unode.getReturningList()));
+            toString(unode.getReturningList(), str);
         }
-        return str.toString();
     }
 
     protected String deleteNode(DeleteNode dnode) throws StandardException {
+        Buffer str = new Buffer();
+        deleteNode(dnode, str);
+        return str.toString();
+    }
+
+    protected void deleteNode(DeleteNode dnode, Buffer str) throws StandardException {
         // Cf. Parser's getDeleteNode().
         SelectNode snode = (SelectNode)dnode.getResultSetNode();
-        StringBuilder str = new StringBuilder("DELETE FROM ");
-        str.append(toString(snode.getFromList().get(0)));
+        str.append("DELETE FROM ");
+        toString(snode.getFromList().get(0), str);
         if (snode.getWhereClause() != null) {
             str.append(" WHERE ");
-            str.append(toString(snode.getWhereClause()));
+            toString(snode.getWhereClause(), str);
         }
         if (dnode.getReturningList() != null) {
             str.append(" RETURNING ");
-            str.append(toString(dnode.getReturningList()));
+            toString(dnode.getReturningList(), str);
         }
-        return str.toString();
     }
 
     protected String subqueryNode(SubqueryNode node) throws StandardException {
-        String str = toString(node.getResultSet());
-        str = str + orderByListFetchFirstOffset(node.getOrderByList(),
-                                                node.getFetchFirst(),
-                                                node.getOffset());
-        str = "(" + str + ")";
+        Buffer str = new Buffer();
+        subqueryNode(node, str);
+        return str.toString();
+    }
+
+    protected void subqueryNode(SubqueryNode node, Buffer str) throws StandardException {
+        String operator;
         switch (node.getSubqueryType()) {
         case FROM:
         case EXPRESSION:
         default:
-            return str;
+            operator = null;
+            break;
         case EXISTS:
-            return "EXISTS " + str;
+            str.append("EXISTS ");
+            operator = null;
+            break;
         case NOT_EXISTS:
-            return "NOT EXISTS " + str;
+            str.append("NOT EXISTS ");
+            operator = null;
+            break;
         case IN:
-            return maybeParens(node.getLeftOperand()) + " IN " + str;
+            operator = " IN ";
+            break;
         case NOT_IN:
-            return maybeParens(node.getLeftOperand()) + " NOT IN " + str;
+            operator = " NOT IN ";
+            break;
         case EQ_ANY:
-            return maybeParens(node.getLeftOperand()) + " = ANY " + str;
+            operator = " = ANY ";
+            break;
         case EQ_ALL:
-            return maybeParens(node.getLeftOperand()) + " = ALL " + str;
+            operator = " = ALL ";
+            break;
         case NE_ANY:
-            return maybeParens(node.getLeftOperand()) + " <> ANY " + str;
+            operator = " <> ANY ";
+            break;
         case NE_ALL:
-            return maybeParens(node.getLeftOperand()) + " <> ALL " + str;
+            operator = " <> ALL ";
+            break;
         case GT_ANY:
-            return maybeParens(node.getLeftOperand()) + " > ANY " + str;
+            operator = " > ANY ";
+            break;
         case GT_ALL:
-            return maybeParens(node.getLeftOperand()) + " > ALL " + str;
+            operator = " > ALL ";
+            break;
         case GE_ANY:
-            return maybeParens(node.getLeftOperand()) + " >= ANY " + str;
+            operator = " >= ANY ";
+            break;
         case GE_ALL:
-            return maybeParens(node.getLeftOperand()) + " > ANY " + str;
+            operator = " > ANY ";
+            break;
         case LT_ANY:
-            return maybeParens(node.getLeftOperand()) + " < ANY " + str;
+            operator = " < ANY ";
+            break;
         case LT_ALL:
-            return maybeParens(node.getLeftOperand()) + " < ALL " + str;
+            operator = " < ALL ";
+            break;
         case LE_ANY:
-            return maybeParens(node.getLeftOperand()) + " <= ANY " + str;
+            operator = " <= ANY ";
+            break;
         case LE_ALL:
-            return maybeParens(node.getLeftOperand()) + " <= ALL " + str;
+            operator = " <= ALL ";
+            break;
+        }
+        if (operator != null) {
+            appendMaybeParens(node.getLeftOperand(), str);
+            str.append(operator);
         }
+        str.append("(");
+        toString(node.getResultSet(), str);
+        appendOrderByListFetchFirstOffset(node.getOrderByList(),
+                                          node.getFetchFirst(),
+                                          node.getOffset(),
+                                          str);
+        str.append(")");
     }
 
     protected String rowResultSetNode(RowResultSetNode node) throws StandardException {
-        return "VALUES(" + toString(node.getResultColumns()) + ")";
+        Buffer str = new Buffer();
+        rowResultSetNode(node, str);
+        return str.toString();
+    }
+
+    protected void rowResultSetNode(RowResultSetNode node, Buffer str) throws StandardException {
+        str.append("VALUES(");
+        toString(node.getResultColumns(), str);
+        str.append(")");
     }
 
     protected String rowsResultSetNode(RowsResultSetNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("VALUES");
+        Buffer str = new Buffer();
+        rowsResultSetNode(node, str);
+        return str.toString();
+    }
+
+    protected void rowsResultSetNode(RowsResultSetNode node, Buffer str) throws StandardException {
+        if (node.isColumnar()) {
+            appendColumnarRows(node.getColumnarRows(), str);
+            return;
+        }
+        appendRows(node.getRows(), str);
+    }
+
+    private void appendRows(List<RowResultSetNode> rows, Buffer str) 
+            throws StandardException {
+        str.append("VALUES");
         boolean first = true;
-        for (RowResultSetNode row : node.getRows()) {
+        for (RowResultSetNode row : rows) {
             if (first)
                 first = false;
             else
                 str.append(", ");
             str.append("(");
-            str.append(toString(row.getResultColumns()));
+            toString(row.getResultColumns(), str);
             str.append(")");
         }
+    }
+
+    protected String columnarRows(ColumnarRows rows) throws StandardException {
+        Buffer str = new Buffer();
+        columnarRows(rows, str);
         return str.toString();
     }
 
+    protected void columnarRows(ColumnarRows rows, Buffer str) throws StandardException {
+        if (rowsOverridden) {
+            // Integers and strings are written straight from the
+            // columns below, which would skip overrides for the nodes
+            // they stand for. Make those nodes instead, leaving the rows
+            // held by column.
+            appendRows(rows.makeRows(), str);
+            return;
+        }
+        str.append("VALUES");
+        for (int i = 0; i < rows.getRowCount(); i++) {
+            if (i > 0)
+                str.append(", ");
+            str.append("(");
+            for (int j = 0; j < rows.getColumnCount(); j++) {
+                if (j > 0)
+                    str.append(", ");
+                if (rows.isNull(i, j)) {
+                    str.append("NULL");
+                    continue;
+                }
+                switch (rows.getKind(j)) {
+                case LONG:
+                    str.append(rows.getLong(i, j));
+                    break;
+                case STRING:
+                    str.append(stringConstant(rows.getString(i, j)));
+                    break;
+                default:
+                    appendMaybeParens(rows.getNode(i, j), str);
+                    break;
+                }
+            }
+            str.append(")");
+        }
+    }
+
     protected String resultColumnList(ResultColumnList node) throws StandardException {
-        return nodeList(node);
+        Buffer str = new Buffer();
+        resultColumnList(node, str);
+        return str.toString();
+    }
+
+    protected void resultColumnList(ResultColumnList node, Buffer str) throws StandardException {
+        appendNodeList(node, false, str);
     }
 
     protected String resultColumn(ResultColumn node) throws StandardException {
-        if (node.getReference() != null)
-            return toString(node.getReference());
+        Buffer str = new Buffer();
+        resultColumn(node, str);
+        return str.toString();
+    }
+
+    protected void resultColumn(ResultColumn node, Buffer str) throws StandardException {
+        if (node.getReference() != null) {
+            toString(node.getReference(), str);
+            return;
+        }
 
         String n = maybeQuote(node.getName());
-        if (node.getExpression() == null)
-            return n;
+        if (node.getExpression() == null) {
+            str.append(n);
+            return;
+        }
 
-        String x = maybeParens(node.getExpression());
-        if ((n == null) || n.equals(x))
-            return x;
-        else
-            return x + " AS " + n;
+        int start = str.mark();
+        appendMaybeParens(node.getExpression(), str);
+        boolean redundant = (n == null) ||
+            ((str.length() - start == n.length()) && (str.indexOf(n, start) == start));
+        str.release();
+        if (!redundant) {
+            str.append(" AS ");
+            str.append(n);
+        }
     }
 
     protected String allResultColumn(AllResultColumn node) throws StandardException {
@@ -750,38 +1389,61 @@ public class NodeToString
     }
 
     protected String fromList(FromList node) throws StandardException {
-        return nodeList(node);
+        Buffer str = new Buffer();
+        fromList(node, str);
+        return str.toString();
+    }
+
+    protected void fromList(FromList node, Buffer str) throws StandardException {
+        appendNodeList(node, false, str);
     }
 
     protected String fromBaseTable(FromBaseTable node) throws StandardException {
-        String tn = toString(node.getOrigTableName());
+        Buffer str = new Buffer();
+        fromBaseTable(node, str);
+        return str.toString();
+    }
+
+    protected void fromBaseTable(FromBaseTable node, Buffer str) throws StandardException {
+        toString(node.getOrigTableName(), str);
         String n = maybeQuote(node.getCorrelationName());
-        if (n == null)
-            return tn;
-        else
-            return tn + " AS " + n;
+        if (n != null) {
+            str.append(" AS ");
+            str.append(n);
+        }
     }
 
     protected String fromSubquery(FromSubquery node) throws StandardException {
-        StringBuilder str = new StringBuilder(toString(node.getSubquery()));
+        Buffer str = new Buffer();
+        fromSubquery(node, str);
+        return str.toString();
+    }
+
+    protected void fromSubquery(FromSubquery node, Buffer str) throws StandardException {
+        str.append('(');
+        toString(node.getSubquery(), str);
         if (node.getOrderByList() != null) {
             str.append(' ');
-            str.append(toString(node.getOrderByList()));
+            toString(node.getOrderByList(), str);
         }
-        str.insert(0, '(');
         str.append(')');
         str.append(" AS ");
         str.append(maybeQuote(node.getCorrelationName()));
         if (node.getResultColumns() != null) {
             str.append('(');
-            str.append(toString(node.getResultColumns()));
+            toString(node.getResultColumns(), str);
             str.append(')');
         }
-        return str.toString();
     }
 
     protected String joinNode(JoinNode node) throws StandardException {
-        StringBuilder str = new StringBuilder(toString(node.getLeftResultSet()));
+        Buffer str = new Buffer();
+        joinNode(node, str);
+        return str.toString();
+    }
+
+    protected void joinNode(JoinNode node, Buffer str) throws StandardException {
+        toString(node.getLeftResultSet(), str);
         JoinNode.JoinType joinType = JoinNode.JoinType.INNER;
         if (node instanceof HalfOuterJoinNode)
             joinType = ((HalfOuterJoinNode)node).isRightOuterJoin() ?
@@ -793,43 +1455,63 @@ public class NodeToString
             str.append("NATURAL ");
         str.append(JoinNode.joinTypeToString(joinType));
         str.append(' ');
-        str.append(toString(node.getRightResultSet()));
+        toString(node.getRightResultSet(), str);
         if (node.getJoinClause() != null) {
             str.append(" ON ");
-            str.append(maybeParens(node.getJoinClause()));
+            appendMaybeParens(node.getJoinClause(), str);
         }
         if (node.getUsingClause() != null) {
             str.append(" USING (");
-            str.append(toString(node.getUsingClause()));
+            toString(node.getUsingClause(), str);
             str.append(')');
         }
-        return str.toString();
     }
 
     protected String unionNode(UnionNode node) throws StandardException {
-        return toString(node.getLeftResultSet()) + " UNION " +
-               toString(node.getRightResultSet());
+        Buffer str = new Buffer();
+        unionNode(node, str);
+        return str.toString();
+    }
+
+    protected void unionNode(UnionNode node, Buffer str) throws StandardException {
+        toString(node.getLeftResultSet(), str);
+        str.append(" UNION ");
+        toString(node.getRightResultSet(), str);
     }
 
     protected String tableName(TableName node) throws StandardException {
+        Buffer str = new Buffer();
+        tableName(node, str);
+        return str.toString();
+    }
+
+    protected void tableName(TableName node, Buffer str) throws StandardException {
         String schema = node.getSchemaName();
         String table = node.getTableName();
 
-        if (schema == null)
-            return maybeQuote(table);
-        else
-            return maybeQuote(schema) + "." + maybeQuote(table);
+        if (schema != null) {
+            str.append(maybeQuote(schema));
+            str.append(".");
+        }
+        str.append(maybeQuote(table));
     }
 
     protected String columnReference(ColumnReference node) throws StandardException {
+        Buffer str = new Buffer();
+        columnReference(node, str);
+        return str.toString();
+    }
+
+    protected void columnReference(ColumnReference node, Buffer str) throws StandardException {
         // TODO does maybeQuote(node.getTableName()) deal with schema names correctly?
         String tableName = node.getTableName();
         String columnName = node.getColumnName();
 
-        if (tableName != null)
-            return maybeQuote(tableName) + "." + maybeQuote(columnName);
-        else
-            return maybeQuote(columnName);
+        if (tableName != null) {
+            str.append(maybeQuote(tableName));
+            str.append(".");
+        }
+        str.append(maybeQuote(columnName));
     }
 
     /** Quote a column name if it contains $ */
@@ -837,16 +1519,45 @@ public class NodeToString
         // If identifier is lowercase and does not match IDENTIFIER from SQLGrammer.jj, no need for quotes
         if (identifier == null)
             return null;
-        else if (identifier.matches("[a-z_][a-z0-9_$]*") && !isReserved(identifier))
+        else if (isLowerCaseIdentifier(identifier) && 
+                 !RESERVED_WORDS.contains(identifier)) // Already lowercase.
             return identifier;
-        else
-            return '"' + identifier.replace("\"", "\"\"") + '"';
+        String quoted = QUOTED_IDENTIFIERS.get(identifier);
+        if (quoted == null) {
+            quoted = '"' + identifier.replace("\"", "\"\"") + '"';
+            if (QUOTED_IDENTIFIERS.size() < QUOTED_IDENTIFIERS_LIMIT)
+                QUOTED_IDENTIFIERS.put(identifier, quoted);
+        }
+        return quoted;
+    }
+
+    /** Does this match <code>[a-z_][a-z0-9_$]*</code>? */
+    protected static boolean isLowerCaseIdentifier(String identifier) {
+        int len = identifier.length();
+        if (len == 0)
+            return false;
+        char ch = identifier.charAt(0);
+        if (!(((ch >= 'a') && (ch <= 'z')) || (ch == '_')))
+            return false;
+        for (int i = 1; i < len; i++) {
+            ch = identifier.charAt(i);
+            if (!(((ch >= 'a') && (ch <= 'z')) || 
+                  ((ch >= '0') && (ch <= '9')) ||
+                  (ch == '_') || (ch == '$')))
+                return false;
+        }
+        return true;
     }
 
     public static boolean isReserved(String word) {
         return RESERVED_WORDS.contains(word.toLowerCase());
     }
 
+    // The same names tend to need quoting over and over again.
+    private static final int QUOTED_IDENTIFIERS_LIMIT = 1024;
+    private static final ConcurrentMap<String,String> QUOTED_IDENTIFIERS =
+        new ConcurrentHashMap<String,String>();
+
     private static final Set<String> RESERVED_WORDS = getReservedWords();
 
     private static Set<String> getReservedWords() {
@@ -1071,26 +1782,51 @@ public class NodeToString
     }
 
     protected String groupByList(GroupByList node) throws StandardException {
-        return "GROUP BY " + nodeList(node);
+        Buffer str = new Buffer();
+        groupByList(node, str);
+        return str.toString();
+    }
+
+    protected void groupByList(GroupByList node, Buffer str) throws StandardException {
+        str.append("GROUP BY ");
+        appendNodeList(node, false, str);
     }
 
     protected String groupByColumn(GroupByColumn node) throws StandardException {
-        return maybeParens(node.getColumnExpression());
+        Buffer str = new Buffer();
+        groupByColumn(node, str);
+        return str.toString();
+    }
+
+    protected void groupByColumn(GroupByColumn node, Buffer str) throws StandardException {
+        appendMaybeParens(node.getColumnExpression(), str);
     }
 
     protected String orderByList(OrderByList node) throws StandardException {
-        return "ORDER BY " + nodeList(node);
+        Buffer str = new Buffer();
+        orderByList(node, str);
+        return str.toString();
+    }
+
+    protected void orderByList(OrderByList node, Buffer str) throws StandardException {
+        str.append("ORDER BY ");
+        appendNodeList(node, false, str);
     }
 
     protected String orderByColumn(OrderByColumn node) throws StandardException {
-        String result = maybeParens(node.getExpression());
+        Buffer str = new Buffer();
+        orderByColumn(node, str);
+        return str.toString();
+    }
+
+    protected void orderByColumn(OrderByColumn node, Buffer str) throws StandardException {
+        appendMaybeParens(node.getExpression(), str);
         if (!node.isAscending()) {
-            result += " DESC";
+            str.append(" DESC");
         }
         if (node.isNullsOrderedLow()) {
-            result += " NULLS FIRST";
+            str.append(" NULLS FIRST");
         }
-        return result;
     }
 
     protected String partitionByList(PartitionByList node) throws StandardException {
@@ -1141,19 +1877,61 @@ public class NodeToString
             " OVER " + toString(node.getWindow());
     }
 
-    protected String binaryLogicalOperatorNode(BinaryLogicalOperatorNode node)
+    protected String binaryLogicalOperatorNode(BinaryLogicalOperatorNode node) throws StandardException {
+        Buffer str = new Buffer();
+        binaryLogicalOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected void binaryLogicalOperatorNode(BinaryLogicalOperatorNode node,
+                                             Buffer str)
             throws StandardException {
-        return infixBinary(node);
+        appendInfixBinary(node, str);
+    }
+
+    protected String naryLogicalOperatorNode(NaryLogicalOperatorNode node) throws StandardException {
+        Buffer str = new Buffer();
+        naryLogicalOperatorNode(node, str);
+        return str.toString();
     }
 
-    protected String binaryComparisonOperatorNode(BinaryComparisonOperatorNode node)
+    protected void naryLogicalOperatorNode(NaryLogicalOperatorNode node,
+                                           Buffer str)
+            throws StandardException {
+        ValueNodeList operands = node.getOperands();
+        if (operands.isEmpty()) {
+            str.append(node.isAnd() ? "TRUE" : "FALSE");
+            return;
+        }
+        String operator = " " + node.getOperator().toUpperCase() + " ";
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0) str.append(operator);
+            appendMaybeParens(operands.get(i), str);
+        }
+    }
+
+    protected String binaryComparisonOperatorNode(BinaryComparisonOperatorNode node) throws StandardException {
+        Buffer str = new Buffer();
+        binaryComparisonOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected void binaryComparisonOperatorNode(BinaryComparisonOperatorNode node,
+                                                Buffer str)
         throws StandardException {
-        return infixBinary(node);
+        appendInfixBinary(node, str);
+    }
+
+    protected String binaryArithmeticOperatorNode(BinaryArithmeticOperatorNode node) throws StandardException {
+        Buffer str = new Buffer();
+        binaryArithmeticOperatorNode(node, str);
+        return str.toString();
     }
 
-    protected String binaryArithmeticOperatorNode(BinaryArithmeticOperatorNode node)
+    protected void binaryArithmeticOperatorNode(BinaryArithmeticOperatorNode node,
+                                                Buffer str)
             throws StandardException {
-        return infixBinary(node);
+        appendInfixBinary(node, str);
     }
 
     protected String binaryBitOperatorNode(BinaryBitOperatorNode node)
@@ -1337,20 +2115,73 @@ public class NodeToString
     }
 
     protected String inListOperatorNode(InListOperatorNode node) throws StandardException {
-        return maybeParens(node.getLeftOperand()) +
-            " " + (node.isNegated() ? "NOT IN" : "IN") +
-            " (" + toString(node.getRightOperandList()) + ")";
+        Buffer str = new Buffer();
+        inListOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected void inListOperatorNode(InListOperatorNode node, Buffer str) throws StandardException {
+        appendMaybeParens(node.getLeftOperand(), str);
+        str.append(node.isNegated() ? " NOT IN (" : " IN (");
+        if (node.isCompact())
+            appendCompactInList(node, str);
+        else
+            toString(node.getRightOperandList(), str);
+        str.append(")");
+    }
+
+    protected String compactInList(InListOperatorNode node) throws StandardException {
+        Buffer str = new Buffer();
+        compactInList(node, str);
+        return str.toString();
+    }
+
+    protected void compactInList(InListOperatorNode node, Buffer str) throws StandardException {
+        if (inListOverridden) {
+            // As for columnar rows, go through the nodes the values
+            // stand for, without keeping them.
+            toString(node.getRightOperandList(), str);
+            return;
+        }
+        long[] longValues = node.getLongValues();
+        if (longValues != null) {
+            for (int i = 0; i < longValues.length; i++) {
+                if (i > 0) str.append(", ");
+                str.append(longValues[i]);
+            }
+        }
+        else {
+            String[] stringValues = node.getStringValues();
+            for (int i = 0; i < stringValues.length; i++) {
+                if (i > 0) str.append(", ");
+                str.append(stringConstant(stringValues[i]));
+            }
+        }
     }
 
     protected String valueNodeList(ValueNodeList node) throws StandardException {
-        return nodeList(node, true);
+        Buffer str = new Buffer();
+        valueNodeList(node, str);
+        return str.toString();
+    }
+
+    protected void valueNodeList(ValueNodeList node, Buffer str) throws StandardException {
+        appendNodeList(node, true, str);
+    }
+
+    protected String betweenOperatorNode(BetweenOperatorNode node) throws StandardException {
+        Buffer str = new Buffer();
+        betweenOperatorNode(node, str);
+        return str.toString();
     }
 
-    protected String betweenOperatorNode(BetweenOperatorNode node)
+    protected void betweenOperatorNode(BetweenOperatorNode node, Buffer str)
             throws StandardException {
-        return maybeParens(node.getLeftOperand()) +
-            " BETWEEN " + maybeParens(node.getRightOperandList().get(0)) +
-            " AND " + maybeParens(node.getRightOperandList().get(1));
+        appendMaybeParens(node.getLeftOperand(), str);
+        str.append(" BETWEEN ");
+        appendMaybeParens(node.getRightOperandList().get(0), str);
+        str.append(" AND ");
+        appendMaybeParens(node.getRightOperandList().get(1), str);
     }
 
     protected String conditionalNode(ConditionalNode node) throws StandardException {
@@ -1401,7 +2232,7 @@ public class NodeToString
         if (value == null)
             return "NULL";
         else if (value instanceof String)
-            return "'" + ((String)value).replace("'", "''") + "'";
+            return stringConstant((String)value);
         else if (value instanceof byte[])
             return hexConstant((byte[])value);
         else if (value instanceof Double)
@@ -1432,9 +2263,18 @@ public class NodeToString
     }
 
     protected String infixBinary(BinaryOperatorNode node) throws StandardException {
-        return maybeParens(node.getLeftOperand()) +
-            " " + node.getOperator().toUpperCase() + " " +
-            maybeParens(node.getRightOperand());
+        Buffer str = new Buffer();
+        infixBinary(node, str);
+        return str.toString();
+    }
+
+    protected void infixBinary(BinaryOperatorNode node, Buffer str) 
+            throws StandardException {
+        appendMaybeParens(node.getLeftOperand(), str);
+        str.append(" ");
+        str.append(node.getOperator().toUpperCase());
+        str.append(" ");
+        appendMaybeParens(node.getRightOperand(), str);
     }
 
     protected String functionBinary(BinaryOperatorNode node) throws StandardException {
@@ -1455,26 +2295,48 @@ public class NodeToString
 
     protected String nodeList(QueryTreeNodeList<? extends QueryTreeNode> nl, boolean expr)
             throws StandardException {
-        StringBuilder str = new StringBuilder();
+        Buffer str = new Buffer();
+        nodeList(nl, expr, str);
+        return str.toString();
+    }
+
+    protected void nodeList(QueryTreeNodeList<? extends QueryTreeNode> nl, boolean expr,
+                            Buffer str)
+            throws StandardException {
         boolean first = true;
         for (QueryTreeNode node : nl) {
             if (first)
                 first = false;
             else
                 str.append(", ");
-            str.append(expr ? maybeParens(node) : toString(node));
+            if (expr)
+                appendMaybeParens(node, str);
+            else
+                toString(node, str);
         }
-        return str.toString();
     }
 
     protected String maybeParens(QueryTreeNode node) throws StandardException {
-        String str = toString(node);
-        if (node instanceof ConstantNode)
-            return str;
-        else if (str.indexOf(' ') < 0)
-            return str;
-        else
-            return "(" + str + ")";
+        Buffer str = new Buffer();
+        maybeParens(node, str);
+        return str.toString();
+    }
+
+    /** Append the node, in parentheses if its text has a space. */
+    protected void maybeParens(QueryTreeNode node, Buffer str) 
+            throws StandardException {
+        int start = str.mark();
+        toString(node, str);
+        boolean parens = !(node instanceof ConstantNode) && (str.indexOf(" ", start) >= 0);
+        if (parens)
+            str.insert(start, '(');
+        str.release();
+        if (parens)
+            str.append(')');
+    }
+
+    protected String stringConstant(String value) {
+        return "'" + value.replace("'", "''") + "'";
     }
 
     protected String hexConstant(byte[] value) {
@@ -1808,16 +2670,27 @@ public class NodeToString
     protected String orderByListFetchFirstOffset(OrderByList orderByList,
                                                  ValueNode fetchFirst,
                                                  ValueNode offset) throws StandardException {
-        String result = "";
+        Buffer str = new Buffer();
+        orderByListFetchFirstOffset(orderByList, fetchFirst, offset, str);
+        return str.toString();
+    }
+
+    protected void orderByListFetchFirstOffset(OrderByList orderByList,
+                                               ValueNode fetchFirst,
+                                               ValueNode offset,
+                                               Buffer str) 
+            throws StandardException {
         if (orderByList != null) {
-            result += " " + toString(orderByList);
+            str.append(" ");
+            toString(orderByList, str);
         }
         if (fetchFirst != null) {
-            result += " LIMIT " + toString(fetchFirst);
+            str.append(" LIMIT ");
+            toString(fetchFirst, str);
         }
         if (offset != null) {
-            result += " OFFSET " + toString(offset);
+            str.append(" OFFSET ");
+            toString(offset, str);
         }
-        return result;
     }
 }
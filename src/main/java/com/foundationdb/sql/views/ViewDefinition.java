@@ -20,6 +20,10 @@ import com.foundationdb.sql.parser.*;
 
 import com.foundationdb.sql.StandardException;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 public class ViewDefinition
 {
     private CreateViewNode definition;
@@ -84,6 +88,8 @@ public class ViewDefinition
 
     /**
      * Get the view as an equivalent subquery belonging to the given context.
+     * Any parts that have been {@link #freeze frozen} are shared with the
+     * view instead of being copied.
      */
     public FromSubquery copySubquery(SQLParserContext parserContext) 
             throws StandardException {
@@ -91,6 +97,101 @@ public class ViewDefinition
             parserContext.getNodeFactory().copyNode(subquery, parserContext);
     }
 
+    /**
+     * Freeze the subquery, apart from the few parts that binding a copy
+     * of it changes in place, so that {@link #copySubquery} shares the
+     * rest. Call this once the view has been bound and its types
+     * computed. A binder that then sets the user data or type of a
+     * frozen node in a copy while visiting it gets a copy of just that
+     * node and the path above it.
+     * @see QueryTreeNode#freeze
+     */
+    public void freeze() throws StandardException {
+        subquery.accept(new Freezer());
+    }
+
+    /**
+     * Might binding or computing types change this node other than by
+     * setting its own user data or type? Only nodes for which this is
+     * false, and whose children are all frozen, are frozen.
+     * <p>
+     * Parameters and values without a type get one from where they are
+     * used. Nodes that still hold parts of themselves unexpanded are
+     * expanded in place.
+     */
+    protected boolean isMutable(QueryTreeNode node) {
+        if (node instanceof ParameterNode)
+            return true;
+        if (node instanceof InListOperatorNode) {
+            if (((InListOperatorNode)node).isCompact())
+                return true;
+        }
+        else if (node instanceof SubqueryNode) {
+            if (((SubqueryNode)node).isDeferred())
+                return true;
+        }
+        else if (node instanceof RowsResultSetNode) {
+            if (((RowsResultSetNode)node).isColumnar())
+                return true;
+        }
+        if (node instanceof ValueNode)
+            return (((ValueNode)node).getType() == null);
+        return false;
+    }
+
+    /** Freeze nodes after their children, unless there is a mutable one
+     * below them. Compact <code>IN</code> lists, deferred subqueries and
+     * rows held by column are left as they are. The subquery itself and
+     * the view's own column names are given their types from the body
+     * in place, so they are never frozen.
+     */
+    class Freezer
+            implements CompactInListVisitor, DeferredSubqueryVisitor, ColumnarRowsVisitor {
+        // How many mutable nodes had been seen when each node on the path
+        // from the root was entered.
+        private int[] entered = new int[16];
+        private int depth, nmutable;
+        private final Set<QueryTreeNode> unfrozen = 
+            Collections.newSetFromMap(new IdentityHashMap<QueryTreeNode,Boolean>());
+
+        public Freezer() {
+            unfrozen.add(subquery);
+            ResultColumnList rcl = subquery.getResultColumns();
+            if (rcl != null) {
+                unfrozen.add(rcl);
+                for (ResultColumn rc : rcl)
+                    unfrozen.add(rc);
+            }
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            if (depth == entered.length) {
+                int[] ne = new int[depth * 2];
+                System.arraycopy(entered, 0, ne, 0, depth);
+                entered = ne;
+            }
+            entered[depth++] = nmutable;
+            return true;
+        }
+
+        public Visitable visit(Visitable node) {
+            QueryTreeNode qtn = (QueryTreeNode)node;
+            if ((entered[--depth] != nmutable) || isMutable(qtn))
+                nmutable++;
+            else if (!unfrozen.contains(qtn))
+                qtn.freeze();
+            return node;
+        }
+
+        public boolean stopTraversal() {
+            return false;
+        }
+
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+    }
+
     /**
      * @deprecated
      * @see #copySubquery
@@ -0,0 +1,289 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql;
+
+import com.foundationdb.sql.compiler.BooleanNormalizer;
+import com.foundationdb.sql.compiler.TypeComputer;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.StatementNode;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/** Throughput and allocation benchmarks for the main parser phases.
+ * <p>
+ * Not a unit test; run by hand from the project directory with the
+ * test classpath:
+ * <pre>
+ * java com.foundationdb.sql.ParserBenchmark [-w warmup] [-i iterations] [-t millis] [regex]
+ * </pre>
+ * Each benchmark is a workload (the whole golden-file parser corpus, or
+ * one synthetic stress statement) combined with an operation: parse,
+ * copy, normalize, compute types or unparse. Operations that modify
+ * the tree are given fresh copies made outside the timed section.
+ * Reports operations per second (mean and standard deviation across
+ * iterations) and bytes allocated per operation by the measuring
+ * thread, when the JVM supports that.
+ */
+public class ParserBenchmark
+{
+    public static final File CORPUS_DIR =
+        new File("src/test/resources/com/foundationdb/sql/parser");
+
+    static class Workload {
+        String name;
+        String[] sqls;
+        StatementNode[] stmts;
+
+        Workload(String name, String... sqls) {
+            this.name = name;
+            this.sqls = sqls;
+        }
+    }
+
+    static abstract class Operation {
+        String name;
+        boolean mutates;
+
+        Operation(String name, boolean mutates) {
+            this.name = name;
+            this.mutates = mutates;
+        }
+
+        abstract Object apply(String sql, StatementNode stmt) throws Exception;
+    }
+
+    private SQLParser parser = new SQLParser();
+    private int warmups = 3, iterations = 5;
+    private long iterationMillis = 1000;
+    private ThreadMXBean threadBean;
+
+    public static void main(String[] args) throws Exception {
+        ParserBenchmark benchmark = new ParserBenchmark();
+        Pattern filter = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("-w".equals(args[i]))
+                benchmark.warmups = Integer.parseInt(args[++i]);
+            else if ("-i".equals(args[i]))
+                benchmark.iterations = Integer.parseInt(args[++i]);
+            else if ("-t".equals(args[i]))
+                benchmark.iterationMillis = Long.parseLong(args[++i]);
+            else
+                filter = Pattern.compile(args[i]);
+        }
+        benchmark.run(filter);
+    }
+
+    public void run(Pattern filter) throws Exception {
+        threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean) ||
+            !((com.sun.management.ThreadMXBean)threadBean).isThreadAllocatedMemorySupported())
+            threadBean = null;
+        List<Workload> workloads = new ArrayList<Workload>();
+        workloads.add(corpus());
+        workloads.add(new Workload("in-10k", inList(10000)));
+        workloads.add(new Workload("values-1000", values(1000)));
+        workloads.add(new Workload("join-50", joins(50)));
+        workloads.add(new Workload("case-100", nestedCase(100)));
+        System.out.println(String.format("%-24s %14s %10s %14s",
+                                         "Benchmark", "ops/s", "error", "bytes/op"));
+        for (Workload workload : workloads) {
+            workload.stmts = new StatementNode[workload.sqls.length];
+            for (int i = 0; i < workload.sqls.length; i++) {
+                workload.stmts[i] = parser.parseStatement(workload.sqls[i]);
+            }
+            for (Operation op : operations()) {
+                String name = workload.name + "." + op.name;
+                if ((filter == null) || filter.matcher(name).find())
+                    measure(name, workload, op);
+            }
+        }
+    }
+
+    protected List<Operation> operations() {
+        List<Operation> ops = new ArrayList<Operation>();
+        ops.add(new Operation("parse", false) {
+                Object apply(String sql, StatementNode stmt) throws Exception {
+                    return parser.parseStatement(sql);
+                }
+            });
+        ops.add(new Operation("copy", false) {
+                Object apply(String sql, StatementNode stmt) throws Exception {
+                    return copy(stmt);
+                }
+            });
+        ops.add(new Operation("normalize", true) {
+                BooleanNormalizer normalizer = new BooleanNormalizer(parser);
+                Object apply(String sql, StatementNode stmt) throws Exception {
+                    return normalizer.normalize(stmt);
+                }
+            });
+        ops.add(new Operation("computeTypes", true) {
+                TypeComputer typeComputer = new TypeComputer();
+                Object apply(String sql, StatementNode stmt) throws Exception {
+                    typeComputer.compute(stmt);
+                    return stmt;
+                }
+            });
+        ops.add(new Operation("unparse", false) {
+                NodeToString unparser = new NodeToString();
+                Object apply(String sql, StatementNode stmt) throws Exception {
+                    return unparser.toString(stmt);
+                }
+            });
+        return ops;
+    }
+
+    protected StatementNode copy(StatementNode stmt) throws Exception {
+        return (StatementNode)parser.getNodeFactory().copyNode(stmt, parser);
+    }
+
+    protected void measure(String name, Workload workload, Operation op)
+            throws Exception {
+        // Drop the cases this operation cannot handle.
+        List<Integer> usable = new ArrayList<Integer>();
+        for (int i = 0; i < workload.sqls.length; i++) {
+            try {
+                op.apply(workload.sqls[i], copy(workload.stmts[i]));
+                usable.add(i);
+            }
+            catch (Exception ex) {
+            }
+        }
+        if (usable.isEmpty()) {
+            System.out.println(String.format("%-24s %14s", name, "n/a"));
+            return;
+        }
+        int batch = 1;
+        double[] rates = new double[iterations];
+        long bytes = 0, ops = 0;
+        for (int iter = -warmups; iter < iterations; iter++) {
+            long elapsed = 0, count = 0;
+            long allocated = 0;
+            while (elapsed < iterationMillis * 1000000L) {
+                StatementNode[] inputs = new StatementNode[batch * usable.size()];
+                int n = 0;
+                for (int b = 0; b < batch; b++) {
+                    for (int i : usable) {
+                        inputs[n++] = (op.mutates) ? copy(workload.stmts[i]) : workload.stmts[i];
+                    }
+                }
+                long startBytes = allocatedBytes();
+                long start = System.nanoTime();
+                n = 0;
+                for (int b = 0; b < batch; b++) {
+                    for (int i : usable) {
+                        op.apply(workload.sqls[i], inputs[n++]);
+                    }
+                }
+                elapsed += System.nanoTime() - start;
+                allocated += allocatedBytes() - startBytes;
+                count += batch;
+                if (batch < 1024) batch *= 2;
+            }
+            if (iter >= 0) {
+                rates[iter] = count * 1.0e9 / elapsed;
+                bytes += allocated;
+                ops += count;
+            }
+        }
+        double mean = 0, variance = 0;
+        for (double rate : rates)
+            mean += rate;
+        mean /= iterations;
+        for (double rate : rates)
+            variance += (rate - mean) * (rate - mean);
+        double stddev = (iterations > 1) ? Math.sqrt(variance / (iterations - 1)) : 0;
+        System.out.println(String.format("%-24s %14.1f %10.1f %14s",
+                                         name, mean, stddev,
+                                         (threadBean == null) ? "n/a" :
+                                         Long.toString(bytes / ops)));
+    }
+
+    protected long allocatedBytes() {
+        if (threadBean == null) return 0;
+        return ((com.sun.management.ThreadMXBean)threadBean)
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** All the parser golden-file cases that parse with default features,
+     * as a single workload. */
+    protected Workload corpus() throws Exception {
+        List<String> sqls = new ArrayList<String>();
+        for (File file : TestBase.listSQLFiles(CORPUS_DIR)) {
+            if (!TestBase.changeSuffix(file, ".expected").exists() ||
+                TestBase.changeSuffix(file, ".features").exists())
+                continue;
+            String sql = TestBase.fileContents(file);
+            try {
+                parser.parseStatement(sql);
+            }
+            catch (StandardException ex) {
+                continue;
+            }
+            sqls.add(sql);
+        }
+        return new Workload("corpus", sqls.toArray(new String[sqls.size()]));
+    }
+
+    static String inList(int n) {
+        StringBuilder str = new StringBuilder("SELECT * FROM t1 WHERE x IN (");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) str.append(", ");
+            str.append(i);
+        }
+        return str.append(")").toString();
+    }
+
+    static String values(int n) {
+        StringBuilder str = new StringBuilder("INSERT INTO t1(a, b, c) VALUES");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) str.append(", ");
+            str.append("(").append(i).append(", 'row ").append(i)
+               .append("', ").append(i).append(".5)");
+        }
+        return str.toString();
+    }
+
+    static String joins(int n) {
+        StringBuilder str = new StringBuilder("SELECT t0.a FROM t0");
+        for (int i = 1; i < n; i++) {
+            str.append(" INNER JOIN t").append(i)
+               .append(" ON t").append(i - 1).append(".id = t").append(i).append(".pid");
+        }
+        return str.append(" WHERE t0.a > 10 AND NOT (t1.b < 5 OR t2.c IS NULL)").toString();
+    }
+
+    static String nestedCase(int depth) {
+        StringBuilder str = new StringBuilder("SELECT ");
+        for (int i = 0; i < depth; i++) {
+            str.append("CASE WHEN a > ").append(i).append(" THEN ").append(i).append(" ELSE ");
+        }
+        str.append("-1");
+        for (int i = 0; i < depth; i++) {
+            str.append(" END");
+        }
+        return str.append(" FROM t1").toString();
+    }
+
+}
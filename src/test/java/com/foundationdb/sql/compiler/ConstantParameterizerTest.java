@@ -0,0 +1,82 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.TestBase;
+
+import com.foundationdb.sql.parser.ConstantNode;
+import com.foundationdb.sql.parser.StatementNode;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Collection;
+
+@RunWith(Parameterized.class)
+public class ConstantParameterizerTest extends ASTTransformTestBase implements TestBase.GenerateAndCheckResult
+{
+    public static final File RESOURCE_DIR = 
+        new File(ASTTransformTestBase.RESOURCE_DIR, "parameterize");
+
+    protected ConstantParameterizer parameterizer;
+
+    @Before
+    public void makeParameterizer() throws Exception {
+        parameterizer = new ConstantParameterizer(parser);
+    }
+
+    @Parameters(name="{0}")
+    public static Collection<Object[]> statements() throws Exception {
+        return sqlAndExpected(RESOURCE_DIR);
+    }
+
+    public ConstantParameterizerTest(String caseName, String sql, 
+                                     String expected, String error) {
+        super(caseName, sql, expected, error);
+    }
+
+    @Test
+    public void testParameterizer() throws Exception {
+        generateAndCheckResult();
+    }
+
+    @Override
+    public String generateResult() throws Exception {
+        StatementNode stmt = parser.parseStatement(sql);
+        stmt = parameterizer.parameterize(stmt, parser.getParameterList());
+        String template = unparser.toString(stmt);
+        assertEquals(caseName, template, parameterizer.getTemplate());
+        StringBuilder str = new StringBuilder(template);
+        int number = parameterizer.getFirstParameterNumber();
+        for (ConstantNode constant : parameterizer.getConstants()) {
+            str.append("\n$").append(++number).append(": ");
+            str.append(unparser.toString(constant));
+        }
+        return str.toString();
+    }
+
+    @Override
+    public void checkResult(String result) {
+        assertEquals(caseName, expected, result);
+    }
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.*;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class ExpressionInternerTest
+{
+    protected SQLParser parser;
+    protected NodeToString unparser;
+
+    @Before
+    public void makeParser() throws Exception {
+        parser = new SQLParser();
+        unparser = new NodeToString();
+    }
+
+    protected static SelectNode select(StatementNode stmt) {
+        return (SelectNode)((CursorNode)stmt).getResultSetNode();
+    }
+
+    protected static ValueNode column(StatementNode stmt, int index) {
+        return select(stmt).getResultColumns().get(index).getExpression();
+    }
+
+    @Test
+    public void equivalentHashes() throws Exception {
+        SQLParser compactParser = new SQLParser();
+        compactParser.getFeatures().add(SQLParserFeature.COMPACT_IN_LISTS);
+        String[] exprs = {
+            "a + b * 2", "CAST(x AS INT)", "SUBSTR(s, 1, 2)", "-x",
+            "CASE WHEN x > 1 THEN 'a' ELSE NULL END", "COALESCE(x, y, 0)",
+            "t.x", "x IN (1, 2, 3000000000)", "x IN ('a', 'b')",
+            "x = 1 AND y = 2", "CURRENT_DATE", "x LIKE 'a%'",
+        };
+        for (String expr : exprs) {
+            String sql = "SELECT " + expr + ", " + expr + " FROM t";
+            StatementNode stmt = parser.parseStatement(sql);
+            ValueNode first = column(stmt, 0), second = column(stmt, 1);
+            assertTrue(expr, first.isStructurallyEquivalent(second));
+            assertEquals(expr, first.structuralHash(), second.structuralHash());
+            // Compact IN lists hash as their nodes would.
+            ValueNode compact = column(compactParser.parseStatement(sql), 0);
+            assertEquals(expr, first.structuralHash(), compact.structuralHash());
+        }
+        StatementNode stmt = parser.parseStatement("SELECT a + b, a - b, CAST(x AS INT), CAST(x AS BIGINT) FROM t");
+        assertFalse(column(stmt, 0).structuralHash() == column(stmt, 1).structuralHash());
+        assertFalse(column(stmt, 2).structuralHash() == column(stmt, 3).structuralHash());
+    }
+
+    @Test
+    public void negatedInLists() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT x IN (1, 2), x IN (1, 2) FROM t");
+        InListOperatorNode in = (InListOperatorNode)column(stmt, 0);
+        InListOperatorNode notIn = (InListOperatorNode)column(stmt, 1);
+        notIn.setNegated(true);
+        assertFalse(in.isStructurallyEquivalent(notIn));
+        assertFalse(in.structuralHash() == notIn.structuralHash());
+        stmt = new ExpressionInterner().intern(stmt);
+        assertNotSame(column(stmt, 0), column(stmt, 1));
+    }
+
+    @Test
+    public void qualifiedColumns() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT t.x, s.t.x FROM s.t");
+        ValueNode unqualified = column(stmt, 0), qualified = column(stmt, 1);
+        assertTrue(unqualified.isStructurallyEquivalent(qualified));
+        assertEquals(unqualified.structuralHash(), qualified.structuralHash());
+    }
+
+    @Test
+    public void commonExpressions() throws Exception {
+        String sql = "SELECT a + b, (a + b) * 2 FROM t WHERE a + b > 10 AND c = ?";
+        StatementNode stmt = parser.parseStatement(sql);
+        ExpressionInterner interner = new ExpressionInterner();
+        stmt = interner.intern(stmt);
+        assertEquals(unparser.toString(parser.parseStatement(sql)), unparser.toString(stmt));
+        ValueNode sum = column(stmt, 0);
+        assertSame(sum, ((BinaryOperatorNode)column(stmt, 1)).getLeftOperand());
+        AndNode where = (AndNode)select(stmt).getWhereClause();
+        assertSame(sum, ((BinaryOperatorNode)where.getLeftOperand()).getLeftOperand());
+        assertEquals(3, interner.getOccurrences(sum));
+        assertEquals(0, interner.getOccurrences(where));
+        assertTrue(interner.getCommonExpressions().contains(sum));
+        assertEquals(3, interner.getCommonExpressions().size()); // a, b, a + b
+    }
+
+    @Test
+    public void aggregates() throws Exception {
+        String[] exprs = {
+            "COUNT(*)", "COUNT(x)", "COUNT(DISTINCT x)", "MAX(x)", "MAX(y)",
+            "GROUP_CONCAT(x)", "GROUP_CONCAT(y)",
+            "GROUP_CONCAT(x SEPARATOR ';')", "GROUP_CONCAT(x ORDER BY y)",
+            "GROUP_CONCAT(x ORDER BY y DESC)",
+        };
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < exprs.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(exprs[i]).append(", ").append(exprs[i]);
+        }
+        sql.append(" FROM t");
+        StatementNode stmt = parser.parseStatement(sql.toString());
+        for (int i = 0; i < exprs.length; i++) {
+            ValueNode first = column(stmt, 2 * i), second = column(stmt, 2 * i + 1);
+            assertTrue(exprs[i], first.isStructurallyEquivalent(second));
+            assertEquals(exprs[i], first.structuralHash(), second.structuralHash());
+            for (int j = 0; j < exprs.length; j++) {
+                if (i != j)
+                    assertFalse(exprs[i] + " vs " + exprs[j], 
+                                first.isStructurallyEquivalent(column(stmt, 2 * j)));
+            }
+        }
+        ExpressionInterner interner = new ExpressionInterner();
+        stmt = interner.intern(stmt);
+        assertEquals(unparser.toString(parser.parseStatement(sql.toString())), 
+                     unparser.toString(stmt));
+        for (int i = 0; i < exprs.length; i++) {
+            assertSame(exprs[i], column(stmt, 2 * i), column(stmt, 2 * i + 1));
+            if (i > 0)
+                assertNotSame(exprs[i], column(stmt, 2 * i - 2), column(stmt, 2 * i));
+        }
+    }
+
+    @Test
+    public void notInterned() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT ? + 1, ? + 1, x + 1 FROM t WHERE EXISTS (SELECT x + 1 FROM u)");
+        ExpressionInterner interner = new ExpressionInterner();
+        stmt = interner.intern(stmt);
+        assertNotSame(column(stmt, 0), column(stmt, 1));
+        SubqueryNode subquery = (SubqueryNode)select(stmt).getWhereClause();
+        ValueNode inner = ((SelectNode)subquery.getResultSet()).getResultColumns().get(0).getExpression();
+        assertTrue(column(stmt, 2).isStructurallyEquivalent(inner));
+        assertNotSame(column(stmt, 2), inner);
+        // Only the literal 1, which is in the subquery's own table too.
+        assertEquals(1, interner.getCommonExpressions().size());
+    }
+
+}
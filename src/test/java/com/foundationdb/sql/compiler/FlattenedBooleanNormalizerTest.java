@@ -0,0 +1,49 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.compiler;
+
+import org.junit.Before;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Collection;
+
+@RunWith(Parameterized.class)
+public class FlattenedBooleanNormalizerTest extends BooleanNormalizerTest
+{
+    public static final File RESOURCE_DIR =
+        new File(ASTTransformTestBase.RESOURCE_DIR, "normalize-flatten");
+
+    @Before
+    public void flatten() throws Exception {
+        booleanNormalizer.setFlattenLogicalOperators(true);
+    }
+
+    @Parameters(name="{0}")
+    public static Collection<Object[]> statements() throws Exception {
+        return sqlAndExpected(RESOURCE_DIR);
+    }
+
+    public FlattenedBooleanNormalizerTest(String caseName, String sql,
+                                          String expected, String error) {
+        super(caseName, sql, expected, error);
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.*;
+import com.foundationdb.sql.types.TypeId;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class NaryLogicalOperatorNodeTest
+{
+    protected SQLParser parser;
+    protected BooleanNormalizer booleanNormalizer;
+
+    @Before
+    public void makeNormalizer() throws Exception {
+        parser = new SQLParser();
+        booleanNormalizer = new BooleanNormalizer(parser);
+        booleanNormalizer.setFlattenLogicalOperators(true);
+    }
+
+    protected static String chain(String op, int n) {
+        StringBuilder str = new StringBuilder("SELECT * FROM tbl WHERE ");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) str.append(' ').append(op).append(' ');
+            str.append("col = ").append(i);
+        }
+        return str.toString();
+    }
+
+    protected static ValueNode whereClause(StatementNode stmt) {
+        return ((SelectNode)((CursorNode)stmt).getResultSetNode()).getWhereClause();
+    }
+
+    @Test
+    public void longChain() throws Exception {
+        StatementNode stmt = parser.parseStatement(chain("AND", 20000));
+        stmt = booleanNormalizer.normalize(stmt);
+        ValueNode where = whereClause(stmt);
+        assertEquals(NodeTypes.NARY_AND_NODE, where.getNodeType());
+        assertEquals(20000, ((NaryLogicalOperatorNode)where).getOperands().size());
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        NodeToString unparser = new NodeToString();
+        String sql = chain("OR", 100);
+        StatementNode stmt = parser.parseStatement(sql);
+        String original = unparser.toString(stmt);
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        ValueNode flat = booleanNormalizer.flattenLogicalOperators(select.getWhereClause());
+        assertEquals(NodeTypes.NARY_OR_NODE, flat.getNodeType());
+        assertEquals(100, ((NaryLogicalOperatorNode)flat).getOperands().size());
+        select.setWhereClause(booleanNormalizer.unflattenLogicalOperators(flat));
+        assertEquals(original, unparser.toString(stmt));
+    }
+
+    @Test
+    public void types() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT * FROM tbl WHERE ? AND 1 = 1 AND (2 = 2 OR 3 = 3)");
+        stmt = booleanNormalizer.normalize(stmt);
+        new TypeComputer().compute(stmt);
+        NaryLogicalOperatorNode where = (NaryLogicalOperatorNode)whereClause(stmt);
+        assertEquals(3, where.getOperands().size());
+        assertEquals(TypeId.BOOLEAN_ID, where.getTypeId());
+        assertTrue(where.getType().isNullable());
+        ValueNode param = where.getOperands().get(0);
+        assertEquals(TypeId.BOOLEAN_ID, param.getTypeId());
+        ValueNode or = where.getOperands().get(2);
+        assertEquals(NodeTypes.NARY_OR_NODE, or.getNodeType());
+        assertFalse(or.getType().isNullable());
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.types.TypeId;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TypeCompilerTest
+{
+    static final TypeId[] TYPE_IDS = {
+        TypeId.BOOLEAN_ID, TypeId.INTEGER_ID, TypeId.INTEGER_UNSIGNED_ID,
+        TypeId.BIGINT_ID, TypeId.DECIMAL_ID, TypeId.DOUBLE_ID, TypeId.CHAR_ID,
+        TypeId.VARCHAR_ID, TypeId.NATIONAL_VARCHAR_ID, TypeId.DATE_ID,
+        TypeId.DATETIME_ID, TypeId.BLOB_ID, TypeId.TEXT_ID, TypeId.XML_ID,
+        TypeId.INTERVAL_MONTH_ID, TypeId.INTERVAL_DAY_SECOND_ID,
+        TypeId.MEDIUMINT_ID, TypeId.GUID_ID,
+    };
+
+    @Test
+    public void builtIn() throws Exception {
+        assertSame(TypeCompiler.getTypeCompiler(TypeId.INTEGER_ID),
+                   TypeCompiler.getTypeCompiler(TypeId.INTEGER_UNSIGNED_ID));
+        assertSame(TypeCompiler.getTypeCompiler(TypeId.INTERVAL_YEAR_ID),
+                   TypeCompiler.getTypeCompiler(TypeId.INTERVAL_MONTH_ID));
+        assertSame(TypeCompiler.getTypeCompiler(TypeId.MEDIUMINT_ID),
+                   TypeCompiler.getTypeCompiler(TypeId.MEDIUMINT_UNSIGNED_ID));
+        assertSame(TypeCompiler.getTypeCompiler(TypeId.GUID_ID),
+                   TypeCompiler.getTypeCompiler(TypeId.GUID_ID));
+        assertTrue(TypeCompiler.getTypeCompiler(TypeId.VARCHAR_ID) instanceof CharTypeCompiler);
+        assertTrue(TypeCompiler.getTypeCompiler(TypeId.TEXT_ID) instanceof CLOBTypeCompiler);
+        assertTrue(TypeCompiler.getTypeCompiler(TypeId.DATETIME_ID) instanceof TimestampTypeCompiler);
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TypeCompiler[]>> futures = new ArrayList<Future<TypeCompiler[]>>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(new Callable<TypeCompiler[]>() {
+                        public TypeCompiler[] call() {
+                            TypeCompiler[] result = new TypeCompiler[TYPE_IDS.length];
+                            for (int j = 0; j < TYPE_IDS.length; j++) {
+                                result[j] = TypeCompiler.getTypeCompiler(TYPE_IDS[j]);
+                            }
+                            return result;
+                        }
+                    }));
+            }
+            TypeCompiler[] first = futures.get(0).get();
+            for (Future<TypeCompiler[]> future : futures) {
+                TypeCompiler[] result = future.get();
+                for (int j = 0; j < TYPE_IDS.length; j++) {
+                    assertNotNull(result[j]);
+                    assertSame(first[j], result[j]);
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void userDefined() throws Exception {
+        TypeId typeId = TypeId.getUserDefinedTypeId("test", "point", "com.example.Point");
+        assertNotSame(TypeCompiler.getTypeCompiler(typeId),
+                      TypeCompiler.getTypeCompiler(typeId));
+        TypeCompiler typeCompiler = TypeCompiler.getTypeCompiler(typeId);
+        TypeCompiler.registerTypeCompiler(typeId, typeCompiler);
+        assertSame(typeCompiler, TypeCompiler.getTypeCompiler(typeId));
+        try {
+            TypeCompiler.registerTypeCompiler(TypeId.INTEGER_ID, typeCompiler);
+            fail("Registered built-in type");
+        }
+        catch (IllegalArgumentException ex) {
+        }
+        for (TypeId builtIn : new TypeId[] { TypeId.MEDIUMINT_ID, TypeId.GUID_ID }) {
+            try {
+                TypeCompiler.registerTypeCompiler(builtIn, typeCompiler);
+                fail("Registered built-in type " + builtIn);
+            }
+            catch (IllegalArgumentException ex) {
+            }
+        }
+    }
+
+}
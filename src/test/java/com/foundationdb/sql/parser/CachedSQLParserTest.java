@@ -0,0 +1,69 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Before;
+import static junit.framework.Assert.*;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runner.RunWith;
+
+import java.util.Collection;
+import java.util.List;
+
+/** Run the parser tests a second time, getting results from the cache. */
+@RunWith(Parameterized.class)
+public class CachedSQLParserTest extends SQLParserTest
+{
+    protected StatementCache cache;
+
+    @Before
+    public void makeCache() throws Exception {
+        cache = new StatementCache(4);
+    }
+
+    @Parameters(name="{0}")
+    public static Collection<Object[]> queries() throws Exception {
+        return SQLParserTest.queries();
+    }
+
+    public CachedSQLParserTest(String caseName, String sql,
+                               String expected, String error, String[] featureLines) {
+        super(caseName, sql, expected, error, featureLines);
+    }
+
+    @Override
+    public String generateResult() throws Exception {
+        StatementNode stmt = cache.parseStatement(parser, sql);
+        int beginOffset = stmt.getBeginOffset();
+        List<ParameterNode> params = parser.getParameterList();
+        stmt = cache.parseStatement(parser, sql);
+        if (cache.getHits() > 0) {
+            assertEquals(caseName, params.size(), parser.getParameterList().size());
+            for (int i = 0; i < params.size(); i++) {
+                ParameterNode p1 = params.get(i);
+                ParameterNode p2 = parser.getParameterList().get(i);
+                assertEquals(caseName, p1.getParameterNumber(), p2.getParameterNumber());
+                assertEquals(caseName, p1.getBeginOffset(), p2.getBeginOffset());
+                assertEquals(caseName, p1.getEndOffset(), p2.getEndOffset());
+            }
+            assertEquals(caseName, beginOffset, stmt.getBeginOffset());
+        }
+        return getTree(stmt);
+    }
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.compiler.BooleanNormalizer;
+import com.foundationdb.sql.compiler.TypeComputer;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class ColumnarValuesTest extends ParserFeatureTestBase
+{
+    public ColumnarValuesTest() {
+        super(SQLParserFeature.COLUMNAR_VALUES);
+    }
+
+    protected static RowsResultSetNode rows(StatementNode stmt) {
+        return (RowsResultSetNode)((InsertNode)stmt).getResultSetNode();
+    }
+
+    @Test
+    public void literals() throws Exception {
+        String sql = "INSERT INTO t VALUES (1, 'a', NULL, 2.5), (-3, 'it''s', 5000000000, ?), (70, NULL, NULL, NULL)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        RowsResultSetNode rows = rows(stmt);
+        assertTrue(rows.isColumnar());
+        assertEquals(3, rows.getRowCount());
+        ColumnarRows columnar = rows.getColumnarRows();
+        assertEquals(4, columnar.getColumnCount());
+        assertEquals(ColumnarRows.Kind.LONG, columnar.getKind(0));
+        assertEquals(ColumnarRows.Kind.STRING, columnar.getKind(1));
+        assertEquals(ColumnarRows.Kind.LONG, columnar.getKind(2));
+        assertEquals(ColumnarRows.Kind.NODE, columnar.getKind(3));
+        assertEquals(-3, columnar.getLong(1, 0));
+        assertEquals("it's", columnar.getString(1, 1));
+        assertTrue(columnar.isNull(2, 1));
+        assertTrue(columnar.isNull(0, 2));
+        assertEquals(5000000000L, columnar.getLong(1, 2));
+        assertEquals("2.5", ((ConstantNode)columnar.getNode(0, 3)).getValue().toString());
+        ParameterNode param = featureParser.getParameterList().get(0);
+        assertSame(param, columnar.getNode(1, 3));
+        StatementNode expected = parser.parseStatement(sql);
+        assertEquals(unparser.toString(expected), unparser.toString(stmt));
+        // Printing shows the rows just as parsed, without making them.
+        assertEquals(treePrint(expected), treePrint(stmt));
+        assertTrue(rows.isColumnar());
+        // Visiting, as in typing, does make them.
+        stmt.accept(new TypeComputer());
+        assertFalse(rows.isColumnar());
+        assertSame(param, rows.getRows().get(1).getResultColumns().get(3).getExpression());
+    }
+
+    @Test
+    public void mixedColumn() throws Exception {
+        String sql = "INSERT INTO t VALUES (1, NULL), (NULL, 'a'), ('b', 2)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        ColumnarRows columnar = rows(stmt).getColumnarRows();
+        assertEquals(ColumnarRows.Kind.NODE, columnar.getKind(0));
+        assertEquals(ColumnarRows.Kind.NODE, columnar.getKind(1));
+        assertTrue(columnar.isNull(1, 0));
+        assertNull(columnar.getNode(1, 0));
+        StatementNode expected = parser.parseStatement(sql);
+        assertEquals(unparser.toString(expected), unparser.toString(stmt));
+        assertEquals(treePrint(expected), treePrint(stmt));
+    }
+
+    static class MarkedConstants extends NodeToString {
+        @Override
+        protected String constantNode(ConstantNode node) throws StandardException {
+            return "<" + super.constantNode(node) + ">";
+        }
+    }
+
+    @Test
+    public void overriddenConstants() throws Exception {
+        String sql = "INSERT INTO t VALUES (1, 'a', NULL), (2, 'b', 2.5)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        NodeToString marked = new MarkedConstants();
+        assertEquals("INSERT INTO t VALUES(<1>, <'a'>, <NULL>), (<2>, <'b'>, <2.5>)",
+                     marked.toString(stmt));
+        assertEquals(marked.toString(parser.parseStatement(sql)), marked.toString(stmt));
+        // Unparsing does not make the rows.
+        assertTrue(rows(stmt).isColumnar());
+    }
+
+    @Test
+    public void notColumnar() throws Exception {
+        for (String sql : new String[] {
+                "INSERT INTO t VALUES (1 + 1, 2), (3, 4)",
+                "INSERT INTO t VALUES (1, 2), (3, 4 + 1), (5, 6)",
+                "INSERT INTO t VALUES (1, 2), (3, DEFAULT)",
+                "INSERT INTO t VALUES (1, 2), (3, CURRENT_DATE)",
+            }) {
+            StatementNode stmt = featureParser.parseStatement(sql);
+            assertFalse(sql, rows(stmt).isColumnar());
+            StatementNode expected = parser.parseStatement(sql);
+            assertEquals(sql, treePrint(expected), treePrint(stmt));
+        }
+        StatementNode stmt = parser.parseStatement("INSERT INTO t VALUES (1, 2), (3, 4)");
+        assertFalse(rows(stmt).isColumnar());
+        assertTrue(rows(stmt).makeColumnar());
+        assertEquals("INSERT INTO t VALUES(1, 2), (3, 4)", unparser.toString(stmt));
+    }
+
+    @Test
+    public void manyRows() throws Exception {
+        StringBuilder sql = new StringBuilder("INSERT INTO t VALUES ");
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("(").append(i).append(", ");
+            if (i % 3 == 0)
+                sql.append("NULL");
+            else
+                sql.append("'s").append(i).append("'");
+            sql.append(")");
+        }
+        StatementNode stmt = featureParser.parseStatement(sql.toString());
+        RowsResultSetNode rows = rows(stmt);
+        stmt = new BooleanNormalizer(featureParser).normalize(stmt);
+        assertTrue(rows.isColumnar());
+        ColumnarRows columnar = rows.getColumnarRows();
+        assertEquals(5000, columnar.getRowCount());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, columnar.getLong(i, 0));
+            assertFalse(columnar.isNull(i, 0));
+            assertEquals(i % 3 == 0, columnar.isNull(i, 1));
+            if (i % 3 != 0)
+                assertEquals("s" + i, columnar.getString(i, 1));
+        }
+        StatementNode copy = (StatementNode)
+            featureParser.getNodeFactory().copyNode(stmt, featureParser);
+        assertTrue(rows(copy).isColumnar());
+        assertEquals(unparser.toString(stmt), unparser.toString(copy));
+        HasNodeVisitor hasConstant = new HasNodeVisitor(CharConstantNode.class);
+        copy.accept(hasConstant);
+        assertTrue(hasConstant.hasNode());
+        assertFalse(rows(copy).isColumnar());
+        assertTrue(rows.isColumnar());
+        assertEquals(treePrint(parser.parseStatement(sql.toString())), treePrint(copy));
+    }
+
+}
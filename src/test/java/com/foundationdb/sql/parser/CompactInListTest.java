@@ -0,0 +1,184 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.compiler.BooleanNormalizer;
+import com.foundationdb.sql.compiler.TypeComputer;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.util.Arrays;
+
+public class CompactInListTest extends ParserFeatureTestBase
+{
+    public CompactInListTest() {
+        super(SQLParserFeature.COMPACT_IN_LISTS);
+    }
+
+    protected static InListOperatorNode inList(StatementNode stmt) {
+        return (InListOperatorNode)
+            ((SelectNode)((CursorNode)stmt).getResultSetNode()).getWhereClause();
+    }
+
+    @Test
+    public void integers() throws Exception {
+        String sql = "SELECT * FROM tbl WHERE col IN (1, -2, 3000000000, 1)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        InListOperatorNode in = inList(stmt);
+        assertTrue(in.isCompact());
+        assertEquals("[1, -2, 3000000000, 1]", Arrays.toString(in.getLongValues()));
+        assertEquals(4, in.getRightOperandCount());
+        StatementNode expected = parser.parseStatement(sql);
+        assertEquals(unparser.toString(expected), unparser.toString(stmt));
+        // Printing makes nodes, which should be just as parsed, but
+        // leaves the list compact.
+        assertEquals(treePrint(expected), treePrint(stmt));
+        assertTrue(in.isCompact());
+        assertTrue(in.isEquivalent(inList(expected)));
+        RowConstructorNode list = in.getRightOperandList();
+        assertEquals(4, list.getNodeList().size());
+        assertTrue(in.isCompact());
+        assertNotSame(list, in.getRightOperandList());
+        in.materialize();
+        assertFalse(in.isCompact());
+        assertSame(in.getRightOperandList(), in.getRightOperandList());
+        assertEquals(treePrint(expected), treePrint(stmt));
+    }
+
+    @Test
+    public void strings() throws Exception {
+        String sql = "SELECT * FROM tbl WHERE col IN ('a', 'it''s', '')";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        InListOperatorNode in = inList(stmt);
+        assertTrue(in.isCompact());
+        assertEquals("[a, it's, ]", Arrays.toString(in.getStringValues()));
+        StatementNode expected = parser.parseStatement(sql);
+        assertEquals(unparser.toString(expected), unparser.toString(stmt));
+        assertEquals(treePrint(expected), treePrint(stmt));
+    }
+
+    @Test
+    public void notCompact() throws Exception {
+        for (String sql : new String[] {
+                "SELECT * FROM tbl WHERE col IN (1, 'a')",
+                "SELECT * FROM tbl WHERE col IN (1, 2.5)",
+                "SELECT * FROM tbl WHERE col IN (1, ?)",
+                "SELECT * FROM tbl WHERE col IN (1, 1 + 1)",
+                "SELECT * FROM tbl WHERE (col, col) IN ((1, 2), (3, 4))",
+            }) {
+            assertFalse(sql, inList(featureParser.parseStatement(sql)).isCompact());
+        }
+        StatementNode stmt = parser.parseStatement("SELECT * FROM tbl WHERE col IN (1, 2)");
+        assertFalse(inList(stmt).isCompact());
+        assertTrue(inList(stmt).compact());
+    }
+
+    @Test
+    public void visitors() throws Exception {
+        StatementNode stmt = featureParser.parseStatement("SELECT * FROM tbl WHERE col IN (1, 2, 3)");
+        InListOperatorNode in = inList(stmt);
+        new BooleanNormalizer(featureParser).normalize(stmt);
+        new TypeComputer().compute(stmt);
+        assertTrue(in.isCompact());
+        HasNodeVisitor hasConstant = new HasNodeVisitor(NumericConstantNode.class);
+        stmt.accept(hasConstant);
+        assertTrue(hasConstant.hasNode());
+        assertFalse(in.isCompact());
+    }
+
+    @Test
+    public void longNotIn() throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT * FROM tbl WHERE NOT (col IN (");
+        for (int i = 0; i < 10000; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(i);
+        }
+        sql.append("))");
+        StatementNode stmt = featureParser.parseStatement(sql.toString());
+        NotNode not = (NotNode)
+            ((SelectNode)((CursorNode)stmt).getResultSetNode()).getWhereClause();
+        InListOperatorNode in = (InListOperatorNode)not.getOperand();
+        stmt = new BooleanNormalizer(featureParser).normalize(stmt);
+        assertTrue(in.isNegated());
+        assertTrue(in.isCompact());
+        assertEquals(10000, in.getRightOperandCount());
+    }
+
+    @Test
+    public void sortAndCopy() throws Exception {
+        StatementNode stmt = featureParser.parseStatement("SELECT * FROM tbl WHERE col IN (3, 1, 2, 3, 1)");
+        InListOperatorNode in = inList(stmt);
+        long[] original = in.getLongValues();
+        StatementNode copy = (StatementNode)
+            featureParser.getNodeFactory().copyNode(stmt, featureParser);
+        assertTrue(in.sortCompactValues());
+        assertTrue(in.isCompactSorted());
+        assertEquals("[1, 2, 3]", Arrays.toString(in.getLongValues()));
+        assertEquals("[3, 1, 2, 3, 1]", Arrays.toString(original));
+        InListOperatorNode copyIn = inList(copy);
+        assertTrue(copyIn.isCompact());
+        assertEquals("[3, 1, 2, 3, 1]", Arrays.toString(copyIn.getLongValues()));
+        assertEquals("SELECT * FROM tbl WHERE col IN (1, 2, 3)", unparser.toString(stmt));
+    }
+
+    static class MarkedConstants extends NodeToString {
+        @Override
+        protected String constantNode(ConstantNode node) throws StandardException {
+            return "<" + super.constantNode(node) + ">";
+        }
+    }
+
+    @Test
+    public void overriddenConstants() throws Exception {
+        String sql = "SELECT * FROM tbl WHERE col IN (3, 1, 2)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        NodeToString marked = new MarkedConstants();
+        assertEquals("SELECT * FROM tbl WHERE col IN (<3>, <1>, <2>)",
+                     marked.toString(stmt));
+        assertEquals(marked.toString(parser.parseStatement(sql)), marked.toString(stmt));
+        // Unparsing does not make the nodes.
+        assertTrue(inList(stmt).isCompact());
+    }
+
+    @Test
+    public void equivalent() throws Exception {
+        InListOperatorNode compact = inList(featureParser.parseStatement("SELECT * FROM tbl WHERE col IN (3, 1, 2, 3)"));
+        InListOperatorNode sorted = inList(featureParser.parseStatement("SELECT * FROM tbl WHERE col IN (3, 1, 2, 3)"));
+        InListOperatorNode nodes = inList(parser.parseStatement("SELECT * FROM tbl WHERE col IN (2, 3, 1)"));
+        InListOperatorNode other = inList(featureParser.parseStatement("SELECT * FROM tbl WHERE col IN (1, 2)"));
+        InListOperatorNode strings = inList(featureParser.parseStatement("SELECT * FROM tbl WHERE col IN ('1', '2', '3')"));
+        assertTrue(sorted.sortCompactValues());
+        assertTrue(compact.isEquivalent(sorted));
+        assertTrue(sorted.isEquivalent(compact));
+        assertTrue(compact.isEquivalent(nodes));
+        assertTrue(nodes.isEquivalent(sorted));
+        assertFalse(compact.isEquivalent(other));
+        assertFalse(sorted.isEquivalent(strings));
+        assertEquals(compact.structuralHash(), sorted.structuralHash());
+        assertEquals(compact.structuralHash(), nodes.structuralHash());
+        // Comparing does not make nodes.
+        assertTrue(compact.isCompact());
+        assertTrue(sorted.isCompact());
+        assertTrue(other.isCompact());
+        assertEquals("[3, 1, 2, 3]", Arrays.toString(compact.getLongValues()));
+    }
+
+}
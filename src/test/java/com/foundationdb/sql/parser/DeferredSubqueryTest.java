@@ -0,0 +1,212 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.util.List;
+
+public class DeferredSubqueryTest extends ParserFeatureTestBase
+{
+    public DeferredSubqueryTest() {
+        super(SQLParserFeature.DEFERRED_SUBQUERIES);
+    }
+
+    protected static SelectNode select(StatementNode stmt) {
+        return (SelectNode)((CursorNode)stmt).getResultSetNode();
+    }
+
+    protected void assertSameAsParsed(String sql, StatementNode stmt) throws Exception {
+        StatementNode expected = parser.parseStatement(sql);
+        assertEquals(unparser.toString(expected), unparser.toString(stmt));
+        assertEquals(treePrint(expected), treePrint(stmt));
+    }
+
+    static class CountingVisitor implements Visitor {
+        int count;
+
+        public Visitable visit(Visitable node) {
+            count++;
+            return node;
+        }
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+    }
+
+    static class ShallowCountingVisitor extends CountingVisitor
+            implements DeferredSubqueryVisitor {
+    }
+
+    @Test
+    public void expressionSubqueries() throws Exception {
+        String sql = "SELECT a FROM t WHERE b IN (SELECT c FROM u WHERE d = (SELECT MAX(e) FROM w)) AND EXISTS(SELECT 1 FROM v)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        AndNode and = (AndNode)select(stmt).getWhereClause();
+        SubqueryNode in = (SubqueryNode)and.getLeftOperand();
+        SubqueryNode exists = (SubqueryNode)and.getRightOperand();
+        assertTrue(in.isDeferred());
+        assertEquals(SubqueryNode.SubqueryType.IN, in.getSubqueryType());
+        assertEquals("SELECT c FROM u WHERE d = (SELECT MAX(e) FROM w)", in.getDeferredText());
+        assertTrue(exists.isDeferred());
+        assertEquals("SELECT 1 FROM v", exists.getDeferredText());
+
+        // Only the one asked for.
+        SelectNode inSelect = (SelectNode)in.getResultSet();
+        assertFalse(in.isDeferred());
+        assertTrue(exists.isDeferred());
+        ColumnReference c = (ColumnReference)inSelect.getResultColumns().get(0).getExpression();
+        assertEquals(sql.indexOf("c FROM u"), c.getBeginOffset());
+        assertEquals(sql.indexOf("c FROM u"), c.getEndOffset());
+        SubqueryNode max = (SubqueryNode)((BinaryOperatorNode)inSelect.getWhereClause()).getRightOperand();
+        assertTrue(max.isDeferred());
+
+        assertSameAsParsed(sql, stmt);
+        assertFalse(exists.isDeferred());
+        assertFalse(max.isDeferred());
+    }
+
+    @Test
+    public void derivedTables() throws Exception {
+        String sql = "SELECT * FROM (SELECT x FROM (SELECT y AS x FROM w) AS i ORDER BY x FETCH FIRST 3 ROWS ONLY) AS o";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        FromSubquery outer = (FromSubquery)select(stmt).getFromList().get(0);
+        assertTrue(outer.isDeferred());
+        assertEquals("o", outer.getCorrelationName());
+        assertNotNull(outer.getFetchFirst());
+        assertFalse(outer.isDeferred());
+        FromSubquery inner = (FromSubquery)((SelectNode)outer.getSubquery()).getFromList().get(0);
+        assertTrue(inner.isDeferred());
+        assertSameAsParsed(sql, stmt);
+    }
+
+    @Test
+    public void views() throws Exception {
+        String sql = "CREATE VIEW v(z) AS SELECT a FROM t WHERE b IN (1, 2) ORDER BY a";
+        CreateViewNode view = (CreateViewNode)featureParser.parseStatement(sql);
+        assertTrue(view.isDeferred());
+        assertEquals(sql, view.getQueryExpression());
+        assertNotNull(view.getOrderByList());
+        assertFalse(view.isDeferred());
+        assertSameAsParsed(sql, view);
+
+        List<StatementNode> stmts = featureParser.parseStatements("CREATE VIEW v1 AS SELECT 1; CREATE VIEW v2 AS SELECT (2)");
+        assertEquals(2, stmts.size());
+        for (StatementNode stmt : stmts) {
+            assertTrue(((CreateViewNode)stmt).isDeferred());
+        }
+        assertEquals("SELECT 1", unparser.toString(((CreateViewNode)stmts.get(0)).getParsedQueryExpression()));
+        assertEquals("SELECT 2", unparser.toString(((CreateViewNode)stmts.get(1)).getParsedQueryExpression()));
+    }
+
+    @Test
+    public void parameters() throws Exception {
+        String sql = "SELECT a FROM t WHERE b = ? AND c IN (SELECT d FROM u WHERE e = ?)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        AndNode and = (AndNode)select(stmt).getWhereClause();
+        assertFalse(((SubqueryNode)and.getRightOperand()).isDeferred());
+        assertEquals(2, featureParser.getParameterList().size());
+        assertSameAsParsed(sql, stmt);
+    }
+
+    @Test
+    public void nestedParameters() throws Exception {
+        String sql = "SELECT a FROM t WHERE b IN (SELECT c FROM u WHERE d IN (SELECT e FROM v WHERE f = ?) AND g IN (SELECT h FROM w))";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        SubqueryNode outer = (SubqueryNode)select(stmt).getWhereClause();
+        assertFalse(outer.isDeferred());
+        AndNode and = (AndNode)((SelectNode)outer.getResultSet()).getWhereClause();
+        assertFalse(((SubqueryNode)and.getLeftOperand()).isDeferred());
+        SubqueryNode sibling = (SubqueryNode)and.getRightOperand();
+        assertTrue(sibling.isDeferred());
+        assertEquals("SELECT h FROM w", sibling.getDeferredText());
+        assertSameAsParsed(sql, stmt);
+    }
+
+    @Test
+    public void settingsWhenDeferred() throws Exception {
+        String sql = "SELECT a FROM t WHERE b IN (SELECT long_name FROM u WHERE c IN (SELECT d FROM v))";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        SubqueryNode in = (SubqueryNode)select(stmt).getWhereClause();
+        assertTrue(in.isDeferred());
+        // What the parser does next does not change how it is parsed.
+        featureParser.setMaxIdentifierLength(4);
+        featureParser.getFeatures().remove(SQLParserFeature.DEFERRED_SUBQUERIES);
+        featureParser.parseStatement("SELECT 1");
+        SelectNode inSelect = (SelectNode)in.getResultSet();
+        assertTrue(((SubqueryNode)inSelect.getWhereClause()).isDeferred());
+        assertSameAsParsed(sql, stmt);
+    }
+
+    @Test
+    public void visitors() throws Exception {
+        String sql = "SELECT a FROM t WHERE b IN (SELECT c FROM u)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        SubqueryNode in = (SubqueryNode)select(stmt).getWhereClause();
+        CountingVisitor shallow = new ShallowCountingVisitor();
+        stmt.accept(shallow);
+        assertTrue(in.isDeferred());
+        CountingVisitor counter = new CountingVisitor();
+        stmt.accept(counter);
+        assertFalse(in.isDeferred());
+        assertTrue(counter.count > shallow.count);
+    }
+
+    @Test
+    public void copies() throws Exception {
+        String sql = "SELECT a FROM t WHERE b IN (SELECT c FROM u)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        StatementNode copy = (StatementNode)
+            featureParser.getNodeFactory().copyNode(stmt, featureParser);
+        SubqueryNode in = (SubqueryNode)select(copy).getWhereClause();
+        assertTrue(in.isDeferred());
+        assertSameAsParsed(sql, copy);
+        assertTrue(((SubqueryNode)select(stmt).getWhereClause()).isDeferred());
+    }
+
+    @Test
+    public void syntaxErrors() throws Exception {
+        String sql = "SELECT a FROM t WHERE b IN (SELECT FROM FROM)";
+        StatementNode stmt = featureParser.parseStatement(sql);
+        SubqueryNode in = (SubqueryNode)select(stmt).getWhereClause();
+        try {
+            in.getResultSet();
+            fail("Deferred syntax error not found");
+        }
+        catch (IllegalStateException ex) {
+            assertTrue(ex.getCause() instanceof SQLParserException);
+        }
+        try {
+            stmt.accept(new CountingVisitor());
+            fail("Deferred syntax error not found");
+        }
+        catch (SQLParserException ex) {
+            assertEquals(sql.indexOf("FROM FROM") + 1, ex.getErrorPosition());
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.StringWriter;
+
+public class JSONTreePrinterTest
+{
+    protected SQLParser parser;
+    protected JSONTreePrinter printer;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        printer = new JSONTreePrinter();
+    }
+
+    @Test
+    public void columnReference() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT \"a\"\"b\" FROM t");
+        ColumnReference column = (ColumnReference)
+            ((CursorNode)stmt).getResultSetNode().getResultColumns().get(0).getExpression();
+        assertEquals("{\"class\":\"ColumnReference\",\"nodeType\":" + NodeTypes.COLUMN_REFERENCE +
+                     ",\"beginOffset\":7,\"endOffset\":12" +
+                     ",\"fields\":{\"columnName\":\"a\\\"b\",\"tableName\":\"null\"" +
+                     ",\"type\":\"null\"},\"children\":[]}",
+                     printer.toString(column));
+    }
+
+    @Test
+    public void statement() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT x FROM t WHERE y = 1 AND z = 'a\tb'");
+        String json = printer.toString(stmt);
+        assertTrue(json, json.startsWith("{\"class\":\"CursorNode\","));
+        assertTrue(json, json.contains("\"class\":\"AndNode\""));
+        assertTrue(json, json.contains("\"value\":\"a\\tb\""));
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = 0; i < json.length(); i++) {
+            char ch = json.charAt(i);
+            if (quoted) {
+                if (ch == '\\') i++;
+                else if (ch == '"') quoted = false;
+            }
+            else if (ch == '"') quoted = true;
+            else if ((ch == '{') || (ch == '[')) depth++;
+            else if ((ch == '}') || (ch == ']')) depth--;
+            assertTrue(json, depth >= 0);
+        }
+        assertEquals(json, 0, depth);
+        StringWriter writer = new StringWriter();
+        printer.print(stmt, writer);
+        assertEquals(json, writer.toString());
+    }
+
+    @Test
+    public void compactParts() throws Exception {
+        parser.getFeatures().add(SQLParserFeature.COMPACT_IN_LISTS);
+        parser.getFeatures().add(SQLParserFeature.DEFERRED_SUBQUERIES);
+        StatementNode stmt = parser.parseStatement("SELECT x FROM t WHERE y IN (1, 2, 3) AND z IN ('a', 'b') AND x IN (SELECT w FROM u)");
+        AndNode where = (AndNode)((SelectNode)((CursorNode)stmt).getResultSetNode()).getWhereClause();
+        InListOperatorNode inList = (InListOperatorNode)((AndNode)where.getLeftOperand()).getLeftOperand();
+        SubqueryNode subquery = (SubqueryNode)where.getRightOperand();
+        String json = printer.toString(stmt);
+        assertTrue(json, json.contains("\"values\":[1,2,3]"));
+        assertTrue(json, json.contains("\"values\":[\"a\",\"b\"]"));
+        assertTrue(json, json.contains("\"deferredText\":\"SELECT w FROM u\""));
+        assertTrue(inList.isCompact());
+        assertTrue(subquery.isDeferred());
+    }
+
+    @Test
+    public void columnarRows() throws Exception {
+        parser.getFeatures().add(SQLParserFeature.COLUMNAR_VALUES);
+        StatementNode stmt = parser.parseStatement("INSERT INTO t VALUES (1, 'a', ?), (2, NULL, 3.5)");
+        RowsResultSetNode rows = (RowsResultSetNode)((InsertNode)stmt).getResultSetNode();
+        String json = printer.toString(stmt);
+        assertTrue(json, json.contains("\"columnarRows\":{\"kinds\":[\"LONG\",\"STRING\",\"NODE\"]"));
+        assertTrue(json, json.contains(",[2,null,{\"child\":"));
+        assertTrue(json, json.contains("\"class\":\"ParameterNode\""));
+        assertTrue(rows.isColumnar());
+    }
+
+}
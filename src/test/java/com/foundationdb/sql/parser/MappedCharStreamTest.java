@@ -0,0 +1,180 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import com.foundationdb.sql.unparser.NodeToString;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.List;
+
+public class MappedCharStreamTest
+{
+    // Should behave exactly like a StringCharStream on the decoded string,
+    // including for multi-byte sequences and surrogate pairs.
+
+    private CharStream s1, s2;
+    private static final String STRING = "abc \u00e9\u00e8z\n1\t2\t3\r\n\u20ac \ud83d\ude00 yyy\rz";
+    private static final char EOF = (char)0;
+
+    @Before
+    public void openStreams() throws Exception {
+        s1 = new StringCharStream(STRING);
+        s2 = new MappedCharStream(ByteBuffer.wrap(STRING.getBytes("UTF-8")));
+    }
+
+    @After
+    public void closeStreams() {
+        s1.Done();
+        s2.Done();
+    }
+
+    @Test
+    public void testBeginTokenSome() {
+        char c = ' ';
+        while (true) {
+            if (" \t\r\n".indexOf(c) < 0)
+                c = read(false);
+            else
+                c = read(true);
+            if (c == EOF) break;
+        }
+    }
+
+    @Test
+    public void testBackup() {
+        BitSet ns = new BitSet(STRING.length());
+        ns.set(0);
+        read(true);
+        while (true) {
+            while (true) {
+                char c = read(false);
+                if (c == EOF) break;
+            }
+            int i = ns.nextClearBit(0);
+            if (i >= STRING.length()) break;
+            ns.set(i);
+            s1.backup(i);
+            s2.backup(i);
+            compare();
+        }
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        byte[] bytes = { (byte)0xEF, (byte)0xBB, (byte)0xBF, 'a', (byte)0xC3, 'b', (byte)0xFF };
+        CharStream s = new MappedCharStream(ByteBuffer.wrap(bytes));
+        assertEquals('a', s.BeginToken());
+        assertEquals('\ufffd', s.readChar());
+        assertEquals('b', s.readChar());
+        assertEquals('\ufffd', s.readChar());
+        assertEquals("a\ufffdb\ufffd", s.GetImage());
+        assertEquals(3, s.getEndOffset());
+    }
+
+    @Test
+    public void testParseFile() throws Exception {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sql.append("INSERT INTO t1 VALUES(").append(i)
+               .append(", '\u00e9\u00e8\ud83d\ude00 ").append(i).append("');\n");
+            if ((i % 10) == 0)
+                sql.append("CREATE VIEW v").append(i)
+                   .append(" AS SELECT '\u20ac' FROM t1;\n");
+        }
+        String script = sql.toString();
+        File file = File.createTempFile("script", ".sql");
+        try {
+            FileOutputStream ostr = new FileOutputStream(file);
+            ostr.write(script.getBytes("UTF-8"));
+            ostr.close();
+            SQLParser parser = new SQLParser();
+            NodeToString unparser = new NodeToString();
+            List<StatementNode> expected = parser.parseStatements(script);
+            FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+            // Small window to force remapping in the middle of characters.
+            SQLStatementReader reader = 
+                new SQLStatementReader(parser, new MappedCharStream(channel, 61));
+            for (StatementNode stmt : expected) {
+                StatementNode actual = reader.nextStatement();
+                assertNotNull(actual);
+                assertEquals(unparser.toString(stmt), unparser.toString(actual));
+                assertEquals(stmt.getBeginOffset(), actual.getBeginOffset());
+                assertEquals(stmt.getEndOffset(), actual.getEndOffset());
+                assertEquals(script.substring(stmt.getBeginOffset(), stmt.getEndOffset() + 1),
+                             parser.getSQLText());
+                if (actual instanceof CreateViewNode)
+                    assertEquals(((CreateViewNode)stmt).getQueryExpression(),
+                                 ((CreateViewNode)actual).getQueryExpression());
+            }
+            assertNull(reader.nextStatement());
+            reader.close();
+            channel.close();
+            MappedCharStream stream = new MappedCharStream(file);
+            assertEquals(script.getBytes("UTF-8").length, stream.size());
+            stream.Done();
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    protected char read(boolean begin) {
+        char c1, c2;
+        try {
+            c1 = (begin) ? s1.BeginToken() : s1.readChar();
+        }
+        catch (IOException ex) {
+            c1 = EOF;
+        }
+        try {
+            c2 = (begin) ? s2.BeginToken() : s2.readChar();
+        }
+        catch (IOException ex) {
+            c2 = EOF;
+        }
+        assertEquals("readChar", c1, c2);
+        compare();
+        return c1;
+    }
+
+    protected void compare() {
+        int offset = s1.getEndOffset();
+        assertEquals("getBeginOffset["+offset+"]", s1.getBeginOffset(), s2.getBeginOffset());
+        assertEquals("getEndOffset["+offset+"]", s1.getEndOffset(), s2.getEndOffset());
+        assertEquals("getBeginLine["+offset+"]", s1.getBeginLine(), s2.getBeginLine());
+        assertEquals("getBeginColumn["+offset+"]", s1.getBeginColumn(), s2.getBeginColumn());
+        assertEquals("getEndLine["+offset+"]", s1.getEndLine(), s2.getEndLine());
+        assertEquals("getEndColumn["+offset+"]", s1.getEndColumn(), s2.getEndColumn());
+        assertEquals("GetImage["+offset+"]", s1.GetImage(), s2.GetImage());
+        int size = offset - s1.getBeginOffset() + 1;
+        for (int i = 0; i < size; i++)
+            assertEquals("GetSuffix["+offset+"]("+i+")", new String(s1.GetSuffix(i)), new String(s2.GetSuffix(i)));
+    }
+
+}
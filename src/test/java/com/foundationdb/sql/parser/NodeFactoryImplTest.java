@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import com.foundationdb.sql.StandardException;
+
+public class NodeFactoryImplTest
+{
+    // The direct constructors must agree with the class names,
+    // which custom factories may still rely on.
+    @Test
+    public void newNodeMatchesNodeName() throws Exception {
+        NodeFactoryImpl factory = new NodeFactoryImpl();
+        int direct = 0;
+        for (int nodeType = 0; nodeType <= NodeTypes.FINAL_VALUE; nodeType++) {
+            String nodeName;
+            try {
+                nodeName = factory.nodeName(nodeType);
+            }
+            catch (StandardException ex) {
+                assertNull("type " + nodeType, factory.newNode(nodeType));
+                continue;
+            }
+            QueryTreeNode node = factory.newNode(nodeType);
+            Class nodeClass;
+            try {
+                nodeClass = Class.forName(nodeName);
+            }
+            catch (ClassNotFoundException ex) {
+                assertNull(nodeName, node);
+                continue;
+            }
+            assertNotNull(nodeName, node);
+            assertEquals(nodeName, nodeClass, node.getClass());
+            direct++;
+        }
+        assertTrue(direct > 0);
+    }
+
+    @Test
+    public void getNodeSetsType() throws Exception {
+        SQLParser parser = new SQLParser();
+        QueryTreeNode node = parser.getNodeFactory().getNode(NodeTypes.IS_NOT_NULL_NODE, parser);
+        assertEquals(IsNullNode.class, node.getClass());
+        assertEquals(NodeTypes.IS_NOT_NULL_NODE, node.getNodeType());
+        assertSame(parser, node.getParserContext());
+    }
+
+    @Test(expected=StandardException.class)
+    public void missingClass() throws Exception {
+        SQLParser parser = new SQLParser();
+        parser.getNodeFactory().getNode(NodeTypes.HASH_TABLE_NODE, parser);
+    }
+
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NodeSerializerTest extends TestBase
+{
+    protected SQLParser parser;
+    protected NodeSerializer serializer;
+    protected NodeToString unparser;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        serializer = new NodeSerializer(parser);
+        unparser = new NodeToString();
+    }
+
+    protected QueryTreeNode roundTrip(String sql) throws Exception {
+        return roundTrip(sql, parser.parseStatement(sql));
+    }
+
+    protected QueryTreeNode roundTrip(String sql, StatementNode stmt) throws Exception {
+        byte[] bytes = serializer.serialize(stmt);
+        // A separate parser, since tree printing remembers equal nodes.
+        QueryTreeNode copy = new NodeSerializer(new SQLParser()).deserialize(bytes);
+        assertNotSame(stmt, copy);
+        assertEquals(sql, stmt.getClass(), copy.getClass());
+        String unparsed;
+        try {
+            unparsed = unparser.toString(stmt);
+        }
+        catch (StandardException ex) {
+            unparsed = null;    // Not all DDL can be unparsed.
+        }
+        if (unparsed != null)
+            assertEquals(sql, unparsed, unparser.toString(copy));
+        TestBase.assertEqualsWithoutHashes(sql, treeString(stmt), treeString(copy));
+        return copy;
+    }
+
+    protected static String treeString(QueryTreeNode node) {
+        // Tree printing only prints an equal node in full the first time.
+        node.getParserContext().getPrintedObjectsMap().clear();
+        StringWriter writer = new StringWriter();
+        node.treePrint(writer);
+        // Byte arrays print by identity.
+        return writer.toString().replaceAll("\\[B@[0-9a-f]+", "[B");
+    }
+
+    /** Every statement in the test resources. */
+    @Test
+    public void corpus() throws Exception {
+        List<File> dirs = new ArrayList<File>();
+        addDirectories(SQLParserTest.RESOURCE_DIR.getParentFile(), dirs);
+        int count = 0;
+        for (File dir : dirs) {
+            for (Object[] args : sqlAndExpectedAndExtra(dir, ".features")) {
+                SQLParser parser = new SQLParser();
+                if (args[4] != null)
+                    parseFeatures((String[])args[4], parser.getFeatures());
+                List<StatementNode> stmts;
+                try {
+                    stmts = parser.parseStatements((String)args[1]);
+                }
+                catch (StandardException ex) {
+                    continue;
+                }
+                for (StatementNode stmt : stmts) {
+                    roundTrip(dir.getName() + "/" + args[0], stmt);
+                    count++;
+                }
+            }
+        }
+        assertTrue(count > 0);
+    }
+
+    protected static void addDirectories(File dir, List<File> dirs) {
+        dirs.add(dir);
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory())
+                addDirectories(file, dirs);
+        }
+    }
+
+    @Test
+    public void typeIds() throws Exception {
+        roundTrip("UPDATE t SET a = a + 1 WHERE b = '\u00e9t\u00e9'");
+        roundTrip("CREATE TABLE t(id serial, a MEDIUMINT UNSIGNED, b s.mytype, c INTERVAL MONTH)");
+        roundTrip("CREATE FUNCTION f(x INT) RETURNS TABLE(a INT, b VARCHAR(10)) LANGUAGE JAVA PARAMETER STYLE DERBY_JDBC_RESULT_SET READS SQL DATA EXTERNAL NAME 'C.f'");
+        roundTrip("CREATE PROCEDURE p(IN x INT, OUT y DOUBLE) LANGUAGE JAVA PARAMETER STYLE JAVA EXTERNAL NAME 'C.p'");
+        roundTrip("CREATE INDEX i ON t(a, z_order_lat_lon(b, c))");
+    }
+
+    @Test
+    public void sharedNodes() throws Exception {
+        // ROWS_RESULT_SET_NODE's result columns start out as the first row's.
+        roundTrip("SELECT * FROM (VALUES(1, 2), (3, 4)) AS v(x, y)");
+        roundTrip("SELECT 1 FROM t WHERE x = 1 OR x = 2 OR x = 3");
+    }
+
+    @Test
+    public void strings() throws Exception {
+        // The same identifier many times only once.
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("some_long_column_name");
+        }
+        sql.append(" FROM t");
+        StatementNode stmt = parser.parseStatement(sql.toString());
+        byte[] bytes = serializer.serialize(stmt);
+        int count = 0;
+        String str = new String(bytes, "ISO-8859-1");
+        for (int i = 0; (i = str.indexOf("some_long_column_name", i)) >= 0; i++) {
+            count++;
+        }
+        assertEquals(1, count);
+    }
+
+    @Test
+    public void streams() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT a FROM t WHERE b = 1");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(stmt, out);
+        QueryTreeNode copy = serializer.deserialize(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(unparser.toString(stmt), unparser.toString(copy));
+    }
+
+    static class CustomColumnReference extends ColumnReference {
+    }
+
+    @Test
+    public void customFactory() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT a FROM t");
+        byte[] bytes = serializer.serialize(stmt);
+        SQLParser other = new SQLParser();
+        other.setNodeFactory(new NodeFactory() {
+                NodeFactory base = new NodeFactoryImpl();
+
+                @Override
+                public QueryTreeNode getNode(int nodeType, SQLParserContext pc)
+                        throws StandardException {
+                    if (nodeType != NodeTypes.COLUMN_REFERENCE)
+                        return base.getNode(nodeType, pc);
+                    QueryTreeNode node = new CustomColumnReference();
+                    node.setParserContext(pc);
+                    node.setNodeType(nodeType);
+                    return node;
+                }
+            });
+        CursorNode copy = (CursorNode)new NodeSerializer(other).deserialize(bytes);
+        ColumnReference column = (ColumnReference)
+            copy.getResultSetNode().getResultColumns().get(0).getExpression();
+        assertEquals(CustomColumnReference.class, column.getClass());
+        assertEquals("a", column.getColumnName());
+        assertSame(other, column.getParserContext());
+    }
+
+    @Test(expected=StandardException.class)
+    public void renamedField() throws Exception {
+        byte[] bytes = serializer.serialize(parser.parseStatement("SELECT a FROM t"));
+        String str = new String(bytes, "ISO-8859-1");
+        int index = str.indexOf("ColumnReference.columnName");
+        assertTrue(index > 0);
+        // As though read by a version in which it has another name.
+        bytes[index + "ColumnReference.columnNam".length()] = 'x';
+        serializer.deserialize(bytes);
+    }
+
+    @Test(expected=StandardException.class)
+    public void unknownClass() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT 1");
+        ConstantNode constant = (ConstantNode)
+            ((CursorNode)stmt).getResultSetNode().getResultColumns().get(0).getExpression();
+        constant.setValue(new NodeToString());
+        serializer.serialize(stmt);
+    }
+
+    @Test(expected=StandardException.class)
+    public void badVersion() throws Exception {
+        byte[] bytes = serializer.serialize(parser.parseStatement("SELECT 1"));
+        bytes[4] = (byte)(NodeSerializer.VERSION + 1);
+        serializer.deserialize(bytes);
+    }
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.Random;
+
+/** Micro-benchmark for numeric literal classification.
+ * <p>
+ * Not a unit test; run by hand with optional arguments
+ * <code>rows</code> and <code>iterations</code>. Compares the old
+ * exception-driven <code>Integer</code> / <code>Long</code> / decimal
+ * fallback with {@link SQLGrammar#getNumericNode}, and then times
+ * parsing a multi-row <code>INSERT</code> of mostly 64-bit ids.
+ */
+public class NumericLiteralBenchmark
+{
+    public static void main(String[] args) throws Exception {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+        int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+        String[] literals = literals(rows * 3);
+        SQLParser parser = new SQLParser();
+        SQLGrammar grammar = new SQLGrammar(new SQLGrammarTokenManager(null, new StringCharStream("")));
+        grammar.setParserContext(parser);
+
+        for (int warmup = 0; warmup < 2; warmup++) {
+            for (int i = 0; i < iterations; i++) {
+                legacyClassify(parser, literals);
+                classify(grammar, literals);
+            }
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            legacyClassify(parser, literals);
+        long legacy = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            classify(grammar, literals);
+        long current = System.nanoTime() - start;
+        report("legacy classify", legacy, iterations * literals.length, "literal");
+        report("classify", current, iterations * literals.length, "literal");
+
+        String sql = insert(literals);
+        for (int i = 0; i < iterations; i++)
+            parser.parseStatement(sql);
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            parser.parseStatement(sql);
+        report("parse INSERT", System.nanoTime() - start, iterations * rows, "row");
+    }
+
+    /** Ids past the range of <code>int</code>, small ints and decimals. */
+    static String[] literals(int n) {
+        Random random = new Random(1);
+        String[] result = new String[n];
+        for (int i = 0; i < n; i += 3) {
+            result[i] = Long.toString(0x100000000L + (random.nextLong() >>> 2));
+            if (i + 1 < n)
+                result[i+1] = Integer.toString(random.nextInt(1000));
+            if (i + 2 < n)
+                result[i+2] = random.nextInt(100000) + "." + random.nextInt(100);
+        }
+        return result;
+    }
+
+    static String insert(String[] literals) {
+        StringBuilder str = new StringBuilder("INSERT INTO t1(id, n, amount) VALUES");
+        for (int i = 0; i + 2 < literals.length; i += 3) {
+            if (i > 0) str.append(',');
+            str.append('(').append(literals[i])
+               .append(", ").append(literals[i+1])
+               .append(", ").append(literals[i+2])
+               .append(')');
+        }
+        return str.toString();
+    }
+
+    /** What <code>getNumericNode</code> used to do. */
+    static int legacyClassify(SQLParser parser, String[] literals) throws StandardException {
+        NodeFactory nodeFactory = parser.getNodeFactory();
+        int count = 0;
+        for (String num : literals) {
+            QueryTreeNode node;
+            try {
+                node = nodeFactory.getNode(NodeTypes.INT_CONSTANT_NODE,
+                                           new Integer(num), parser);
+            }
+            catch (NumberFormatException nfe) {
+                try {
+                    node = nodeFactory.getNode(NodeTypes.LONGINT_CONSTANT_NODE,
+                                               new Long(num), parser);
+                }
+                catch (NumberFormatException nfe2) {
+                    node = nodeFactory.getNode(NodeTypes.DECIMAL_CONSTANT_NODE,
+                                               num, parser);
+                }
+            }
+            if (node != null) count++;
+        }
+        return count;
+    }
+
+    static int classify(SQLGrammar grammar, String[] literals) throws StandardException {
+        int count = 0;
+        for (String num : literals) {
+            if (grammar.getNumericNode(num, false) != null) count++;
+        }
+        return count;
+    }
+
+    static void report(String label, long nanos, int count, String unit) {
+        System.out.println(String.format("%-16s %10.1f ns/%s",
+                                         label, (double)nanos / count, unit));
+    }
+
+}
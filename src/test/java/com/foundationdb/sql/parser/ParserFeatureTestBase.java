@@ -0,0 +1,54 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+
+import java.io.StringWriter;
+
+/** For comparing what a parser with some feature makes with what a
+ * plain one does.
+ */
+public abstract class ParserFeatureTestBase
+{
+    protected final SQLParserFeature feature;
+    protected SQLParser parser, featureParser;
+    protected NodeToString unparser;
+
+    protected ParserFeatureTestBase(SQLParserFeature feature) {
+        this.feature = feature;
+    }
+
+    @Before
+    public void makeParsers() throws Exception {
+        parser = new SQLParser();
+        featureParser = new SQLParser();
+        featureParser.getFeatures().add(feature);
+        unparser = new NodeToString();
+    }
+
+    protected static String treePrint(StatementNode stmt) {
+        StringWriter str = new StringWriter();
+        stmt.treePrint(str);
+        // Node identities differ.
+        return str.toString().replaceAll("@[0-9a-f]+", "");
+    }
+
+}
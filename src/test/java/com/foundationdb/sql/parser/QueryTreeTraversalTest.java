@@ -0,0 +1,194 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class QueryTreeTraversalTest
+{
+    static class Tracer implements Visitor {
+        boolean childrenFirst;
+        int stopAfter = -1;
+        List<String> trace = new ArrayList<String>();
+
+        public Tracer(boolean childrenFirst) {
+            this.childrenFirst = childrenFirst;
+        }
+
+        public Visitable visit(Visitable node) throws StandardException {
+            trace.add(node.getClass().getSimpleName());
+            return node;
+        }
+        public boolean visitChildrenFirst(Visitable node) {
+            return childrenFirst;
+        }
+        public boolean stopTraversal() {
+            return (trace.size() == stopAfter);
+        }
+        public boolean skipChildren(Visitable node) throws StandardException {
+            return (node instanceof SubqueryNode);
+        }
+    }
+
+    // Replace each integer literal with ten times its value.
+    static class Multiplier implements Visitor {
+        boolean childrenFirst;
+        int count;
+
+        public Multiplier(boolean childrenFirst) {
+            this.childrenFirst = childrenFirst;
+        }
+
+        public Visitable visit(Visitable node) throws StandardException {
+            if (!(node instanceof NumericConstantNode))
+                return node;
+            NumericConstantNode constant = (NumericConstantNode)node;
+            count++;
+            return constant.getNodeFactory()
+                .getNode(NodeTypes.INT_CONSTANT_NODE,
+                         (Integer)constant.getValue() * 10,
+                         constant.getParserContext());
+        }
+        public boolean visitChildrenFirst(Visitable node) {
+            return childrenFirst;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) throws StandardException {
+            return false;
+        }
+    }
+
+    protected ValueNode whereClause(String sql) throws Exception {
+        SQLParser parser = new SQLParser();
+        CursorNode cursor = (CursorNode)parser.parseStatement(sql);
+        return ((SelectNode)cursor.getResultSetNode()).getWhereClause();
+    }
+
+    @Test
+    public void parentFirst() throws Exception {
+        Tracer tracer = new Tracer(false);
+        whereClause("SELECT x FROM tbl WHERE y = 1 + 2").accept(tracer);
+        assertEquals("[BinaryRelationalOperatorNode, ColumnReference, BinaryArithmeticOperatorNode, NumericConstantNode, NumericConstantNode]",
+                     tracer.trace.toString());
+    }
+
+    @Test
+    public void childrenFirst() throws Exception {
+        Tracer tracer = new Tracer(true);
+        whereClause("SELECT x FROM tbl WHERE y = 1 + 2").accept(tracer);
+        assertEquals("[ColumnReference, NumericConstantNode, NumericConstantNode, BinaryArithmeticOperatorNode, BinaryRelationalOperatorNode]",
+                     tracer.trace.toString());
+    }
+
+    @Test
+    public void skipChildren() throws Exception {
+        Tracer tracer = new Tracer(false);
+        whereClause("SELECT x FROM tbl WHERE EXISTS (SELECT z FROM tbl) AND y = 1").accept(tracer);
+        assertEquals("[AndNode, SubqueryNode, BinaryRelationalOperatorNode, ColumnReference, NumericConstantNode]",
+                     tracer.trace.toString());
+    }
+
+    @Test
+    public void stopTraversal() throws Exception {
+        Tracer tracer = new Tracer(false);
+        tracer.stopAfter = 3;
+        ValueNode where = whereClause("SELECT x FROM tbl WHERE y = 1 + 2");
+        assertSame(where, where.accept(tracer));
+        assertEquals("[BinaryRelationalOperatorNode, ColumnReference, BinaryArithmeticOperatorNode]",
+                     tracer.trace.toString());
+    }
+
+    @Test
+    public void replace() throws Exception {
+        for (boolean childrenFirst : new boolean[] { false, true }) {
+            SQLParser parser = new SQLParser();
+            StatementNode stmt = parser.parseStatement("SELECT x + 1, f(2) FROM tbl WHERE y IN (3, 4) AND z = 5 ORDER BY 6");
+            Multiplier multiplier = new Multiplier(childrenFirst);
+            stmt.accept(multiplier);
+            assertEquals(6, multiplier.count);
+            assertEquals("SELECT (x + 10), f(20) FROM tbl WHERE (y IN (30, 40)) AND (z = 50) ORDER BY 60",
+                         new NodeToString().toString(stmt));
+        }
+    }
+
+    // A replacement is stored before the next sibling is visited.
+    @Test
+    public void replacedAtOnce() throws Exception {
+        for (boolean childrenFirst : new boolean[] { false, true }) {
+            final BinaryOperatorNode where = (BinaryOperatorNode)
+                whereClause("SELECT x FROM tbl WHERE 1 = 2");
+            final List<Object> seen = new ArrayList<Object>();
+            where.accept(new Multiplier(childrenFirst) {
+                    public Visitable visit(Visitable node) throws StandardException {
+                        if (node == where.getRightOperand())
+                            seen.add(((NumericConstantNode)where.getLeftOperand()).getValue());
+                        return super.visit(node);
+                    }
+                });
+            assertEquals("[10]", seen.toString());
+        }
+    }
+
+    static final int DEEP = 50000;
+
+    // A long chain of AND is a left-deep tree, which used to need a
+    // stack frame per term.
+    @Test
+    public void deep() throws Throwable {
+        StringBuilder sql = new StringBuilder("SELECT x FROM tbl WHERE ");
+        for (int i = 0; i < DEEP; i++) {
+            if (i > 0) sql.append(" AND ");
+            sql.append("y = ").append(i);
+        }
+        SQLParser parser = new SQLParser();
+        final StatementNode stmt = parser.parseStatement(sql.toString());
+        final Throwable[] error = new Throwable[1];
+        final int[] counts = new int[2];
+        Thread thread = new Thread(null, new Runnable() {
+                public void run() {
+                    try {
+                        Tracer tracer = new Tracer(false);
+                        stmt.accept(tracer);
+                        counts[0] = tracer.trace.size();
+                        Multiplier multiplier = new Multiplier(true);
+                        stmt.accept(multiplier);
+                        counts[1] = multiplier.count;
+                    }
+                    catch (Throwable ex) {
+                        error[0] = ex;
+                    }
+                }
+            }, "deep", 64 * 1024);
+        thread.start();
+        thread.join();
+        if (error[0] != null)
+            throw error[0];
+        assertTrue(counts[0] > DEEP * 4);
+        assertEquals(DEEP, counts[1]);
+    }
+
+}
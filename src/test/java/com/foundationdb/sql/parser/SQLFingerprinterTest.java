@@ -0,0 +1,90 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SQLFingerprinterTest
+{
+    protected SQLParser parser;
+    protected SQLFingerprinter fingerprinter;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        fingerprinter = new SQLFingerprinter(parser);
+    }
+
+    protected void check(String expected, String sql) throws Exception {
+        assertEquals(sql, expected, fingerprinter.canonicalize(sql));
+        long low = fingerprinter.getHashLow(), high = fingerprinter.getHashHigh();
+        assertEquals(sql, low, fingerprinter.fingerprint(sql));
+        assertEquals(sql, high, fingerprinter.getHashHigh());
+    }
+
+    @Test
+    public void canonical() throws Exception {
+        check("SELECT a, b FROM tbl WHERE x = ? AND y = ?",
+              "select A,b   from TBL /* comment */ where x=17 and y = 'abc'");
+        check("SELECT * FROM tbl WHERE id IN (?) AND z > ?",
+              "SELECT * FROM tbl WHERE id IN (1, -2, 3.5e4, ?) AND z > -1");
+        check("SELECT a - ?, f (?) FROM s.tbl",
+              "SELECT a - 1, f(+2) FROM s.tbl -- trailing\n");
+        check("SELECT * FROM tbl WHERE id IN (?, b) OR id IN (SELECT col FROM u)",
+              "SELECT * FROM tbl WHERE id IN (1, b) OR id IN (SELECT col FROM u)");
+        check("INSERT INTO tbl VALUES (?, ?, NULL)",
+              "INSERT INTO tbl VALUES (1, x'0A', NULL)");
+        check("SELECT \"Mixed\" FROM `tbl`",
+              "SELECT \"Mixed\" FROM `tbl`");
+    }
+
+    @Test
+    public void sameAndDifferent() throws Exception {
+        long h1 = fingerprinter.fingerprint("SELECT * FROM t WHERE id = 17");
+        long h1High = fingerprinter.getHashHigh();
+        long h2 = fingerprinter.fingerprint("select *\nfrom T where ID=18");
+        assertEquals(h1, h2);
+        assertEquals(h1High, fingerprinter.getHashHigh());
+        long h3 = fingerprinter.fingerprint("SELECT * FROM t WHERE id > 17");
+        assertFalse(h1 == h3);
+    }
+
+    @Test
+    public void binaryOperatorAfterKeyword() throws Exception {
+        check("SELECT CURRENT_DATE - ? FROM tbl",
+              "SELECT CURRENT_DATE - 1 FROM tbl");
+        check("SELECT CURRENT_DATE + ? FROM tbl",
+              "select current_date + 1 from tbl");
+        check("SELECT CURRENT_TIMESTAMP - ?, NULL - ? FROM tbl",
+              "SELECT CURRENT_TIMESTAMP - 1, null - 2 FROM tbl");
+        check("SELECT ? FROM tbl WHERE x BETWEEN ? AND ? OR CASE WHEN y THEN ? ELSE ? END",
+              "SELECT -1 FROM tbl WHERE x BETWEEN -2 AND +3 OR CASE WHEN y THEN -4 ELSE 5 END");
+        check("SELECT a - ? FROM tbl WHERE b * ? > ?",
+              "SELECT a - -1 FROM tbl WHERE b * -2 > -3");
+        long minus = fingerprinter.fingerprint("SELECT CURRENT_DATE - 1 FROM tbl");
+        long plus = fingerprinter.fingerprint("SELECT CURRENT_DATE + 1 FROM tbl");
+        assertFalse(minus == plus);
+    }
+
+    @Test(expected=SQLParserException.class)
+    public void lexicalError() throws Exception {
+        fingerprinter.fingerprint("SELECT a FROM tbl WHERE x = #1");
+    }
+
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SQLParserPoolTest
+{
+    @Test
+    public void reuse() throws Exception {
+        SQLParserPool pool = new SQLParserPool(EnumSet.of(SQLParserFeature.DIV_OPERATOR), 1);
+        SQLParser parser = pool.acquire();
+        parser.parseStatement("SELECT a FROM t WHERE b = ?");
+        assertEquals(1, parser.getParameterList().size());
+        parser.getFeatures().add(SQLParserFeature.INFIX_MOD);
+        pool.release(parser);
+        assertEquals(1, pool.getIdleCount());
+        assertNull(parser.getSQLText());
+
+        SQLParser again = pool.acquire();
+        assertSame(parser, again);
+        assertEquals(EnumSet.of(SQLParserFeature.DIV_OPERATOR), again.getFeatures());
+        again.parseStatement("SELECT 1");
+        assertEquals(0, again.getParameterList().size());
+
+        SQLParser other = pool.acquire();
+        assertNotSame(parser, other);
+        pool.release(again);
+        pool.release(other);
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void errorsDoNotPoison() throws Exception {
+        SQLParserPool pool = new SQLParserPool();
+        try {
+            pool.parseStatement("SELECT FROM WHERE");
+            fail("should not parse");
+        }
+        catch (SQLParserException ex) {
+        }
+        assertNotNull(pool.parseStatement("SELECT x FROM y"));
+    }
+
+    @Test
+    public void parameters() throws Exception {
+        SQLParserPool pool = new SQLParserPool();
+        SQLParserPool.ParseResult result = pool.parse("SELECT a FROM t WHERE b = ? AND c = ?");
+        assertNotNull(result.getStatement());
+        assertNull(result.getException());
+        List<ParameterNode> params = result.getParameterList();
+        assertEquals(2, params.size());
+        assertEquals(1, params.get(1).getParameterNumber());
+        // Still there after the parser has been reused.
+        pool.parseStatement("SELECT ? FROM t");
+        assertEquals(2, params.size());
+        try {
+            pool.parse("SELECT FROM WHERE");
+            fail("should not parse");
+        }
+        catch (SQLParserException ex) {
+        }
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        final SQLParserPool pool = new SQLParserPool();
+        final String sql = "SELECT a, b + ? FROM t WHERE c IN (1, 2, 3) AND d = ?";
+        final String expected = pool.parseStatement(sql).getClass().getName();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread() {
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 200; j++) {
+                                SQLParser parser = pool.acquire();
+                                try {
+                                    StatementNode stmt = parser.parseStatement(sql);
+                                    assertEquals(expected, stmt.getClass().getName());
+                                    assertEquals(2, parser.getParameterList().size());
+                                }
+                                finally {
+                                    pool.release(parser);
+                                }
+                            }
+                        }
+                        catch (Throwable ex) {
+                            failure.compareAndSet(null, ex);
+                        }
+                    }
+                });
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        assertTrue(pool.getIdleCount() <= pool.getMaxIdle());
+    }
+
+    @Test
+    public void parseAll() throws Exception {
+        SQLParserPool pool = new SQLParserPool();
+        List<String> sqls = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            if ((i % 50) == 7)
+                sqls.add("SELECT FROM WHERE " + i);
+            else
+                sqls.add("SELECT a" + i + " FROM t WHERE b = ?");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<SQLParserPool.ParseResult> results = pool.parseAll(sqls, executor);
+            assertEquals(sqls.size(), results.size());
+            for (int i = 0; i < sqls.size(); i++) {
+                SQLParserPool.ParseResult result = results.get(i);
+                assertEquals(sqls.get(i), result.getSQLText());
+                if ((i % 50) == 7) {
+                    assertNull(result.getStatement());
+                    assertTrue(result.getException() instanceof SQLParserException);
+                }
+                else {
+                    assertNull(result.getException());
+                    CursorNode cursor = (CursorNode)result.getStatement();
+                    SelectNode select = (SelectNode)cursor.getResultSetNode();
+                    assertEquals("a" + i, select.getResultColumns().get(0).getName());
+                    assertEquals(1, result.getParameterList().size());
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void splitStatements() throws Exception {
+        SQLParserPool pool = new SQLParserPool();
+        assertEquals(Arrays.asList("SELECT ';' FROM t",
+                                   "SELECT \"a;b\", `c;d` FROM t /* x; /* y; */ z; */ WHERE e = E'\\';'",
+                                   "INSERT INTO t VALUES($$;$$)",
+                                   "SELECT 1"),
+                     pool.splitStatements(";; SELECT ';' FROM t; -- comment; \n" +
+                                          "SELECT \"a;b\", `c;d` FROM t /* x; /* y; */ z; */ WHERE e = E'\\';' ;\n" +
+                                          "/* only a comment; */ ; INSERT INTO t VALUES($$;$$);\n" +
+                                          "SELECT 1 -- last"));
+    }
+
+    @Test
+    public void parseScript() throws Exception {
+        SQLParserPool pool = new SQLParserPool();
+        String script = "CREATE TABLE t(a INT);\nINSERT INTO t VALUES(1);\nBAD STATEMENT;\nDROP TABLE t";
+        List<SQLParserPool.ParseResult> results = pool.parseScript(script, new Executor() {
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            });
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).getStatement() instanceof CreateTableNode);
+        assertTrue(results.get(1).getStatement() instanceof InsertNode);
+        assertNotNull(results.get(2).getException());
+        assertEquals(script.indexOf("BAD"), results.get(2).getScriptOffset());
+        assertTrue(results.get(3).getStatement() instanceof DropTableNode);
+    }
+
+    @Test
+    public void parseAllErrors() throws Exception {
+        SQLParserPool pool = new SQLParserPool() {
+                @Override
+                protected SQLParser newParser() {
+                    return new SQLParser() {
+                            @Override
+                            public StatementNode parseStatement(String sqlText)
+                                    throws StandardException {
+                                if (sqlText.equals("DEEP"))
+                                    throw new StackOverflowError();
+                                if (sqlText.equals("FATAL"))
+                                    throw new InternalError(sqlText);
+                                return super.parseStatement(sqlText);
+                            }
+                        };
+                }
+            };
+        // Runs the workers in the calling thread.
+        Executor executor = new Executor() {
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            };
+        List<SQLParserPool.ParseResult> results =
+            pool.parseAll(Arrays.asList("SELECT 1", "DEEP", "SELECT 2"), executor, 1);
+        assertTrue(results.get(0).getStatement() instanceof CursorNode);
+        assertTrue(results.get(1).getException().getCause() instanceof StackOverflowError);
+        assertTrue(results.get(2).getStatement() instanceof CursorNode);
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            for (Executor each : new Executor[] { executor, threads }) {
+                try {
+                    pool.parseAll(Arrays.asList("SELECT 1", "FATAL", "SELECT 2"), each, 2);
+                    fail("Error not thrown");
+                }
+                catch (InternalError ex) {
+                    assertEquals("FATAL", ex.getMessage());
+                }
+            }
+        }
+        finally {
+            threads.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+import com.foundationdb.sql.parser.SQLStatementClassifier.Category;
+import com.foundationdb.sql.unparser.NodeToStringTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.File;
+
+public class SQLStatementClassifierTest extends TestBase
+{
+    protected SQLParser parser;
+    protected SQLStatementClassifier classifier;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        classifier = new SQLStatementClassifier(parser);
+    }
+
+    protected void check(Category expected, String sql) throws Exception {
+        assertEquals(sql, expected, classifier.classify(sql));
+        assertEquals(sql, expected,
+                     SQLStatementClassifier.classify(parser.parseStatement(sql)));
+    }
+
+    protected void checkTokens(Category expected, String sql) throws Exception {
+        assertEquals(sql, expected, classifier.classifyLeadingTokens(sql));
+        check(expected, sql);
+    }
+
+    protected void checkFallback(Category expected, String sql) throws Exception {
+        assertNull(sql, classifier.classifyLeadingTokens(sql));
+        check(expected, sql);
+    }
+
+    @Test
+    public void queries() throws Exception {
+        checkTokens(Category.SELECT, "SELECT * FROM t WHERE x = 1");
+        checkTokens(Category.SELECT, "VALUES (1, 2)");
+        checkTokens(Category.SELECT, "((SELECT a FROM t) UNION (SELECT b FROM u))");
+        checkTokens(Category.SELECT, "SELECT update_count FROM t");
+        checkTokens(Category.SELECT, "SELECT * FROM t FOR READ ONLY");
+        checkTokens(Category.SELECT_FOR_UPDATE, "SELECT * FROM t FOR UPDATE");
+        checkTokens(Category.SELECT_FOR_UPDATE,
+                    "select a from t where b in (select c from u) for update of a");
+        checkTokens(Category.SELECT_FOR_UPDATE,
+                    "(SELECT a FROM t) UNION (SELECT b FROM u) FOR UPDATE");
+    }
+
+    @Test
+    public void statements() throws Exception {
+        checkTokens(Category.DML, "INSERT INTO t VALUES (1)");
+        checkTokens(Category.DML, "UPDATE t SET x = 1");
+        checkTokens(Category.DML, "DELETE FROM t WHERE CURRENT OF c");
+        checkTokens(Category.CALL, "CALL p(1)");
+        checkFallback(Category.CALL, "{ CALL p(1) }");
+        checkTokens(Category.DDL, "CREATE TABLE t(x INT)");
+        checkTokens(Category.DDL, "DROP INDEX t.i");
+        checkTokens(Category.DDL, "ALTER TABLE t ADD COLUMN y INT");
+        checkTokens(Category.DDL, "TRUNCATE TABLE t");
+        checkTokens(Category.OTHER, "ALTER SERVER SHUTDOWN");
+        checkTokens(Category.TRANSACTION, "BEGIN");
+        checkTokens(Category.TRANSACTION, "ROLLBACK WORK");
+        checkTokens(Category.TRANSACTION, "SET TRANSACTION READ ONLY");
+        checkTokens(Category.TRANSACTION, "SET CURRENT ISOLATION = RR");
+        checkTokens(Category.SESSION, "SET SCHEMA s");
+        checkTokens(Category.SESSION, "SET client_encoding = 'UTF8'");
+        checkTokens(Category.SESSION, "SHOW client_encoding");
+        checkTokens(Category.CURSOR, "DECLARE c CURSOR FOR SELECT * FROM t");
+        checkTokens(Category.CURSOR, "FETCH NEXT FROM c");
+        checkTokens(Category.EXPLAIN, "EXPLAIN VERBOSE DELETE FROM t");
+        checkTokens(Category.COPY_OUT, "COPY (SELECT * FROM t) TO STDOUT");
+        checkTokens(Category.COPY_OUT, "COPY s.t (a, b) TO '/tmp/t.csv'");
+        checkTokens(Category.COPY_IN, "COPY t FROM STDIN WITH (FORMAT CSV)");
+        checkTokens(Category.LOCK, "LOCK TABLE t IN EXCLUSIVE MODE");
+    }
+
+    @Test(expected=SQLParserException.class)
+    public void parseError() throws Exception {
+        classifier.classify("FROB t");
+    }
+
+    @Test(expected=SQLParserException.class)
+    public void lexicalError() throws Exception {
+        classifier.classify("SELECT a FROM tbl WHERE x = #1 FOR UPDATE");
+    }
+
+    /** Whenever the leading tokens decide, they must agree with the parser. */
+    @Test
+    public void agreesWithParser() throws Exception {
+        int ndecided = 0;
+        for (File dir : new File[] { SQLParserTest.RESOURCE_DIR,
+                                     NodeToStringTest.RESOURCE_DIR }) {
+            for (Object[] args : sqlAndExpectedAndExtra(dir, ".features")) {
+                String sql = (String)args[1];
+                SQLParser parser = new SQLParser();
+                if (args[4] != null)
+                    parseFeatures((String[])args[4], parser.getFeatures());
+                StatementNode stmt;
+                try {
+                    stmt = parser.parseStatement(sql);
+                }
+                catch (StandardException ex) {
+                    continue;
+                }
+                SQLStatementClassifier classifier = new SQLStatementClassifier(parser);
+                Category category = classifier.classifyLeadingTokens(sql);
+                if (category != null) {
+                    assertEquals((String)args[0],
+                                 SQLStatementClassifier.classify(stmt), category);
+                    ndecided++;
+                }
+            }
+        }
+        assertTrue(ndecided > 0);
+    }
+
+}
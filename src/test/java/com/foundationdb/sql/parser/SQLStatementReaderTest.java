@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+public class SQLStatementReaderTest
+{
+    protected SQLParser parser;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+    }
+
+    @Test
+    public void largeScript() throws Exception {
+        final int count = 10000;
+        // Generate the script as it is read.
+        Reader script = new Reader() {
+                int n = 0;
+                String pending = "";
+
+                @Override
+                public int read(char[] cbuf, int off, int len) {
+                    if (pending.length() == 0) {
+                        if (n == count) return -1;
+                        pending = "CREATE VIEW v" + n + " AS SELECT " + n + " FROM t1;\n";
+                        n++;
+                    }
+                    int nc = Math.min(len, pending.length());
+                    pending.getChars(0, nc, cbuf, off);
+                    pending = pending.substring(nc);
+                    return nc;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        SQLStatementReader reader = new SQLStatementReader(parser, script);
+        int n = 0;
+        StatementNode stmt;
+        while ((stmt = reader.nextStatement()) != null) {
+            CreateViewNode view = (CreateViewNode)stmt;
+            assertEquals("v" + n, view.getObjectName().getTableName());
+            assertEquals("CREATE VIEW v" + n + " AS SELECT " + n + " FROM t1",
+                         view.getQueryExpression());
+            n++;
+        }
+        assertEquals(count, n);
+    }
+
+    @Test
+    public void channel() throws Exception {
+        String sql = ";; SELECT '\u00e9t\u00e9' FROM t1 ;\nDELETE FROM t2";
+        SQLStatementReader reader = 
+            new SQLStatementReader(parser, 
+                                   Channels.newChannel(new ByteArrayInputStream(sql.getBytes("UTF-8"))),
+                                   Charset.forName("UTF-8"));
+        StatementNode stmt = reader.nextStatement();
+        assertEquals("SELECT '\u00e9t\u00e9' FROM t1", parser.getSQLText());
+        assertEquals(sql.indexOf("SELECT"), stmt.getBeginOffset());
+        stmt = reader.nextStatement();
+        assertEquals("DELETE FROM t2", parser.getSQLText());
+        assertEquals(sql.length() - 1, stmt.getEndOffset());
+        assertNull(reader.nextStatement());
+    }
+
+    @Test
+    public void syntaxError() throws Exception {
+        String sql = "SELECT 1 FROM t1;\nSELECT FROM WHERE;\nSELECT 2 FROM t1";
+        SQLStatementReader reader = new SQLStatementReader(parser, new StringReader(sql));
+        assertNotNull(reader.nextStatement());
+        try {
+            reader.nextStatement();
+            fail("Expected syntax error");
+        }
+        catch (SQLParserException ex) {
+            assertEquals(sql.indexOf("FROM WHERE") + 1, ex.getErrorPosition());
+        }
+        assertNull(reader.nextStatement());
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StatementCacheTest
+{
+    protected SQLParser parser;
+    protected StatementCache cache;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        cache = new StatementCache(4);
+    }
+
+    @Test
+    public void copies() throws Exception {
+        StatementNode s1 = cache.parseStatement(parser, "SELECT a FROM t WHERE b = $2 AND c = $1");
+        StatementNode s2 = cache.parseStatement(parser, "SELECT a FROM t WHERE b = $2 AND c = $1");
+        assertNotSame(s1, s2);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, parser.getParameterList().size());
+        assertEquals(1, parser.getParameterList().get(0).getParameterNumber());
+        assertEquals(26, parser.getParameterList().get(0).getBeginOffset());
+        assertEquals(0, parser.getParameterList().get(1).getParameterNumber());
+        assertEquals(37, parser.getParameterList().get(1).getBeginOffset());
+    }
+
+    @Test
+    public void featuresInKey() throws Exception {
+        parser.getFeatures().add(SQLParserFeature.DIV_OPERATOR);
+        cache.parseStatement(parser, "SELECT 1");
+        parser.getFeatures().remove(SQLParserFeature.DIV_OPERATOR);
+        cache.parseStatement(parser, "SELECT 1");
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        parser.getFeatures().add(SQLParserFeature.DIV_OPERATOR);
+        cache.parseStatement(parser, "SELECT 1");
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            cache.parseStatement(parser, "SELECT " + i);
+        }
+        assertEquals(4, cache.size());
+        assertEquals(6, cache.getEvictions());
+    }
+
+    @Test
+    public void lengthsInKey() throws Exception {
+        cache.parseStatement(parser, "SELECT 'abc' FROM t");
+        int maxStringLiteralLength = parser.getMaxStringLiteralLength();
+        parser.setMaxStringLiteralLength(2);
+        try {
+            cache.parseStatement(parser, "SELECT 'abc' FROM t");
+            fail("String literal longer than limit");
+        }
+        catch (StandardException ex) {
+        }
+        parser.setMaxStringLiteralLength(maxStringLiteralLength);
+        cache.parseStatement(parser, "SELECT 'abc' FROM t");
+        assertEquals(1, cache.getHits());
+        cache.parseStatement(parser, "SELECT abc FROM t");
+        parser.setMaxIdentifierLength(2);
+        try {
+            cache.parseStatement(parser, "SELECT abc FROM t");
+            fail("Identifier longer than limit");
+        }
+        catch (StandardException ex) {
+        }
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void leaveUnexpanded() throws Exception {
+        parser.getFeatures().add(SQLParserFeature.COMPACT_IN_LISTS);
+        parser.getFeatures().add(SQLParserFeature.COLUMNAR_VALUES);
+        parser.getFeatures().add(SQLParserFeature.DEFERRED_SUBQUERIES);
+        String sql = "INSERT INTO t SELECT * FROM (VALUES (1, 'a'), (2, ?), ($1, 2.5)) AS v(x, y) " +
+            "WHERE x IN (1, 2, 3) AND y IN (SELECT a FROM t2)";
+        for (int i = 0; i < 2; i++) {
+            StatementNode stmt = cache.parseStatement(parser, sql);
+            SelectNode select = (SelectNode)((InsertNode)stmt).getResultSetNode();
+            RowsResultSetNode values = (RowsResultSetNode)
+                ((FromSubquery)select.getFromList().get(0)).getSubquery();
+            AndNode where = (AndNode)select.getWhereClause();
+            assertTrue(values.isColumnar());
+            assertTrue(((InListOperatorNode)where.getLeftOperand()).isCompact());
+            assertTrue(((SubqueryNode)where.getRightOperand()).isDeferred());
+            assertEquals(2, parser.getParameterList().size());
+            assertEquals(50, parser.getParameterList().get(0).getBeginOffset());
+            assertEquals(55, parser.getParameterList().get(1).getBeginOffset());
+        }
+        assertEquals(1, cache.getHits());
+    }
+
+}
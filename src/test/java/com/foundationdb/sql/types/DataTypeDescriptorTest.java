@@ -0,0 +1,77 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.types;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class DataTypeDescriptorTest
+{
+    @Test
+    public void defaultTypes() throws Exception {
+        DataTypeDescriptor bool = DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, false);
+        assertSame(bool, DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, false));
+        assertEquals(new DataTypeDescriptor(TypeId.BOOLEAN_ID, false), bool);
+        assertFalse(bool.isNullable());
+        assertSame(bool.getNullabilityType(true),
+                   DataTypeDescriptor.getDataTypeDescriptor(TypeId.BOOLEAN_ID, true));
+        assertSame(bool, bool.getNullabilityType(true).getNullabilityType(false));
+        assertSame(DataTypeDescriptor.INTEGER,
+                   DataTypeDescriptor.getDataTypeDescriptor(TypeId.INTEGER_ID, true));
+        assertSame(DataTypeDescriptor.INTEGER_NOT_NULL,
+                   DataTypeDescriptor.getDataTypeDescriptor(TypeId.INTEGER_ID, false));
+    }
+
+    @Test
+    public void sizedTypes() throws Exception {
+        DataTypeDescriptor decimal = DataTypeDescriptor.getDataTypeDescriptor(TypeId.DECIMAL_ID, 10, 2, true, 12);
+        assertSame(decimal, DataTypeDescriptor.getDataTypeDescriptor(TypeId.DECIMAL_ID, 10, 2, true, 12));
+        assertSame(decimal.getUnsigned(), decimal.getUnsigned());
+        assertNotSame(decimal, DataTypeDescriptor.getDataTypeDescriptor(TypeId.DECIMAL_ID, 10, 3, true, 12));
+    }
+
+    @Test
+    public void characterAttributes() throws Exception {
+        CharacterTypeAttributes utf8 = new CharacterTypeAttributes("UTF8", null, null);
+        CharacterTypeAttributes latin1 = new CharacterTypeAttributes("LATIN1", null, null);
+        DataTypeDescriptor varchar = DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true, 20, utf8);
+        assertSame(varchar,
+                   DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true, 20,
+                                                            new CharacterTypeAttributes("UTF8", null, null)));
+        assertNotSame(varchar,
+                      DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true, 20, latin1));
+        assertNotSame(varchar,
+                      DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true, 20));
+        assertSame(utf8, varchar.getNullabilityType(false).getCharacterAttributes());
+    }
+
+    @Test
+    public void allAttributes() throws Exception {
+        CharacterTypeAttributes utf8 = new CharacterTypeAttributes("UTF8", null, null);
+        DataTypeDescriptor varchar = DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true, 20, utf8);
+        assertSame(varchar,
+                   DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, 
+                                                            varchar.getPrecision(),
+                                                            varchar.getScale(),
+                                                            true, 20, utf8));
+        DataTypeDescriptor decimal = DataTypeDescriptor.getDataTypeDescriptor(TypeId.DECIMAL_ID, 10, 2, true, 12);
+        assertSame(decimal,
+                   DataTypeDescriptor.getDataTypeDescriptor(TypeId.DECIMAL_ID, 10, 2, true, 12, null));
+    }
+
+}
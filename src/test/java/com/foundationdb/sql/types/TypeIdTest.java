@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.types;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+public class TypeIdTest
+{
+    @Test
+    public void builtInNames() throws Exception {
+        for (TypeId typeId : TypeId.getAllBuiltinTypeIds()) {
+            String name = typeId.getSQLTypeName();
+            assertSame(name, typeId, TypeId.getBuiltInTypeId(name));
+            assertSame(name, typeId, TypeId.getBuiltInTypeId(name.toLowerCase()));
+        }
+        assertSame(TypeId.INTEGER_ID, TypeId.getBuiltInTypeId("INT"));
+        assertSame(TypeId.REAL_ID, TypeId.getBuiltInTypeId("float"));
+        assertSame(TypeId.MEDIUMINT_ID, TypeId.getBuiltInTypeId("MEDIUMINT"));
+        assertNull(TypeId.getBuiltInTypeId("NOSUCHTYPE"));
+    }
+
+    @Test
+    public void unsignedAndNationalNames() throws Exception {
+        assertSame(TypeId.MEDIUMINT_UNSIGNED_ID, TypeId.getBuiltInTypeId("MEDIUMINT UNSIGNED"));
+        assertSame(TypeId.MEDIUMINT_UNSIGNED_ID, TypeId.getBuiltInTypeId("mediumint unsigned"));
+        assertSame(TypeId.NATIONAL_CHAR_ID, TypeId.getBuiltInTypeId("national char"));
+        assertSame(TypeId.NATIONAL_VARCHAR_ID, TypeId.getBuiltInTypeId("NATIONAL CHAR VARYING"));
+        assertSame(TypeId.NATIONAL_LONGVARCHAR_ID, TypeId.getBuiltInTypeId("LONG NVARCHAR"));
+        List<TypeId> builtIns = Arrays.asList(TypeId.getAllBuiltinTypeIds());
+        assertTrue(builtIns.contains(TypeId.MEDIUMINT_UNSIGNED_ID));
+        assertTrue(builtIns.contains(TypeId.NATIONAL_CHAR_ID));
+        assertTrue(builtIns.contains(TypeId.NATIONAL_VARCHAR_ID));
+        assertTrue(builtIns.contains(TypeId.NATIONAL_LONGVARCHAR_ID));
+    }
+
+    @Test
+    public void javaNames() throws Exception {
+        assertSame(TypeId.INTEGER_ID, TypeId.getSQLTypeForJavaType("java.lang.Integer"));
+        assertSame(TypeId.INTEGER_ID, TypeId.getSQLTypeForJavaType("int"));
+        assertSame(TypeId.VARCHAR_ID, TypeId.getSQLTypeForJavaType("java.lang.String"));
+        assertSame(TypeId.TIMESTAMP_ID, TypeId.getSQLTypeForJavaType("java.sql.Timestamp"));
+        assertNull(TypeId.getSQLTypeForJavaType("char"));
+        TypeId udt = TypeId.getSQLTypeForJavaType("com.example.Point");
+        assertTrue(udt.isUserDefinedTypeId());
+        assertEquals("com.example.Point", udt.getCorrespondingJavaTypeName());
+    }
+
+    @Test
+    public void internedDescriptors() throws Exception {
+        DataTypeDescriptor varchar = DataTypeDescriptor.getBuiltInDataTypeDescriptor(Types.VARCHAR, 10);
+        assertSame(varchar,
+                   DataTypeDescriptor.getBuiltInDataTypeDescriptor(Types.VARCHAR, 10));
+        assertSame(varchar,
+                   DataTypeDescriptor.getBuiltInDataTypeDescriptor("VARCHAR", 10));
+        assertNotSame(varchar,
+                      DataTypeDescriptor.getBuiltInDataTypeDescriptor(Types.VARCHAR, 11));
+        DataTypeDescriptor decimal = new DataTypeDescriptor(TypeId.DECIMAL_ID, 10, 2, true, 12);
+        assertSame(decimal.intern(),
+                   new DataTypeDescriptor(TypeId.DECIMAL_ID, 10, 2, true, 12).intern());
+        assertNotSame(decimal.intern(),
+                      new DataTypeDescriptor(TypeId.DECIMAL_ID, 10, 2, false, 12).intern());
+        DataTypeDescriptor udt = new DataTypeDescriptor(TypeId.getUserDefinedTypeId("com.example.Point", false), true);
+        assertSame(udt, udt.intern());
+    }
+
+    @Test
+    public void internedCollations() throws Exception {
+        CharacterTypeAttributes implicit = 
+            new CharacterTypeAttributes("UTF8", "en_us", 
+                                        CharacterTypeAttributes.CollationDerivation.IMPLICIT);
+        CharacterTypeAttributes explicit = 
+            new CharacterTypeAttributes("UTF8", "en_us", 
+                                        CharacterTypeAttributes.CollationDerivation.EXPLICIT);
+        DataTypeDescriptor implicitType = 
+            DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true, 20, implicit);
+        DataTypeDescriptor explicitType = 
+            DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true, 20, explicit);
+        assertEquals(CharacterTypeAttributes.CollationDerivation.IMPLICIT,
+                     implicitType.getCharacterAttributes().getCollationDerivation());
+        assertEquals(CharacterTypeAttributes.CollationDerivation.EXPLICIT,
+                     explicitType.getCharacterAttributes().getCollationDerivation());
+        assertSame(explicitType,
+                   DataTypeDescriptor.getDataTypeDescriptor(TypeId.VARCHAR_ID, true, 20, explicit));
+        CharacterTypeAttributes other = 
+            new CharacterTypeAttributes("UTF8", "sv_se", 
+                                        CharacterTypeAttributes.CollationDerivation.IMPLICIT);
+        assertEquals("en_us",
+                     CharacterTypeAttributes.mergeCollations(explicitType.getCharacterAttributes(),
+                                                             other).getCollation());
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.unparser;
+
+import com.foundationdb.sql.parser.*;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+public class AppendToTest
+{
+    static class CountingWriter extends StringWriter {
+        int writes;
+
+        @Override
+        public StringWriter append(CharSequence csq) {
+            writes++;
+            return super.append(csq);
+        }
+    }
+
+    static class FailingWriter extends Writer {
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            throw new IOException("full");
+        }
+        @Override
+        public void flush() {
+        }
+        @Override
+        public void close() {
+        }
+    }
+
+    protected static StatementNode wide(int ncols) throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < ncols; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("c").append(i).append(" + 1 AS n").append(i);
+        }
+        sql.append(" FROM t");
+        return new SQLParser().parseStatement(sql.toString());
+    }
+
+    @Test
+    public void streamed() throws Exception {
+        StatementNode stmt = wide(2000);
+        NodeToString unparser = new NodeToString();
+        CountingWriter writer = new CountingWriter();
+        unparser.appendTo(stmt, writer);
+        assertEquals(unparser.toString(stmt), writer.toString());
+        // Passed along as it was written, not all at the end.
+        assertTrue(writer.writes > 1);
+    }
+
+    @Test
+    public void overridden() throws Exception {
+        StatementNode stmt = wide(2000);
+        NodeToString unparser = new StringOverrideTest.BracketParens();
+        CountingWriter writer = new CountingWriter();
+        unparser.appendTo(stmt, writer);
+        assertEquals(unparser.toString(stmt), writer.toString());
+        assertTrue(writer.writes > 1);
+    }
+
+    @Test(expected=IOException.class)
+    public void failed() throws Exception {
+        new NodeToString().appendTo(wide(2000), new FailingWriter());
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.unparser;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class MaybeQuoteTest
+{
+    @Test
+    public void unquoted() throws Exception {
+        NodeToString unparser = new NodeToString();
+        assertNull(unparser.maybeQuote(null));
+        for (String identifier : new String[] { "a", "_x", "col1", "a$b", "x_y_z" }) {
+            assertSame(identifier, unparser.maybeQuote(identifier));
+        }
+    }
+
+    @Test
+    public void quoted() throws Exception {
+        NodeToString unparser = new NodeToString();
+        assertEquals("\"\"", unparser.maybeQuote(""));
+        assertEquals("\"Col\"", unparser.maybeQuote("Col"));
+        assertEquals("\"1a\"", unparser.maybeQuote("1a"));
+        assertEquals("\"$a\"", unparser.maybeQuote("$a"));
+        assertEquals("\"a-b\"", unparser.maybeQuote("a-b"));
+        assertEquals("\"a\"\"b\"", unparser.maybeQuote("a\"b"));
+        assertEquals("\"select\"", unparser.maybeQuote("select"));
+        assertEquals("\"xmlexists\"", unparser.maybeQuote("xmlexists"));
+        assertSame(unparser.maybeQuote("Col"), unparser.maybeQuote("Col"));
+        assertTrue(NodeToString.isReserved("SELECT"));
+        assertFalse(NodeToString.isReserved("col"));
+    }
+
+}
@@ -30,6 +30,7 @@ import org.junit.runners.Parameterized.Parameters;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.StringWriter;
 import java.util.Collection;
 import java.util.EnumSet;
 
@@ -71,7 +72,15 @@ public class NodeToStringTest extends TestBase implements TestBase.GenerateAndCh
     @Override
     public String generateResult() throws Exception {
         StatementNode stmt = parser.parseStatement(sql);
-        return unparser.toString(stmt);
+        String result = unparser.toString(stmt);
+        // Appending to a buffer that already has text gives the same.
+        StringBuilder str = new StringBuilder("-- ");
+        unparser.toString(stmt, str);
+        assertEquals(caseName, "-- " + result, str.toString());
+        StringWriter writer = new StringWriter();
+        unparser.appendTo(stmt, writer);
+        assertEquals(caseName, result, writer.toString());
+        return result;
     }
 
     @Override
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.unparser;
+
+import com.foundationdb.sql.parser.SQLStatementReader;
+import com.foundationdb.sql.parser.StatementNode;
+
+import static junit.framework.Assert.*;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StreamParseMultipleTest extends ParseMultipleTest
+{
+    public StreamParseMultipleTest(String caseName, String sql, 
+                                   String expected, String error) {
+        super(caseName, sql, expected, error);
+    }
+
+    /** Deliver only a few characters at a time, so that statements
+     * and tokens straddle reads. */
+    static class TrickleReader extends FilterReader {
+        public TrickleReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return super.read(cbuf, off, Math.min(len, 3));
+        }
+    }
+
+    @Override
+    public String generateResult() throws Exception {
+        SQLStatementReader reader = 
+            new SQLStatementReader(parser, new TrickleReader(new StringReader(sql)));
+        List<StatementNode> stmts = new ArrayList<StatementNode>();
+        StatementNode stmt;
+        while ((stmt = reader.nextStatement()) != null) {
+            assertEquals(sql.substring(stmt.getBeginOffset(), stmt.getEndOffset() + 1),
+                         parser.getSQLText());
+            stmts.add(stmt);
+        }
+        assertNull(reader.nextStatement());
+        reader.close();
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < stmts.size(); i++) {
+            if (i > 0) str.append("\n");
+            str.append("[" + i + "]: ");
+            str.append(unparser.toString(stmts.get(i)));
+            str.append(";");
+        }
+        return str.toString();
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.unparser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.*;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class StringOverrideTest
+{
+    static class UpperColumns extends NodeToString {
+        @Override
+        protected String columnReference(ColumnReference node) throws StandardException {
+            return super.columnReference(node).toUpperCase();
+        }
+    }
+
+    static class BracketParens extends NodeToString {
+        @Override
+        protected String maybeParens(QueryTreeNode node) throws StandardException {
+            return "[" + toString(node) + "]";
+        }
+    }
+
+    static class Comments extends NodeToString {
+        @Override
+        protected String selectNode(SelectNode node) throws StandardException {
+            return "/* select */ " + super.selectNode(node);
+        }
+
+        @Override
+        protected String orderByListFetchFirstOffset(OrderByList orderByList,
+                                                     ValueNode fetchFirst,
+                                                     ValueNode offset)
+                throws StandardException {
+            return super.orderByListFetchFirstOffset(orderByList, fetchFirst, offset) +
+                " /* end */";
+        }
+    }
+
+    static class AllQuoted extends NodeToString {
+        @Override
+        protected String maybeQuote(String identifier) {
+            if (identifier == null)
+                return null;
+            return "`" + identifier + "`";
+        }
+    }
+
+    static class QuotedColumns extends NodeToString {
+        @Override
+        public String toString(QueryTreeNode node) throws StandardException {
+            if (node instanceof ColumnReference)
+                return "\"" + ((ColumnReference)node).getColumnName() + "\"";
+            return super.toString(node);
+        }
+    }
+
+    protected String unparse(NodeToString unparser, String sql) throws Exception {
+        StatementNode stmt = new SQLParser().parseStatement(sql);
+        String result = unparser.toString(stmt);
+        StringBuilder str = new StringBuilder();
+        unparser.toString(stmt, str);
+        assertEquals(result, str.toString());
+        return result;
+    }
+
+    @Test
+    public void defaults() throws Exception {
+        assertEquals("SELECT x FROM tbl WHERE y > 1 ORDER BY x",
+                     unparse(new NodeToString(),
+                             "SELECT x FROM tbl WHERE y > 1 ORDER BY x"));
+    }
+
+    @Test
+    public void columnReference() throws Exception {
+        assertEquals("SELECT X AS x FROM tbl WHERE (Y + 1) > 2",
+                     unparse(new UpperColumns(),
+                             "SELECT x FROM tbl WHERE (y + 1) > 2"));
+    }
+
+    @Test
+    public void maybeParens() throws Exception {
+        assertEquals("SELECT [x] AS x FROM tbl WHERE [y] > [1]",
+                     unparse(new BracketParens(),
+                             "SELECT x FROM tbl WHERE y > 1"));
+    }
+
+    @Test
+    public void nested() throws Exception {
+        assertEquals("/* select */ SELECT x FROM tbl WHERE y IN " +
+                     "(/* select */ SELECT a FROM tbl2 /* end */) ORDER BY x /* end */",
+                     unparse(new Comments(),
+                             "SELECT x FROM tbl WHERE y IN (SELECT a FROM tbl2) ORDER BY x"));
+    }
+
+    @Test
+    public void nestedToString() throws Exception {
+        assertEquals("SELECT \"x\" AS x FROM tbl WHERE \"y\" IN " +
+                     "(SELECT \"a\" AS a FROM tbl2 WHERE \"b\" = 1)",
+                     unparse(new QuotedColumns(),
+                             "SELECT x FROM tbl WHERE y IN (SELECT a FROM tbl2 WHERE b = 1)"));
+    }
+
+    @Test
+    public void maybeQuote() throws Exception {
+        assertEquals("SELECT `x` FROM `tbl` WHERE `y` IN (SELECT `a` FROM `tbl2`)",
+                     unparse(new AllQuoted(),
+                             "SELECT x FROM tbl WHERE y IN (SELECT a FROM tbl2)"));
+    }
+}
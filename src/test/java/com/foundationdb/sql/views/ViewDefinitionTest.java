@@ -0,0 +1,265 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.views;
+
+import com.foundationdb.sql.parser.*;
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+import com.foundationdb.sql.types.TypeId;
+import com.foundationdb.sql.compiler.BooleanNormalizer;
+import com.foundationdb.sql.compiler.TypeComputer;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class ViewDefinitionTest
+{
+    protected SQLParser parser;
+    protected NodeToString unparser;
+    protected ViewDefinition view;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        unparser = new NodeToString();
+        view = new ViewDefinition("CREATE VIEW v AS SELECT a + 1 AS x FROM t WHERE b = 2 + 3",
+                                  parser);
+        // Columns are not bound here, so only the constant part gets a type.
+        where(view.getSubquery()).getRightOperand().accept(new TypeComputer());
+    }
+
+    protected static BinaryOperatorNode where(FromSubquery subquery) {
+        return (BinaryOperatorNode)((SelectNode)subquery.getSubquery()).getWhereClause();
+    }
+
+    @Test
+    public void copyWithoutFreezing() throws Exception {
+        FromSubquery copy = view.copySubquery(new SQLParser());
+        assertEquals(unparser.toString(view.getSubquery()), unparser.toString(copy));
+        assertNotSame(where(view.getSubquery()).getRightOperand(),
+                      where(copy).getRightOperand());
+    }
+
+    @Test
+    public void shareFrozen() throws Exception {
+        view.freeze();
+        BinaryOperatorNode viewWhere = where(view.getSubquery());
+        assertFalse(viewWhere.isFrozen());
+        assertFalse(viewWhere.getLeftOperand().isFrozen());
+        assertTrue(viewWhere.getRightOperand().isFrozen());
+        FromSubquery copy = view.copySubquery(new SQLParser());
+        assertEquals(unparser.toString(view.getSubquery()), unparser.toString(copy));
+        assertNotSame(viewWhere, where(copy));
+        assertNotSame(viewWhere.getLeftOperand(), where(copy).getLeftOperand());
+        assertSame(viewWhere.getRightOperand(), where(copy).getRightOperand());
+    }
+
+    @Test
+    public void copyOnWrite() throws Exception {
+        view.freeze();
+        String original = unparser.toString(view.getSubquery());
+        FromSubquery copy = view.copySubquery(new SQLParser());
+        copy.accept(new Visitor() {
+                public Visitable visit(Visitable node) throws StandardException {
+                    if ((node instanceof NumericConstantNode) &&
+                        ((NumericConstantNode)node).getValue().equals(3)) {
+                        QueryTreeNode qtn = (QueryTreeNode)node;
+                        return (Visitable)qtn.getNodeFactory()
+                            .getNode(NodeTypes.INT_CONSTANT_NODE, 4, qtn.getParserContext());
+                    }
+                    return node;
+                }
+                public boolean visitChildrenFirst(Visitable node) {
+                    return false;
+                }
+                public boolean stopTraversal() {
+                    return false;
+                }
+                public boolean skipChildren(Visitable node) {
+                    return false;
+                }
+            });
+        assertEquals(original, unparser.toString(view.getSubquery()));
+        assertEquals("2 + 4", unparser.toString(where(copy).getRightOperand()));
+        assertFalse(where(copy).getRightOperand().isFrozen());
+        assertSame(((BinaryOperatorNode)where(view.getSubquery()).getRightOperand()).getLeftOperand(),
+                   ((BinaryOperatorNode)where(copy).getRightOperand()).getLeftOperand());
+    }
+
+    /** Bind columns and tables to something and give columns a type, as
+     * a binder would.
+     */
+    protected static void bind(QueryTreeNode node, final String binding) 
+            throws StandardException {
+        node.accept(new Visitor() {
+                public Visitable visit(Visitable node) throws StandardException {
+                    if (node instanceof ColumnReference) {
+                        ColumnReference column = (ColumnReference)node;
+                        column.setUserData(binding + column.getColumnName());
+                        column.setType(new DataTypeDescriptor(TypeId.INTEGER_ID, true));
+                    }
+                    else if (node instanceof FromBaseTable) {
+                        ((FromBaseTable)node).setUserData(binding + ((FromBaseTable)node).getOrigTableName());
+                    }
+                    return node;
+                }
+                public boolean visitChildrenFirst(Visitable node) {
+                    return false;
+                }
+                public boolean stopTraversal() {
+                    return false;
+                }
+                public boolean skipChildren(Visitable node) {
+                    return false;
+                }
+            });
+        node.accept(new TypeComputer());
+    }
+
+    @Test
+    public void boundShared() throws Exception {
+        view = new ViewDefinition("CREATE VIEW v AS SELECT a + 1 AS x, b FROM t WHERE b = 2 + 3 ORDER BY a",
+                                  parser);
+        bind(view.getSubquery(), "view.");
+        view.freeze();
+        SelectNode select = (SelectNode)view.getSubquery().getSubquery();
+        BinaryOperatorNode viewWhere = (BinaryOperatorNode)select.getWhereClause();
+        assertFalse(view.getSubquery().isFrozen());
+        assertTrue(select.isFrozen());
+        assertTrue(select.getResultColumns().isFrozen());
+        assertTrue(select.getFromList().isFrozen());
+        assertTrue(viewWhere.isFrozen());
+        String original = unparser.toString(view.getSubquery());
+        String viewBindings = bindings(view.getSubquery());
+        FromSubquery copy = view.copySubquery(new SQLParser());
+        assertNotSame(view.getSubquery(), copy);
+        assertSame(select, copy.getSubquery());
+        bind(copy, "copy.");
+        // Only the path down to what was bound differently is copied.
+        assertNotSame(select, copy.getSubquery());
+        assertNotSame(viewWhere, where(copy));
+        assertNotSame(viewWhere.getLeftOperand(), where(copy).getLeftOperand());
+        assertSame(viewWhere.getRightOperand(), where(copy).getRightOperand());
+        assertFalse(where(copy).isFrozen());
+        assertEquals(original, unparser.toString(view.getSubquery()));
+        assertEquals(original, unparser.toString(copy));
+        assertEquals(viewBindings, bindings(view.getSubquery()));
+        assertEquals(viewBindings.replace("view.", "copy."), bindings(copy));
+    }
+
+    @Test
+    public void sameTypesShared() throws Exception {
+        bind(view.getSubquery(), "view.");
+        view.freeze();
+        FromSubquery copy = view.copySubquery(new SQLParser());
+        copy.accept(new TypeComputer());
+        assertSame(view.getSubquery().getSubquery(), copy.getSubquery());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void frozenNotChanged() throws Exception {
+        view.freeze();
+        where(view.getSubquery()).getRightOperand().setUserData("x");
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void frozenSetterRefused() throws Exception {
+        bind(view.getSubquery(), "view.");
+        view.freeze();
+        SelectNode select = (SelectNode)view.getSubquery().getSubquery();
+        select.getResultColumns().get(0).setExpression(where(view.getSubquery()));
+    }
+
+    /** The bindings of all the column references under this node. */
+    protected static String bindings(QueryTreeNode node) throws StandardException {
+        final StringBuilder str = new StringBuilder();
+        node.accept(new Visitor() {
+                public Visitable visit(Visitable node) {
+                    if (node instanceof ColumnReference)
+                        str.append(((ColumnReference)node).getUserData()).append(' ');
+                    return node;
+                }
+                public boolean visitChildrenFirst(Visitable node) {
+                    return false;
+                }
+                public boolean stopTraversal() {
+                    return false;
+                }
+                public boolean skipChildren(Visitable node) {
+                    return false;
+                }
+            });
+        return str.toString();
+    }
+
+    @Test
+    public void normalizeAndBindCopies() throws Exception {
+        view = new ViewDefinition("CREATE VIEW v AS SELECT a FROM t WHERE NOT (b = 1 AND 2 = 3) AND (1 < 2 OR 3 < 4) AND CASE WHEN NOT (1 = 1) THEN TRUE ELSE FALSE END",
+                                  parser);
+        bind(view.getSubquery(), "view.");
+        view.freeze();
+        AndNode viewWhere = (AndNode)((SelectNode)view.getSubquery().getSubquery()).getWhereClause();
+        assertTrue(viewWhere.getRightOperand().isFrozen());
+        assertTrue(((AndNode)viewWhere.getLeftOperand()).getRightOperand().isFrozen());
+        String original = unparser.toString(view.getSubquery());
+
+        SQLParser parser1 = new SQLParser();
+        FromSubquery copy1 = view.copySubquery(parser1);
+        SQLParser parser2 = new SQLParser();
+        FromSubquery copy2 = view.copySubquery(parser2);
+
+        copy1.accept(new BooleanNormalizer(parser1));
+        bind(copy1, "copy1.");
+        String normalized = unparser.toString(copy1);
+        assertFalse(original.equals(normalized));
+        assertEquals(original, unparser.toString(view.getSubquery()));
+        assertEquals(original, unparser.toString(copy2));
+        assertEquals("view.a view.b ", bindings(view.getSubquery()));
+        assertEquals("view.a view.b ", bindings(copy2));
+
+        copy2.accept(new BooleanNormalizer(parser2));
+        bind(copy2, "copy2.");
+        assertEquals(normalized, unparser.toString(copy1));
+        assertEquals(normalized, unparser.toString(copy2));
+        assertEquals(original, unparser.toString(view.getSubquery()));
+        assertEquals("view.a view.b ", bindings(view.getSubquery()));
+        assertEquals("copy1.a copy1.b ", bindings(copy1));
+        assertEquals("copy2.a copy2.b ", bindings(copy2));
+    }
+
+    @Test
+    public void leaveUnexpanded() throws Exception {
+        parser.getFeatures().add(SQLParserFeature.COMPACT_IN_LISTS);
+        parser.getFeatures().add(SQLParserFeature.DEFERRED_SUBQUERIES);
+        view = new ViewDefinition("CREATE VIEW v AS SELECT a FROM t WHERE b IN (1, 2, 3) AND a IN (SELECT x FROM t2)",
+                                  parser);
+        AndNode and = (AndNode)((SelectNode)view.getSubquery().getSubquery()).getWhereClause();
+        InListOperatorNode inList = (InListOperatorNode)and.getLeftOperand();
+        SubqueryNode subquery = (SubqueryNode)and.getRightOperand();
+        assertTrue(inList.isCompact());
+        assertTrue(subquery.isDeferred());
+        view.freeze();
+        assertTrue(inList.isCompact());
+        assertTrue(subquery.isDeferred());
+        assertFalse(inList.isFrozen());
+        assertFalse(subquery.isFrozen());
+    }
+
+}
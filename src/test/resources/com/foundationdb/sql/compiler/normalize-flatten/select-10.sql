@@ -0,0 +1 @@
+SELECT * FROM t WHERE x = 1 OR NOT (y BETWEEN 2 AND 3 OR z = 4) OR w IS NULL
@@ -0,0 +1 @@
+SELECT * FROM t WHERE ((a AND b) AND c) AND NOT d
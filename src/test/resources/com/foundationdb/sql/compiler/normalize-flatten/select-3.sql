@@ -0,0 +1 @@
+SELECT * FROM t WHERE (d OR e) OR ((a AND b) AND c)
@@ -0,0 +1 @@
+SELECT * FROM t WHERE a AND NOT (b OR c OR (d AND e)) AND f
@@ -0,0 +1 @@
+CREATE TABLE t(a INT DEFAULT 1, b VARCHAR(10))
@@ -0,0 +1 @@
+INSERT INTO t(a, b, c) VALUES(1, 'one', NULL), (2, 'two', NULL)
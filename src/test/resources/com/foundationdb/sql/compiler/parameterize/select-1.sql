@@ -0,0 +1 @@
+SELECT a, b FROM t WHERE id = 17 AND name = 'fred' AND x IS NOT TRUE
@@ -0,0 +1 @@
+SELECT * FROM t WHERE a IN (1, 2, 3) AND b BETWEEN 1.5 AND 1e3 ORDER BY 1 LIMIT 10
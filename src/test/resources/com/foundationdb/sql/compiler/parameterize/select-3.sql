@@ -0,0 +1 @@
+SELECT a + 1, COUNT(*) FROM t WHERE c = ? AND d = 'x' GROUP BY a + 1 HAVING COUNT(*) > 5
@@ -0,0 +1 @@
+SELECT TRIM(name), TIMESTAMPADD(DAY, 3, d) FROM t WHERE e <> NULL AND f = x'0A' AND g = -4
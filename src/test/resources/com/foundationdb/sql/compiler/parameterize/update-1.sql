@@ -0,0 +1 @@
+UPDATE t SET a = a + 10 WHERE b = $1 AND c = 'abc'
@@ -0,0 +1 @@
+SELECT 2147483647, 2147483648, -2147483648, -2147483649, 9223372036854775807, 9223372036854775808, -9223372036854775808, -9223372036854775809, 12.5, 007, +0 FROM t1 WHERE c IN (-1, 4294967296)